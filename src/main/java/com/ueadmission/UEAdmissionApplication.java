@@ -108,7 +108,7 @@ public class UEAdmissionApplication extends Application {
 
             // Close database connection
             try {
-                com.ueadmission.db.DatabaseConnection.closeConnection();
+                com.ueadmission.db.DatabaseConnection.closeAllConnections();
                 LOGGER.info("Database connection closed");
             } catch (Exception e) {
                 LOGGER.log(Level.WARNING, "Error closing database connection: " + e.getMessage(), e);
@@ -87,7 +87,7 @@ public class ApplicationDAO {
             LOGGER.log(Level.SEVERE, "Error creating application", e);
             return -1;
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
     }
     
@@ -118,7 +118,7 @@ public class ApplicationDAO {
             LOGGER.log(Level.SEVERE, "Error updating payment status", e);
             return false;
         } finally {
-            DatabaseConnection.closeResources(ps, null);
+            DatabaseConnection.closeResources(conn, ps, null);
         }
     }
     
@@ -152,7 +152,7 @@ public class ApplicationDAO {
             LOGGER.log(Level.SEVERE, "Error getting application", e);
             return null;
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
     }
     
@@ -187,7 +187,7 @@ public class ApplicationDAO {
             LOGGER.log(Level.SEVERE, "Error getting applications for user", e);
             return applications;
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
     }
     
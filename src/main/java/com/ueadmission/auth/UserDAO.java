@@ -50,7 +50,7 @@ public class UserDAO {
             LOGGER.log(Level.SEVERE, "Error registering user", e);
             return false;
         } finally {
-            DatabaseConnection.closeResources(ps, null);
+            DatabaseConnection.closeResources(conn, ps, null);
         }
     }
     
@@ -104,7 +104,7 @@ public class UserDAO {
             LOGGER.log(Level.SEVERE, "Error authenticating user", e);
             return null;
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
     }
     
@@ -156,7 +156,7 @@ public class UserDAO {
             LOGGER.log(Level.SEVERE, "Error updating login status", e);
             return false;
         } finally {
-            DatabaseConnection.closeResources(ps, null);
+            DatabaseConnection.closeResources(conn, ps, null);
         }
     }
     
@@ -191,7 +191,7 @@ public class UserDAO {
             LOGGER.log(Level.SEVERE, "Error force logging out all users", e);
             return false;
         } finally {
-            DatabaseConnection.closeResources(ps, null);
+            DatabaseConnection.closeResources(conn, ps, null);
         }
     }
     
@@ -225,7 +225,7 @@ public class UserDAO {
             LOGGER.log(Level.SEVERE, "Error checking if user is logged in", e);
             return false;
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
     }
     
@@ -259,7 +259,7 @@ public class UserDAO {
             LOGGER.log(Level.SEVERE, "Error checking email existence", e);
             return false;
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
     }
 }
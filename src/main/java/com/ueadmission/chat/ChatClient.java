@@ -1,21 +1,30 @@
 package com.ueadmission.chat;
 import com.ueadmission.auth.state.AuthState;
 import com.ueadmission.auth.state.AuthStateManager;
+import com.ueadmission.chat.protocol.ChatFrame;
+import com.ueadmission.chat.protocol.ChatProtocol;
 import com.ueadmission.config.ChatServerConfig;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,26 +33,63 @@ import javafx.application.Platform;
 
 
 /**
- * Client for connecting to the chat server
+ * Client for connecting to the chat server.
+ * The client asks for the binary protocol when it authenticates and falls back
+ * to the text protocol when the server does not confirm it. A lost connection
+ * is reopened in the background with jittered exponential backoff, and the
+ * messages written while offline are then sent from the {@link ChatOutbox}.
+ * Received messages and status updates reach the listeners on the JavaFX
+ * thread in batches, once per pulse, through a {@link ChatEventCoalescer}.
+ * Direct messages arrive numbered; the client confirms them cumulatively with
+ * one DELIVERED per burst and reconnects if a number is missing, so the server
+ * replays what was lost.
  */
 public class ChatClient {
     private static final Logger LOGGER = Logger.getLogger(ChatClient.class.getName());
 
+    private static final int NEGOTIATION_TIMEOUT_MILLIS = 5000;
+    private static final long OUTBOX_ACK_TIMEOUT_MILLIS = 5000;
+    /** Most direct messages received before a DELIVERED is sent even while more are waiting */
+    private static final int CONFIRM_BATCH_SIZE = 64;
+
     private static ChatClient instance;
 
     private Socket socket;
-    private PrintWriter writer;
-    private BufferedReader reader;
-    private boolean isConnected = false;
+    private OutputStream writer;
+    private InputStream reader;
+    private final Object writeLock = new Object();
+    private volatile boolean binaryProtocol = false;
+    private volatile boolean isConnected = false;
     private int userId;
     private ExecutorService executor;
+    private volatile boolean reconnectEnabled = false;
+    private volatile ScheduledFuture<?> pendingReconnect;
+    private final ReconnectBackoff reconnectBackoff;
+    private final ScheduledExecutorService reconnectScheduler;
+    private final ChatOutbox outbox;
+    private final ChatEventCoalescer eventCoalescer = new ChatEventCoalescer(new ListenerSink());
+
+    // Direct message numbers of the current connection, only used by its receiver thread
+    private int lastSequence;
+    private int confirmedSequence;
+    private boolean sequenceGap;
 
-    private List<ChatMessageListener> messageListeners = new ArrayList<>();
-    private List<StatusUpdateListener> statusListeners = new ArrayList<>();
+    private final List<ChatMessageListener> messageListeners = new CopyOnWriteArrayList<>();
+    private final List<StatusUpdateListener> statusListeners = new CopyOnWriteArrayList<>();
 
     private ChatClient() {
         // Private constructor for singleton pattern
         executor = Executors.newSingleThreadExecutor();
+
+        ChatServerConfig config = ChatServerConfig.getInstance();
+        reconnectBackoff = new ReconnectBackoff(config.getReconnectInitialDelayMillis(),
+                config.getReconnectMaxDelayMillis());
+        outbox = new ChatOutbox(ChatOutbox.databaseStore(), config.getOutboxBatchSize(), OUTBOX_ACK_TIMEOUT_MILLIS);
+        reconnectScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -57,9 +103,11 @@ public class ChatClient {
     }
 
     /**
-     * Connect to the chat server
+     * Connect to the chat server. If the server cannot be reached, or the
+     * connection is lost later, the client keeps trying in the background
+     * until {@link #disconnect()} is called.
      */
-    public boolean connect() {
+    public synchronized boolean connect() {
         try {
             // Get current user ID
             AuthStateManager authManager = AuthStateManager.getInstance();
@@ -69,48 +117,13 @@ public class ChatClient {
             }
 
             userId = authManager.getState().getUser().getId();
+            reconnectEnabled = true;
+            cancelReconnect();
+            reconnectBackoff.reset();
 
             try {
-                // Close any existing connection first
-                disconnect();
-
-                // Set a reasonable connection timeout so the UI doesn't hang but gives enough time to connect
-                socket = new Socket();
-
-                // Get server host and port from configuration
-                String serverHost = ChatServerConfig.getInstance().getServerHost();
-                int serverPort = ChatServerConfig.getInstance().getServerPort();
-
-                LOGGER.info("Connecting to chat server at " + serverHost + ":" + serverPort);
-                socket.connect(new InetSocketAddress(serverHost, serverPort), 5000);
-                writer = new PrintWriter(socket.getOutputStream(), true);
-                reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-                // Send authentication message
-                writer.println("AUTH:" + userId);
-
-                // Ensure executor service is running
-                ensureExecutorRunning();
-
-                // Start message receiver in a separate thread
-                executor.submit(this::messageReceiver);
-
-                isConnected = true;
-                LOGGER.info("Connected to chat server as user " + userId);
-
-                // Update user status to online in database
-                try {
-                    Connection conn = DatabaseConnection.getConnection();
-                    PreparedStatement ps = conn.prepareStatement(
-                        "INSERT INTO user_status (user_id, status, last_active) VALUES (?, 'online', NOW()) " +
-                        "ON DUPLICATE KEY UPDATE status = 'online', last_active = NOW()");
-                    ps.setInt(1, userId);
-                    ps.executeUpdate();
-                    ps.close();
-                } catch (SQLException e) {
-                    LOGGER.log(Level.WARNING, "Could not update user status in database", e);
-                }
-
+                openConnection();
+                // The server records the user as online and saves it to user_status
                 return true;
             } catch (IOException e) {
                 LOGGER.log(Level.WARNING, "Failed to connect to chat server. Chat will use offline mode.", e);
@@ -118,8 +131,9 @@ public class ChatClient {
                 isConnected = false;
 
                 // Update user status to offline in database
+                Connection conn = null;
                 try {
-                    Connection conn = DatabaseConnection.getConnection();
+                    conn = DatabaseConnection.getConnection();
                     PreparedStatement ps = conn.prepareStatement(
                         "INSERT INTO user_status (user_id, status, last_active) VALUES (?, 'offline', NOW()) " +
                         "ON DUPLICATE KEY UPDATE status = 'offline', last_active = NOW()");
@@ -128,8 +142,11 @@ public class ChatClient {
                     ps.close();
                 } catch (SQLException dbError) {
                     LOGGER.log(Level.WARNING, "Could not update user status in database", dbError);
+                } finally {
+                    DatabaseConnection.releaseConnection(conn);
                 }
 
+                scheduleReconnect();
                 return false;
             }
         } catch (Exception e) {
@@ -140,9 +157,224 @@ public class ChatClient {
     }
 
     /**
-     * Disconnect from the chat server
+     * Open a new connection, authenticate and start receiving.
+     * Messages written while offline are sent once the connection is up.
+     */
+    private void openConnection() throws IOException {
+        // Close any existing connection first
+        closeConnection();
+
+        // Set a reasonable connection timeout so the UI doesn't hang but gives enough time to connect
+        socket = new Socket();
+
+        // Get server host and port from configuration
+        String serverHost = ChatServerConfig.getInstance().getServerHost();
+        int serverPort = ChatServerConfig.getInstance().getServerPort();
+
+        LOGGER.info("Connecting to chat server at " + serverHost + ":" + serverPort);
+        socket.connect(new InetSocketAddress(serverHost, serverPort), 5000);
+        writer = new BufferedOutputStream(socket.getOutputStream());
+        reader = new BufferedInputStream(socket.getInputStream());
+
+        // Send authentication message and agree on the protocol
+        binaryProtocol = negotiateProtocol();
+
+        // Ensure executor service is running
+        ensureExecutorRunning();
+
+        // Mark connected before the receiver starts, since it stops once this is false
+        isConnected = true;
+
+        // Start message receiver in a separate thread, bound to this connection
+        Socket connection = socket;
+        InputStream input = reader;
+        executor.submit(() -> messageReceiver(connection, input));
+
+        LOGGER.info("Connected to chat server as user " + userId
+                + (binaryProtocol ? " using the binary protocol" : " using the text protocol"));
+
+        // Waiting for ACKs must not hold up the caller, which may be the FX thread
+        reconnectScheduler.execute(this::flushOutbox);
+    }
+
+    /**
+     * Try to connect again after the connection was lost or could not be opened
+     */
+    private synchronized void reconnect() {
+        pendingReconnect = null;
+        if (!reconnectEnabled || isConnected) {
+            return;
+        }
+        if (!AuthStateManager.getInstance().isAuthenticated()) {
+            LOGGER.info("User logged out, no longer reconnecting to chat server");
+            reconnectEnabled = false;
+            return;
+        }
+
+        int attempts = reconnectBackoff.getAttempts();
+        try {
+            openConnection();
+            if (!reconnectEnabled) {
+                // disconnect() was called while the connection was being opened
+                closeConnection();
+                return;
+            }
+            reconnectBackoff.reset();
+            LOGGER.info("Reconnected to chat server after " + attempts + " attempts");
+        } catch (IOException e) {
+            isConnected = false;
+            LOGGER.info("Could not reach chat server: " + e.getMessage());
+            scheduleReconnect();
+        }
+    }
+
+    /**
+     * Schedule the next reconnect attempt after a jittered, exponentially growing delay
+     */
+    private synchronized void scheduleReconnect() {
+        if (!reconnectEnabled || pendingReconnect != null) {
+            return;
+        }
+        long delay = reconnectBackoff.nextDelayMillis();
+        LOGGER.info("Reconnecting to chat server in " + delay + " ms");
+        pendingReconnect = reconnectScheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelReconnect() {
+        ScheduledFuture<?> pending = pendingReconnect;
+        if (pending != null) {
+            pending.cancel(false);
+            pendingReconnect = null;
+        }
+    }
+
+    /**
+     * Close a connection that failed while in use and start reconnecting
+     * @param connection The socket the failed receiver was reading
+     */
+    private synchronized void connectionLost(Socket connection) {
+        // Ignore receivers of connections that were closed on purpose or already replaced
+        if (!isConnected || socket != connection) {
+            return;
+        }
+        LOGGER.warning("Lost connection to chat server");
+        closeConnection();
+        scheduleReconnect();
+    }
+
+    /**
+     * Send the messages written while offline; runs on the reconnect thread
+     */
+    private void flushOutbox() {
+        if (isConnected) {
+            outbox.flush(userId, this::sendQueued);
+        }
+    }
+
+    /**
+     * Write a batch of queued messages to the server with a single flush
+     */
+    private void sendQueued(List<ChatOutbox.QueuedMessage> batch) throws IOException {
+        if (!isConnected) {
+            throw new IOException("Not connected to the chat server");
+        }
+        boolean binary = binaryProtocol;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (ChatOutbox.QueuedMessage message : batch) {
+            if (binary) {
+                buffer.writeBytes(ChatProtocol.encodeSendQueued(message.id, message.receiverId,
+                        message.timestampMillis, message.content));
+            } else {
+                buffer.writeBytes(ChatProtocol.queuedLine(message.id, message.receiverId,
+                        message.timestampMillis, message.content).getBytes(StandardCharsets.UTF_8));
+                buffer.write('\n');
+            }
+        }
+        writeFrame(buffer.toByteArray());
+    }
+
+    /**
+     * Send the AUTH line asking for numbered direct messages, and binary frames if they are
+     * enabled, and wait for the server to confirm them. A server without these options rejects
+     * the request, so the client authenticates again with the plain text protocol.
+     * @return true if the connection uses binary frames
+     */
+    private boolean negotiateProtocol() throws IOException {
+        boolean binary = ChatServerConfig.getInstance().isBinaryProtocolEnabled();
+        writeLine(ChatProtocol.authLine(userId, binary, true));
+
+        String reply = readNegotiationReply();
+        if (!ChatProtocol.DELIVERY_ACK.equals(reply)) {
+            LOGGER.info("Chat server does not support numbered delivery, using the plain text protocol (reply: "
+                    + reply + ")");
+            writeLine(ChatProtocol.authLine(userId, false));
+            return false;
+        }
+        if (!binary) {
+            return false;
+        }
+
+        reply = readNegotiationReply();
+        if (ChatProtocol.BINARY_ACK.equals(reply)) {
+            return true;
+        }
+        // The server accepted the AUTH line already, so the connection simply stays on text
+        LOGGER.info("Chat server does not support the binary protocol, using text (reply: " + reply + ")");
+        return false;
+    }
+
+    /**
+     * Read the server's answer to one AUTH option
+     */
+    private String readNegotiationReply() throws IOException {
+        String reply;
+        socket.setSoTimeout(NEGOTIATION_TIMEOUT_MILLIS);
+        try {
+            reply = ChatProtocol.readLine(reader);
+        } finally {
+            socket.setSoTimeout(0);
+        }
+
+        if (reply == null) {
+            throw new EOFException("Chat server closed the connection during authentication");
+        }
+        return reply;
+    }
+
+    /**
+     * Write one text protocol line
+     */
+    private void writeLine(String line) throws IOException {
+        synchronized (writeLock) {
+            writer.write(line.getBytes(StandardCharsets.UTF_8));
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    /**
+     * Write one binary frame
+     */
+    private void writeFrame(byte[] frame) throws IOException {
+        synchronized (writeLock) {
+            writer.write(frame);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Disconnect from the chat server and stop reconnecting
      */
     public void disconnect() {
+        reconnectEnabled = false;
+        cancelReconnect();
+        closeConnection();
+    }
+
+    /**
+     * Close the current connection, if any
+     */
+    private void closeConnection() {
         isConnected = false;
 
         try {
@@ -171,7 +403,11 @@ public class ChatClient {
     public boolean sendMessage(int receiverId, String message) {
         if (isConnected && writer != null) {
             try {
-                writer.println("MSG:" + receiverId + ":" + message);
+                if (binaryProtocol) {
+                    writeFrame(ChatProtocol.encodeSendDirect(receiverId, message));
+                } else {
+                    writeLine("MSG:" + receiverId + ":" + message);
+                }
                 LOGGER.info("Sent message to user " + receiverId);
                 return true;
             } catch (Exception e) {
@@ -191,7 +427,11 @@ public class ChatClient {
     public boolean sendBroadcast(String message) {
         if (isConnected && writer != null) {
             try {
-                writer.println("BROADCAST:" + message);
+                if (binaryProtocol) {
+                    writeFrame(ChatProtocol.encodeSendBroadcast(message));
+                } else {
+                    writeLine("BROADCAST:" + message);
+                }
                 LOGGER.info("Sent broadcast message");
                 return true;
             } catch (Exception e) {
@@ -211,7 +451,11 @@ public class ChatClient {
     public boolean updateStatus(String status) {
         if (isConnected && writer != null) {
             try {
-                writer.println("STATUS:" + status);
+                if (binaryProtocol) {
+                    writeFrame(ChatProtocol.encodeSetStatus(status));
+                } else {
+                    writeLine("STATUS:" + status);
+                }
                 LOGGER.info("Updated status to: " + status);
                 return true;
             } catch (Exception e) {
@@ -226,19 +470,75 @@ public class ChatClient {
 
     /**
      * Message receiver method to run in a separate thread
+     * @param connection The socket being read
+     * @param input The input stream of that socket
      */
-    private void messageReceiver() {
+    private void messageReceiver(Socket connection, InputStream input) {
+        // Every connection numbers its direct messages from 1
+        lastSequence = 0;
+        confirmedSequence = 0;
+        sequenceGap = false;
         try {
-            String message;
-            while (isConnected && (message = reader.readLine()) != null) {
-                processMessage(message);
+            while (isConnected && !sequenceGap) {
+                if (binaryProtocol) {
+                    byte[] frame = ChatProtocol.readFrame(input);
+                    if (frame == null) {
+                        break;
+                    }
+                    processFrame(frame);
+                } else {
+                    String message = ChatProtocol.readLine(input);
+                    if (message == null) {
+                        break;
+                    }
+                    processMessage(message);
+                }
+                confirmDelivered(input);
             }
         } catch (IOException e) {
             if (isConnected) {
                 LOGGER.log(Level.WARNING, "Error reading from server", e);
-                disconnect();
             }
         }
+        // The server closed the connection or it failed; reconnect unless it was closed on purpose
+        connectionLost(connection);
+    }
+
+    /**
+     * Check the number of a received direct message
+     * @return true if the message is the next one, false if it was received before or one is missing
+     */
+    private boolean acceptSequence(int sequence) {
+        if (sequence <= lastSequence) {
+            // Already received, the server sent it again
+            return false;
+        }
+        if (sequence != lastSequence + 1) {
+            // The connection is dropped, so the server replays everything not confirmed
+            LOGGER.warning("Missing direct messages " + (lastSequence + 1) + " to " + (sequence - 1)
+                    + ", reconnecting to receive them again");
+            sequenceGap = true;
+            return false;
+        }
+        lastSequence = sequence;
+        return true;
+    }
+
+    /**
+     * Confirm the direct messages received so far once the server has nothing more
+     * waiting, or after {@link #CONFIRM_BATCH_SIZE} messages, so one DELIVERED covers a burst
+     */
+    private void confirmDelivered(InputStream input) throws IOException {
+        int unconfirmed = lastSequence - confirmedSequence;
+        if (unconfirmed == 0 || (unconfirmed < CONFIRM_BATCH_SIZE && input.available() > 0)) {
+            return;
+        }
+        confirmedSequence = lastSequence;
+        if (binaryProtocol) {
+            writeFrame(ChatProtocol.encodeDelivered(confirmedSequence));
+        } else {
+            writeLine(ChatProtocol.DELIVERED_PREFIX + confirmedSequence);
+        }
     }
 
     /**
@@ -252,14 +552,65 @@ public class ChatClient {
     }
 
     /**
-     * Process a message from the server
+     * Process a binary frame from the server
      */
+    private void processFrame(byte[] payload) {
+        try {
+            if (payload.length > 0 && payload[0] == ChatProtocol.OP_PRESENCE) {
+                for (ChatFrame entry : ChatProtocol.decodePresence(payload, 0, payload.length)) {
+                    notifyStatus(entry.getId(), entry.getText());
+                }
+                return;
+            }
+            ChatFrame frame = ChatProtocol.decode(payload, 0, payload.length);
+            switch (frame.getOpcode()) {
+                case ChatProtocol.OP_MESSAGE:
+                    // Content is length-delimited, so it needs none of the text protocol's clean-up
+                    notifyMessage(frame.getId(), frame.getText(), frame.getTimestamp());
+                    break;
+                case ChatProtocol.OP_DIRECT_MESSAGE:
+                    if (acceptSequence(frame.getSequence())) {
+                        notifyMessage(frame.getId(), frame.getText(), frame.getTimestamp());
+                    }
+                    break;
+                case ChatProtocol.OP_STATUS:
+                    notifyStatus(frame.getId(), frame.getText());
+                    break;
+                case ChatProtocol.OP_ERROR:
+                    LOGGER.warning("Server error: " + frame.getText());
+                    break;
+                case ChatProtocol.OP_PING:
+                    // Answer the heartbeat so the server keeps the connection
+                    writeFrame(ChatProtocol.encodePong());
+                    break;
+                case ChatProtocol.OP_ACK:
+                    outbox.acknowledge(frame.getId());
+                    break;
+                default:
+                    LOGGER.warning("Ignoring frame with opcode " + frame.getOpcode());
+                    break;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error processing incoming frame", e);
+        }
+    }
+
     /**
-     * Process a message from the server
+     * Process a text line from the server
      */
     private void processMessage(String message) {
         try {
-            if (message.startsWith("MSG:")) {
+            if (message.startsWith(ChatProtocol.DIRECT_PREFIX)) {
+                // Numbered direct message: DMSG:sequence:fromUserId:epochMillis:content
+                String[] parts = message.split(":", 5);
+                if (parts.length == 5) {
+                    int senderId = Integer.parseInt(parts[2]);
+                    LocalDateTime timestamp = ChatProtocol.toLocalDateTime(Long.parseLong(parts[3]));
+                    if (acceptSequence(Integer.parseInt(parts[1]))) {
+                        notifyMessage(senderId, parts[4], timestamp);
+                    }
+                }
+            } else if (message.startsWith("MSG:")) {
                 // Message format: MSG:fromUserId:timestamp:content
                 String[] parts = message.split(":", 4);
                 if (parts.length == 4) {
@@ -312,18 +663,12 @@ public class ChatClient {
                     }
 
                     // Log the original timestamp string and the parsed LocalDateTime for debugging
-                    LOGGER.info("Original timestamp string: " + parts[2]);
-                    LOGGER.info("Parsed timestamp: " + timestamp);
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.fine("Original timestamp string: " + parts[2] + ", parsed timestamp: " + timestamp);
+                    }
 
                     // Notify listeners
-                    final int finalSenderId = senderId;
-                    final String finalContent = content;
-                    final LocalDateTime finalTimestamp = timestamp;
-                    Platform.runLater(() -> {
-                        for (ChatMessageListener listener : messageListeners) {
-                            listener.onMessageReceived(finalSenderId, finalContent, finalTimestamp);
-                        }
-                    });
+                    notifyMessage(senderId, content, timestamp);
                 }
             } else if (message.startsWith("STATUS:")) {
                 // Status update format: STATUS:userId:status
@@ -333,14 +678,14 @@ public class ChatClient {
                     String status = parts[2];
 
                     // Notify listeners
-                    final int finalUserId = userIdFromStatus;
-                    final String finalStatus = status;
-                    Platform.runLater(() -> {
-                        for (StatusUpdateListener listener : statusListeners) {
-                            listener.onStatusUpdate(finalUserId, finalStatus);
-                        }
-                    });
+                    notifyStatus(userIdFromStatus, status);
                 }
+            } else if (message.equals(ChatProtocol.PING_LINE)) {
+                // Answer the heartbeat so the server keeps the connection
+                writeLine(ChatProtocol.PONG_LINE);
+            } else if (message.startsWith(ChatProtocol.ACK_PREFIX)) {
+                // ACK:<sequence> of a message sent from the offline queue
+                outbox.acknowledge(Integer.parseInt(message, ChatProtocol.ACK_PREFIX.length(), message.length(), 10));
             } else if (message.startsWith("ERROR:")) {
                 // Error message
                 String error = message.substring(6);
@@ -351,6 +696,50 @@ public class ChatClient {
         }
     }
 
+    /**
+     * Queue a message for the listeners, which receive it with the next JavaFX pulse
+     */
+    private void notifyMessage(int senderId, String content, LocalDateTime timestamp) {
+        eventCoalescer.postMessage(senderId, content, timestamp);
+    }
+
+    /**
+     * Queue a status update for the listeners, which receive it with the next JavaFX pulse
+     */
+    private void notifyStatus(int statusUserId, String status) {
+        if (statusUserId == userId) {
+            // Presence digests go to every client, including the users they mention
+            return;
+        }
+        eventCoalescer.postStatus(statusUserId, status);
+    }
+
+    /**
+     * Hands coalesced events to the listeners on the JavaFX thread
+     */
+    private final class ListenerSink implements ChatEventCoalescer.Sink {
+        @Override
+        public void onMessage(int senderId, String content, LocalDateTime timestamp) {
+            for (ChatMessageListener listener : messageListeners) {
+                listener.onMessageReceived(senderId, content, timestamp);
+            }
+        }
+
+        @Override
+        public void onStatus(int statusUserId, String status) {
+            for (StatusUpdateListener listener : statusListeners) {
+                listener.onStatusUpdate(statusUserId, status);
+            }
+        }
+
+        @Override
+        public void onBatchComplete() {
+            for (ChatMessageListener listener : messageListeners) {
+                listener.onBatchComplete();
+            }
+        }
+    }
+
     /**
      * Add a message listener
      */
@@ -379,6 +768,13 @@ public class ChatClient {
         statusListeners.remove(listener);
     }
 
+    /**
+     * Get a snapshot of how received messages and status updates reach the listeners
+     */
+    public ChatDispatchMetrics getDispatchMetrics() {
+        return eventCoalescer.getMetrics();
+    }
+
     /**
      * Check if client is connected
      */
@@ -391,6 +787,13 @@ public class ChatClient {
      */
     public interface ChatMessageListener {
         void onMessageReceived(int fromUserId, String message, LocalDateTime timestamp);
+
+        /**
+         * Called after the last message of a batch, once per JavaFX pulse at most;
+         * work covering every message, such as reloading unread counts, belongs here
+         */
+        default void onBatchComplete() {
+        }
     }
 
     /**
@@ -6,10 +6,8 @@ import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.HBox;
-import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
@@ -21,10 +19,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Locale;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -49,10 +50,7 @@ public class ChatController {
     private VBox userListPanel;
 
     @FXML
-    private ScrollPane messageScrollPane;
-
-    @FXML
-    private VBox messagesContainer;
+    private ListView<ChatMessageItem> messageListView;
 
     @FXML
     private TextField messageInput;
@@ -69,11 +67,35 @@ public class ChatController {
     private Stage stage;
     private String currentChatPartner;
 
+    // Messages fetched per history page; older pages load when scrolled to the top
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private int oldestLoadedMessageId = 0;
+    private boolean hasMoreHistory = false;
+    private boolean loadingHistory = false;
+
+    // Messages kept in the window; the list only creates nodes for the visible rows
+    private final ChatMessageModel messageModel = new ChatMessageModel(ChatMessageModel.DEFAULT_CAPACITY);
+
+    // Sender names and roles seen in this window, so rendering a page needs no extra lookups
+    private final Map<Integer, String> userNameCache = new HashMap<>();
+    private final Map<Integer, String> userRoleCache = new HashMap<>();
+
+    // Work left by the incoming messages of one pulse, done once when the batch ends; FX thread only
+    private int batchPartnerId = 0;
+    private boolean batchReadFromPartner = false;
+    private boolean batchNeedsUserListRefresh = false;
+
     /**
      * Initialize the chat controller
      */
     @FXML
     public void initialize() {
+        // Recycled cells render the messages; the previous page of history
+        // is fetched when the first row scrolls into view
+        messageListView.setItems(messageModel.getItems());
+        messageListView.setCellFactory(lv -> new ChatMessageCell(lv, this::loadOlderMessages));
+        messageListView.setFocusTraversable(false);
+
         // Initialize UI components
         updateRoleLabel();
         setupChatInterface();
@@ -105,11 +127,6 @@ public class ChatController {
             }
         });
 
-        // Auto-scroll to bottom when new messages are added
-        messagesContainer.heightProperty().addListener((observable, oldValue, newValue) -> {
-            messageScrollPane.setVvalue(1.0);
-        });
-
         // Connect to chat server and register as message listener
         try {
             // Connect to chat server
@@ -117,7 +134,17 @@ public class ChatController {
             boolean connected = chatClient.connect();
 
             // Register message listener regardless of connection status
-            chatClient.addMessageListener(this::handleIncomingMessage);
+            chatClient.addMessageListener(new ChatClient.ChatMessageListener() {
+                @Override
+                public void onMessageReceived(int fromUserId, String message, LocalDateTime timestamp) {
+                    handleIncomingMessage(fromUserId, message, timestamp);
+                }
+
+                @Override
+                public void onBatchComplete() {
+                    finishIncomingBatch();
+                }
+            });
 
             if (connected) {
                 // Set online status
@@ -147,15 +174,7 @@ public class ChatController {
     private void showOfflineMode() {
         Platform.runLater(() -> {
             // Add system warning message to chat
-            HBox systemMsgBox = new HBox();
-            systemMsgBox.setAlignment(Pos.CENTER);
-            VBox systemMessage = new VBox();
-            systemMessage.getStyleClass().addAll("system-message", "system-warning");
-            Label systemText = new Label("Chat server is currently offline. You can view message history, but new messages will be stored locally until connection is restored.");
-            systemText.getStyleClass().add("system-message-text");
-            systemMessage.getChildren().add(systemText);
-            systemMsgBox.getChildren().add(systemMessage);
-            messagesContainer.getChildren().add(systemMsgBox);
+            addSystemMessage("Chat server is currently offline. You can view message history, but new messages will be stored locally until connection is restored.", "system-warning");
 
             // Update status label if it exists
             if (statusLabel != null) {
@@ -171,15 +190,7 @@ public class ChatController {
     private void showError(String message) {
         Platform.runLater(() -> {
             // Add system error message to chat
-            HBox systemMsgBox = new HBox();
-            systemMsgBox.setAlignment(Pos.CENTER);
-            VBox systemMessage = new VBox();
-            systemMessage.getStyleClass().addAll("system-message", "system-error");
-            Label systemText = new Label(message);
-            systemText.getStyleClass().add("system-message-text");
-            systemMessage.getChildren().add(systemText);
-            systemMsgBox.getChildren().add(systemMessage);
-            messagesContainer.getChildren().add(systemMsgBox);
+            addSystemMessage(message, "system-error");
         });
     }
 
@@ -262,53 +273,67 @@ public class ChatController {
     private void showInfo(String message) {
         Platform.runLater(() -> {
             // Add system info message to chat
-            HBox systemMsgBox = new HBox();
-            systemMsgBox.setAlignment(Pos.CENTER);
-            VBox systemMessage = new VBox();
-            systemMessage.getStyleClass().addAll("system-message", "system-info");
-            Label systemText = new Label(message);
-            systemText.getStyleClass().add("system-message-text");
-            systemMessage.getChildren().add(systemText);
-            systemMsgBox.getChildren().add(systemMessage);
-            messagesContainer.getChildren().add(systemMsgBox);
+            addSystemMessage(message, "system-info");
         });
     }
 
 
     /**
-     * Handle incoming messages from the chat system
+     * Handle incoming messages from the chat system.
+     * Only the UI is updated per message; the database work is left for {@link #finishIncomingBatch()}.
      */
     private void handleIncomingMessage(int fromUserId, String message, LocalDateTime timestamp) {
-        // Make sure UI updates happen on the JavaFX thread
-        Platform.runLater(() -> {
+        // ChatClient calls its listeners on the JavaFX thread, once per pulse for a whole batch
+        try {
+            // The partner is looked up once per batch, not once per message
+            if (batchPartnerId == 0) {
+                batchPartnerId = getReceiverIdFromCurrentPartner();
+            }
+
+            // Only process if this is from our current chat partner
+            if (fromUserId == batchPartnerId) {
+                // Lookup sender name from the user database
+                String senderName = getUserNameById(fromUserId);
+                String senderRole = getUserRoleById(fromUserId);
+
+                // Add message to UI
+                addMessage(message, senderName, senderRole, timestamp);
+
+                // Marked read once the batch ends, since user is viewing this conversation
+                batchReadFromPartner = true;
+            } else {
+                // Message from someone other than current partner
+                // The user list shows the new unread count once the batch ends
+                batchNeedsUserListRefresh = true;
+            }
+        } catch (Exception e) {
+            System.err.println("Error handling incoming message: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Mark the open conversation read and refresh the unread counts at most once per batch of messages
+     */
+    private void finishIncomingBatch() {
+        int partnerId = batchPartnerId;
+        boolean markRead = batchReadFromPartner;
+        boolean refresh = batchNeedsUserListRefresh;
+        batchPartnerId = 0;
+        batchReadFromPartner = false;
+        batchNeedsUserListRefresh = false;
+
+        if (markRead) {
             try {
-                // Only process if this is from our current chat partner
-                int currentPartnerId = getReceiverIdFromCurrentPartner();
-                if (fromUserId == currentPartnerId) {
-                    // Lookup sender name from the user database
-                    String senderName = getUserNameById(fromUserId);
-                    String senderRole = getUserRoleById(fromUserId);
-
-                    // Add message to UI
-                    addMessage(message, senderName, senderRole, timestamp);
-
-                    // Mark messages as read since user is viewing this conversation
-                    try {
-                        ChatManager.getInstance().markMessagesAsRead(fromUserId,
-                                AuthStateManager.getInstance().getState().getUser().getId());
-                    } catch (Exception e) {
-                        System.err.println("Error marking messages as read: " + e.getMessage());
-                    }
-                } else {
-                    // Message from someone other than current partner
-                    // Update the user list to show new unread count
-                    refreshUserList();
-                }
+                ChatManager.getInstance().markMessagesAsRead(partnerId,
+                        AuthStateManager.getInstance().getState().getUser().getId());
             } catch (Exception e) {
-                System.err.println("Error handling incoming message: " + e.getMessage());
-                e.printStackTrace();
+                System.err.println("Error marking messages as read: " + e.getMessage());
             }
-        });
+        }
+        if (refresh) {
+            refreshUserList();
+        }
     }
 
     /**
@@ -365,7 +390,7 @@ public class ChatController {
     private void setupChatInterface() {
         // Clear existing UI elements
         userListPanel.getChildren().clear();
-        messagesContainer.getChildren().clear();
+        messageModel.clear();
 
         if ("admin".equals(getCurrentUserRole())) {
             setupAdminView();
@@ -456,132 +481,50 @@ public class ChatController {
 
 
     /**
-     * Add a message to the chat interface
+     * Add a message to the chat interface and scroll to it
      */
     private void addMessage(String content, String sender, String senderRole, LocalDateTime timestamp) {
-        HBox messageBox = new HBox(10);
-        String currentUserRole = getCurrentUserRole();
-        // Check if this message was sent by the current user (sender name will be "You")
-        boolean isSentByCurrentUser = "You".equals(sender);
-
-        // Regular message
-        if (isSentByCurrentUser) {
-            // Messages sent by current user (right-aligned)
-            messageBox.setAlignment(Pos.CENTER_RIGHT);
-
-            VBox messageContent = new VBox(5);
-            messageContent.getStyleClass().addAll("message", "sent-message");
-            messageContent.setMaxWidth(1600);
-
-            // Add sender name and time header
-            HBox messageHeader = new HBox(5);
-            messageHeader.setAlignment(Pos.CENTER_RIGHT);
-
-            // Add time to the header
-            Label messageTime = new Label(formatTime(timestamp));
-            messageTime.getStyleClass().add("message-time");
-
-            // Add tooltip with full date and time format
-            javafx.scene.control.Tooltip timeTooltip = new javafx.scene.control.Tooltip(formatFullDateTime(timestamp));
-            timeTooltip.setStyle("-fx-font-size: 12px;");
-            messageTime.setTooltip(timeTooltip);
-
-            messageHeader.getChildren().add(messageTime);
-
-            Label messageText = new Label(content);
-            messageText.getStyleClass().add("message-text");
-            messageText.setWrapText(true);
-            messageText.setMaxWidth(1560);
-
-            messageContent.getChildren().addAll(messageHeader, messageText);
-            messageBox.getChildren().add(messageContent);
-        } else {
-            // Messages received (left-aligned with avatar)
-            messageBox.setAlignment(Pos.CENTER_LEFT);
-
-            StackPane avatarPane = new StackPane();
-            avatarPane.setPrefSize(35, 35);
-            avatarPane.setMaxSize(35, 35);
-
-            Circle avatarCircle = new Circle(17.5);
-            avatarCircle.setFill(Color.valueOf("admin".equals(senderRole) ? "#F44336" : "#4CAF50"));
-
-            // Get first letter of sender name for avatar
-            String senderInitial = sender.substring(0, 1).toUpperCase();
-            Label initialLabel = new Label(senderInitial);
-            initialLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: white;");
-
-            avatarPane.getChildren().addAll(avatarCircle, initialLabel);
-
-            VBox messageContent = new VBox(5);
-            messageContent.getStyleClass().addAll("message", "received-message",
-                                        "admin".equals(senderRole) ? "admin-message" : "student-message");
-            messageContent.setMaxWidth(1600);
-
-            HBox messageHeader = new HBox(5);
-            messageHeader.setAlignment(Pos.CENTER_LEFT);
-            Label senderLabel = new Label(sender);
-            senderLabel.setStyle("-fx-font-size: 12px; -fx-font-weight: bold; -fx-text-fill: #555;");
-
-            // Add time to the header
-            Label messageTime = new Label(formatTime(timestamp));
-            messageTime.getStyleClass().add("message-time");
-
-            // Add tooltip with full date and time format
-            javafx.scene.control.Tooltip timeTooltip = new javafx.scene.control.Tooltip(formatFullDateTime(timestamp));
-            timeTooltip.setStyle("-fx-font-size: 12px; -fx-background-color: #f0f0f0; -fx-text-fill: #333333; -fx-padding: 5;");
-            timeTooltip.setShowDelay(javafx.util.Duration.millis(300));
-            messageTime.setTooltip(timeTooltip);
-
-            // Add spacer to push time to the right
-            Region spacer = new Region();
-            HBox.setHgrow(spacer, javafx.scene.layout.Priority.ALWAYS);
-
-            messageHeader.getChildren().addAll(senderLabel, spacer, messageTime);
-
-            Label messageText = new Label(content);
-            messageText.getStyleClass().add("message-text");
-            messageText.setWrapText(true);
-            messageText.setMaxWidth(1560);
-
-            messageContent.getChildren().addAll(messageHeader, messageText);
-
-            messageBox.getChildren().addAll(avatarPane, messageContent);
+        ChatMessageItem item = ChatMessageItem.message(0, content, sender, senderRole, timestamp);
+        if (messageModel.isNewerEvicted()) {
+            // Scrolling back pushed the newest page out; show it again so nothing is added after a gap
+            loadChatHistory();
+            if (messageModel.endsWithSameMessage(item)) {
+                // Already saved, so the reloaded page shows it
+                messageListView.scrollTo(messageModel.size() - 1);
+                return;
+            }
         }
-
-        VBox.setMargin(messageBox, new Insets(5, 0, 5, 0));
-
-        // Apply a fade-in and slide-up animation for new messages
-        messageBox.setOpacity(0);
-        messageBox.setTranslateY(20);
-
-        messagesContainer.getChildren().add(messageBox);
-
-        // Create and play the animations
-        javafx.animation.FadeTransition fadeIn = new javafx.animation.FadeTransition(javafx.util.Duration.millis(300), messageBox);
-        fadeIn.setFromValue(0);
-        fadeIn.setToValue(1);
-
-        javafx.animation.TranslateTransition slideUp = new javafx.animation.TranslateTransition(javafx.util.Duration.millis(300), messageBox);
-        slideUp.setFromY(20);
-        slideUp.setToY(0);
-
-        javafx.animation.ParallelTransition animation = new javafx.animation.ParallelTransition(fadeIn, slideUp);
-        animation.play();
+        int evicted = messageModel.append(item);
+        onMessagesEvicted(evicted);
+        messageListView.scrollTo(messageModel.size() - 1);
     }
 
     /**
-     * Format timestamp for display (full date-time format for regular view)
+     * Add a centered system notice to the chat interface
+     * @param styleClass Extra style class such as "system-warning", or null
      */
-    private String formatTime(LocalDateTime time) {
-        return time.format(DateTimeFormatter.ofPattern("MMMM d, yyyy hh:mm a", java.util.Locale.ENGLISH));
+    private void addSystemMessage(String text, String styleClass) {
+        if (messageModel.isNewerEvicted()) {
+            loadChatHistory();
+        }
+        int evicted = messageModel.append(ChatMessageItem.system(text, styleClass));
+        onMessagesEvicted(evicted);
+        messageListView.scrollTo(messageModel.size() - 1);
     }
 
     /**
-     * Format timestamp for display (full format for tooltip)
+     * Messages dropped from the top of the window can be loaded again on scroll
      */
-    private String formatFullDateTime(LocalDateTime time) {
-        return time.format(DateTimeFormatter.ofPattern("MMMM d, yyyy hh:mm a", java.util.Locale.ENGLISH));
+    private void onMessagesEvicted(int evicted) {
+        if (evicted > 0) {
+            int oldestId = messageModel.getOldestMessageId();
+            if (oldestId > 0) {
+                oldestLoadedMessageId = oldestId;
+                hasMoreHistory = true;
+            } else {
+                hasMoreHistory = false;
+            }
+        }
     }
 
     /**
@@ -602,9 +545,13 @@ public class ChatController {
     }
 
     /**
-     * Get user name by ID from the database
+     * Get user name by ID, from the window cache or the database
      */
     private String getUserNameById(int userId) {
+        String cached = userNameCache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(
                  "SELECT first_name, last_name FROM users WHERE id = ?")) {
@@ -614,7 +561,9 @@ public class ChatController {
                 if (rs.next()) {
                     String firstName = rs.getString("first_name");
                     String lastName = rs.getString("last_name");
-                    return firstName + " " + lastName;
+                    String name = firstName + " " + lastName;
+                    userNameCache.put(userId, name);
+                    return name;
                 }
             }
         } catch (SQLException e) {
@@ -624,9 +573,13 @@ public class ChatController {
     }
 
     /**
-     * Get user role by ID from the database
+     * Get user role by ID, from the window cache or the database
      */
     private String getUserRoleById(int userId) {
+        String cached = userRoleCache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(
                  "SELECT role FROM users WHERE id = ?")) {
@@ -634,7 +587,9 @@ public class ChatController {
             stmt.setInt(1, userId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getString("role");
+                    String role = rs.getString("role");
+                    userRoleCache.put(userId, role);
+                    return role;
                 }
             }
         } catch (SQLException e) {
@@ -702,35 +657,27 @@ public class ChatController {
         ObservableList<ChatUser> users = FXCollections.observableArrayList();
 
         try {
-            // Use the ChatManager to load the actual users
-            List<ChatManager.ChatUser> chatUsers = ChatManager.getInstance().loadAllUsers();
-
-            for (ChatManager.ChatUser chatUser : chatUsers) {
-                // Skip the current user
-                if (chatUser.getId() == AuthStateManager.getInstance().getState().getUser().getId()) {
-                    continue;
-                }
-
-                // Skip non-students if current user is admin
-                if ("admin".equals(getCurrentUserRole()) && !"student".equals(chatUser.getRole())) {
-                    continue;
-                }
-
-                // Skip non-admins if current user is student
-                if ("student".equals(getCurrentUserRole()) && !"admin".equals(chatUser.getRole())) {
-                    continue;
-                }
+            // Admins talk to students and students to admins
+            String currentUserRole = getCurrentUserRole();
+            String contactRole = "admin".equals(currentUserRole) ? "student"
+                    : "student".equals(currentUserRole) ? "admin" : null;
+            int currentUserId = AuthStateManager.getInstance().getState().getUser().getId();
 
-                // Get unread message count
-                int unreadCount = ChatManager.getInstance().getUnreadMessageCount(chatUser.getId());
+            // One query returns every contact with last message and unread count
+            List<ChatManager.ChatUser> chatUsers =
+                    ChatManager.getInstance().loadConversationSummaries(currentUserId, contactRole);
 
+            for (ChatManager.ChatUser chatUser : chatUsers) {
                 users.add(new ChatUser(
+                    chatUser.getId(),
                     chatUser.getName(),
+                    chatUser.getEmail(),
                     chatUser.getRole(),
+                    chatUser.getStatus(),
                     chatUser.getAvatarColor(),
                     chatUser.getLastMessage(),
-                    chatUser.getLastMessageTime(), // Using the lastMessageTime from ChatManager.ChatUser
-                    unreadCount
+                    chatUser.getLastMessageTime(),
+                    chatUser.getUnreadCount()
                 ));
             }
         } catch (Exception e) {
@@ -747,61 +694,34 @@ public class ChatController {
     }
 
     /**
-     * Load chat history from database
+     * Load the newest page of chat history from database
      */
     private void loadChatHistory() {
         try {
-            // Clear existing messages
-            messagesContainer.getChildren().clear();
-
-            // Add welcome message
-            HBox systemMsgBox = new HBox();
-            systemMsgBox.setAlignment(Pos.CENTER);
-            VBox systemMessage = new VBox();
-            systemMessage.getStyleClass().add("system-message");
-            Label systemText = new Label("Welcome to UIU Admission Chat Support");
-            systemText.getStyleClass().add("system-message-text");
-            systemMessage.getChildren().add(systemText);
-            systemMsgBox.getChildren().add(systemMessage);
-            messagesContainer.getChildren().add(systemMsgBox);
+            // Clear existing messages, keeping the welcome message as the first row
+            messageModel.reset(ChatMessageItem.system("Welcome to UIU Admission Chat Support", null));
+            oldestLoadedMessageId = 0;
+            hasMoreHistory = false;
 
             try {
                 // Get user IDs
                 int currentUserId = AuthStateManager.getInstance().getState().getUser().getId();
                 int partnerId = getReceiverIdFromCurrentPartner();
 
-                // Load messages from the database
-                List<ChatManager.ChatMessage> messages = ChatManager.getInstance().loadChatHistory(currentUserId, partnerId);
+                // Load the newest page; older pages are fetched on scroll
+                List<ChatManager.ChatMessage> messages = ChatManager.getInstance()
+                        .loadChatHistoryBefore(currentUserId, partnerId, 0, HISTORY_PAGE_SIZE);
 
                 if (messages.isEmpty()) {
                     // Add a system message indicating no messages yet
-                    HBox noMsgBox = new HBox();
-                    noMsgBox.setAlignment(Pos.CENTER);
-                    VBox noMsgContent = new VBox();
-                    noMsgContent.getStyleClass().add("system-message");
-                    Label noMsgText = new Label("No previous messages yet. Start a conversation!");
-                    noMsgText.getStyleClass().add("system-message-text");
-                    noMsgContent.getChildren().add(noMsgText);
-                    noMsgBox.getChildren().add(noMsgContent);
-                    messagesContainer.getChildren().add(noMsgBox);
+                    addSystemMessage("No previous messages yet. Start a conversation!", null);
                 } else {
-                    // Display the messages
-                    for (ChatManager.ChatMessage msg : messages) {
-                        // Get sender info
-                        String senderName;
-                        String senderRole;
-
-                        if (msg.getSenderId() == currentUserId) {
-                            senderName = "You";
-                            senderRole = getCurrentUserRole();
-                        } else {
-                            senderName = getUserNameById(msg.getSenderId());
-                            senderRole = getUserRoleById(msg.getSenderId());
-                        }
+                    oldestLoadedMessageId = messages.get(0).getId();
+                    hasMoreHistory = messages.size() == HISTORY_PAGE_SIZE;
 
-                        // Add message to UI
-                        addMessage(msg.getMessage(), senderName, senderRole, msg.getTimestamp());
-                    }
+                    // Display the messages in one list change
+                    messageModel.appendAll(toItems(messages, currentUserId));
+                    messageListView.scrollTo(messageModel.size() - 1);
                 }
 
                 // Try to mark messages as read
@@ -815,15 +735,8 @@ public class ChatController {
                 System.err.println("Error retrieving chat data: " + dataError.getMessage());
 
                 // Add a system error message
-                HBox errorMsgBox = new HBox();
-                errorMsgBox.setAlignment(Pos.CENTER);
-                VBox errorContent = new VBox();
-                errorContent.getStyleClass().addAll("system-message", "system-warning");
-                Label errorText = new Label("Unable to load previous messages. New messages will be stored locally.");
-                errorText.getStyleClass().add("system-message-text");
-                errorContent.getChildren().add(errorText);
-                errorMsgBox.getChildren().add(errorContent);
-                messagesContainer.getChildren().add(errorMsgBox);
+                addSystemMessage("Unable to load previous messages. New messages will be stored locally.",
+                        "system-warning");
             }
 
         } catch (Exception e) {
@@ -832,6 +745,76 @@ public class ChatController {
         }
     }
 
+    /**
+     * Fetch the page of history before the oldest loaded message and insert it
+     * above the current messages. The query runs off the FX thread.
+     */
+    private void loadOlderMessages() {
+        if (loadingHistory || !hasMoreHistory || currentChatPartner == null) {
+            return;
+        }
+        loadingHistory = true;
+
+        String partner = currentChatPartner;
+        int beforeId = oldestLoadedMessageId;
+        int currentUserId = AuthStateManager.getInstance().getState().getUser().getId();
+        int partnerId = getReceiverIdFromCurrentPartner();
+
+        CompletableFuture
+            .supplyAsync(() -> ChatManager.getInstance()
+                    .loadChatHistoryBefore(currentUserId, partnerId, beforeId, HISTORY_PAGE_SIZE))
+            .whenComplete((messages, error) -> Platform.runLater(() -> {
+                loadingHistory = false;
+                // Ignore the page if the user switched conversations meanwhile
+                if (error != null || !partner.equals(currentChatPartner) || beforeId != oldestLoadedMessageId) {
+                    if (error != null) {
+                        System.err.println("Error loading older messages: " + error.getMessage());
+                    }
+                    return;
+                }
+
+                hasMoreHistory = messages.size() == HISTORY_PAGE_SIZE;
+                if (messages.isEmpty()) {
+                    return;
+                }
+                oldestLoadedMessageId = messages.get(0).getId();
+
+                // Insert below the welcome message, with the newest of the page at the top of the view;
+                // a full window drops its newest messages, which are reloaded once something new arrives
+                messageModel.prependOlder(toItems(messages, currentUserId));
+                messageListView.scrollTo(Math.min(messages.size(), messageModel.size() - 1));
+            }));
+    }
+
+    /**
+     * Convert a page of history into list items
+     */
+    private List<ChatMessageItem> toItems(List<ChatManager.ChatMessage> messages, int currentUserId) {
+        List<ChatMessageItem> items = new ArrayList<>(messages.size());
+        for (ChatManager.ChatMessage msg : messages) {
+            String[] sender = resolveSender(msg, currentUserId);
+            items.add(ChatMessageItem.message(msg.getId(), msg.getMessage(), sender[0], sender[1],
+                    msg.getTimestamp()));
+        }
+        return items;
+    }
+
+    /**
+     * Get the display name and role for a message sender, caching names that
+     * arrived with the history page
+     * @return Name and role
+     */
+    private String[] resolveSender(ChatManager.ChatMessage msg, int currentUserId) {
+        if (msg.getSenderId() == currentUserId) {
+            return new String[] {"You", getCurrentUserRole()};
+        }
+        if (msg.getSenderName() != null) {
+            userNameCache.put(msg.getSenderId(), msg.getSenderName());
+            userRoleCache.put(msg.getSenderId(), msg.getSenderRole());
+        }
+        return new String[] {getUserNameById(msg.getSenderId()), getUserRoleById(msg.getSenderId())};
+    }
+
 
 
     /**
@@ -0,0 +1,66 @@
+package com.ueadmission.chat;
+
+/**
+ * Point-in-time snapshot of how incoming chat events reach the JavaFX thread.
+ * Coalesced events were status updates replaced by a later update of the same
+ * user within one batch. Queue latency is the time from receiving an event to
+ * handing it to the listeners.
+ */
+public class ChatDispatchMetrics {
+    private final int pendingEvents;
+    private final long postedCount;
+    private final long dispatchedCount;
+    private final long coalescedCount;
+    private final long batchCount;
+    private final long largestBatch;
+    private final long queueLatencyP50Micros;
+    private final long queueLatencyP99Micros;
+    private final double queueLatencyMeanMicros;
+
+    public ChatDispatchMetrics(int pendingEvents, long postedCount, long dispatchedCount, long coalescedCount,
+                               long batchCount, long largestBatch, long queueLatencyP50Micros,
+                               long queueLatencyP99Micros, double queueLatencyMeanMicros) {
+        this.pendingEvents = pendingEvents;
+        this.postedCount = postedCount;
+        this.dispatchedCount = dispatchedCount;
+        this.coalescedCount = coalescedCount;
+        this.batchCount = batchCount;
+        this.largestBatch = largestBatch;
+        this.queueLatencyP50Micros = queueLatencyP50Micros;
+        this.queueLatencyP99Micros = queueLatencyP99Micros;
+        this.queueLatencyMeanMicros = queueLatencyMeanMicros;
+    }
+
+    public int getPendingEvents() { return pendingEvents; }
+    public long getPostedCount() { return postedCount; }
+    public long getDispatchedCount() { return dispatchedCount; }
+    public long getCoalescedCount() { return coalescedCount; }
+    public long getBatchCount() { return batchCount; }
+    public long getLargestBatch() { return largestBatch; }
+    public long getQueueLatencyP50Micros() { return queueLatencyP50Micros; }
+    public long getQueueLatencyP99Micros() { return queueLatencyP99Micros; }
+    public double getQueueLatencyMeanMicros() { return queueLatencyMeanMicros; }
+
+    /**
+     * Get the average number of events taken from the queue per batch
+     */
+    public double getMeanBatchSize() {
+        return batchCount == 0 ? 0 : (double) (dispatchedCount + coalescedCount) / batchCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatDispatchMetrics{" +
+                "pending=" + pendingEvents +
+                ", posted=" + postedCount +
+                ", dispatched=" + dispatchedCount +
+                ", coalesced=" + coalescedCount +
+                ", batches=" + batchCount +
+                ", largestBatch=" + largestBatch +
+                ", meanBatch=" + String.format("%.1f", getMeanBatchSize()) +
+                ", queueLatencyP50=" + queueLatencyP50Micros + "us" +
+                ", queueLatencyP99=" + queueLatencyP99Micros + "us" +
+                ", queueLatencyMean=" + String.format("%.1f", queueLatencyMeanMicros) + "us" +
+                '}';
+    }
+}
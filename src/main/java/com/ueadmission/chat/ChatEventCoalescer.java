@@ -0,0 +1,223 @@
+package com.ueadmission.chat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ueadmission.utils.LatencyHistogram;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Hands incoming chat events to the JavaFX thread in batches.
+ *
+ * The thread reading from the server only appends events to a concurrent
+ * queue. An {@link AnimationTimer} drains the queue once per pulse and passes
+ * the whole batch to the {@link Sink}, so a burst of thousands of replayed
+ * messages or presence updates costs one task per frame instead of one
+ * {@code Platform.runLater} each. Within a batch only the latest status of
+ * each user is delivered, and the sink is told when a batch ends so it can do
+ * per-batch work, such as database refreshes, once per pulse instead of once
+ * per event. The timer runs only while events are waiting.
+ */
+final class ChatEventCoalescer {
+    private static final Logger LOGGER = Logger.getLogger(ChatEventCoalescer.class.getName());
+
+    /** Most events handed to the sink in one pulse; the rest wait for the next one */
+    static final int MAX_EVENTS_PER_PULSE = 1024;
+
+    /**
+     * Receiver of the drained events, called on the JavaFX thread
+     */
+    interface Sink {
+        void onMessage(int senderId, String content, LocalDateTime timestamp);
+        void onStatus(int userId, String status);
+
+        /**
+         * Called after the last event of a batch
+         */
+        void onBatchComplete();
+    }
+
+    /**
+     * A message or, without a timestamp, a status update
+     */
+    private static final class Event {
+        final int userId;
+        final String text;
+        final LocalDateTime timestamp;
+        final long queuedAtNanos;
+
+        Event(int userId, String text, LocalDateTime timestamp, long queuedAtNanos) {
+            this.userId = userId;
+            this.text = text;
+            this.timestamp = timestamp;
+            this.queuedAtNanos = queuedAtNanos;
+        }
+
+        boolean isStatus() {
+            return timestamp == null;
+        }
+    }
+
+    private final Sink sink;
+    private final Runnable wakeUp;
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean timerRunning = new AtomicBoolean(false);
+
+    // Only used on the JavaFX thread
+    private AnimationTimer timer;
+    private final List<Event> batch = new ArrayList<>();
+    private final Map<Integer, Integer> latestStatus = new HashMap<>();
+
+    private final LongAdder postedCount = new LongAdder();
+    private final LongAdder dispatchedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final AtomicLong largestBatch = new AtomicLong();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+
+    /**
+     * @param sink Receiver of the events, called on the JavaFX thread
+     */
+    ChatEventCoalescer(Sink sink) {
+        this(sink, null);
+    }
+
+    /**
+     * @param sink Receiver of the events
+     * @param wakeUp Called when events start waiting, instead of starting the pulse timer;
+     *               the caller then drains the queue itself
+     */
+    ChatEventCoalescer(Sink sink, Runnable wakeUp) {
+        this.sink = sink;
+        this.wakeUp = wakeUp;
+    }
+
+    /**
+     * Queue a received message; may be called from any thread
+     */
+    void postMessage(int senderId, String content, LocalDateTime timestamp) {
+        post(new Event(senderId, content, timestamp, System.nanoTime()));
+    }
+
+    /**
+     * Queue a status update; may be called from any thread
+     */
+    void postStatus(int userId, String status) {
+        post(new Event(userId, status, null, System.nanoTime()));
+    }
+
+    private void post(Event event) {
+        queue.offer(event);
+        postedCount.increment();
+        // One runLater starts the timer for the whole burst
+        if (timerRunning.compareAndSet(false, true)) {
+            if (wakeUp != null) {
+                wakeUp.run();
+            } else {
+                Platform.runLater(this::startTimer);
+            }
+        }
+    }
+
+    private void startTimer() {
+        if (timer == null) {
+            timer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    onPulse();
+                }
+            };
+        }
+        timer.start();
+    }
+
+    /**
+     * Drain the queue on a pulse and stop the timer once nothing is left
+     */
+    private void onPulse() {
+        drain(System.nanoTime());
+        if (queue.isEmpty()) {
+            timer.stop();
+            timerRunning.set(false);
+            // An event posted between the check and the reset found the timer still running
+            if (!queue.isEmpty() && timerRunning.compareAndSet(false, true)) {
+                timer.start();
+            }
+        }
+    }
+
+    /**
+     * Hand up to {@link #MAX_EVENTS_PER_PULSE} queued events to the sink as one batch.
+     * Must be called on the thread that owns the sink.
+     * @param nowNanos Current {@link System#nanoTime()}, used for the queue latency
+     * @return The number of events taken from the queue
+     */
+    int drain(long nowNanos) {
+        batch.clear();
+        latestStatus.clear();
+        Event event;
+        while (batch.size() < MAX_EVENTS_PER_PULSE && (event = queue.poll()) != null) {
+            if (event.isStatus()) {
+                latestStatus.put(event.userId, batch.size());
+            }
+            batch.add(event);
+            queueLatency.record(nowNanos - event.queuedAtNanos);
+        }
+        int taken = batch.size();
+        if (taken == 0) {
+            return 0;
+        }
+
+        int delivered = 0;
+        for (int i = 0; i < taken; i++) {
+            event = batch.get(i);
+            try {
+                if (!event.isStatus()) {
+                    sink.onMessage(event.userId, event.text, event.timestamp);
+                } else if (latestStatus.get(event.userId) == i) {
+                    sink.onStatus(event.userId, event.text);
+                } else {
+                    // A later update of the same user in this batch replaces it
+                    coalescedCount.increment();
+                    continue;
+                }
+                delivered++;
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error in chat event listener", e);
+            }
+        }
+        batch.clear();
+        try {
+            sink.onBatchComplete();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error in chat event listener", e);
+        }
+
+        batchCount.increment();
+        dispatchedCount.add(delivered);
+        largestBatch.accumulateAndGet(taken, Math::max);
+        return taken;
+    }
+
+    /**
+     * Get a snapshot of the dispatch statistics
+     */
+    ChatDispatchMetrics getMetrics() {
+        return new ChatDispatchMetrics(queue.size(), postedCount.sum(), dispatchedCount.sum(),
+                coalescedCount.sum(), batchCount.sum(), largestBatch.get(),
+                queueLatency.getPercentileMicros(50), queueLatency.getPercentileMicros(99),
+                queueLatency.getMeanMicros());
+    }
+}
@@ -6,6 +6,7 @@ import java.net.Socket;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,7 +18,7 @@ import java.util.logging.Logger;
 
 import com.ueadmission.auth.state.AuthStateManager;
 import com.ueadmission.db.DatabaseConnection;
-import com.ueadmission.db.DatabaseInitializer;
+import com.ueadmission.db.SchemaRegistry;
 import javafx.application.Platform;
 
 /**
@@ -187,7 +188,7 @@ public class ChatManager {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error storing message in database", e);
         } finally {
-            DatabaseConnection.closeResources(ps, null);
+            DatabaseConnection.closeResources(conn, ps, null);
         }
     }
 
@@ -208,7 +209,7 @@ public class ChatManager {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error updating user status", e);
         } finally {
-            DatabaseConnection.closeResources(ps, null);
+            DatabaseConnection.closeResources(conn, ps, null);
         }
     }
 
@@ -268,21 +269,9 @@ public class ChatManager {
         try {
             conn = DatabaseConnection.getConnection();
 
-            // Check if chat_messages table exists
-            try {
-                DatabaseMetaData dbm = conn.getMetaData();
-                ResultSet tables = dbm.getTables(null, null, "chat_messages", null);
-                boolean tableExists = tables.next();
-                tables.close();
-
-                if (!tableExists) {
-                    // Table doesn't exist, initialize database
-                    DatabaseInitializer.initializeDatabase();
-                    // Return empty list for now
-                    return messages;
-                }
-            } catch (SQLException e) {
-                LOGGER.log(Level.WARNING, "Could not check if chat_messages table exists", e);
+            // The schema is initialized with the pool, so a missing table means initialization failed
+            if (!SchemaRegistry.isReady(SchemaRegistry.CHAT_MESSAGES)) {
+                LOGGER.warning("chat_messages table is not ready, returning empty chat history");
                 return messages;
             }
 
@@ -321,98 +310,167 @@ public class ChatManager {
             // Log error but don't crash - we'll just show an empty chat history
             LOGGER.log(Level.WARNING, "Error loading chat history: " + e.getMessage());
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return messages;
     }
 
     /**
-     * Load all users with their statuses
+     * Load one page of chat history between two users, newest page first.
+     * Uses a keyset cursor on the message id: each branch of the UNION is a range
+     * scan of the (sender_id, receiver_id, id) index, so a page costs the same no
+     * matter how long the conversation is. Sender names and roles are joined in.
+     * @param userId1 One participant
+     * @param userId2 The other participant
+     * @param beforeMessageId Only messages with a smaller id, or 0 for the newest page
+     * @param limit Maximum number of messages
+     * @return The page in ascending order, empty when there is nothing older
      */
-    public List<ChatUser> loadAllUsers() {
-        List<ChatUser> users = new ArrayList<>();
+    public List<ChatMessage> loadChatHistoryBefore(int userId1, int userId2, int beforeMessageId, int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
         Connection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
 
+        int cursor = beforeMessageId > 0 ? beforeMessageId : Integer.MAX_VALUE;
         try {
             conn = DatabaseConnection.getConnection();
-            String sql = "SELECT u.id, u.first_name, u.last_name, u.email, u.role, s.status "
-                + "FROM users u JOIN user_status s ON u.id = s.user_id";
+            String sql = "SELECT m.id, m.sender_id, m.receiver_id, m.message, m.timestamp, m.is_broadcast, "
+                + "u.first_name, u.last_name, u.role FROM ("
+                + "  (SELECT * FROM chat_messages WHERE sender_id = ? AND receiver_id = ? AND id < ? "
+                + "   ORDER BY id DESC LIMIT ?) "
+                + "  UNION "
+                + "  (SELECT * FROM chat_messages WHERE sender_id = ? AND receiver_id = ? AND id < ? "
+                + "   ORDER BY id DESC LIMIT ?) "
+                + "  UNION "
+                + "  (SELECT * FROM chat_messages WHERE sender_id IN (?, ?) AND is_broadcast = TRUE AND id < ? "
+                + "   ORDER BY id DESC LIMIT ?)"
+                + ") m LEFT JOIN users u ON u.id = m.sender_id "
+                + "ORDER BY m.id DESC LIMIT ?";
 
             ps = conn.prepareStatement(sql);
+            ps.setInt(1, userId1);
+            ps.setInt(2, userId2);
+            ps.setInt(3, cursor);
+            ps.setInt(4, limit);
+            ps.setInt(5, userId2);
+            ps.setInt(6, userId1);
+            ps.setInt(7, cursor);
+            ps.setInt(8, limit);
+            ps.setInt(9, userId1);
+            ps.setInt(10, userId2);
+            ps.setInt(11, cursor);
+            ps.setInt(12, limit);
+            ps.setInt(13, limit);
             rs = ps.executeQuery();
 
             while (rs.next()) {
-                int id = rs.getInt("id");
                 String firstName = rs.getString("first_name");
-                String lastName = rs.getString("last_name");
-                String email = rs.getString("email");
-                String role = rs.getString("role");
-                String status = rs.getString("status");
-
-                // Get last message for this user
-                String lastMessage = getLastMessageWithUser(id);
-
-                // Generate avatar color based on user ID
-                String color = generateAvatarColor(id);
-
-                ChatUser user = new ChatUser(
-                    id,
-                    firstName + " " + lastName,
-                    email,
-                    role,
-                    status,
-                    color,
-                    lastMessage
+                ChatMessage message = new ChatMessage(
+                    rs.getInt("id"),
+                    rs.getInt("sender_id"),
+                    rs.getObject("receiver_id") != null ? rs.getInt("receiver_id") : null,
+                    rs.getString("message"),
+                    rs.getTimestamp("timestamp").toLocalDateTime(),
+                    rs.getBoolean("is_broadcast"),
+                    firstName != null ? firstName + " " + rs.getString("last_name") : null,
+                    rs.getString("role")
                 );
-                users.add(user);
+                messages.add(message);
             }
+            // Rows come newest first; the page is shown oldest first
+            Collections.reverse(messages);
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error loading users", e);
+            // Log error but don't crash - we'll just show no older messages
+            LOGGER.log(Level.WARNING, "Error loading chat history page: " + e.getMessage());
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
-        return users;
+        return messages;
     }
 
     /**
-     * Get the last message exchanged with a user
+     * Load all users with their statuses and their conversation with the current user
      */
-    private String getLastMessageWithUser(int userId) {
-        // Get current user ID
+    public List<ChatUser> loadAllUsers() {
         Integer currentUserId = AuthStateManager.getInstance().getState().getUser().getId();
-        if (currentUserId == null) return "";
+        if (currentUserId == null) return new ArrayList<>();
+
+        return loadConversationSummaries(currentUserId, null);
+    }
 
+    /**
+     * Load the contact list of a user in one query: every contact with their status,
+     * the last direct message exchanged, its timestamp and the number of unread
+     * messages from them. Replaces a last-message and an unread-count query per contact.
+     * @param userId The user whose conversations are listed
+     * @param contactRole Only list contacts with this role, or null for everyone
+     */
+    public List<ChatUser> loadConversationSummaries(int userId, String contactRole) {
+        List<ChatUser> users = new ArrayList<>();
         Connection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
 
         try {
             conn = DatabaseConnection.getConnection();
-            String sql = "SELECT message FROM chat_messages WHERE "
-                + "((sender_id = ? AND receiver_id = ?) OR (sender_id = ? AND receiver_id = ?)) "
-                + "ORDER BY timestamp DESC LIMIT 1";
+            // The newest message per partner is the highest id, found from the sender_id and
+            // receiver_id indexes; unread counts come from one grouped scan of the inbox
+            String sql = "SELECT u.id, u.first_name, u.last_name, u.email, u.role, s.status, "
+                + "lm.message AS last_message, lm.timestamp AS last_timestamp, "
+                + "COALESCE(uc.unread, 0) AS unread "
+                + "FROM users u JOIN user_status s ON u.id = s.user_id "
+                + "LEFT JOIN ("
+                + "  SELECT partner_id, MAX(id) AS last_id FROM ("
+                + "    SELECT receiver_id AS partner_id, id FROM chat_messages "
+                + "    WHERE sender_id = ? AND receiver_id IS NOT NULL "
+                + "    UNION ALL "
+                + "    SELECT sender_id AS partner_id, id FROM chat_messages WHERE receiver_id = ?"
+                + "  ) conversation GROUP BY partner_id"
+                + ") last ON last.partner_id = u.id "
+                + "LEFT JOIN chat_messages lm ON lm.id = last.last_id "
+                + "LEFT JOIN ("
+                + "  SELECT sender_id, COUNT(*) AS unread FROM chat_messages "
+                + "  WHERE receiver_id = ? AND is_read = FALSE GROUP BY sender_id"
+                + ") uc ON uc.sender_id = u.id "
+                + "WHERE u.id != ? AND (? IS NULL OR u.role = ?)";
 
             ps = conn.prepareStatement(sql);
-            ps.setInt(1, currentUserId);
+            ps.setInt(1, userId);
             ps.setInt(2, userId);
             ps.setInt(3, userId);
-            ps.setInt(4, currentUserId);
+            ps.setInt(4, userId);
+            ps.setString(5, contactRole);
+            ps.setString(6, contactRole);
             rs = ps.executeQuery();
 
-            if (rs.next()) {
-                return rs.getString("message");
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                String lastMessage = rs.getString("last_message");
+                Timestamp lastTimestamp = rs.getTimestamp("last_timestamp");
+
+                ChatUser user = new ChatUser(
+                    id,
+                    rs.getString("first_name") + " " + rs.getString("last_name"),
+                    rs.getString("email"),
+                    rs.getString("role"),
+                    rs.getString("status"),
+                    generateAvatarColor(id),
+                    lastMessage != null ? lastMessage : "",
+                    lastTimestamp != null ? lastTimestamp.toLocalDateTime() : null,
+                    rs.getInt("unread")
+                );
+                users.add(user);
             }
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error getting last message", e);
+            LOGGER.log(Level.SEVERE, "Error loading conversation summaries", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
-        return "";
+        return users;
     }
 
     /**
@@ -438,20 +496,9 @@ public class ChatManager {
         try {
             conn = DatabaseConnection.getConnection();
 
-            // Check if chat_messages table exists
-            try {
-                DatabaseMetaData dbm = conn.getMetaData();
-                ResultSet tables = dbm.getTables(null, null, "chat_messages", null);
-                boolean tableExists = tables.next();
-                tables.close();
-
-                if (!tableExists) {
-                    // Table doesn't exist, initialize database but don't try to update
-                    DatabaseInitializer.initializeDatabase();
-                    return;
-                }
-            } catch (SQLException e) {
-                LOGGER.log(Level.WARNING, "Could not check if chat_messages table exists", e);
+            // The schema is initialized with the pool, so a missing table means initialization failed
+            if (!SchemaRegistry.isReady(SchemaRegistry.CHAT_MESSAGES)) {
+                LOGGER.warning("chat_messages table is not ready, not marking messages as read");
                 return;
             }
 
@@ -466,7 +513,7 @@ public class ChatManager {
             // Log error but don't crash
             LOGGER.log(Level.WARNING, "Error marking messages as read: " + e.getMessage());
         } finally {
-            DatabaseConnection.closeResources(ps, null);
+            DatabaseConnection.closeResources(conn, ps, null);
         }
     }
 
@@ -498,7 +545,7 @@ public class ChatManager {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error getting unread message count", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return 0;
@@ -632,6 +679,9 @@ public class ChatManager {
         private String message;
         private LocalDateTime timestamp;
         private boolean isBroadcast;
+        private int id;
+        private String senderName;
+        private String senderRole;
 
         public ChatMessage(int senderId, Integer receiverId, String message, 
                            LocalDateTime timestamp, boolean isBroadcast) {
@@ -642,11 +692,23 @@ public class ChatManager {
             this.isBroadcast = isBroadcast;
         }
 
+        public ChatMessage(int id, int senderId, Integer receiverId, String message,
+                           LocalDateTime timestamp, boolean isBroadcast,
+                           String senderName, String senderRole) {
+            this(senderId, receiverId, message, timestamp, isBroadcast);
+            this.id = id;
+            this.senderName = senderName;
+            this.senderRole = senderRole;
+        }
+
+        public int getId() { return id; }
         public int getSenderId() { return senderId; }
         public Integer getReceiverId() { return receiverId; }
         public String getMessage() { return message; }
         public LocalDateTime getTimestamp() { return timestamp; }
         public boolean isBroadcast() { return isBroadcast; }
+        public String getSenderName() { return senderName; }
+        public String getSenderRole() { return senderRole; }
     }
 
     /**
@@ -661,6 +723,7 @@ public class ChatManager {
         private String avatarColor;
         private String lastMessage;
         private LocalDateTime lastMessageTime;
+        private int unreadCount;
 
         public ChatUser(int id, String name, String email, String role, 
                         String status, String avatarColor, String lastMessage) {
@@ -687,6 +750,13 @@ public class ChatManager {
             this.lastMessageTime = lastMessageTime;
         }
 
+        public ChatUser(int id, String name, String email, String role,
+                        String status, String avatarColor, String lastMessage,
+                        LocalDateTime lastMessageTime, int unreadCount) {
+            this(id, name, email, role, status, avatarColor, lastMessage, lastMessageTime);
+            this.unreadCount = unreadCount;
+        }
+
         public int getId() { return id; }
         public String getName() { return name; }
         public String getEmail() { return email; }
@@ -695,6 +765,7 @@ public class ChatManager {
         public String getAvatarColor() { return avatarColor; }
         public String getLastMessage() { return lastMessage; }
         public LocalDateTime getLastMessageTime() { return lastMessageTime; }
+        public int getUnreadCount() { return unreadCount; }
 
         public String getFormattedTime() {
             if (lastMessageTime == null) {
@@ -0,0 +1,184 @@
+package com.ueadmission.chat;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.util.Duration;
+
+/**
+ * Recycled cell of the chat message list.
+ *
+ * The node trees for a sent bubble, a received bubble and a system notice are
+ * built once per cell; {@link #updateItem(ChatMessageItem, boolean)} only swaps
+ * the graphic and updates text, so the number of live nodes depends on the
+ * height of the window rather than the length of the conversation.
+ */
+class ChatMessageCell extends ListCell<ChatMessageItem> {
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("MMMM d, yyyy hh:mm a", Locale.ENGLISH);
+    // Room left beside a bubble for the avatar, spacing and the scroll bar
+    private static final double BUBBLE_MARGIN = 90;
+
+    private final Runnable onTopReached;
+
+    // Sent message
+    private final HBox sentBox = new HBox(10);
+    private final Label sentTime = new Label();
+    private final Tooltip sentTooltip = new Tooltip();
+    private final Label sentText = new Label();
+
+    // Received message
+    private final HBox receivedBox = new HBox(10);
+    private final Circle avatarCircle = new Circle(17.5);
+    private final Label initialLabel = new Label();
+    private final VBox receivedContent = new VBox(5);
+    private final Label senderLabel = new Label();
+    private final Label receivedTime = new Label();
+    private final Tooltip receivedTooltip = new Tooltip();
+    private final Label receivedText = new Label();
+
+    // System notice
+    private final HBox systemBox = new HBox();
+    private final VBox systemContent = new VBox();
+    private final Label systemText = new Label();
+
+    /**
+     * @param listView List the cell belongs to, used to size the bubbles
+     * @param onTopReached Called on the FX thread when the first item is shown, may be null
+     */
+    ChatMessageCell(ListView<ChatMessageItem> listView, Runnable onTopReached) {
+        this.onTopReached = onTopReached;
+
+        buildSentBox(listView);
+        buildReceivedBox(listView);
+
+        systemBox.setAlignment(Pos.CENTER);
+        systemText.getStyleClass().add("system-message-text");
+        systemText.setWrapText(true);
+        systemContent.getChildren().add(systemText);
+        systemBox.getChildren().add(systemContent);
+
+        // Fill the list width so long messages wrap instead of scrolling sideways
+        setPrefWidth(0);
+        setPadding(new Insets(5, 15, 5, 15));
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+    }
+
+    private void buildSentBox(ListView<ChatMessageItem> listView) {
+        sentBox.setAlignment(Pos.CENTER_RIGHT);
+
+        VBox messageContent = new VBox(5);
+        messageContent.getStyleClass().addAll("message", "sent-message");
+        messageContent.setMaxWidth(1600);
+
+        HBox messageHeader = new HBox(5);
+        messageHeader.setAlignment(Pos.CENTER_RIGHT);
+        sentTime.getStyleClass().add("message-time");
+        sentTooltip.setStyle("-fx-font-size: 12px;");
+        sentTime.setTooltip(sentTooltip);
+        messageHeader.getChildren().add(sentTime);
+
+        sentText.getStyleClass().add("message-text");
+        sentText.setWrapText(true);
+        sentText.maxWidthProperty().bind(listView.widthProperty().subtract(BUBBLE_MARGIN));
+
+        messageContent.getChildren().addAll(messageHeader, sentText);
+        sentBox.getChildren().add(messageContent);
+    }
+
+    private void buildReceivedBox(ListView<ChatMessageItem> listView) {
+        receivedBox.setAlignment(Pos.CENTER_LEFT);
+
+        StackPane avatarPane = new StackPane();
+        avatarPane.setPrefSize(35, 35);
+        avatarPane.setMaxSize(35, 35);
+        initialLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: white;");
+        avatarPane.getChildren().addAll(avatarCircle, initialLabel);
+
+        receivedContent.getStyleClass().addAll("message", "received-message");
+        receivedContent.setMaxWidth(1600);
+
+        HBox messageHeader = new HBox(5);
+        messageHeader.setAlignment(Pos.CENTER_LEFT);
+        senderLabel.setStyle("-fx-font-size: 12px; -fx-font-weight: bold; -fx-text-fill: #555;");
+
+        receivedTime.getStyleClass().add("message-time");
+        receivedTooltip.setStyle("-fx-font-size: 12px; -fx-background-color: #f0f0f0; -fx-text-fill: #333333; -fx-padding: 5;");
+        receivedTooltip.setShowDelay(Duration.millis(300));
+        receivedTime.setTooltip(receivedTooltip);
+
+        // Add spacer to push time to the right
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        messageHeader.getChildren().addAll(senderLabel, spacer, receivedTime);
+
+        receivedText.getStyleClass().add("message-text");
+        receivedText.setWrapText(true);
+        receivedText.maxWidthProperty().bind(listView.widthProperty().subtract(BUBBLE_MARGIN + 45));
+
+        receivedContent.getChildren().addAll(messageHeader, receivedText);
+        receivedBox.getChildren().addAll(avatarPane, receivedContent);
+    }
+
+    @Override
+    protected void updateItem(ChatMessageItem item, boolean empty) {
+        super.updateItem(item, empty);
+
+        if (empty || item == null) {
+            setGraphic(null);
+            return;
+        }
+
+        if (item.isSystem()) {
+            systemContent.getStyleClass().setAll("system-message");
+            if (item.getStyleClass() != null) {
+                systemContent.getStyleClass().add(item.getStyleClass());
+            }
+            systemText.setText(item.getContent());
+            setGraphic(systemBox);
+        } else if (item.isSentByCurrentUser()) {
+            sentTime.setText(formatTime(item.getTimestamp()));
+            sentTooltip.setText(formatTime(item.getTimestamp()));
+            sentText.setText(item.getContent());
+            setGraphic(sentBox);
+        } else {
+            boolean fromAdmin = "admin".equals(item.getSenderRole());
+            String sender = item.getSenderName() != null && !item.getSenderName().isEmpty()
+                    ? item.getSenderName() : "?";
+            avatarCircle.setFill(Color.valueOf(fromAdmin ? "#F44336" : "#4CAF50"));
+            initialLabel.setText(sender.substring(0, 1).toUpperCase());
+            receivedContent.getStyleClass().setAll("message", "received-message",
+                    fromAdmin ? "admin-message" : "student-message");
+            senderLabel.setText(sender);
+            receivedTime.setText(formatTime(item.getTimestamp()));
+            receivedTooltip.setText(formatTime(item.getTimestamp()));
+            receivedText.setText(item.getContent());
+            setGraphic(receivedBox);
+        }
+
+        // Cells are updated during layout; change the list afterwards
+        if (getIndex() == 0 && onTopReached != null) {
+            Platform.runLater(onTopReached);
+        }
+    }
+
+    private static String formatTime(LocalDateTime time) {
+        return time != null ? time.format(TIME_FORMAT) : "";
+    }
+}
@@ -0,0 +1,56 @@
+package com.ueadmission.chat;
+
+import java.time.LocalDateTime;
+
+/**
+ * A row of the chat message list: either a message bubble or a centered system notice
+ */
+public class ChatMessageItem {
+    private final int id;
+    private final boolean system;
+    private final String content;
+    private final String senderName;
+    private final String senderRole;
+    private final LocalDateTime timestamp;
+    private final String styleClass;
+
+    private ChatMessageItem(int id, boolean system, String content, String senderName,
+                            String senderRole, LocalDateTime timestamp, String styleClass) {
+        this.id = id;
+        this.system = system;
+        this.content = content;
+        this.senderName = senderName;
+        this.senderRole = senderRole;
+        this.timestamp = timestamp;
+        this.styleClass = styleClass;
+    }
+
+    /**
+     * Create a chat message; a sender name of "You" marks a message sent by the current user
+     * @param id Database id of the message, or 0 if it has not been loaded from the database
+     */
+    public static ChatMessageItem message(int id, String content, String senderName,
+                                          String senderRole, LocalDateTime timestamp) {
+        return new ChatMessageItem(id, false, content, senderName, senderRole, timestamp, null);
+    }
+
+    /**
+     * Create a system notice
+     * @param styleClass Extra style class such as "system-warning", or null
+     */
+    public static ChatMessageItem system(String content, String styleClass) {
+        return new ChatMessageItem(0, true, content, null, null, null, styleClass);
+    }
+
+    public int getId() { return id; }
+    public boolean isSystem() { return system; }
+    public String getContent() { return content; }
+    public String getSenderName() { return senderName; }
+    public String getSenderRole() { return senderRole; }
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public String getStyleClass() { return styleClass; }
+
+    public boolean isSentByCurrentUser() {
+        return !system && "You".equals(senderName);
+    }
+}
@@ -0,0 +1,155 @@
+package com.ueadmission.chat;
+
+import java.time.Duration;
+import java.util.List;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * Bounded list of messages shown in the chat window.
+ *
+ * The first item is a header (the welcome notice) that is never evicted.
+ * Appending past the capacity drops the oldest messages, so a chat window left
+ * open for days holds at most {@code capacity} items; older pages can be
+ * loaded again on scroll. Loading them into a full model drops the newest
+ * messages from the bottom instead, and the model remembers that, so the
+ * window can reload the newest page before anything is added at the end.
+ * Must only be used on the JavaFX application thread.
+ */
+class ChatMessageModel {
+    /** Items a chat window keeps before evicting the oldest messages */
+    static final int DEFAULT_CAPACITY = 2000;
+
+    private final int capacity;
+    private final ObservableList<ChatMessageItem> items = FXCollections.observableArrayList();
+    private int headerCount = 0;
+    private boolean newerEvicted = false;
+
+    /**
+     * @param capacity Maximum number of items kept, including the header
+     */
+    ChatMessageModel(int capacity) {
+        this.capacity = Math.max(2, capacity);
+    }
+
+    ObservableList<ChatMessageItem> getItems() {
+        return items;
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    boolean isFull() {
+        return items.size() >= capacity;
+    }
+
+    /**
+     * Check whether loading older pages dropped the newest messages from the bottom
+     */
+    boolean isNewerEvicted() {
+        return newerEvicted;
+    }
+
+    /**
+     * Remove everything, including the header
+     */
+    void clear() {
+        items.clear();
+        headerCount = 0;
+        newerEvicted = false;
+    }
+
+    /**
+     * Remove everything and start over with a header item
+     */
+    void reset(ChatMessageItem header) {
+        items.setAll(header);
+        headerCount = 1;
+        newerEvicted = false;
+    }
+
+    /**
+     * Add an item at the end, evicting the oldest messages when over capacity
+     * @return Number of evicted items
+     */
+    int append(ChatMessageItem item) {
+        items.add(item);
+        return trim();
+    }
+
+    /**
+     * Add items at the end in one change, evicting the oldest messages when over capacity
+     * @return Number of evicted items
+     */
+    int appendAll(List<ChatMessageItem> newItems) {
+        items.addAll(newItems);
+        return trim();
+    }
+
+    /**
+     * Insert a page of older messages below the header, evicting the newest
+     * messages from the bottom when over capacity
+     * @param page Messages in ascending order
+     * @return Number of items evicted from the bottom
+     */
+    int prependOlder(List<ChatMessageItem> page) {
+        int room = capacity - headerCount;
+        if (page.size() > room) {
+            page = page.subList(page.size() - room, page.size());
+        }
+        items.addAll(headerCount, page);
+
+        int excess = items.size() - capacity;
+        if (excess <= 0) {
+            return 0;
+        }
+        items.remove(items.size() - excess, items.size());
+        newerEvicted = true;
+        return excess;
+    }
+
+    /**
+     * Check whether the last item is the same message as the given one, as when a
+     * reloaded page already contains a message that arrived live
+     */
+    boolean endsWithSameMessage(ChatMessageItem item) {
+        if (items.size() <= headerCount) {
+            return false;
+        }
+        ChatMessageItem last = items.get(items.size() - 1);
+        return !last.isSystem() && !item.isSystem()
+                && last.getContent().equals(item.getContent())
+                && last.getSenderName().equals(item.getSenderName())
+                // The database may keep the timestamp with less precision
+                && Math.abs(Duration.between(last.getTimestamp(), item.getTimestamp()).toMillis()) < 1000;
+    }
+
+    /**
+     * Get the database id of the oldest loaded message
+     * @return The id, or 0 if no loaded message has one
+     */
+    int getOldestMessageId() {
+        for (int i = headerCount; i < items.size(); i++) {
+            ChatMessageItem item = items.get(i);
+            if (!item.isSystem() && item.getId() > 0) {
+                return item.getId();
+            }
+        }
+        return 0;
+    }
+
+    private int trim() {
+        int excess = items.size() - capacity;
+        if (excess <= 0) {
+            return 0;
+        }
+        items.remove(headerCount, headerCount + excess);
+        return excess;
+    }
+}
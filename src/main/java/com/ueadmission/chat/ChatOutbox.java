@@ -0,0 +1,280 @@
+package com.ueadmission.chat;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ueadmission.db.DatabaseConnection;
+
+/**
+ * Sends the messages a user wrote while offline once the chat server is reachable again.
+ *
+ * The messages wait in {@code chat_messages_queue}. A flush loads a batch of
+ * them, writes the whole batch to the server in one go and then waits for the
+ * server to acknowledge each message by its queue id, so the batch costs one
+ * round trip instead of one per message. The acknowledged rows are deleted
+ * with one statement per {@link #MAX_IDS_PER_DELETE} ids; messages the server refused or did not answer stay
+ * queued for a later flush. A message whose ACK was lost with the connection
+ * is sent again, so delivery is at least once.
+ */
+final class ChatOutbox {
+    private static final Logger LOGGER = Logger.getLogger(ChatOutbox.class.getName());
+    private static final long RETRY_PAUSE_MILLIS = 1000;
+    /** Most ids in one DELETE, so the statement stays a reasonable size */
+    static final int MAX_IDS_PER_DELETE = 500;
+    /**
+     * Id counts a DELETE is prepared for; smaller counts are padded up to the next one,
+     * so the statement cache sees a handful of distinct statements instead of one per count
+     */
+    private static final int[] DELETE_SIZES = {1, 8, 64, MAX_IDS_PER_DELETE};
+    private static final String[] DELETE_SQL = new String[DELETE_SIZES.length];
+
+    static {
+        for (int s = 0; s < DELETE_SIZES.length; s++) {
+            StringBuilder sql = new StringBuilder("DELETE FROM chat_messages_queue WHERE id IN (");
+            for (int i = 0; i < DELETE_SIZES[s]; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            DELETE_SQL[s] = sql.append(')').toString();
+        }
+    }
+
+    /**
+     * Storage of queued messages
+     */
+    interface Store {
+        /**
+         * Load the oldest queued messages of a user
+         */
+        List<QueuedMessage> load(int senderId, int limit) throws SQLException;
+
+        /**
+         * Delete messages the server acknowledged
+         * @param ids Queue ids of the messages
+         * @param count Number of ids to delete
+         */
+        void delete(int[] ids, int count) throws SQLException;
+    }
+
+    /**
+     * Writes a batch of queued messages to the server
+     */
+    interface Transmitter {
+        void sendAll(List<QueuedMessage> batch) throws IOException;
+    }
+
+    /**
+     * A message waiting in the outbox
+     */
+    static final class QueuedMessage {
+        final int id;
+        final int receiverId;
+        final String content;
+        final long timestampMillis;
+
+        QueuedMessage(int id, int receiverId, String content, long timestampMillis) {
+            this.id = id;
+            this.receiverId = receiverId;
+            this.content = content;
+            this.timestampMillis = timestampMillis;
+        }
+    }
+
+    private final Store store;
+    private final int batchSize;
+    private final long ackTimeoutNanos;
+
+    private final Object ackLock = new Object();
+    private final Set<Integer> awaitingAck = new HashSet<>();
+    private int[] acknowledged = new int[0];
+    private int acknowledgedCount;
+
+    /**
+     * @param store Storage of the queued messages
+     * @param batchSize Most messages sent before waiting for their ACKs
+     * @param ackTimeoutMillis How long to wait for the ACKs of a batch
+     */
+    ChatOutbox(Store store, int batchSize, long ackTimeoutMillis) {
+        this.store = store;
+        this.batchSize = Math.max(1, batchSize);
+        this.ackTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(ackTimeoutMillis);
+    }
+
+    /**
+     * Record the server's ACK of a queued message; called by the thread reading from the server
+     */
+    void acknowledge(int sequence) {
+        synchronized (ackLock) {
+            if (awaitingAck.remove(sequence)) {
+                acknowledged[acknowledgedCount++] = sequence;
+                if (awaitingAck.isEmpty()) {
+                    ackLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Send queued messages batch by batch until the outbox is empty, the server
+     * stops answering or the connection is lost. Calls must not overlap.
+     * @return The number of messages the server acknowledged
+     */
+    int flush(int senderId, Transmitter transmitter) {
+        int total = 0;
+        try {
+            while (true) {
+                List<QueuedMessage> batch = store.load(senderId, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                int sent = sendBatch(batch, transmitter);
+                total += sent;
+                if (sent == 0) {
+                    LOGGER.warning("Chat server acknowledged none of " + batch.size()
+                            + " queued messages, keeping them for the next connection");
+                    break;
+                }
+                if (sent < batch.size()) {
+                    // The rest was most likely refused by the server's rate limit, which refills over time
+                    Thread.sleep(RETRY_PAUSE_MILLIS);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Connection lost while sending queued messages", e);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not read or clear queued messages", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (total > 0) {
+            LOGGER.info("Sent " + total + " queued messages");
+        }
+        return total;
+    }
+
+    /**
+     * Send one batch in a single write, wait for its ACKs and delete the acknowledged rows
+     * @return The number of messages acknowledged
+     */
+    private int sendBatch(List<QueuedMessage> batch, Transmitter transmitter)
+            throws IOException, SQLException, InterruptedException {
+        synchronized (ackLock) {
+            awaitingAck.clear();
+            for (QueuedMessage message : batch) {
+                awaitingAck.add(message.id);
+            }
+            acknowledged = new int[batch.size()];
+            acknowledgedCount = 0;
+        }
+
+        transmitter.sendAll(batch);
+
+        int[] ids;
+        int count;
+        synchronized (ackLock) {
+            long deadline = System.nanoTime() + ackTimeoutNanos;
+            long remaining;
+            while (!awaitingAck.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(ackLock, remaining);
+            }
+            // ACKs arriving after the timeout are ignored; those messages are sent again later
+            awaitingAck.clear();
+            ids = acknowledged;
+            count = acknowledgedCount;
+        }
+
+        if (count > 0) {
+            store.delete(ids, count);
+        }
+        return count;
+    }
+
+    /**
+     * Get the index of the smallest DELETE size holding the given number of ids
+     */
+    static int deleteSizeIndex(int count) {
+        for (int s = 0; s < DELETE_SIZES.length - 1; s++) {
+            if (count <= DELETE_SIZES[s]) {
+                return s;
+            }
+        }
+        return DELETE_SIZES.length - 1;
+    }
+
+    /**
+     * Get the number of ids the DELETE for the given number of ids binds
+     */
+    static int paddedIdCount(int count) {
+        return DELETE_SIZES[deleteSizeIndex(count)];
+    }
+
+    /**
+     * Create a store backed by the {@code chat_messages_queue} table
+     */
+    static Store databaseStore() {
+        return new Store() {
+            @Override
+            public List<QueuedMessage> load(int senderId, int limit) throws SQLException {
+                Connection conn = null;
+                PreparedStatement ps = null;
+                ResultSet rs = null;
+                try {
+                    conn = DatabaseConnection.getConnection();
+                    ps = conn.prepareStatement(
+                        "SELECT id, receiver_id, message, timestamp FROM chat_messages_queue " +
+                        "WHERE sender_id = ? AND sent = false ORDER BY id LIMIT ?");
+                    ps.setInt(1, senderId);
+                    ps.setInt(2, limit);
+
+                    rs = ps.executeQuery();
+                    List<QueuedMessage> messages = new ArrayList<>();
+                    while (rs.next()) {
+                        Timestamp timestamp = rs.getTimestamp(4);
+                        messages.add(new QueuedMessage(rs.getInt(1), rs.getInt(2), rs.getString(3),
+                                timestamp != null ? timestamp.getTime() : System.currentTimeMillis()));
+                    }
+                    return messages;
+                } finally {
+                    DatabaseConnection.closeResources(ps, rs);
+                    DatabaseConnection.releaseConnection(conn);
+                }
+            }
+
+            @Override
+            public void delete(int[] ids, int count) throws SQLException {
+                Connection conn = null;
+                PreparedStatement ps = null;
+                try {
+                    conn = DatabaseConnection.getConnection();
+                    for (int start = 0; start < count; start += MAX_IDS_PER_DELETE) {
+                        int chunk = Math.min(MAX_IDS_PER_DELETE, count - start);
+                        int size = deleteSizeIndex(chunk);
+                        ps = conn.prepareStatement(DELETE_SQL[size]);
+                        // Padded by repeating the last id, which deletes nothing extra
+                        for (int i = 0; i < DELETE_SIZES[size]; i++) {
+                            ps.setInt(i + 1, ids[start + Math.min(i, chunk - 1)]);
+                        }
+                        ps.executeUpdate();
+                        ps.close();
+                        ps = null;
+                    }
+                } finally {
+                    DatabaseConnection.closeResources(ps, null);
+                    DatabaseConnection.releaseConnection(conn);
+                }
+            }
+        };
+    }
+}
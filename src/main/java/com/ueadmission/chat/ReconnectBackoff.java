@@ -0,0 +1,55 @@
+package com.ueadmission.chat;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between attempts to reach the chat server again.
+ *
+ * The ceiling doubles with every failed attempt up to a maximum, and each
+ * delay is picked at random from the upper half of the ceiling. When the
+ * server restarts, the clients it dropped therefore come back spread out
+ * over time instead of all at once, while none of them retries sooner than
+ * half the ceiling.
+ */
+final class ReconnectBackoff {
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private int attempts;
+
+    /**
+     * @param initialDelayMillis Ceiling of the first delay
+     * @param maxDelayMillis Largest ceiling, reached after repeated failures
+     */
+    ReconnectBackoff(long initialDelayMillis, long maxDelayMillis) {
+        this.initialDelayMillis = Math.max(1, initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+    }
+
+    /**
+     * Get the delay before the next attempt and count the attempt
+     */
+    synchronized long nextDelayMillis() {
+        long ceiling = maxDelayMillis;
+        // Stop doubling well before the shift overflows
+        if (attempts < 32) {
+            ceiling = Math.min(maxDelayMillis, initialDelayMillis << attempts);
+        }
+        attempts++;
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    /**
+     * Start over from the initial delay once a connection succeeded
+     */
+    synchronized void reset() {
+        attempts = 0;
+    }
+
+    /**
+     * Get the number of delays handed out since the last reset
+     */
+    synchronized int getAttempts() {
+        return attempts;
+    }
+}
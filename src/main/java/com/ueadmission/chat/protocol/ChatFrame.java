@@ -0,0 +1,57 @@
+package com.ueadmission.chat.protocol;
+
+import java.time.LocalDateTime;
+
+/**
+ * A decoded binary chat frame.
+ * Which fields are set depends on the opcode; see {@link ChatProtocol}.
+ */
+public final class ChatFrame {
+    private final byte opcode;
+    private final int sequence;
+    private final int id;
+    private final long timestampMillis;
+    private final String text;
+
+    ChatFrame(byte opcode, int id, long timestampMillis, String text) {
+        this(opcode, 0, id, timestampMillis, text);
+    }
+
+    ChatFrame(byte opcode, int sequence, int id, long timestampMillis, String text) {
+        this.opcode = opcode;
+        this.sequence = sequence;
+        this.id = id;
+        this.timestampMillis = timestampMillis;
+        this.text = text;
+    }
+
+    public byte getOpcode() { return opcode; }
+
+    /**
+     * Get the connection sequence number of a numbered direct message, or 0
+     */
+    public int getSequence() { return sequence; }
+
+    /**
+     * Get the user id carried by the frame: the receiver of a sent message,
+     * the sender of a delivered message, the user of a status update or the
+     * sequence number an ACK or DELIVERED confirms
+     */
+    public int getId() { return id; }
+
+    public long getTimestampMillis() { return timestampMillis; }
+    public String getText() { return text; }
+
+    /**
+     * Get the timestamp in the local time zone
+     */
+    public LocalDateTime getTimestamp() {
+        return ChatProtocol.toLocalDateTime(timestampMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "ChatFrame{opcode=" + opcode + ", sequence=" + sequence + ", id=" + id + ", timestamp=" + timestampMillis
+                + ", text=" + text + '}';
+    }
+}
@@ -0,0 +1,502 @@
+package com.ueadmission.chat.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary chat wire protocol shared by the chat server and {@code ChatClient}.
+ *
+ * A connection starts in the line-based text protocol. A client that sends
+ * {@code AUTH:<userId>:BIN1} switches its own output to binary frames right after
+ * that line; the server answers with the text line {@code PROTO:BIN1} and sends
+ * binary frames from then on. Clients sending plain {@code AUTH:<userId>} keep
+ * the text protocol. A client that numbers direct messages adds {@code DLV1}
+ * before any {@code BIN1}, as in {@code AUTH:<userId>:DLV1:BIN1}, and the server
+ * answers with {@code PROTO:DLV1} ahead of any {@code PROTO:BIN1}.
+ *
+ * A frame is a varint length followed by that many bytes: one opcode byte and
+ * the body. Ids are varints, timestamps are varint epoch milliseconds and the
+ * text that ends a body is UTF-8 without a terminator, so content may contain
+ * any character.
+ * <pre>
+ *   client to server  SEND_DIRECT    receiverId, content
+ *                     SEND_BROADCAST content
+ *                     SET_STATUS     status
+ *                     PONG           (empty)
+ *                     SEND_QUEUED    sequence, receiverId, timestamp, content
+ *                     DELIVERED      sequence
+ *   server to client  MESSAGE        senderId, timestamp, content
+ *                     STATUS         userId, status
+ *                     ERROR          message
+ *                     PRESENCE       count, then per entry userId, status length, status
+ *                     PING           (empty)
+ *                     ACK            sequence
+ *                     DIRECT_MESSAGE sequence, senderId, timestamp, content
+ * </pre>
+ * A PRESENCE digest carries several status updates in one frame; each status
+ * is prefixed with its UTF-8 length since it does not end the body.
+ *
+ * The server sends PING to a connection that has been quiet for a while, as a
+ * {@code PING} line in the text protocol, and the client answers with PONG or
+ * a {@code PONG} line. A connection that stays silent is closed by the server.
+ *
+ * Messages written while the client was offline are sent again with
+ * SEND_QUEUED, or a {@code QMSG:<sequence>:<receiverId>:<epochMillis>:<content>}
+ * line, carrying the sequence number the client gave them and the time they
+ * were written. The server answers each one it accepted with ACK, or an
+ * {@code ACK:<sequence>} line, so a client can send its whole backlog at once
+ * and match the answers afterwards.
+ *
+ * On a connection that negotiated {@code DLV1}, direct messages reach the
+ * receiver as DIRECT_MESSAGE, or a
+ * {@code DMSG:<sequence>:<senderId>:<epochMillis>:<content>} line, numbered
+ * 1, 2, 3... on each connection. The client confirms them cumulatively with
+ * DELIVERED, or a {@code DELIVERED:<sequence>} line, meaning it received every
+ * direct message up to that number; the server counts only confirmed messages
+ * as delivered. Other connections receive direct messages as MESSAGE, and
+ * broadcasts keep the unnumbered MESSAGE form everywhere.
+ */
+public final class ChatProtocol {
+    /** Protocol version requested in the AUTH line */
+    public static final String BINARY_VERSION = "BIN1";
+    /** Server reply confirming the switch to binary frames */
+    public static final String BINARY_ACK = "PROTO:" + BINARY_VERSION;
+    /** Option requested in the AUTH line for numbered, confirmed direct messages */
+    public static final String DELIVERY_VERSION = "DLV1";
+    /** Server reply confirming that direct messages will be numbered */
+    public static final String DELIVERY_ACK = "PROTO:" + DELIVERY_VERSION;
+    /** Largest frame or text line accepted */
+    public static final int MAX_FRAME_BYTES = 64 * 1024;
+
+    public static final byte OP_SEND_DIRECT = 0x10;
+    public static final byte OP_SEND_BROADCAST = 0x11;
+    public static final byte OP_SET_STATUS = 0x12;
+    public static final byte OP_PONG = 0x13;
+    public static final byte OP_SEND_QUEUED = 0x14;
+    public static final byte OP_DELIVERED = 0x15;
+    public static final byte OP_MESSAGE = 0x20;
+    public static final byte OP_STATUS = 0x21;
+    public static final byte OP_ERROR = 0x22;
+    public static final byte OP_PRESENCE = 0x23;
+    public static final byte OP_PING = 0x24;
+    public static final byte OP_ACK = 0x25;
+    public static final byte OP_DIRECT_MESSAGE = 0x26;
+
+    /** Heartbeat request sent by the server in the text protocol */
+    public static final String PING_LINE = "PING";
+    /** Heartbeat answer sent by the client in the text protocol */
+    public static final String PONG_LINE = "PONG";
+    /** Prefix of a message sent again from the client's offline queue in the text protocol */
+    public static final String QUEUED_PREFIX = "QMSG:";
+    /** Prefix of the server's answer to a queued message in the text protocol */
+    public static final String ACK_PREFIX = "ACK:";
+    /** Prefix of a numbered direct message sent by the server in the text protocol */
+    public static final String DIRECT_PREFIX = "DMSG:";
+    /** Prefix of the client's cumulative delivery confirmation in the text protocol */
+    public static final String DELIVERED_PREFIX = "DELIVERED:";
+
+    private static final String AUTH_PREFIX = "AUTH:";
+    private static final String BINARY_AUTH_SUFFIX = ":" + BINARY_VERSION;
+    private static final String DELIVERY_AUTH_OPTION = ":" + DELIVERY_VERSION;
+
+    private ChatProtocol() {
+    }
+
+    /**
+     * Build the AUTH line that opens a connection
+     * @param binary Whether to request binary frames
+     */
+    public static String authLine(int userId, boolean binary) {
+        return authLine(userId, binary, false);
+    }
+
+    /**
+     * Build the AUTH line that opens a connection
+     * @param binary Whether to request binary frames
+     * @param numbered Whether to request numbered direct messages, confirmed with DELIVERED
+     */
+    public static String authLine(int userId, boolean binary, boolean numbered) {
+        return AUTH_PREFIX + userId + (numbered ? DELIVERY_AUTH_OPTION : "") + (binary ? BINARY_AUTH_SUFFIX : "");
+    }
+
+    /**
+     * Check whether a text line is an AUTH line requesting binary frames
+     */
+    public static boolean requestsBinary(String line) {
+        return line.startsWith(AUTH_PREFIX) && line.endsWith(BINARY_AUTH_SUFFIX);
+    }
+
+    public static byte[] encodeSendDirect(int receiverId, String content) {
+        return encode(OP_SEND_DIRECT, receiverId, false, 0, content);
+    }
+
+    public static byte[] encodeSendBroadcast(String content) {
+        return encode(OP_SEND_BROADCAST, 0, false, 0, content);
+    }
+
+    public static byte[] encodeSetStatus(String status) {
+        return encode(OP_SET_STATUS, 0, false, 0, status);
+    }
+
+    public static byte[] encodeMessage(int senderId, long timestampMillis, String content) {
+        return encode(OP_MESSAGE, senderId, true, timestampMillis, content);
+    }
+
+    public static byte[] encodeStatus(int userId, String status) {
+        return encode(OP_STATUS, userId, false, 0, status);
+    }
+
+    public static byte[] encodeError(String message) {
+        return encode(OP_ERROR, 0, false, 0, message);
+    }
+
+    public static byte[] encodeAck(int sequence) {
+        return encode(OP_ACK, sequence, false, 0, "");
+    }
+
+    /**
+     * Encode a message from the client's offline queue
+     * @param sequence Number the server echoes in its ACK
+     * @param timestampMillis When the message was written
+     */
+    public static byte[] encodeSendQueued(int sequence, int receiverId, long timestampMillis, String content) {
+        return encodeSequenced(OP_SEND_QUEUED, sequence, receiverId, timestampMillis, content);
+    }
+
+    /**
+     * Encode a direct message numbered for the receiver's connection
+     * @param sequence Position of the message among the direct messages of the connection
+     */
+    public static byte[] encodeDirectMessage(int sequence, int senderId, long timestampMillis, String content) {
+        return encodeSequenced(OP_DIRECT_MESSAGE, sequence, senderId, timestampMillis, content);
+    }
+
+    /**
+     * Build the text protocol line of a numbered direct message
+     */
+    public static String directMessageLine(int sequence, int senderId, long timestampMillis, String content) {
+        return DIRECT_PREFIX + sequence + ":" + senderId + ":" + timestampMillis + ":" + content;
+    }
+
+    /**
+     * Encode the client's confirmation of every direct message up to a sequence number
+     */
+    public static byte[] encodeDelivered(int sequence) {
+        return encode(OP_DELIVERED, sequence, false, 0, "");
+    }
+
+    private static byte[] encodeSequenced(byte opcode, int sequence, int id, long timestampMillis, String content) {
+        byte[] utf8 = content.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + varintSize(sequence) + varintSize(id) + varlongSize(timestampMillis) + utf8.length;
+
+        byte[] frame = new byte[varintSize(bodyLength) + bodyLength];
+        int pos = writeVarint(frame, 0, bodyLength);
+        frame[pos++] = opcode;
+        pos = writeVarint(frame, pos, sequence);
+        pos = writeVarint(frame, pos, id);
+        pos = writeVarlong(frame, pos, timestampMillis);
+        System.arraycopy(utf8, 0, frame, pos, utf8.length);
+        return frame;
+    }
+
+    /**
+     * Build the text protocol line of a message from the client's offline queue
+     */
+    public static String queuedLine(int sequence, int receiverId, long timestampMillis, String content) {
+        return QUEUED_PREFIX + sequence + ":" + receiverId + ":" + timestampMillis + ":" + content;
+    }
+
+    public static byte[] encodePing() {
+        return new byte[] {1, OP_PING};
+    }
+
+    public static byte[] encodePong() {
+        return new byte[] {1, OP_PONG};
+    }
+
+    /**
+     * Encode a presence digest of several status updates
+     * @param userIds Users whose status changed
+     * @param statuses New status of each user
+     * @param count Number of entries to encode
+     */
+    public static byte[] encodePresence(int[] userIds, String[] statuses, int count) {
+        byte[][] utf8 = new byte[count][];
+        int bodyLength = 1 + varintSize(count);
+        for (int i = 0; i < count; i++) {
+            utf8[i] = statuses[i].getBytes(StandardCharsets.UTF_8);
+            bodyLength += varintSize(userIds[i]) + varintSize(utf8[i].length) + utf8[i].length;
+        }
+
+        byte[] frame = new byte[varintSize(bodyLength) + bodyLength];
+        int pos = writeVarint(frame, 0, bodyLength);
+        frame[pos++] = OP_PRESENCE;
+        pos = writeVarint(frame, pos, count);
+        for (int i = 0; i < count; i++) {
+            pos = writeVarint(frame, pos, userIds[i]);
+            pos = writeVarint(frame, pos, utf8[i].length);
+            System.arraycopy(utf8[i], 0, frame, pos, utf8[i].length);
+            pos += utf8[i].length;
+        }
+        return frame;
+    }
+
+    /**
+     * Encode a frame into a single array including the length prefix
+     */
+    private static byte[] encode(byte opcode, int id, boolean timestamped, long timestampMillis, String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        boolean hasId = opcode != OP_SEND_BROADCAST && opcode != OP_SET_STATUS && opcode != OP_ERROR;
+
+        int bodyLength = 1 + utf8.length;
+        if (hasId) {
+            bodyLength += varintSize(id);
+        }
+        if (timestamped) {
+            bodyLength += varlongSize(timestampMillis);
+        }
+
+        byte[] frame = new byte[varintSize(bodyLength) + bodyLength];
+        int pos = writeVarint(frame, 0, bodyLength);
+        frame[pos++] = opcode;
+        if (hasId) {
+            pos = writeVarint(frame, pos, id);
+        }
+        if (timestamped) {
+            pos = writeVarlong(frame, pos, timestampMillis);
+        }
+        System.arraycopy(utf8, 0, frame, pos, utf8.length);
+        return frame;
+    }
+
+    /**
+     * Decode a frame body
+     * @param payload Buffer holding the opcode and body, without the length prefix
+     * @param offset Start of the opcode
+     * @param length Length of opcode and body
+     * @throws ProtocolException if the opcode is unknown or the body is truncated
+     */
+    public static ChatFrame decode(byte[] payload, int offset, int length) throws ProtocolException {
+        if (length < 1) {
+            throw new ProtocolException("Empty frame");
+        }
+        int end = offset + length;
+        int pos = offset;
+        byte opcode = payload[pos++];
+
+        int sequence = 0;
+        int id = 0;
+        long timestampMillis = 0;
+        switch (opcode) {
+            case OP_SEND_DIRECT:
+            case OP_STATUS:
+            case OP_ACK:
+            case OP_DELIVERED:
+                id = readVarint(payload, pos, end);
+                pos += varintSize(id);
+                break;
+            case OP_DIRECT_MESSAGE:
+                sequence = readVarint(payload, pos, end);
+                pos += varintSize(sequence);
+                id = readVarint(payload, pos, end);
+                pos += varintSize(id);
+                timestampMillis = readVarlong(payload, pos, end, 10);
+                pos += varlongSize(timestampMillis);
+                break;
+            case OP_MESSAGE:
+                id = readVarint(payload, pos, end);
+                pos += varintSize(id);
+                timestampMillis = readVarlong(payload, pos, end, 10);
+                pos += varlongSize(timestampMillis);
+                break;
+            case OP_SEND_BROADCAST:
+            case OP_SET_STATUS:
+            case OP_ERROR:
+            case OP_PING:
+            case OP_PONG:
+                break;
+            case OP_PRESENCE:
+                throw new ProtocolException("Presence digests are read with decodePresence");
+            case OP_SEND_QUEUED:
+                throw new ProtocolException("Queued messages are read by the server's command decoder");
+            default:
+                throw new ProtocolException("Unknown opcode " + opcode);
+        }
+        return new ChatFrame(opcode, sequence, id, timestampMillis,
+                new String(payload, pos, end - pos, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode the entries of a presence digest
+     * @param payload Buffer holding the opcode and body, without the length prefix
+     * @param offset Start of the opcode
+     * @param length Length of opcode and body
+     * @return One STATUS frame per entry, in digest order
+     * @throws ProtocolException if the frame is not a presence digest or is truncated
+     */
+    public static List<ChatFrame> decodePresence(byte[] payload, int offset, int length) throws ProtocolException {
+        int end = offset + length;
+        if (length < 1 || payload[offset] != OP_PRESENCE) {
+            throw new ProtocolException("Not a presence digest");
+        }
+        int pos = offset + 1;
+        int count = readVarint(payload, pos, end);
+        pos += varintSize(count);
+
+        List<ChatFrame> entries = new ArrayList<>(Math.min(count, length));
+        for (int i = 0; i < count; i++) {
+            int userId = readVarint(payload, pos, end);
+            pos += varintSize(userId);
+            int statusLength = readVarint(payload, pos, end);
+            pos += varintSize(statusLength);
+            if (statusLength < 0 || statusLength > end - pos) {
+                throw new ProtocolException("Truncated frame");
+            }
+            entries.add(new ChatFrame(OP_STATUS, userId, 0, new String(payload, pos, statusLength, StandardCharsets.UTF_8)));
+            pos += statusLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Read one frame from a blocking stream
+     * @return The opcode and body, or null at end of stream
+     * @throws ProtocolException if the frame is larger than {@link #MAX_FRAME_BYTES}
+     */
+    public static byte[] readFrame(InputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return null;
+                }
+                throw new EOFException("Stream ended inside a frame length");
+            }
+            if (shift > 28) {
+                throw new ProtocolException("Malformed frame length");
+            }
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length < 1 || length > MAX_FRAME_BYTES) {
+            throw new ProtocolException("Invalid frame length " + length);
+        }
+
+        byte[] payload = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(payload, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Stream ended inside a frame");
+            }
+            read += n;
+        }
+        return payload;
+    }
+
+    /**
+     * Read one UTF-8 text line from a blocking stream, used before the switch to binary frames
+     * @return The line without its terminator, or null at end of stream
+     */
+    public static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                break;
+            }
+            if (line.size() == MAX_FRAME_BYTES) {
+                throw new ProtocolException("Line longer than " + MAX_FRAME_BYTES + " bytes");
+            }
+            line.write(b);
+        }
+        if (b < 0 && line.size() == 0) {
+            return null;
+        }
+        String text = line.toString(StandardCharsets.UTF_8);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    public static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Read a varint id from a frame; advance past it by {@link #varintSize(int)} of the result
+     * @throws ProtocolException if the varint is truncated or longer than five bytes
+     */
+    public static int readVarint(byte[] buffer, int pos, int end) throws ProtocolException {
+        return (int) readVarlong(buffer, pos, end, 5);
+    }
+
+    /**
+     * Get the number of bytes a varint takes on the wire
+     */
+    public static int varintSize(int value) {
+        return varlongSize(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the number of bytes a varint timestamp takes on the wire
+     */
+    public static int varlongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] buffer, int pos, int value) {
+        return writeVarlong(buffer, pos, value & 0xFFFFFFFFL);
+    }
+
+    private static int writeVarlong(byte[] buffer, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * Read a varint timestamp from a frame; advance past it by {@link #varlongSize(long)} of the result
+     * @throws ProtocolException if the varint is truncated or longer than ten bytes
+     */
+    public static long readVarlong(byte[] buffer, int pos, int end) throws ProtocolException {
+        return readVarlong(buffer, pos, end, 10);
+    }
+
+    private static long readVarlong(byte[] buffer, int pos, int end, int maxBytes) throws ProtocolException {
+        long value = 0;
+        for (int i = 0; i < maxBytes; i++) {
+            if (pos + i >= end) {
+                throw new ProtocolException("Truncated frame");
+            }
+            byte b = buffer[pos + i];
+            value |= (long) (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+}
@@ -0,0 +1,163 @@
+package com.ueadmission.chat.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Delivers broadcasts to connected clients in parallel shards.
+ *
+ * Clients are partitioned by user ID. Each shard has its own single-threaded
+ * lane, so the caller only hands off one task per shard and returns, while
+ * frames from consecutive broadcasts still reach every client in order. The
+ * payload is encoded once before the shards start and shared by all recipients.
+ * With a single shard the broadcast runs on the caller's thread.
+ */
+final class BroadcastFanOut {
+    private static final Logger LOGGER = Logger.getLogger(BroadcastFanOut.class.getName());
+
+    private final List<Map<Integer, ClientHandler>> shards;
+    private final ExecutorService[] lanes;
+
+    private final LongAdder broadcastCount = new LongAdder();
+    private final LongAdder recipientCount = new LongAdder();
+    private final LongAdder totalFanOutNanos = new LongAdder();
+    private final AtomicLong maxFanOutNanos = new AtomicLong();
+    private volatile long lastFanOutNanos;
+
+    /**
+     * Create the fan-out engine
+     * @param shardCount Number of shards; 1 delivers on the caller's thread
+     */
+    BroadcastFanOut(int shardCount) {
+        int count = Math.max(1, shardCount);
+        List<Map<Integer, ClientHandler>> maps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            maps.add(new ConcurrentHashMap<>());
+        }
+        shards = List.copyOf(maps);
+
+        if (count == 1) {
+            lanes = null;
+        } else {
+            lanes = new ExecutorService[count];
+            for (int i = 0; i < count; i++) {
+                int shard = i;
+                lanes[i] = Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "chat-broadcast-" + shard);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    void add(int userId, ClientHandler handler) {
+        shardFor(userId).put(userId, handler);
+    }
+
+    /**
+     * Stop sending broadcasts to a client, unless the user is already served by a newer connection
+     */
+    void remove(int userId, ClientHandler handler) {
+        shardFor(userId).remove(userId, handler);
+    }
+
+    int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Queue a frame for every client except one
+     * @param excludedUserId The user who does not receive the frame, usually the sender
+     * @return Completes with the number of recipients once every shard has queued the frame
+     */
+    CompletableFuture<Integer> broadcast(int excludedUserId, OutboundFrame frame) {
+        // Encode up front so the shards never race to build the same bytes
+        frame.getEncoded(true);
+        frame.getEncoded(false);
+        long start = System.nanoTime();
+
+        if (lanes == null) {
+            int delivered = deliver(shards.get(0), excludedUserId, frame);
+            record(start, delivered);
+            return CompletableFuture.completedFuture(delivered);
+        }
+
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        AtomicInteger remainingShards = new AtomicInteger(shards.size());
+        AtomicInteger delivered = new AtomicInteger();
+        for (int i = 0; i < shards.size(); i++) {
+            Map<Integer, ClientHandler> shard = shards.get(i);
+            Runnable task = () -> {
+                delivered.addAndGet(deliver(shard, excludedUserId, frame));
+                if (remainingShards.decrementAndGet() == 0) {
+                    record(start, delivered.get());
+                    done.complete(delivered.get());
+                }
+            };
+            try {
+                lanes[i].execute(task);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; finish on the caller's thread
+                task.run();
+            }
+        }
+        return done;
+    }
+
+    private static int deliver(Map<Integer, ClientHandler> shard, int excludedUserId, OutboundFrame frame) {
+        int delivered = 0;
+        for (Map.Entry<Integer, ClientHandler> entry : shard.entrySet()) {
+            if (entry.getKey() != excludedUserId) {
+                entry.getValue().deliver(frame);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    private void record(long startNanos, int recipients) {
+        long elapsed = System.nanoTime() - startNanos;
+        broadcastCount.increment();
+        recipientCount.add(recipients);
+        totalFanOutNanos.add(elapsed);
+        maxFanOutNanos.accumulateAndGet(elapsed, Math::max);
+        lastFanOutNanos = elapsed;
+    }
+
+    /**
+     * Get a snapshot of the fan-out statistics
+     */
+    BroadcastMetrics getMetrics() {
+        long broadcasts = broadcastCount.sum();
+        double meanMicros = broadcasts == 0 ? 0 : totalFanOutNanos.sum() / 1000.0 / broadcasts;
+        return new BroadcastMetrics(shards.size(), broadcasts, recipientCount.sum(),
+                lastFanOutNanos / 1000, maxFanOutNanos.get() / 1000, meanMicros);
+    }
+
+    /**
+     * Stop the shard lanes; broadcasts after this run on the caller's thread
+     */
+    void shutdown() {
+        if (lanes != null) {
+            for (ExecutorService lane : lanes) {
+                lane.shutdown();
+            }
+        }
+        LOGGER.fine("Broadcast fan-out stopped: " + getMetrics());
+    }
+
+    private Map<Integer, ClientHandler> shardFor(int userId) {
+        return shards.get(Math.floorMod(userId, shards.size()));
+    }
+}
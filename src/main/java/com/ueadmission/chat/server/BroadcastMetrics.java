@@ -0,0 +1,43 @@
+package com.ueadmission.chat.server;
+
+/**
+ * Point-in-time snapshot of broadcast fan-out statistics.
+ * Fan-out time runs from the broadcast call until the last shard has queued the frame.
+ */
+public class BroadcastMetrics {
+    private final int shardCount;
+    private final long broadcastCount;
+    private final long recipientCount;
+    private final long lastFanOutMicros;
+    private final long maxFanOutMicros;
+    private final double meanFanOutMicros;
+
+    public BroadcastMetrics(int shardCount, long broadcastCount, long recipientCount, long lastFanOutMicros,
+                            long maxFanOutMicros, double meanFanOutMicros) {
+        this.shardCount = shardCount;
+        this.broadcastCount = broadcastCount;
+        this.recipientCount = recipientCount;
+        this.lastFanOutMicros = lastFanOutMicros;
+        this.maxFanOutMicros = maxFanOutMicros;
+        this.meanFanOutMicros = meanFanOutMicros;
+    }
+
+    public int getShardCount() { return shardCount; }
+    public long getBroadcastCount() { return broadcastCount; }
+    public long getRecipientCount() { return recipientCount; }
+    public long getLastFanOutMicros() { return lastFanOutMicros; }
+    public long getMaxFanOutMicros() { return maxFanOutMicros; }
+    public double getMeanFanOutMicros() { return meanFanOutMicros; }
+
+    @Override
+    public String toString() {
+        return "BroadcastMetrics{" +
+                "shards=" + shardCount +
+                ", broadcasts=" + broadcastCount +
+                ", recipients=" + recipientCount +
+                ", lastFanOut=" + lastFanOutMicros + "us" +
+                ", maxFanOut=" + maxFanOutMicros + "us" +
+                ", meanFanOut=" + String.format("%.1f", meanFanOutMicros) + "us" +
+                '}';
+    }
+}
@@ -0,0 +1,385 @@
+package com.ueadmission.chat.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ueadmission.config.ChatServerConfig;
+import com.ueadmission.utils.LatencyHistogram;
+
+/**
+ * Write-behind persistence for direct chat messages.
+ *
+ * Handlers enqueue a message and deliver it right away; a background thread
+ * writes queued messages to {@code chat_messages} in batches, either when a
+ * full batch is waiting or when the flush interval elapses. When the queue is
+ * full, or the writer has been shut down, the calling handler writes the
+ * message itself so nothing is dropped under load. {@link #shutdown(long)}
+ * drains everything that was accepted before it returns.
+ */
+class ChatMessageWriter {
+    private static final Logger LOGGER = Logger.getLogger(ChatMessageWriter.class.getName());
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 100;
+
+    private static ChatMessageWriter instance;
+
+    /**
+     * Destination of persisted batches
+     */
+    interface BatchSink {
+        void write(List<PendingMessage> batch) throws SQLException;
+    }
+
+    /**
+     * A direct message waiting to be persisted.
+     * The receiver may confirm it before or after it is written: a message
+     * confirmed in time is inserted as delivered, one confirmed later is handed to
+     * the {@link DeliveryReceipts} by id once it is written. The flags are checked
+     * crosswise, so at least one side sees the other and none is lost.
+     */
+    static final class PendingMessage {
+        final int senderId;
+        final int receiverId;
+        final String content;
+        final LocalDateTime timestamp;
+
+        private volatile DeliveryReceipts receipts;
+        private volatile boolean delivered;
+        private volatile int messageId;
+        private boolean insertedAsDelivered;
+
+        PendingMessage(int senderId, int receiverId, String content, LocalDateTime timestamp) {
+            this.senderId = senderId;
+            this.receiverId = receiverId;
+            this.content = content;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * Record where the delivery state goes once the receiver confirms the message
+         */
+        void trackReceipt(DeliveryReceipts deliveryReceipts) {
+            this.receipts = deliveryReceipts;
+        }
+
+        /**
+         * Record that the receiver confirmed the message
+         */
+        void markDelivered() {
+            delivered = true;
+            int id = messageId;
+            DeliveryReceipts deliveryReceipts = receipts;
+            if (id != 0 && deliveryReceipts != null) {
+                deliveryReceipts.add(id);
+            }
+        }
+
+        /**
+         * Decide the is_delivered value when the message is bound to the INSERT; called by the writing thread
+         */
+        boolean bindDelivered() {
+            insertedAsDelivered = delivered;
+            return insertedAsDelivered;
+        }
+
+        /**
+         * Record the row id once the INSERT committed; called by the writing thread
+         */
+        void markWritten(int id) {
+            messageId = id;
+            DeliveryReceipts deliveryReceipts = receipts;
+            if (!insertedAsDelivered && delivered && deliveryReceipts != null) {
+                deliveryReceipts.add(id);
+            }
+        }
+
+        /**
+         * Get the chat_messages id, or 0 until the message is written
+         */
+        int getMessageId() {
+            return messageId;
+        }
+    }
+
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int queueCapacity;
+    private final BatchSink sink;
+
+    private final Queue<PendingMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private volatile boolean stopping = false;
+    private Thread writerThread;
+
+    private final LongAdder enqueuedCount = new LongAdder();
+    private final LongAdder persistedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder synchronousWriteCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    /**
+     * Create a writer
+     * @param batchSize Maximum messages per INSERT batch
+     * @param flushIntervalMillis Longest a message waits in the queue when no full batch is ready
+     * @param queueCapacity Messages the queue holds before handlers write synchronously
+     * @param sink Where batches are written
+     */
+    ChatMessageWriter(int batchSize, long flushIntervalMillis, int queueCapacity, BatchSink sink) {
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.sink = sink;
+    }
+
+    /**
+     * Get the writer shared by all chat handlers, starting it on first use
+     */
+    static synchronized ChatMessageWriter getInstance() {
+        if (instance == null) {
+            ChatServerConfig config = ChatServerConfig.getInstance();
+            instance = new ChatMessageWriter(config.getWriteBehindBatchSize(),
+                    config.getWriteBehindFlushIntervalMillis(), config.getWriteBehindQueueCapacity(),
+                    ChatMessageWriter::insertBatch);
+            if (config.isWriteBehindEnabled()) {
+                instance.start();
+            } else {
+                // Every message is written by the handler that received it
+                instance.stopping = true;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Drain and stop the shared writer; the next {@link #getInstance()} starts a new one
+     * @param timeoutMillis How long to wait for the background thread to finish
+     */
+    static void shutdownInstance(long timeoutMillis) {
+        ChatMessageWriter current;
+        synchronized (ChatMessageWriter.class) {
+            current = instance;
+            instance = null;
+        }
+        if (current != null) {
+            current.shutdown(timeoutMillis);
+        }
+    }
+
+    /**
+     * Get statistics for the shared writer
+     * @return Write-behind metrics, or null if no writer is running
+     */
+    static synchronized WriteBehindMetrics getInstanceMetrics() {
+        return instance != null ? instance.getMetrics() : null;
+    }
+
+    /**
+     * Start the background writer thread
+     */
+    void start() {
+        writerThread = new Thread(this::runWriter, "chat-message-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queue a message for persistence, or write it now if the queue is full or stopped
+     * @return The queued message, whose delivery the receiver's connection tracks
+     */
+    PendingMessage enqueue(int senderId, int receiverId, String content, LocalDateTime timestamp) {
+        PendingMessage message = new PendingMessage(senderId, receiverId, content, timestamp);
+        if (stopping) {
+            writeSynchronously(message);
+            return message;
+        }
+
+        int newDepth = depth.incrementAndGet();
+        if (newDepth > queueCapacity) {
+            depth.decrementAndGet();
+            writeSynchronously(message);
+            return message;
+        }
+        maxDepth.accumulateAndGet(newDepth, Math::max);
+        queue.offer(message);
+        enqueuedCount.increment();
+
+        if (stopping) {
+            // Shutdown started after the check above; don't leave the message behind
+            drainRemaining();
+        } else if (newDepth == batchSize) {
+            LockSupport.unpark(writerThread);
+        }
+        return message;
+    }
+
+    /**
+     * Stop accepting queued messages and persist everything already queued
+     * @param timeoutMillis How long to wait for the background thread before draining on this thread
+     */
+    void shutdown(long timeoutMillis) {
+        stopping = true;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            try {
+                writerThread.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (writerThread.isAlive()) {
+                LOGGER.warning("Chat message writer did not finish within " + timeoutMillis
+                        + " ms, draining on the calling thread");
+            }
+        }
+        drainRemaining();
+        LOGGER.info("Chat message writer stopped: " + getMetrics());
+    }
+
+    /**
+     * Get a snapshot of write-behind statistics
+     */
+    WriteBehindMetrics getMetrics() {
+        return new WriteBehindMetrics(depth.get(), maxDepth.get(), queueCapacity, enqueuedCount.sum(),
+                persistedCount.sum(), batchCount.sum(), synchronousWriteCount.sum(), retryCount.sum(),
+                failedCount.sum(), flushLatency.getPercentileMicros(50), flushLatency.getPercentileMicros(99),
+                flushLatency.getMeanMicros());
+    }
+
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (!stopping) {
+            if (depth.get() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            // Write every full batch, then whatever is left once the interval has passed
+            while (drainBatch(batch) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        drainRemaining();
+    }
+
+    private void drainRemaining() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (drainBatch(batch) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private int drainBatch(List<PendingMessage> batch) {
+        PendingMessage message;
+        while (batch.size() < batchSize && (message = queue.poll()) != null) {
+            batch.add(message);
+        }
+        depth.addAndGet(-batch.size());
+        return batch.size();
+    }
+
+    private void writeBatch(List<PendingMessage> batch) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            long start = System.nanoTime();
+            try {
+                sink.write(batch);
+                flushLatency.record(System.nanoTime() - start);
+                persistedCount.add(batch.size());
+                batchCount.increment();
+                return;
+            } catch (SQLException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    LOGGER.log(Level.SEVERE, "Giving up on " + batch.size() + " chat messages after "
+                            + MAX_ATTEMPTS + " attempts", e);
+                    failedCount.add(batch.size());
+                    return;
+                }
+                LOGGER.log(Level.WARNING, "Error writing chat message batch, retrying", e);
+                retryCount.increment();
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void writeSynchronously(PendingMessage message) {
+        synchronousWriteCount.increment();
+        writeBatch(Collections.singletonList(message));
+    }
+
+    /**
+     * Write a batch to chat_messages in one transaction; the driver rewrites the
+     * JDBC batch into multi-row INSERT statements. Messages the receiver already
+     * confirmed are inserted as delivered; the others learn their row id afterwards.
+     * Every message is inserted unread until the receiver opens the conversation.
+     */
+    private static void insertBatch(List<PendingMessage> batch) throws SQLException {
+        DatabaseGate gate = DatabaseGate.getInstance();
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            conn = gate.getConnection();
+            conn.setAutoCommit(false);
+            ps = conn.prepareStatement(
+                "INSERT INTO chat_messages (sender_id, receiver_id, message, timestamp, is_read, is_delivered) " +
+                "VALUES (?, ?, ?, ?, false, ?)", Statement.RETURN_GENERATED_KEYS);
+
+            for (PendingMessage message : batch) {
+                ps.setInt(1, message.senderId);
+                ps.setInt(2, message.receiverId);
+                ps.setString(3, message.content);
+                ps.setTimestamp(4, Timestamp.valueOf(message.timestamp));
+                ps.setBoolean(5, message.bindDelivered());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+            int[] ids = new int[batch.size()];
+            rs = ps.getGeneratedKeys();
+            for (int i = 0; i < ids.length && rs.next(); i++) {
+                ids[i] = rs.getInt(1);
+            }
+            conn.commit();
+
+            // Only committed rows may be marked delivered
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] != 0) {
+                    batch.get(i).markWritten(ids[i]);
+                }
+            }
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackEx) {
+                    e.addSuppressed(rollbackEx);
+                }
+            }
+            throw e;
+        } finally {
+            // Returning the connection restores auto-commit
+            gate.closeResources(conn, ps, rs);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.ueadmission.config.ChatServerConfig;
 import com.ueadmission.db.DatabaseConnection;
 
 /**
@@ -22,26 +23,45 @@ public class ChatServer {
 
     private ServerSocket serverSocket;
     private boolean running;
+    private final String engine;
     private ExecutorService threadPool;
     private ClientManager clientManager;
+    private NioChatEngine nioEngine;
 
     /**
-     * Initialize the chat server
+     * Initialize the chat server with the engine from the configuration
      */
     public ChatServer() {
+        this(ChatServerConfig.getInstance().getServerEngine());
+    }
+
+    /**
+     * Initialize the chat server with a specific engine
+     * @param engine "blocking", "virtual" or "nio"
+     */
+    ChatServer(String engine) {
+        this.engine = engine;
         clientManager = new ClientManager();
-        threadPool = Executors.newCachedThreadPool();
+        // Virtual threads park on socket reads and the database gate without tying up a platform thread
+        threadPool = "virtual".equals(engine)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool();
     }
 
     /**
      * Start the server
      */
     public void start() {
+        if ("nio".equals(engine)) {
+            startNio(ChatServerConfig.getInstance());
+            return;
+        }
+
         try {
             serverSocket = new ServerSocket(SERVER_PORT);
             running = true;
 
-            LOGGER.info("Chat server started on port " + SERVER_PORT);
+            LOGGER.info("Chat server started on port " + SERVER_PORT + " (" + engine + " engine)");
 
             // Reset all users to offline status when server starts
             resetAllUserStatus();
@@ -54,12 +74,31 @@ public class ChatServer {
         }
     }
 
+    /**
+     * Start the selector-based engine instead of a thread per client
+     */
+    private void startNio(ChatServerConfig config) {
+        nioEngine = new NioChatEngine(SERVER_PORT, clientManager, config.getNioEventLoops(),
+                config.getNioWorkerThreads(), config.getNioMaxPendingWriteBytes());
+        try {
+            nioEngine.start();
+            running = true;
+            LOGGER.info("Chat server started on port " + SERVER_PORT + " (nio engine)");
+            resetAllUserStatus();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error starting chat server", e);
+            nioEngine.stop();
+            nioEngine = null;
+        }
+    }
+
     /**
      * Reset all user status to offline in the database
      */
     private void resetAllUserStatus() {
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
+            conn = DatabaseConnection.getConnection();
             PreparedStatement ps = conn.prepareStatement(
                 "UPDATE user_status SET status = 'offline', last_active = NOW()");
             ps.executeUpdate();
@@ -67,6 +106,8 @@ public class ChatServer {
             LOGGER.info("Reset all users to offline status");
         } catch (SQLException e) {
             LOGGER.log(Level.WARNING, "Could not reset user status in database", e);
+        } finally {
+            DatabaseConnection.releaseConnection(conn);
         }
     }
 
@@ -81,6 +122,7 @@ public class ChatServer {
 
                 // Handle each client in a separate thread
                 ClientHandler handler = new ClientHandler(clientSocket, clientManager);
+                clientManager.trackConnection(handler);
                 threadPool.submit(handler);
 
             } catch (IOException e) {
@@ -106,10 +148,78 @@ public class ChatServer {
             LOGGER.log(Level.WARNING, "Error closing server socket", e);
         }
 
+        if (nioEngine != null) {
+            nioEngine.stop();
+            nioEngine = null;
+        }
+
+        // Persist messages still waiting in the write-behind queue
+        ChatMessageWriter.shutdownInstance(ChatServerConfig.getInstance().getWriteBehindShutdownTimeoutMillis());
+
+        // Only now, since writing a message already confirmed by its receiver queues its delivery receipt
+        clientManager.shutdown();
+
         threadPool.shutdown();
         LOGGER.info("Chat server stopped");
     }
 
+    /**
+     * Get the number of authenticated clients
+     */
+    int getConnectedClientCount() {
+        return clientManager.getConnectedClientCount();
+    }
+
+    /**
+     * Get a snapshot of the chat message write-behind queue
+     * @return Write-behind metrics, or null before the first message handler starts
+     */
+    public WriteBehindMetrics getWriteBehindMetrics() {
+        return ChatMessageWriter.getInstanceMetrics();
+    }
+
+    /**
+     * Get a snapshot of the per-client outbound queues
+     */
+    public OutboundQueueMetrics getOutboundMetrics() {
+        return clientManager.getOutboundMetrics();
+    }
+
+    /**
+     * Get a snapshot of the broadcast fan-out statistics
+     */
+    public BroadcastMetrics getBroadcastMetrics() {
+        return clientManager.getBroadcastMetrics();
+    }
+
+    /**
+     * Get a snapshot of the presence statistics
+     */
+    public PresenceMetrics getPresenceMetrics() {
+        return clientManager.getPresenceMetrics();
+    }
+
+    /**
+     * Get a snapshot of the heartbeat statistics, including connections closed for being idle
+     */
+    public HeartbeatMetrics getHeartbeatMetrics() {
+        return clientManager.getHeartbeatMetrics();
+    }
+
+    /**
+     * Get a snapshot of the commands refused by the per-client rate limits
+     */
+    public RateLimitMetrics getRateLimitMetrics() {
+        return clientManager.getRateLimitMetrics();
+    }
+
+    /**
+     * Get a snapshot of the direct message confirmations and saved delivery state
+     */
+    public DeliveryMetrics getDeliveryMetrics() {
+        return clientManager.getDeliveryMetrics();
+    }
+
     /**
      * Main method to start the server
      */
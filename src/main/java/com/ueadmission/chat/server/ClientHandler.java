@@ -1,33 +1,114 @@
 package com.ueadmission.chat.server;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.ueadmission.chat.protocol.ChatProtocol;
+import com.ueadmission.config.ChatServerConfig;
 import com.ueadmission.db.DatabaseConnection;
 
 /**
- * Handles communication with a single chat client
+ * Handles communication with a single chat client.
+ * The protocol logic is independent of the transport: the blocking engine runs
+ * one handler per thread via {@link #run()}, the NIO engine feeds it lines
+ * through {@link #processMessage(String)} and binary frames through
+ * {@link #processFrame(byte[])}. Clients that ask for the binary protocol in
+ * their AUTH line receive every later message as a binary frame. Every line or
+ * frame received counts as activity for the {@link IdleTimerWheel}. Direct
+ * messages, broadcasts and status updates each have a token bucket of their
+ * own, and commands over the limit are refused before they reach the database.
+ * Clients that ask for numbered delivery in their AUTH line receive direct
+ * messages, live or replayed, numbered per connection by a {@link DeliveryTracker},
+ * and they are marked delivered once the client confirms them; they stay
+ * unread until the receiver opens the conversation. Other clients receive
+ * plain messages, and each replayed page is marked read as soon as it is
+ * written to them.
  */
-public class ClientHandler implements Runnable {
+public class ClientHandler implements Runnable, IdleTimerWheel.Session {
     private static final Logger LOGGER = Logger.getLogger(ClientHandler.class.getName());
+    private static final long REPLAY_WRITE_TIMEOUT_MILLIS = 10000;
+    private static final byte[] PING_LINE = (ChatProtocol.PING_LINE + "\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PING_FRAME = ChatProtocol.encodePing();
 
-    private Socket clientSocket;
-    private BufferedReader reader;
-    private PrintWriter writer;
+    private final ClientTransport transport;
     private ClientManager clientManager;
-    private int userId = -1;
-    private boolean authenticated = false;
+    private final DatabaseGate databaseGate = DatabaseGate.getInstance();
+    private final ChatMessageWriter messageWriter = ChatMessageWriter.getInstance();
+    private volatile int userId = -1;
+    private volatile String role;
+    private volatile boolean authenticated = false;
+    private volatile boolean binaryProtocol = false;
+    private volatile boolean numberedDelivery = false;
+    private final AtomicBoolean disconnected = new AtomicBoolean(false);
+    private final RateLimitPolicy rateLimitPolicy;
+    private final TokenBucket[] rateLimits;
+    private volatile long lastActivityNanos = System.nanoTime();
+    private final DeliveryTracker deliveries;
+    private final int replayPageSize;
+    private final String markReadSql;
+
+    // Decoded commands from either protocol land here
+    private final CommandDecoder.Sink commands = new CommandDecoder.Sink() {
+        @Override
+        public void onAuth(int authUserId, boolean binary, boolean numbered) {
+            // Options are confirmed in the order they were requested, binary frames last
+            if (numbered) {
+                sendMessage(ChatProtocol.DELIVERY_ACK);
+                numberedDelivery = true;
+            }
+            // Switch to binary frames before anything else is sent if the client asks for them
+            if (binary) {
+                sendMessage(ChatProtocol.BINARY_ACK);
+                binaryProtocol = true;
+            }
+            authenticate(authUserId);
+        }
+
+        @Override
+        public void onDirectMessage(int receiverId, String content) {
+            if (withinRateLimit(RateLimitPolicy.Command.DIRECT_MESSAGE)) {
+                handleDirectMessage(receiverId, content);
+            }
+        }
+
+        @Override
+        public void onQueuedMessage(int sequence, int receiverId, long timestampMillis, String content) {
+            // Refused messages get no ACK, so the client keeps them and sends them again later
+            if (withinRateLimit(RateLimitPolicy.Command.DIRECT_MESSAGE)) {
+                handleQueuedMessage(sequence, receiverId, timestampMillis, content);
+            }
+        }
+
+        @Override
+        public void onDelivered(int sequence) {
+            deliveries.acknowledge(sequence);
+        }
+
+        @Override
+        public void onBroadcast(String content) {
+            if (withinRateLimit(RateLimitPolicy.Command.BROADCAST)) {
+                handleBroadcastMessage(content);
+            }
+        }
+
+        @Override
+        public void onStatus(String status) {
+            if (withinRateLimit(RateLimitPolicy.Command.STATUS)) {
+                handleStatusUpdate(status);
+            }
+        }
+    };
 
     /**
      * Create a new client handler
@@ -35,26 +116,49 @@ public class ClientHandler implements Runnable {
      * @param clientManager The client manager for tracking all clients
      */
     public ClientHandler(Socket clientSocket, ClientManager clientManager) {
-        this.clientSocket = clientSocket;
-        this.clientManager = clientManager;
+        this(new SocketTransport(clientSocket, clientManager.getOutboundPolicy()), clientManager);
+    }
 
-        try {
-            this.reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            this.writer = new PrintWriter(clientSocket.getOutputStream(), true);
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Error creating client streams", e);
-        }
+    /**
+     * Create a new client handler on an existing transport
+     * @param transport The connection to the client
+     * @param clientManager The client manager for tracking all clients
+     */
+    ClientHandler(ClientTransport transport, ClientManager clientManager) {
+        this.transport = transport;
+        this.clientManager = clientManager;
+        this.rateLimitPolicy = clientManager.getRateLimitPolicy();
+        this.rateLimits = rateLimitPolicy.newBuckets();
+        this.deliveries = new DeliveryTracker(clientManager.getDeliveryReceipts());
+        this.replayPageSize = Math.max(1, ChatServerConfig.getInstance().getReplayPageSize());
+        this.markReadSql = "UPDATE chat_messages SET is_read = true WHERE id IN ("
+                + String.join(", ", Collections.nCopies(replayPageSize, "?")) + ")";
     }
 
     /**
-     * Handle client messages
+     * Handle client messages on the blocking engine
      */
     @Override
     public void run() {
+        if (!(transport instanceof SocketTransport)) {
+            throw new IllegalStateException("Only socket transports are read by a dedicated thread");
+        }
+        SocketTransport socketTransport = (SocketTransport) transport;
         try {
-            String message;
-            while ((message = reader.readLine()) != null) {
-                processMessage(message);
+            while (true) {
+                if (binaryProtocol) {
+                    byte[] frame = socketTransport.readFrame();
+                    if (frame == null) {
+                        break;
+                    }
+                    processFrame(frame);
+                } else {
+                    String message = socketTransport.readLine();
+                    if (message == null) {
+                        break;
+                    }
+                    processMessage(message);
+                }
             }
         } catch (IOException e) {
             LOGGER.log(Level.INFO, "Client disconnected", e);
@@ -64,41 +168,16 @@ public class ClientHandler implements Runnable {
     }
 
     /**
-     * Process a message from the client
+     * Process a message from the client. Calls for one client must not overlap.
      */
-    private void processMessage(String message) {
+    void processMessage(String message) {
+        lastActivityNanos = System.nanoTime();
         try {
-            if (message.startsWith("AUTH:")) {
-                // Handle authentication
-                String[] parts = message.split(":", 2);
-                if (parts.length == 2) {
-                    authenticate(Integer.parseInt(parts[1]));
-                }
-            } else if (!authenticated) {
+            if (!authenticated && !message.startsWith("AUTH:")) {
                 // Reject messages from unauthenticated clients
                 sendError("Not authenticated");
-            } else if (message.startsWith("MSG:")) {
-                // Handle direct message
-                String[] parts = message.split(":", 3);
-                if (parts.length == 3) {
-                    int receiverId = Integer.parseInt(parts[1]);
-                    String content = parts[2];
-                    handleDirectMessage(receiverId, content);
-                }
-            } else if (message.startsWith("BROADCAST:")) {
-                // Handle broadcast message
-                String[] parts = message.split(":", 2);
-                if (parts.length == 2) {
-                    String content = parts[1];
-                    handleBroadcastMessage(content);
-                }
-            } else if (message.startsWith("STATUS:")) {
-                // Handle status update
-                String[] parts = message.split(":", 2);
-                if (parts.length == 2) {
-                    String status = parts[1];
-                    handleStatusUpdate(status);
-                }
+            } else {
+                CommandDecoder.decodeLine(message, commands);
             }
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Error processing message: " + message, e);
@@ -106,6 +185,24 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Process a binary frame from the client. Calls for one client must not overlap.
+     * @param payload Opcode and body of the frame, without the length prefix
+     */
+    void processFrame(byte[] payload) {
+        lastActivityNanos = System.nanoTime();
+        try {
+            if (!authenticated) {
+                sendError("Not authenticated");
+            } else {
+                CommandDecoder.decodeFrame(payload, commands);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error processing frame from user " + userId, e);
+            sendError("Error processing message: " + e.getMessage());
+        }
+    }
+
     /**
      * Authenticate a client
      */
@@ -116,12 +213,9 @@ public class ClientHandler implements Runnable {
                 this.userId = userId;
                 this.authenticated = true;
 
-                // Register client with manager
+                // Register client with manager, which also records the user as online
                 clientManager.registerClient(userId, this);
 
-                // Update user status in the database
-                updateUserStatus("online");
-
                 LOGGER.info("User " + userId + " authenticated");
 
                 // Send stored offline messages if any
@@ -136,19 +230,22 @@ public class ClientHandler implements Runnable {
     }
 
     /**
-     * Verify user exists in the database
+     * Verify user exists in the database and load the user's role
      */
     private boolean verifyUser(int userId) {
         Connection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseConnection.getConnection();
-            ps = conn.prepareStatement("SELECT id FROM users WHERE id = ?");
+            conn = databaseGate.getConnection();
+            ps = conn.prepareStatement("SELECT role FROM users WHERE id = ?");
             ps.setInt(1, userId);
 
             rs = ps.executeQuery();
             boolean userExists = rs.next();
+            if (userExists) {
+                role = rs.getString(1);
+            }
 
             return userExists;
         } catch (SQLException e) {
@@ -156,41 +253,69 @@ public class ClientHandler implements Runnable {
             return false;
         } finally {
             // Close resources
-            DatabaseConnection.closeResources(ps, rs);
+            databaseGate.closeResources(conn, ps, rs);
         }
     }
 
+    /**
+     * Take a token for a command, or refuse the command if the client is over its limit
+     */
+    private boolean withinRateLimit(RateLimitPolicy.Command command) {
+        TokenBucket bucket = rateLimits[command.ordinal()];
+        if (bucket == null || bucket.tryAcquire()) {
+            return true;
+        }
+        rateLimitPolicy.recordRejected(command);
+        sendError("Rate limit exceeded for " + command.getLabel());
+        return false;
+    }
+
     /**
      * Handle direct message
      */
     private void handleDirectMessage(int receiverId, String content) {
         // Get current timestamp
         LocalDateTime timestamp = LocalDateTime.now();
-        String formattedTimestamp = timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
 
-        // Store message in database
-        storeMessage(userId, receiverId, content, timestamp);
+        // Queue the message for the database; it is written in the background
+        ChatMessageWriter.PendingMessage pending = messageWriter.enqueue(userId, receiverId, content, timestamp);
 
         // Try to send to receiver if online
-        boolean delivered = clientManager.sendMessageToClient(receiverId,
-                "MSG:" + userId + ":" + formattedTimestamp + ":" + content);
+        boolean delivered = clientManager.sendDirectMessage(receiverId, userId, timestamp, content, pending);
 
         if (!delivered) {
             LOGGER.info("Message stored for offline user " + receiverId);
         }
     }
 
+    /**
+     * Handle a message the client wrote while it was offline and acknowledge it.
+     * It keeps the time it was written, as long as that is not in the future.
+     */
+    private void handleQueuedMessage(int sequence, int receiverId, long timestampMillis, String content) {
+        long now = System.currentTimeMillis();
+        LocalDateTime timestamp = ChatProtocol.toLocalDateTime(Math.min(timestampMillis, now));
+
+        ChatMessageWriter.PendingMessage pending = messageWriter.enqueue(userId, receiverId, content, timestamp);
+        clientManager.sendDirectMessage(receiverId, userId, timestamp, content, pending);
+
+        // The message is accepted once the writer has it; the client may drop its copy
+        if (binaryProtocol) {
+            transport.sendRaw(ChatProtocol.encodeAck(sequence));
+        } else {
+            sendMessage(ChatProtocol.ACK_PREFIX + sequence);
+        }
+    }
+
     /**
      * Handle broadcast message
      */
     private void handleBroadcastMessage(String content) {
         // Get current timestamp
         LocalDateTime timestamp = LocalDateTime.now();
-        String formattedTimestamp = timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
 
-        // Broadcast to all connected clients except sender
-        clientManager.broadcastMessage(userId,
-                "MSG:" + userId + ":" + formattedTimestamp + ":" + content);
+        // Broadcast to all connected clients except sender; each encoding is built once
+        clientManager.broadcastMessage(userId, OutboundFrame.message(userId, timestamp, content));
 
         // Store broadcast message in database for offline users
         storeBroadcastMessage(userId, content, timestamp);
@@ -200,181 +325,253 @@ public class ClientHandler implements Runnable {
      * Handle status update
      */
     private void handleStatusUpdate(String status) {
-        // Update user status in database
-        updateUserStatus(status);
-
-        // Broadcast status update to other clients
-        clientManager.broadcastStatus(userId, status);
+        // Announced to other clients and saved in the database once it has settled
+        clientManager.updateStatus(userId, status);
     }
 
     /**
-     * Store message in database
+     * Store broadcast message in database.
+     * One row per recipient is written by a single INSERT ... SELECT, so the
+     * fan-out stays on the database server instead of one round trip per user.
      */
-    private void storeMessage(int senderId, int receiverId, String content, LocalDateTime timestamp) {
+    private void storeBroadcastMessage(int senderId, String content, LocalDateTime timestamp) {
         Connection conn = null;
         PreparedStatement ps = null;
         try {
-            conn = DatabaseConnection.getConnection();
+            conn = databaseGate.getConnection();
             ps = conn.prepareStatement(
                 "INSERT INTO chat_messages (sender_id, receiver_id, message, timestamp, is_read) " +
-                "VALUES (?, ?, ?, ?, false)");
+                "SELECT ?, id, ?, ?, false FROM users WHERE id != ?");
 
             ps.setInt(1, senderId);
-            ps.setInt(2, receiverId);
-            ps.setString(3, content);
-            ps.setTimestamp(4, java.sql.Timestamp.valueOf(timestamp));
+            ps.setString(2, content);
+            ps.setTimestamp(3, java.sql.Timestamp.valueOf(timestamp));
+            ps.setInt(4, senderId);
 
-            ps.executeUpdate();
+            int recipients = ps.executeUpdate();
+            LOGGER.fine("Stored broadcast from user " + senderId + " for " + recipients + " recipients");
         } catch (SQLException e) {
-            LOGGER.log(Level.WARNING, "Error storing message in database", e);
+            LOGGER.log(Level.WARNING, "Error storing broadcast message", e);
         } finally {
             // Close resources
-            DatabaseConnection.closeResources(ps, null);
+            databaseGate.closeResources(conn, ps, null);
         }
     }
 
     /**
-     * Store broadcast message in database
+     * Send stored messages to client.
+     * Unread messages not yet delivered are paged by id with a keyset cursor, which
+     * the receiver_id index serves directly since InnoDB secondary indexes end with
+     * the primary key. Each page is flushed to the client at once, on its own
+     * connection lease so no permit is held while the client catches up. For a
+     * client with numbered delivery the messages stay undelivered until it
+     * confirms them, so confirmations still waiting to be saved are saved first
+     * and the replay resumes right after the last confirmed one. For other clients each page is marked read
+     * with one UPDATE once it is written.
      */
-    private void storeBroadcastMessage(int senderId, String content, LocalDateTime timestamp) {
-        Connection conn = null;
-        PreparedStatement getUsersPs = null;
-        ResultSet rs = null;
-        try {
-            conn = DatabaseConnection.getConnection();
+    private void sendStoredMessages() {
+        if (numberedDelivery) {
+            clientManager.getDeliveryReceipts().flush();
+        }
 
-            // Get all user IDs except the sender
-            getUsersPs = conn.prepareStatement(
-                "SELECT id FROM users WHERE id != ?");
-            getUsersPs.setInt(1, senderId);
+        StoredPage page = new StoredPage(replayPageSize);
+        int afterId = 0;
+        int total = 0;
 
-            rs = getUsersPs.executeQuery();
+        while (true) {
+            int count = replayPage(afterId, page);
+            if (count <= 0) {
+                break;
+            }
+            total += count;
+            afterId = page.lastId;
 
-            // Store message for each user
-            while (rs.next()) {
-                int receiverId = rs.getInt("id");
-                storeMessage(senderId, receiverId, content, timestamp);
+            if (count < replayPageSize) {
+                break;
+            }
+            if (!transport.awaitWritable(REPLAY_WRITE_TIMEOUT_MILLIS)) {
+                LOGGER.warning("User " + userId + " stopped reading during offline replay, "
+                        + "remaining messages stay unread");
+                break;
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.WARNING, "Error storing broadcast message", e);
-        } finally {
-            // Close resources
-            DatabaseConnection.closeResources(getUsersPs, rs);
         }
-    }
 
-    /**
-     * Update user status in database
-     */
-    private void updateUserStatus(String status) {
-        Connection conn = null;
-        PreparedStatement ps = null;
-        try {
-            conn = DatabaseConnection.getConnection();
-            ps = conn.prepareStatement(
-                "INSERT INTO user_status (user_id, status, last_active) VALUES (?, ?, NOW()) " +
-                "ON DUPLICATE KEY UPDATE status = ?, last_active = NOW()");
-
-            ps.setInt(1, userId);
-            ps.setString(2, status);
-            ps.setString(3, status);
-
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            LOGGER.log(Level.WARNING, "Error updating user status in database", e);
-        } finally {
-            // Close resources
-            DatabaseConnection.closeResources(ps, null);
+        if (total > 0) {
+            LOGGER.info("Replayed " + total + " stored messages to user " + userId);
         }
     }
 
     /**
-     * Send stored messages to client
+     * Send one page of unread messages after the cursor, marking it read unless the client confirms it
+     * @param afterId Keyset cursor, the last message id of the previous page
+     * @param page Scratch space, receives the last message id of the page
+     * @return The number of messages in the page, or -1 on a database error
      */
-    private void sendStoredMessages() {
+    private int replayPage(int afterId, StoredPage page) {
         Connection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
         try {
-            conn = DatabaseConnection.getConnection();
+            conn = databaseGate.getConnection();
             ps = conn.prepareStatement(
-                "SELECT sender_id, message, timestamp, id FROM chat_messages " +
-                "WHERE receiver_id = ? AND is_read = false ORDER BY timestamp ASC");
+                "SELECT id, sender_id, message, timestamp FROM chat_messages " +
+                "WHERE receiver_id = ? AND is_read = false AND is_delivered = false AND id > ? " +
+                "ORDER BY id LIMIT ?");
 
             ps.setInt(1, userId);
+            ps.setInt(2, afterId);
+            ps.setInt(3, replayPageSize);
 
             rs = ps.executeQuery();
 
-            // Check if we got a valid result set
-            if (rs == null) {
-                LOGGER.warning("Query returned null ResultSet");
-                return;
-            }
-
+            int count = 0;
+            page.size = 0;
             while (rs.next()) {
-                try {
-                    int senderId = rs.getInt("sender_id");
-                    String content = rs.getString("message");
-                    java.sql.Timestamp sqlTimestamp = rs.getTimestamp("timestamp");
-                    int messageId = rs.getInt("id");
-
-                    if (sqlTimestamp == null) {
-                        LOGGER.warning("Null timestamp for message ID " + messageId);
-                        continue;
+                int messageId = rs.getInt(1);
+                page.rowIds[count++] = messageId;
+                page.lastId = messageId;
+
+                java.sql.Timestamp sqlTimestamp = rs.getTimestamp(4);
+                if (sqlTimestamp == null) {
+                    LOGGER.warning("Null timestamp for message ID " + messageId);
+                    if (numberedDelivery) {
+                        // Never sent, so marked delivered right away instead of coming back on every login
+                        clientManager.getDeliveryReceipts().add(messageId);
                     }
+                    continue;
+                }
+                page.add(messageId, rs.getInt(2), sqlTimestamp.getTime(), rs.getString(3));
+            }
 
-                    LocalDateTime timestamp = sqlTimestamp.toLocalDateTime();
-
-                    // Send message to client
-                    String formattedTimestamp = timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                    sendMessage("MSG:" + senderId + ":" + formattedTimestamp + ":" + content);
-
-                    // Mark message as read
-                    markMessageAsRead(messageId);
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.WARNING, "Error processing a message in ResultSet", ex);
-                    // Continue with the next message instead of failing completely
+            if (numberedDelivery) {
+                if (page.size > 0) {
+                    deliverStored(page);
                 }
+            } else if (count > 0) {
+                deliverPlain(page);
+                markMessagesAsRead(conn, page.rowIds, count);
             }
+            return count;
         } catch (SQLException e) {
             LOGGER.log(Level.WARNING, "Error sending stored messages", e);
+            return -1;
         } finally {
             // Close resources in reverse order of acquisition
-            DatabaseConnection.closeResources(ps, rs);
+            databaseGate.closeResources(conn, ps, rs);
         }
     }
 
     /**
-     * Mark message as read
+     * One page of stored messages, reused for every page of a replay
      */
-    private void markMessageAsRead(int messageId) {
-        Connection conn = null;
-        PreparedStatement ps = null;
-        try {
-            conn = DatabaseConnection.getConnection();
-            ps = conn.prepareStatement(
-                "UPDATE chat_messages SET is_read = true WHERE id = ?");
+    private static final class StoredPage {
+        final int[] rowIds;
+        final int[] messageIds;
+        final int[] senderIds;
+        final long[] timestampsMillis;
+        final String[] contents;
+        int size;
+        int lastId;
+
+        StoredPage(int capacity) {
+            rowIds = new int[capacity];
+            messageIds = new int[capacity];
+            senderIds = new int[capacity];
+            timestampsMillis = new long[capacity];
+            contents = new String[capacity];
+        }
 
-            ps.setInt(1, messageId);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            LOGGER.log(Level.WARNING, "Error marking message as read", e);
-        } finally {
-            // Close resources
-            DatabaseConnection.closeResources(ps, null);
+        void add(int messageId, int senderId, long timestampMillis, String content) {
+            messageIds[size] = messageId;
+            senderIds[size] = senderId;
+            timestampsMillis[size] = timestampMillis;
+            contents[size++] = content;
         }
     }
 
     /**
-     * Send a message to the client
+     * Send a text line to the client
      */
     public void sendMessage(String message) {
+        transport.send(message);
+    }
+
+    /**
+     * Send a message to the client in the protocol it negotiated
+     */
+    void deliver(OutboundFrame frame) {
+        // The encoded bytes are shared by every recipient of the frame
+        transport.sendRaw(frame.getEncoded(binaryProtocol));
+    }
+
+    /**
+     * Send a live direct message, numbered for this connection if the client asked for it
+     * @param pending The message as queued for the database, marked once the client confirms it
+     */
+    void deliverDirect(int senderId, LocalDateTime timestamp, String content,
+                       ChatMessageWriter.PendingMessage pending) {
+        if (!numberedDelivery) {
+            deliver(OutboundFrame.message(senderId, timestamp, content));
+            return;
+        }
+        long timestampMillis = ChatProtocol.toEpochMillis(timestamp);
+        // Numbering and queuing under one lock keeps the numbers in the order they are sent
+        synchronized (deliveries) {
+            int sequence = deliveries.trackLive(pending);
+            transport.sendRaw(encodeDirect(sequence, senderId, timestampMillis, content));
+        }
+    }
+
+    /**
+     * Send a page of stored messages to the client in one flush, each numbered for this connection
+     */
+    private void deliverStored(StoredPage page) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        synchronized (deliveries) {
+            for (int i = 0; i < page.size; i++) {
+                int sequence = deliveries.trackStored(page.messageIds[i]);
+                buffer.writeBytes(encodeDirect(sequence, page.senderIds[i], page.timestampsMillis[i],
+                        page.contents[i]));
+            }
+            transport.sendRaw(buffer.toByteArray());
+        }
+    }
+
+    private byte[] encodeDirect(int sequence, int senderId, long timestampMillis, String content) {
+        if (binaryProtocol) {
+            return ChatProtocol.encodeDirectMessage(sequence, senderId, timestampMillis, content);
+        }
+        return (ChatProtocol.directMessageLine(sequence, senderId, timestampMillis, content) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Send a page of stored messages to a client without numbered delivery in one flush
+     */
+    private void deliverPlain(StoredPage page) {
+        boolean binary = binaryProtocol;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (int i = 0; i < page.size; i++) {
+            buffer.writeBytes(OutboundFrame.message(page.senderIds[i],
+                    ChatProtocol.toLocalDateTime(page.timestampsMillis[i]), page.contents[i]).getEncoded(binary));
+        }
+        transport.sendRaw(buffer.toByteArray());
+    }
+
+    /**
+     * Mark a page of messages as read with one UPDATE.
+     * The id list is padded with the last id so every page uses the same cached statement.
+     */
+    private void markMessagesAsRead(Connection conn, int[] messageIds, int count) throws SQLException {
+        PreparedStatement ps = null;
         try {
-            if (writer != null && !clientSocket.isClosed()) {
-                writer.println(message);
+            ps = conn.prepareStatement(markReadSql);
+            for (int i = 0; i < replayPageSize; i++) {
+                ps.setInt(i + 1, messageIds[Math.min(i, count - 1)]);
             }
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Error sending message to client", e);
+            ps.executeUpdate();
+        } finally {
+            DatabaseConnection.closeResources(ps, null);
         }
     }
 
@@ -382,38 +579,66 @@ public class ClientHandler implements Runnable {
      * Send an error message to the client
      */
     private void sendError(String errorMessage) {
-        sendMessage("ERROR:" + errorMessage);
+        deliver(OutboundFrame.error(errorMessage));
+    }
+
+    @Override
+    public long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !disconnected.get() && transport.isOpen();
+    }
+
+    @Override
+    public void sendPing() {
+        // A client that has not authenticated yet gets no PING and is closed once idle
+        if (authenticated) {
+            transport.sendRaw(binaryProtocol ? PING_FRAME : PING_LINE);
+        }
+    }
+
+    @Override
+    public boolean expire() {
+        LOGGER.info("Closing idle connection " + (authenticated ? "of user " + userId : "from " + transport.getRemoteAddress()));
+        disconnect();
+        // The blocking engines dedicate a thread to each socket, which ends once the socket is closed
+        return transport instanceof SocketTransport;
     }
 
     /**
      * Disconnect client
      */
     public void disconnect() {
-        try {
-            if (authenticated) {
-                // Update user status to offline
-                updateUserStatus("offline");
+        // Both the server shutdown and the reading side end up here
+        if (!disconnected.compareAndSet(false, true)) {
+            return;
+        }
 
-                // Unregister from client manager
-                clientManager.unregisterClient(userId);
+        if (authenticated) {
+            // Unregister from client manager, which also records the user as offline
+            clientManager.unregisterClient(userId, this);
 
-                LOGGER.info("User " + userId + " disconnected");
-            }
+            LOGGER.info("User " + userId + " disconnected");
+        }
 
-            if (clientSocket != null && !clientSocket.isClosed()) {
-                clientSocket.close();
-            }
+        transport.close();
+    }
 
-            if (reader != null) {
-                reader.close();
-            }
+    /**
+     * Get the number of frames waiting to be written to this client
+     */
+    int getQueuedFrames() {
+        return transport.getQueuedFrames();
+    }
 
-            if (writer != null) {
-                writer.close();
-            }
-        } catch (IOException e) {
-            LOGGER.log(Level.WARNING, "Error disconnecting client", e);
-        }
+    /**
+     * Get the number of bytes waiting to be written to this client
+     */
+    long getPendingWriteBytes() {
+        return transport.getPendingWriteBytes();
     }
 
     /**
@@ -422,4 +647,12 @@ public class ClientHandler implements Runnable {
     public int getUserId() {
         return userId;
     }
+
+    /**
+     * Get the role of the authenticated user
+     * @return The role, or null before authentication
+     */
+    public String getRole() {
+        return role;
+    }
 }
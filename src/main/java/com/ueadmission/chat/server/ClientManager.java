@@ -1,48 +1,143 @@
 package com.ueadmission.chat.server;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
+import com.ueadmission.config.ChatServerConfig;
+
 /**
- * Manages connected clients and routes messages between them
+ * Manages connected clients and routes messages between them.
+ * Sending only queues a frame on each recipient's connection, so a slow client
+ * never holds up the sender; see {@link OutboundPolicy}. Broadcasts are spread
+ * over parallel shards by {@link BroadcastFanOut}. Status changes go through
+ * the {@link PresenceService}, which announces them in periodic digests to the
+ * clients whose role can see the user; see {@link PresenceSubscriptions}.
+ * Every connection is watched by an {@link IdleTimerWheel}, which pings quiet
+ * clients and closes silent ones. How fast each client may send is set by the
+ * shared {@link RateLimitPolicy}. Stored direct messages confirmed by their
+ * receivers are marked delivered in batches by the shared {@link DeliveryReceipts}.
  */
 public class ClientManager {
     private static final Logger LOGGER = Logger.getLogger(ClientManager.class.getName());
+    private static final int IDLE_WHEEL_SIZE = 512;
 
     private Map<Integer, ClientHandler> connectedClients = new ConcurrentHashMap<>();
+    private final OutboundPolicy outboundPolicy;
+    private final RateLimitPolicy rateLimitPolicy;
+    private final BroadcastFanOut fanOut;
+    private final PresenceSubscriptions subscriptions = new PresenceSubscriptions();
+    private final PresenceService presence;
+    private final IdleTimerWheel idleWheel;
+    private final boolean heartbeatEnabled;
+    private final DeliveryReceipts deliveryReceipts;
+
+    /**
+     * Create a client manager with the outbound queue limits and broadcast shards from the configuration
+     */
+    public ClientManager() {
+        this(OutboundPolicy.fromConfig(ChatServerConfig.getInstance()),
+                resolveShardCount(ChatServerConfig.getInstance().getBroadcastShards()),
+                PresenceService::upsertStatuses,
+                new DeliveryReceipts(ChatServerConfig.getInstance().getDeliveryReceiptsFlushIntervalMillis(),
+                        DeliveryReceipts::markDeliveredRanges));
+        presence.start();
+        deliveryReceipts.start();
+        if (heartbeatEnabled) {
+            idleWheel.start();
+        }
+    }
 
     /**
-     * Register a client
+     * Create a client manager whose presence changes are only announced and saved at shutdown,
+     * whose connections are never checked for idleness and whose delivery state is never saved
+     * @param statusStore Where settled status changes are saved
      */
-    public void registerClient(int userId, ClientHandler handler) {
+    ClientManager(OutboundPolicy outboundPolicy, int broadcastShards, PresenceService.StatusStore statusStore) {
+        this(outboundPolicy, broadcastShards, statusStore, new DeliveryReceipts(Long.MAX_VALUE, (first, last, count) -> { }));
+    }
+
+    /**
+     * Create a client manager with its own delivery state writer, which is not started
+     * @param statusStore Where settled status changes are saved
+     * @param deliveryReceipts Where confirmed stored messages are marked delivered
+     */
+    ClientManager(OutboundPolicy outboundPolicy, int broadcastShards, PresenceService.StatusStore statusStore,
+                  DeliveryReceipts deliveryReceipts) {
+        ChatServerConfig config = ChatServerConfig.getInstance();
+        this.outboundPolicy = outboundPolicy;
+        this.rateLimitPolicy = RateLimitPolicy.fromConfig(config);
+        this.fanOut = new BroadcastFanOut(broadcastShards);
+        this.presence = PresenceService.fromConfig(config, subscriptions, statusStore);
+        this.deliveryReceipts = deliveryReceipts;
+
+        int pingIntervalMillis = config.getHeartbeatPingIntervalMillis();
+        this.heartbeatEnabled = config.getHeartbeatIdleTimeoutMillis() > 0;
+        this.idleWheel = new IdleTimerWheel(Math.max(10, Math.min(1000, pingIntervalMillis / 10)), IDLE_WHEEL_SIZE,
+                pingIntervalMillis, config.getHeartbeatIdleTimeoutMillis());
+    }
+
+    /**
+     * Start watching a new connection for idleness, whether or not it has authenticated yet
+     */
+    void trackConnection(ClientHandler handler) {
+        if (heartbeatEnabled) {
+            idleWheel.add(handler);
+        }
+    }
+
+    /**
+     * Resolve the configured shard count, where 0 means one shard per processor
+     */
+    private static int resolveShardCount(int configured) {
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Register a client; a newer connection of the same user replaces the older one
+     */
+    public synchronized void registerClient(int userId, ClientHandler handler) {
         connectedClients.put(userId, handler);
+        fanOut.add(userId, handler);
+        subscriptions.subscribe(userId, handler.getRole(), handler);
         LOGGER.info("Client registered: User ID " + userId);
 
-        // Broadcast status update to other clients
-        broadcastStatus(userId, "online");
+        // Clients that can see the user hear about it in the next presence digest
+        presence.update(userId, PresenceService.ONLINE);
     }
 
     /**
-     * Unregister a client
+     * Unregister a client. A connection the user already replaced, such as a
+     * half-open one reaped after the client reconnected, leaves the newer
+     * connection registered and the user online.
      */
-    public void unregisterClient(int userId) {
-        connectedClients.remove(userId);
+    public synchronized void unregisterClient(int userId, ClientHandler handler) {
+        if (!connectedClients.remove(userId, handler)) {
+            LOGGER.info("Stale connection of user " + userId + " closed, newer connection kept");
+            return;
+        }
+        fanOut.remove(userId, handler);
+        subscriptions.unsubscribe(userId, handler);
         LOGGER.info("Client unregistered: User ID " + userId);
 
-        // Broadcast status update to other clients
-        broadcastStatus(userId, "offline");
+        // A reconnect within the debounce time is never announced
+        presence.update(userId, PresenceService.OFFLINE);
     }
 
     /**
-     * Send a message to a specific client
-     * @return true if message was delivered, false if client is offline
+     * Send a direct message to a specific client
+     * @param pending The message as queued for the database, marked delivered once the receiver confirms it
+     * @return true if message was sent, false if client is offline
      */
-    public boolean sendMessageToClient(int userId, String message) {
-        ClientHandler handler = connectedClients.get(userId);
+    boolean sendDirectMessage(int receiverId, int senderId, LocalDateTime timestamp, String content,
+                              ChatMessageWriter.PendingMessage pending) {
+        ClientHandler handler = connectedClients.get(receiverId);
 
         if (handler != null) {
-            handler.sendMessage(message);
+            handler.deliverDirect(senderId, timestamp, content, pending);
             return true;
         }
 
@@ -51,32 +146,17 @@ public class ClientManager {
 
     /**
      * Broadcast a message to all clients except the sender
+     * @return Completes with the number of recipients once the message is queued for all of them
      */
-    public void broadcastMessage(int senderId, String message) {
-        for (Map.Entry<Integer, ClientHandler> entry : connectedClients.entrySet()) {
-            int clientId = entry.getKey();
-
-            // Skip the sender
-            if (clientId != senderId) {
-                entry.getValue().sendMessage(message);
-            }
-        }
+    CompletableFuture<Integer> broadcastMessage(int senderId, OutboundFrame message) {
+        return fanOut.broadcast(senderId, message);
     }
 
     /**
-     * Broadcast a status update to all clients
+     * Record a user's status; it is announced to all clients and saved once it has settled
      */
-    public void broadcastStatus(int userId, String status) {
-        String statusMessage = "STATUS:" + userId + ":" + status;
-
-        for (Map.Entry<Integer, ClientHandler> entry : connectedClients.entrySet()) {
-            int clientId = entry.getKey();
-
-            // Skip the user whose status is being updated
-            if (clientId != userId) {
-                entry.getValue().sendMessage(statusMessage);
-            }
-        }
+    public void updateStatus(int userId, String status) {
+        presence.update(userId, status);
     }
 
     /**
@@ -91,6 +171,119 @@ public class ClientManager {
         LOGGER.info("All clients disconnected");
     }
 
+    /**
+     * Announce and save pending status changes and delivery state, then stop the broadcast shards;
+     * call after {@link #disconnectAll()} and after the message writer has drained when the server stops
+     */
+    public void shutdown() {
+        idleWheel.shutdown();
+        presence.shutdown();
+        deliveryReceipts.shutdown();
+        fanOut.shutdown();
+    }
+
+    /**
+     * Get the outbound queue limits shared by all client connections
+     */
+    OutboundPolicy getOutboundPolicy() {
+        return outboundPolicy;
+    }
+
+    /**
+     * Get the command rate limits shared by all client connections
+     */
+    RateLimitPolicy getRateLimitPolicy() {
+        return rateLimitPolicy;
+    }
+
+    /**
+     * Get the delivery state writer shared by all client connections
+     */
+    DeliveryReceipts getDeliveryReceipts() {
+        return deliveryReceipts;
+    }
+
+    /**
+     * Get a snapshot of the commands refused by the rate limits
+     */
+    public RateLimitMetrics getRateLimitMetrics() {
+        return rateLimitPolicy.getMetrics();
+    }
+
+    /**
+     * Get a snapshot of the outbound queues of all connected clients
+     */
+    public OutboundQueueMetrics getOutboundMetrics() {
+        int clients = 0;
+        long queuedFrames = 0;
+        int maxQueuedFrames = 0;
+        int deepestUserId = -1;
+        long pendingBytes = 0;
+
+        for (Map.Entry<Integer, ClientHandler> entry : connectedClients.entrySet()) {
+            int depth = entry.getValue().getQueuedFrames();
+            clients++;
+            queuedFrames += depth;
+            pendingBytes += entry.getValue().getPendingWriteBytes();
+            if (depth > maxQueuedFrames) {
+                maxQueuedFrames = depth;
+                deepestUserId = entry.getKey();
+            }
+        }
+
+        return new OutboundQueueMetrics(clients, queuedFrames, maxQueuedFrames, deepestUserId, pendingBytes,
+                outboundPolicy.getQueueCapacity(), outboundPolicy.getDroppedFrames(),
+                outboundPolicy.getSlowClientDisconnects());
+    }
+
+    /**
+     * Get a snapshot of the broadcast fan-out statistics
+     */
+    public BroadcastMetrics getBroadcastMetrics() {
+        return fanOut.getMetrics();
+    }
+
+    /**
+     * Get the last status recorded for a user
+     * @return The status, or null if the user has not connected since the server started
+     */
+    String getStatus(int userId) {
+        return presence.getStatus(userId);
+    }
+
+    /**
+     * Get a snapshot of the presence statistics
+     */
+    public PresenceMetrics getPresenceMetrics() {
+        return presence.getMetrics();
+    }
+
+    /**
+     * Get a snapshot of the heartbeat statistics
+     */
+    public HeartbeatMetrics getHeartbeatMetrics() {
+        return idleWheel.getMetrics();
+    }
+
+    /**
+     * Get a snapshot of the direct message confirmations and saved delivery state
+     */
+    public DeliveryMetrics getDeliveryMetrics() {
+        return deliveryReceipts.getMetrics();
+    }
+
+    /**
+     * Get the number of frames queued for each connected client
+     * @return Queue depth by user ID
+     */
+    public Map<Integer, Integer> getOutboundQueueDepths() {
+        Map<Integer, Integer> depths = new HashMap<>();
+        for (Map.Entry<Integer, ClientHandler> entry : connectedClients.entrySet()) {
+            depths.put(entry.getKey(), entry.getValue().getQueuedFrames());
+        }
+        return depths;
+    }
+
     /**
      * Get number of connected clients
      */
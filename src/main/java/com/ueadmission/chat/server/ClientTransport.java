@@ -0,0 +1,52 @@
+package com.ueadmission.chat.server;
+
+/**
+ * Connection to a chat client as seen by {@link ClientHandler}.
+ * Implementations deliver whole protocol lines or binary frames and must be safe
+ * to call from any thread.
+ */
+interface ClientTransport {
+
+    /**
+     * Queue one protocol line for the client; the line separator is added by the transport
+     */
+    void send(String line);
+
+    /**
+     * Queue bytes that are already framed, such as one or more binary protocol frames
+     */
+    void sendRaw(byte[] bytes);
+
+    /**
+     * Wait until the client has read enough of the queued output to take more.
+     * Used to pace bulk sends such as the offline replay.
+     * @param timeoutMillis Longest time to wait
+     * @return false if the connection closed or the client did not catch up in time
+     */
+    boolean awaitWritable(long timeoutMillis);
+
+    /**
+     * Close the connection. Safe to call more than once.
+     */
+    void close();
+
+    /**
+     * Check whether the connection is still open
+     */
+    boolean isOpen();
+
+    /**
+     * Get the number of frames queued for the client but not yet written
+     */
+    int getQueuedFrames();
+
+    /**
+     * Get the number of bytes queued for the client but not yet written
+     */
+    long getPendingWriteBytes();
+
+    /**
+     * Get the client's address for logging
+     */
+    String getRemoteAddress();
+}
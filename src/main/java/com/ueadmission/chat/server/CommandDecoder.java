@@ -0,0 +1,129 @@
+package com.ueadmission.chat.server;
+
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+
+import com.ueadmission.chat.protocol.ChatProtocol;
+
+/**
+ * Decodes client commands in one pass over the received line or frame.
+ * Ids are parsed in place and the command is dispatched straight to a
+ * {@link Sink}, so the only allocation per command is the message text itself.
+ */
+final class CommandDecoder {
+    private static final String AUTH = "AUTH:";
+    private static final String MSG = "MSG:";
+    private static final String BROADCAST = "BROADCAST:";
+    private static final String STATUS = "STATUS:";
+
+    /**
+     * Receiver of decoded commands
+     */
+    interface Sink {
+        void onAuth(int userId, boolean binary, boolean numbered);
+        void onDirectMessage(int receiverId, String content);
+        void onQueuedMessage(int sequence, int receiverId, long timestampMillis, String content);
+        void onDelivered(int sequence);
+        void onBroadcast(String content);
+        void onStatus(String status);
+    }
+
+    private CommandDecoder() {
+    }
+
+    /**
+     * Decode a text protocol line; unknown and incomplete commands are ignored.
+     * A PONG line has no command; receiving it is all that counts.
+     * @throws NumberFormatException if an id is not a number
+     */
+    static void decodeLine(String line, Sink sink) {
+        if (line.startsWith(MSG)) {
+            int separator = line.indexOf(':', MSG.length());
+            if (separator >= 0) {
+                sink.onDirectMessage(Integer.parseInt(line, MSG.length(), separator, 10),
+                        line.substring(separator + 1));
+            }
+        } else if (line.startsWith(ChatProtocol.QUEUED_PREFIX)) {
+            // QMSG:<sequence>:<receiverId>:<epochMillis>:<content>
+            int start = ChatProtocol.QUEUED_PREFIX.length();
+            int first = line.indexOf(':', start);
+            int second = first < 0 ? -1 : line.indexOf(':', first + 1);
+            int third = second < 0 ? -1 : line.indexOf(':', second + 1);
+            if (third >= 0) {
+                sink.onQueuedMessage(Integer.parseInt(line, start, first, 10),
+                        Integer.parseInt(line, first + 1, second, 10),
+                        Long.parseLong(line, second + 1, third, 10),
+                        line.substring(third + 1));
+            }
+        } else if (line.startsWith(ChatProtocol.DELIVERED_PREFIX)) {
+            sink.onDelivered(Integer.parseInt(line, ChatProtocol.DELIVERED_PREFIX.length(), line.length(), 10));
+        } else if (line.startsWith(BROADCAST)) {
+            sink.onBroadcast(line.substring(BROADCAST.length()));
+        } else if (line.startsWith(STATUS)) {
+            sink.onStatus(line.substring(STATUS.length()));
+        } else if (line.startsWith(AUTH)) {
+            // AUTH:<userId> followed by any options, such as AUTH:<userId>:DLV1:BIN1
+            int separator = line.indexOf(':', AUTH.length());
+            int idEnd = separator < 0 ? line.length() : separator;
+            boolean binary = false;
+            boolean numbered = false;
+            while (separator >= 0) {
+                int next = line.indexOf(':', separator + 1);
+                int optionEnd = next < 0 ? line.length() : next;
+                binary |= isOption(line, separator + 1, optionEnd, ChatProtocol.BINARY_VERSION);
+                numbered |= isOption(line, separator + 1, optionEnd, ChatProtocol.DELIVERY_VERSION);
+                separator = next;
+            }
+            sink.onAuth(Integer.parseInt(line, AUTH.length(), idEnd, 10), binary, numbered);
+        }
+    }
+
+    /**
+     * Decode a binary frame sent by a client
+     * @param payload Opcode and body of the frame, without the length prefix
+     * @throws ProtocolException if the frame is malformed or not a client command
+     */
+    static void decodeFrame(byte[] payload, Sink sink) throws ProtocolException {
+        if (payload.length == 0) {
+            throw new ProtocolException("Empty frame");
+        }
+        switch (payload[0]) {
+            case ChatProtocol.OP_SEND_DIRECT:
+                int receiverId = ChatProtocol.readVarint(payload, 1, payload.length);
+                sink.onDirectMessage(receiverId, text(payload, 1 + ChatProtocol.varintSize(receiverId)));
+                break;
+            case ChatProtocol.OP_SEND_QUEUED:
+                int pos = 1;
+                int sequence = ChatProtocol.readVarint(payload, pos, payload.length);
+                pos += ChatProtocol.varintSize(sequence);
+                int queuedReceiverId = ChatProtocol.readVarint(payload, pos, payload.length);
+                pos += ChatProtocol.varintSize(queuedReceiverId);
+                long timestampMillis = ChatProtocol.readVarlong(payload, pos, payload.length);
+                pos += ChatProtocol.varlongSize(timestampMillis);
+                sink.onQueuedMessage(sequence, queuedReceiverId, timestampMillis, text(payload, pos));
+                break;
+            case ChatProtocol.OP_DELIVERED:
+                sink.onDelivered(ChatProtocol.readVarint(payload, 1, payload.length));
+                break;
+            case ChatProtocol.OP_SEND_BROADCAST:
+                sink.onBroadcast(text(payload, 1));
+                break;
+            case ChatProtocol.OP_SET_STATUS:
+                sink.onStatus(text(payload, 1));
+                break;
+            case ChatProtocol.OP_PONG:
+                // Heartbeat answer; receiving it is all that counts
+                break;
+            default:
+                throw new ProtocolException("Unexpected opcode " + payload[0]);
+        }
+    }
+
+    private static boolean isOption(String line, int start, int end, String option) {
+        return end - start == option.length() && line.startsWith(option, start);
+    }
+
+    private static String text(byte[] payload, int offset) {
+        return new String(payload, offset, payload.length - offset, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package com.ueadmission.chat.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ueadmission.config.ChatServerConfig;
+import com.ueadmission.config.DatabaseConfig;
+import com.ueadmission.db.DatabaseConnection;
+
+/**
+ * Bounds how many chat handlers use the database at the same time.
+ *
+ * With virtual threads every connected client can reach JDBC at once; the gate
+ * makes the excess wait on a semaphore, which parks a virtual thread cheaply,
+ * instead of piling up inside the connection pool and the driver.
+ */
+class DatabaseGate {
+    private static DatabaseGate instance;
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long maxWaitMillis;
+    private final LongAdder timeoutCount = new LongAdder();
+
+    /**
+     * Create a gate
+     * @param maxConcurrency Maximum number of connections held by chat handlers at once
+     * @param maxWaitMillis How long a handler waits for a permit before failing
+     */
+    DatabaseGate(int maxConcurrency, long maxWaitMillis) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(this.maxConcurrency, true);
+    }
+
+    /**
+     * Get the gate shared by all chat handlers, sized from the configuration
+     */
+    static synchronized DatabaseGate getInstance() {
+        if (instance == null) {
+            DatabaseConfig databaseConfig = DatabaseConfig.getInstance();
+            int concurrency = ChatServerConfig.getInstance().getDatabaseConcurrency();
+            if (concurrency <= 0) {
+                concurrency = databaseConfig.getMaxPoolSize();
+            }
+            instance = new DatabaseGate(concurrency, databaseConfig.getMaxWaitMillis());
+        }
+        return instance;
+    }
+
+    /**
+     * Wait for a permit and lease a connection; hand it back with {@link #closeResources}
+     * @throws SQLTimeoutException if no permit frees up within the configured wait
+     */
+    Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return DatabaseConnection.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Close the statement and result set, return the connection and release its permit
+     * @param conn Connection from {@link #getConnection()}, may be null if leasing failed
+     */
+    void closeResources(Connection conn, PreparedStatement ps, ResultSet rs) {
+        DatabaseConnection.closeResources(conn, ps, rs);
+        if (conn != null) {
+            permits.release();
+        }
+    }
+
+    /**
+     * Get the number of handlers currently holding a connection
+     */
+    int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * Get the approximate number of handlers waiting for a permit
+     */
+    int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Get the number of times a handler gave up waiting for a permit
+     */
+    long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTimeoutException("Timed out after " + maxWaitMillis
+                        + " ms waiting for a chat database permit");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a chat database permit", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.ueadmission.chat.server;
+
+/**
+ * Point-in-time snapshot of direct message delivery statistics.
+ * Sent messages were numbered for a connected client; confirmed ones were
+ * acknowledged by it. Confirmations of stored messages wait to be saved and
+ * are then marked delivered in ranges of consecutive ids, several per statement.
+ */
+public class DeliveryMetrics {
+    private final long sentCount;
+    private final long confirmedCount;
+    private final int pendingReceipts;
+    private final long persistedCount;
+    private final long rangeCount;
+    private final long statementCount;
+    private final long failedFlushCount;
+
+    public DeliveryMetrics(long sentCount, long confirmedCount, int pendingReceipts, long persistedCount,
+                           long rangeCount, long statementCount, long failedFlushCount) {
+        this.sentCount = sentCount;
+        this.confirmedCount = confirmedCount;
+        this.pendingReceipts = pendingReceipts;
+        this.persistedCount = persistedCount;
+        this.rangeCount = rangeCount;
+        this.statementCount = statementCount;
+        this.failedFlushCount = failedFlushCount;
+    }
+
+    public long getSentCount() { return sentCount; }
+    public long getConfirmedCount() { return confirmedCount; }
+    public int getPendingReceipts() { return pendingReceipts; }
+    public long getPersistedCount() { return persistedCount; }
+    public long getRangeCount() { return rangeCount; }
+    public long getStatementCount() { return statementCount; }
+    public long getFailedFlushCount() { return failedFlushCount; }
+
+    @Override
+    public String toString() {
+        return "DeliveryMetrics{" +
+                "sent=" + sentCount +
+                ", confirmed=" + confirmedCount +
+                ", pendingReceipts=" + pendingReceipts +
+                ", persisted=" + persistedCount +
+                ", ranges=" + rangeCount +
+                ", statements=" + statementCount +
+                ", failedFlushes=" + failedFlushCount +
+                '}';
+    }
+}
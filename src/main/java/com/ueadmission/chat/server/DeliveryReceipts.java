@@ -0,0 +1,257 @@
+package com.ueadmission.chat.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves which stored direct messages reached their receivers.
+ *
+ * Connections hand over the {@code chat_messages} ids of confirmed messages;
+ * a background thread sorts them, folds runs of consecutive ids into ranges
+ * and marks them all delivered with one UPDATE per flush instead of one per
+ * message. A run only ever covers ids that were confirmed, so no message is
+ * marked delivered that its receiver did not get. Delivery is kept apart from
+ * {@code is_read}, which only changes when the receiver opens the conversation.
+ * The offline replay flushes first, so a client that reconnects resumes
+ * exactly after the last message it confirmed. A failed flush keeps its ids
+ * for the next one.
+ */
+final class DeliveryReceipts {
+    private static final Logger LOGGER = Logger.getLogger(DeliveryReceipts.class.getName());
+    private static final int INITIAL_CAPACITY = 256;
+    /** Most ranges in one UPDATE, so the statement stays a reasonable size */
+    static final int MAX_RANGES_PER_STATEMENT = 500;
+    /**
+     * Range counts an UPDATE is prepared for; smaller counts are padded up to the next one,
+     * so the statement cache sees a handful of distinct statements instead of one per count
+     */
+    private static final int[] STATEMENT_SIZES = {1, 8, 64, MAX_RANGES_PER_STATEMENT};
+    private static final String[] STATEMENT_SQL = new String[STATEMENT_SIZES.length];
+
+    static {
+        for (int s = 0; s < STATEMENT_SIZES.length; s++) {
+            StringBuilder sql = new StringBuilder("UPDATE chat_messages SET is_delivered = true WHERE ");
+            for (int i = 0; i < STATEMENT_SIZES[s]; i++) {
+                sql.append(i == 0 ? "" : " OR ").append("id BETWEEN ? AND ?");
+            }
+            STATEMENT_SQL[s] = sql.toString();
+        }
+    }
+
+    /**
+     * Destination of the delivery state
+     */
+    interface Store {
+        /**
+         * Mark the messages in the given id ranges delivered
+         * @param firstIds First id of each range
+         * @param lastIds Last id of each range, inclusive
+         * @param count Number of ranges
+         */
+        void markDelivered(int[] firstIds, int[] lastIds, int count) throws SQLException;
+    }
+
+    private final long flushIntervalMillis;
+    private final Store store;
+    private ScheduledExecutorService scheduler;
+
+    // Guarded by this
+    private int[] pending = new int[INITIAL_CAPACITY];
+    private int pendingCount;
+
+    private final Object flushLock = new Object();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder confirmedCount = new LongAdder();
+    private final LongAdder persistedCount = new LongAdder();
+    private final LongAdder rangeCount = new LongAdder();
+    private final LongAdder statementCount = new LongAdder();
+    private final LongAdder failedFlushCount = new LongAdder();
+
+    /**
+     * Create the delivery state writer; nothing is saved automatically until {@link #start()}
+     * @param flushIntervalMillis How often confirmed messages are saved
+     * @param store Where the delivery state is saved
+     */
+    DeliveryReceipts(long flushIntervalMillis, Store store) {
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.store = store;
+    }
+
+    /**
+     * Start the thread that saves confirmed messages periodically
+     */
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "chat-delivery-receipts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record that the receiver of a stored message confirmed it
+     * @param messageId The chat_messages id
+     */
+    synchronized void add(int messageId) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        pending[pendingCount++] = messageId;
+    }
+
+    /**
+     * Count numbered direct messages sent to connected clients
+     */
+    void recordSent(int count) {
+        sentCount.add(count);
+    }
+
+    /**
+     * Count direct messages connected clients confirmed
+     */
+    void recordConfirmed(int count) {
+        confirmedCount.add(count);
+    }
+
+    /**
+     * Save every confirmation received so far
+     * @return The number of messages marked delivered
+     */
+    int flush() {
+        synchronized (flushLock) {
+            int[] ids;
+            int count;
+            synchronized (this) {
+                if (pendingCount == 0) {
+                    return 0;
+                }
+                ids = pending;
+                count = pendingCount;
+                pending = new int[Math.max(INITIAL_CAPACITY, count)];
+                pendingCount = 0;
+            }
+
+            Arrays.sort(ids, 0, count);
+            int[] firstIds = new int[count];
+            int[] lastIds = new int[count];
+            int ranges = 0;
+            for (int i = 0; i < count; i++) {
+                int id = ids[i];
+                if (ranges > 0 && id <= lastIds[ranges - 1] + 1) {
+                    // Duplicates and the next consecutive id extend the current range
+                    lastIds[ranges - 1] = Math.max(lastIds[ranges - 1], id);
+                } else {
+                    firstIds[ranges] = id;
+                    lastIds[ranges++] = id;
+                }
+            }
+
+            int saved = 0;
+            try {
+                for (int start = 0; start < ranges; start += MAX_RANGES_PER_STATEMENT) {
+                    int chunk = Math.min(MAX_RANGES_PER_STATEMENT, ranges - start);
+                    store.markDelivered(Arrays.copyOfRange(firstIds, start, start + chunk),
+                            Arrays.copyOfRange(lastIds, start, start + chunk), chunk);
+                    statementCount.increment();
+                    rangeCount.add(chunk);
+                    saved = start + chunk;
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Error saving delivery state, retrying with the next flush", e);
+                failedFlushCount.increment();
+                // The ranges not saved go back to the queue
+                for (int r = saved; r < ranges; r++) {
+                    for (int id = firstIds[r]; id <= lastIds[r]; id++) {
+                        add(id);
+                    }
+                }
+            }
+
+            int marked = 0;
+            for (int r = 0; r < saved; r++) {
+                marked += lastIds[r] - firstIds[r] + 1;
+            }
+            persistedCount.add(marked);
+            return marked;
+        }
+    }
+
+    /**
+     * Stop the background thread and save what is left
+     */
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Get a snapshot of the delivery statistics
+     */
+    DeliveryMetrics getMetrics() {
+        int waiting;
+        synchronized (this) {
+            waiting = pendingCount;
+        }
+        return new DeliveryMetrics(sentCount.sum(), confirmedCount.sum(), waiting, persistedCount.sum(),
+                rangeCount.sum(), statementCount.sum(), failedFlushCount.sum());
+    }
+
+    /**
+     * Get the index of the smallest statement size holding the given number of ranges
+     */
+    static int statementSizeIndex(int count) {
+        for (int s = 0; s < STATEMENT_SIZES.length - 1; s++) {
+            if (count <= STATEMENT_SIZES[s]) {
+                return s;
+            }
+        }
+        return STATEMENT_SIZES.length - 1;
+    }
+
+    /**
+     * Get the number of ranges the UPDATE for the given number of ranges binds
+     */
+    static int paddedRangeCount(int count) {
+        return STATEMENT_SIZES[statementSizeIndex(count)];
+    }
+
+    /**
+     * Mark id ranges delivered with one UPDATE, padded by repeating the last range
+     * @param count Number of ranges, at most {@link #MAX_RANGES_PER_STATEMENT}
+     */
+    static void markDeliveredRanges(int[] firstIds, int[] lastIds, int count) throws SQLException {
+        int size = statementSizeIndex(count);
+
+        DatabaseGate gate = DatabaseGate.getInstance();
+        Connection conn = null;
+        PreparedStatement ps = null;
+        try {
+            conn = gate.getConnection();
+            ps = conn.prepareStatement(STATEMENT_SQL[size]);
+            for (int i = 0; i < STATEMENT_SIZES[size]; i++) {
+                int range = Math.min(i, count - 1);
+                ps.setInt(2 * i + 1, firstIds[range]);
+                ps.setInt(2 * i + 2, lastIds[range]);
+            }
+            ps.executeUpdate();
+        } finally {
+            gate.closeResources(conn, ps, null);
+        }
+    }
+}
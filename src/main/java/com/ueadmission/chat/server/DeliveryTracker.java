@@ -0,0 +1,114 @@
+package com.ueadmission.chat.server;
+
+import java.util.ArrayDeque;
+
+/**
+ * Numbers the direct messages sent on one connection and settles them once
+ * the client confirms them.
+ *
+ * Sequence numbers start at 1 and grow by one per message. The client
+ * confirms cumulatively, so one DELIVERED settles every message up to its
+ * number: stored messages are handed to the {@link DeliveryReceipts} by id, live
+ * ones are marked on their {@link ChatMessageWriter.PendingMessage}. A message
+ * that is never confirmed stays undelivered and is replayed on the next login.
+ * Callers hold the tracker's lock while numbering and queuing a message, so
+ * the client receives the messages in the order of their numbers.
+ */
+final class DeliveryTracker {
+    /** Most unconfirmed messages remembered; older ones are forgotten and stay undelivered */
+    static final int MAX_UNCONFIRMED = 4096;
+
+    /**
+     * A sent message waiting for the client's confirmation
+     */
+    private static final class Entry {
+        final int sequence;
+        final int messageId;
+        final ChatMessageWriter.PendingMessage pending;
+
+        Entry(int sequence, int messageId, ChatMessageWriter.PendingMessage pending) {
+            this.sequence = sequence;
+            this.messageId = messageId;
+            this.pending = pending;
+        }
+    }
+
+    private final DeliveryReceipts receipts;
+    private final ArrayDeque<Entry> unconfirmed = new ArrayDeque<>();
+    private int lastSequence;
+    private int highestConfirmed;
+
+    /**
+     * @param receipts Where confirmed stored messages are handed for saving
+     */
+    DeliveryTracker(DeliveryReceipts receipts) {
+        this.receipts = receipts;
+    }
+
+    /**
+     * Number a stored message
+     * @param messageId The chat_messages id
+     * @return The sequence number to send it with
+     */
+    synchronized int trackStored(int messageId) {
+        return track(new Entry(lastSequence + 1, messageId, null));
+    }
+
+    /**
+     * Number a live message that may not be written yet
+     * @param pending The message as queued for the database
+     * @return The sequence number to send it with
+     */
+    synchronized int trackLive(ChatMessageWriter.PendingMessage pending) {
+        pending.trackReceipt(receipts);
+        return track(new Entry(lastSequence + 1, 0, pending));
+    }
+
+    private int track(Entry entry) {
+        if (unconfirmed.size() == MAX_UNCONFIRMED) {
+            // A client this far behind is replayed what it missed on its next login
+            unconfirmed.pollFirst();
+        }
+        unconfirmed.addLast(entry);
+        lastSequence = entry.sequence;
+        receipts.recordSent(1);
+        return entry.sequence;
+    }
+
+    /**
+     * Settle every message up to a sequence number; numbers already confirmed are ignored
+     * @return The number of messages settled
+     */
+    synchronized int acknowledge(int sequence) {
+        int settled = 0;
+        Entry entry;
+        while ((entry = unconfirmed.peekFirst()) != null && entry.sequence <= sequence) {
+            unconfirmed.pollFirst();
+            if (entry.pending != null) {
+                entry.pending.markDelivered();
+            } else {
+                receipts.add(entry.messageId);
+            }
+            settled++;
+        }
+        if (sequence > highestConfirmed) {
+            highestConfirmed = Math.min(sequence, lastSequence);
+        }
+        receipts.recordConfirmed(settled);
+        return settled;
+    }
+
+    /**
+     * Get the highest sequence number the client confirmed
+     */
+    synchronized int getHighestConfirmed() {
+        return highestConfirmed;
+    }
+
+    /**
+     * Get the number of sent messages waiting for confirmation
+     */
+    synchronized int getUnconfirmedCount() {
+        return unconfirmed.size();
+    }
+}
@@ -0,0 +1,45 @@
+package com.ueadmission.chat.server;
+
+/**
+ * Point-in-time snapshot of heartbeat statistics.
+ * Reaped connections stayed silent for the idle timeout and were closed by the
+ * server; released threads were dedicated to those connections by the
+ * blocking engines.
+ */
+public class HeartbeatMetrics {
+    private final int trackedConnections;
+    private final long pingCount;
+    private final long reapedConnections;
+    private final long releasedThreads;
+    private final long pingIntervalMillis;
+    private final long idleTimeoutMillis;
+
+    public HeartbeatMetrics(int trackedConnections, long pingCount, long reapedConnections, long releasedThreads,
+                            long pingIntervalMillis, long idleTimeoutMillis) {
+        this.trackedConnections = trackedConnections;
+        this.pingCount = pingCount;
+        this.reapedConnections = reapedConnections;
+        this.releasedThreads = releasedThreads;
+        this.pingIntervalMillis = pingIntervalMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public int getTrackedConnections() { return trackedConnections; }
+    public long getPingCount() { return pingCount; }
+    public long getReapedConnections() { return reapedConnections; }
+    public long getReleasedThreads() { return releasedThreads; }
+    public long getPingIntervalMillis() { return pingIntervalMillis; }
+    public long getIdleTimeoutMillis() { return idleTimeoutMillis; }
+
+    @Override
+    public String toString() {
+        return "HeartbeatMetrics{" +
+                "tracked=" + trackedConnections +
+                ", pings=" + pingCount +
+                ", reaped=" + reapedConnections +
+                ", releasedThreads=" + releasedThreads +
+                ", pingInterval=" + pingIntervalMillis + "ms" +
+                ", idleTimeout=" + idleTimeoutMillis + "ms" +
+                '}';
+    }
+}
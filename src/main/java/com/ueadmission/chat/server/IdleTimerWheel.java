@@ -0,0 +1,217 @@
+package com.ueadmission.chat.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timer wheel that finds idle chat connections.
+ *
+ * Every inbound line or frame only stores a timestamp on its connection, so
+ * recording activity is O(1) and touches no shared state. Each connection sits
+ * in one bucket of the wheel, at the time it would next need attention. When
+ * the wheel reaches that bucket the connection is checked: one that has been
+ * active since is moved to its new deadline, one that has been quiet for the
+ * ping interval is sent a PING, and one that stayed silent for the idle
+ * timeout is closed. Closed connections are dropped when their bucket comes up.
+ */
+final class IdleTimerWheel {
+    private static final Logger LOGGER = Logger.getLogger(IdleTimerWheel.class.getName());
+
+    /**
+     * A connection watched by the wheel
+     */
+    interface Session {
+        /**
+         * Get the {@link System#nanoTime()} of the last line or frame received
+         */
+        long getLastActivityNanos();
+
+        boolean isOpen();
+
+        /**
+         * Ask the client to show it is still there
+         */
+        void sendPing();
+
+        /**
+         * Close the connection of an idle client
+         * @return true if a thread was dedicated to the connection and is now released
+         */
+        boolean expire();
+    }
+
+    /**
+     * Position of one session on the wheel; only the wheel thread changes it after scheduling
+     */
+    private static final class Entry {
+        final Session session;
+        long rounds;
+        boolean pinged;
+        long pingedForActivity;
+
+        Entry(Session session) {
+            this.session = session;
+        }
+    }
+
+    private final long tickNanos;
+    private final long pingIntervalNanos;
+    private final long idleTimeoutNanos;
+    private final List<Queue<Entry>> buckets;
+    private final int mask;
+    private final long startNanos;
+    private volatile long currentTick;
+    private Thread ticker;
+    private volatile boolean running;
+
+    private final AtomicInteger trackedCount = new AtomicInteger();
+    private final LongAdder pingCount = new LongAdder();
+    private final LongAdder reapedCount = new LongAdder();
+    private final LongAdder releasedThreadCount = new LongAdder();
+
+    /**
+     * Create a timer wheel; nothing is checked until {@link #start()}
+     * @param tickMillis Resolution of the wheel
+     * @param wheelSize Number of buckets, rounded up to a power of two
+     * @param pingIntervalMillis How long a connection may be quiet before it is sent a PING
+     * @param idleTimeoutMillis How long a connection may be silent before it is closed
+     */
+    IdleTimerWheel(long tickMillis, int wheelSize, long pingIntervalMillis, long idleTimeoutMillis) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.pingIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, pingIntervalMillis));
+        this.idleTimeoutNanos = Math.max(pingIntervalNanos, TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis));
+
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1);
+        List<Queue<Entry>> wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        buckets = List.copyOf(wheel);
+        mask = size - 1;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Start the thread that advances the wheel
+     */
+    void start() {
+        running = true;
+        ticker = new Thread(this::runTicker, "chat-idle-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Start watching a connection; it is first checked after the ping interval
+     */
+    void add(Session session) {
+        trackedCount.incrementAndGet();
+        schedule(new Entry(session), session.getLastActivityNanos() + pingIntervalNanos);
+    }
+
+    /**
+     * Check every bucket the wheel has passed up to the given time
+     * @param nowNanos Current {@link System#nanoTime()}
+     */
+    void advance(long nowNanos) {
+        long targetTick = (nowNanos - startNanos) / tickNanos;
+        while (currentTick < targetTick) {
+            long tick = currentTick + 1;
+            Queue<Entry> bucket = buckets.get((int) (tick & mask));
+            // Entries rescheduled into this bucket while it is drained wait for its next turn
+            for (int pending = bucket.size(); pending > 0; pending--) {
+                Entry entry = bucket.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.rounds > 0) {
+                    entry.rounds--;
+                    bucket.offer(entry);
+                } else {
+                    check(entry, nowNanos);
+                }
+            }
+            currentTick = tick;
+        }
+    }
+
+    private void check(Entry entry, long nowNanos) {
+        Session session = entry.session;
+        if (!session.isOpen()) {
+            trackedCount.decrementAndGet();
+            return;
+        }
+
+        long lastActivity = session.getLastActivityNanos();
+        long idle = nowNanos - lastActivity;
+        if (idle >= idleTimeoutNanos) {
+            trackedCount.decrementAndGet();
+            reapedCount.increment();
+            try {
+                if (session.expire()) {
+                    releasedThreadCount.increment();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error closing idle connection", e);
+            }
+            return;
+        }
+
+        if (idle >= pingIntervalNanos) {
+            if (!entry.pinged || entry.pingedForActivity != lastActivity) {
+                entry.pinged = true;
+                entry.pingedForActivity = lastActivity;
+                pingCount.increment();
+                session.sendPing();
+            }
+            schedule(entry, lastActivity + idleTimeoutNanos);
+        } else {
+            schedule(entry, lastActivity + pingIntervalNanos);
+        }
+    }
+
+    private void schedule(Entry entry, long deadlineNanos) {
+        long deadlineTick = Math.max(currentTick + 1, (deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+        long ticks = deadlineTick - currentTick;
+        entry.rounds = (ticks - 1) / buckets.size();
+        buckets.get((int) (deadlineTick & mask)).offer(entry);
+    }
+
+    private void runTicker() {
+        while (running) {
+            LockSupport.parkNanos(this, tickNanos);
+            try {
+                advance(System.nanoTime());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error checking idle connections", e);
+            }
+        }
+    }
+
+    /**
+     * Stop the wheel thread; connections are no longer checked
+     */
+    void shutdown() {
+        running = false;
+        if (ticker != null) {
+            LockSupport.unpark(ticker);
+        }
+    }
+
+    /**
+     * Get a snapshot of the heartbeat statistics
+     */
+    HeartbeatMetrics getMetrics() {
+        return new HeartbeatMetrics(trackedCount.get(), pingCount.sum(), reapedCount.sum(),
+                releasedThreadCount.sum(), TimeUnit.NANOSECONDS.toMillis(pingIntervalNanos),
+                TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos));
+    }
+}
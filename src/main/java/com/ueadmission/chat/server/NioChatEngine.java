@@ -0,0 +1,195 @@
+package com.ueadmission.chat.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Chat server engine built on NIO selectors.
+ *
+ * A few event-loop threads own all client sockets and do the reading, line
+ * framing and writing. Protocol handling, which talks to the database, runs on
+ * a fixed worker pool. The text protocol is the same as the blocking engine's.
+ */
+class NioChatEngine {
+    private static final Logger LOGGER = Logger.getLogger(NioChatEngine.class.getName());
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    private final int port;
+    private final ClientManager clientManager;
+    private final int eventLoopCount;
+    private final int workerThreads;
+    private final long maxPendingWriteBytes;
+
+    private NioEventLoop[] loops;
+    private ExecutorService workers;
+    private ServerSocketChannel serverChannel;
+    private final Set<NioConnection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    /**
+     * Create the engine
+     * @param port The port to listen on
+     * @param clientManager The client manager shared with the protocol handlers
+     * @param eventLoopCount Number of selector threads
+     * @param workerThreads Number of threads running protocol handlers
+     * @param maxPendingWriteBytes Output a client may leave unread before the outbound overflow policy applies
+     */
+    NioChatEngine(int port, ClientManager clientManager, int eventLoopCount, int workerThreads,
+                  long maxPendingWriteBytes) {
+        this.port = port;
+        this.clientManager = clientManager;
+        this.eventLoopCount = Math.max(1, eventLoopCount);
+        this.workerThreads = Math.max(1, workerThreads);
+        this.maxPendingWriteBytes = maxPendingWriteBytes;
+    }
+
+    /**
+     * Bind the server socket and start the event loops
+     */
+    void start() throws IOException {
+        AtomicInteger workerIndex = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, "chat-worker-" + workerIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        loops = new NioEventLoop[eventLoopCount];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new NioEventLoop("chat-event-loop-" + i);
+        }
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(loops[0].getSelector(), SelectionKey.OP_ACCEPT,
+                (NioEventLoop.Handler) key -> acceptClients());
+
+        for (NioEventLoop loop : loops) {
+            loop.start();
+        }
+        LOGGER.info("NIO chat engine listening on port " + getPort() + " with " + loops.length
+                + " event loops and " + workerThreads + " workers");
+    }
+
+    /**
+     * Get the bound port, useful when started on port 0
+     */
+    int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Get the number of open client connections
+     */
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Close all connections and stop the event loops and workers
+     */
+    void stop() {
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing server channel", e);
+        }
+
+        for (NioConnection connection : connections) {
+            connection.close();
+        }
+        if (loops != null) {
+            for (NioEventLoop loop : loops) {
+                loop.stop();
+            }
+        }
+        if (workers != null) {
+            workers.shutdown();
+            try {
+                workers.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOGGER.info("NIO chat engine stopped");
+    }
+
+    /**
+     * Accept all pending connections and spread them over the event loops.
+     * A failure only affects the connection it happened on; the server keeps listening.
+     */
+    private void acceptClients() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                // Such as running out of file descriptors; the pending connection is tried again on the next select
+                LOGGER.log(Level.WARNING, "Error accepting client connection", e);
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            acceptClient(channel);
+        }
+    }
+
+    /**
+     * Set up one accepted connection, or close it if that fails
+     */
+    private void acceptClient(SocketChannel channel) {
+        NioConnection connection = null;
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            NioEventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+            NioConnection[] holder = new NioConnection[1];
+            connection = new NioConnection(channel, loop, workers, maxPendingWriteBytes,
+                    clientManager.getOutboundPolicy(), () -> connections.remove(holder[0]));
+            holder[0] = connection;
+            connections.add(connection);
+            ClientHandler handler = new ClientHandler(connection, clientManager);
+            clientManager.trackConnection(handler);
+            LOGGER.info("New client connected: " + connection.getRemoteAddress());
+
+            NioConnection registered = connection;
+            loop.execute(() -> {
+                try {
+                    registered.register(handler);
+                } catch (ClosedChannelException e) {
+                    registered.close();
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error setting up client connection", e);
+            if (connection != null) {
+                connection.close();
+            } else {
+                try {
+                    channel.close();
+                } catch (IOException closeEx) {
+                    LOGGER.log(Level.FINE, "Error closing channel", closeEx);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.ueadmission.chat.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ueadmission.chat.protocol.ChatProtocol;
+
+/**
+ * A client connection served by the NIO engine.
+ *
+ * Reading, framing and writing happen on the owning event loop. Input is split
+ * into text lines until the client requests the binary protocol in its AUTH
+ * line, and into length-prefixed frames after that. Complete lines and frames
+ * are handed to a worker executor one at a time per connection, because
+ * {@link ClientHandler} does blocking JDBC work. A client that stops reading has
+ * its input suspended while too much output is pending and is disconnected when
+ * the pending output exceeds the configured limit; a client that sends faster
+ * than its lines are processed has its input suspended until the workers catch up.
+ * Output that exceeds the byte limit or the {@link OutboundPolicy} queue capacity
+ * is handled by the policy: the frame is dropped or the client is disconnected.
+ */
+class NioConnection implements ClientTransport, NioEventLoop.Handler {
+    private static final Logger LOGGER = Logger.getLogger(NioConnection.class.getName());
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_LINE_BYTES = ChatProtocol.MAX_FRAME_BYTES;
+    private static final int MAX_QUEUED_LINES = 256;
+    private static final long WRITABLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    // Marks the end of input in the inbound queue so disconnect runs after queued lines
+    private static final String END_OF_INPUT = new String("END_OF_INPUT");
+
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private final Executor workers;
+    private final long maxPendingWriteBytes;
+    private final OutboundPolicy policy;
+    private final String remoteAddress;
+    private final Runnable onClosed;
+    private volatile ClientHandler handler;
+    private SelectionKey key;
+
+    // Loop thread only
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength = 0;
+    private boolean binaryInput = false;
+    private int frameLength = 0;
+    private int frameLengthShift = 0;
+    private byte[] frameBuffer;
+    private int frameFilled = 0;
+    private boolean inputSuspendedForWorkers = false;
+    private boolean inputSuspendedForOutput = false;
+
+    // Encoded output, often the same array queued for many connections; never modified here
+    private final Queue<byte[]> writeQueue = new ConcurrentLinkedQueue<>();
+    // Bytes of the head of the write queue already written; loop thread only
+    private int headOffset = 0;
+    private final AtomicLong pendingWriteBytes = new AtomicLong();
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    // Text lines and binary frames in arrival order
+    private final Queue<Object> inbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inboundCount = new AtomicInteger();
+    private final AtomicBoolean dispatching = new AtomicBoolean(false);
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * Create a connection for an accepted channel
+     * @param channel The non-blocking channel
+     * @param loop The event loop that owns the channel
+     * @param workers Executor running the protocol handler
+     * @param maxPendingWriteBytes Output a client may leave unread before the overflow policy applies
+     * @param policy Queue capacity and what to do with a client that falls behind
+     * @param onClosed Called on the loop thread once the channel is closed
+     */
+    NioConnection(SocketChannel channel, NioEventLoop loop, Executor workers, long maxPendingWriteBytes,
+                  OutboundPolicy policy, Runnable onClosed) {
+        this.channel = channel;
+        this.loop = loop;
+        this.workers = workers;
+        this.maxPendingWriteBytes = maxPendingWriteBytes;
+        this.policy = policy;
+        this.onClosed = onClosed;
+        this.remoteAddress = describe(channel);
+    }
+
+    /**
+     * Attach the protocol handler and start reading; must run on the loop thread
+     */
+    void register(ClientHandler handler) throws ClosedChannelException {
+        this.handler = handler;
+        key = channel.register(loop.getSelector(), SelectionKey.OP_READ, this);
+    }
+
+    @Override
+    public void onReady(SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Connection error for " + remoteAddress, e);
+            close();
+        } catch (RuntimeException e) {
+            // Closing through close() also disconnects the protocol handler
+            LOGGER.log(Level.WARNING, "Unexpected error on connection " + remoteAddress, e);
+            close();
+        }
+    }
+
+    @Override
+    public void send(String line) {
+        enqueueOutput((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void sendRaw(byte[] bytes) {
+        enqueueOutput(bytes);
+    }
+
+    private void enqueueOutput(byte[] bytes) {
+        if (closed.get() || bytes.length == 0) {
+            return;
+        }
+
+        long pending = pendingWriteBytes.addAndGet(bytes.length);
+        int frames = queuedFrames.incrementAndGet();
+        if (pending > maxPendingWriteBytes || frames > policy.getQueueCapacity()) {
+            pendingWriteBytes.addAndGet(-bytes.length);
+            queuedFrames.decrementAndGet();
+            if (policy.getOverflow() == OutboundPolicy.Overflow.DROP) {
+                policy.recordDroppedFrame();
+                LOGGER.fine("Dropped a frame for slow client " + remoteAddress);
+            } else {
+                policy.recordSlowClientDisconnect();
+                LOGGER.warning("Disconnecting slow client " + remoteAddress + " with " + pending + " bytes and "
+                        + frames + " frames pending");
+                close();
+            }
+            return;
+        }
+
+        writeQueue.offer(bytes);
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flushSafely);
+        }
+    }
+
+    @Override
+    public boolean awaitWritable(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (pendingWriteBytes.get() > maxPendingWriteBytes / 4) {
+            if (closed.get() || System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(WRITABLE_POLL_NANOS);
+        }
+        return !closed.get();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        loop.execute(this::closeChannel);
+        enqueueInbound(END_OF_INPUT);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public int getQueuedFrames() {
+        return queuedFrames.get();
+    }
+
+    @Override
+    public long getPendingWriteBytes() {
+        return pendingWriteBytes.get();
+    }
+
+    private void read() throws IOException {
+        if (closed.get()) {
+            return;
+        }
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            close();
+            return;
+        }
+
+        readBuffer.flip();
+        while (readBuffer.hasRemaining()) {
+            boolean valid = binaryInput ? readFrameBytes() : readLineByte();
+            if (!valid) {
+                readBuffer.clear();
+                close();
+                return;
+            }
+        }
+        readBuffer.clear();
+
+        if (inboundCount.get() >= MAX_QUEUED_LINES && !inputSuspendedForWorkers) {
+            inputSuspendedForWorkers = true;
+            updateInterest();
+        }
+    }
+
+    /**
+     * Consume one byte of a text line, queueing the line when it is complete
+     * @return false if the line is too long
+     */
+    private boolean readLineByte() {
+        byte b = readBuffer.get();
+        if (b != '\n') {
+            if (lineLength == MAX_LINE_BYTES) {
+                LOGGER.warning("Disconnecting client " + remoteAddress + " after a line longer than "
+                        + MAX_LINE_BYTES + " bytes");
+                return false;
+            }
+            if (lineLength == lineBuffer.length) {
+                lineBuffer = Arrays.copyOf(lineBuffer, Math.min(lineBuffer.length * 2, MAX_LINE_BYTES));
+            }
+            lineBuffer[lineLength++] = b;
+            return true;
+        }
+
+        int length = lineLength;
+        if (length > 0 && lineBuffer[length - 1] == '\r') {
+            length--;
+        }
+        String line = new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+        lineLength = 0;
+        // The client sends frames right after an AUTH line that asks for them
+        if (ChatProtocol.requestsBinary(line)) {
+            binaryInput = true;
+        }
+        enqueueInbound(line);
+        return true;
+    }
+
+    /**
+     * Consume a length prefix byte or as much of the frame body as is buffered,
+     * queueing the frame when it is complete
+     * @return false if the length prefix is invalid
+     */
+    private boolean readFrameBytes() {
+        if (frameBuffer == null) {
+            byte b = readBuffer.get();
+            frameLength |= (b & 0x7F) << frameLengthShift;
+            if ((b & 0x80) != 0) {
+                frameLengthShift += 7;
+                if (frameLengthShift <= 28) {
+                    return true;
+                }
+            } else if (frameLength >= 1 && frameLength <= ChatProtocol.MAX_FRAME_BYTES) {
+                frameBuffer = new byte[frameLength];
+                frameFilled = 0;
+                frameLength = 0;
+                frameLengthShift = 0;
+                return true;
+            }
+            LOGGER.warning("Disconnecting client " + remoteAddress + " after an invalid frame length");
+            return false;
+        }
+
+        int count = Math.min(readBuffer.remaining(), frameBuffer.length - frameFilled);
+        readBuffer.get(frameBuffer, frameFilled, count);
+        frameFilled += count;
+        if (frameFilled == frameBuffer.length) {
+            enqueueInbound(frameBuffer);
+            frameBuffer = null;
+        }
+        return true;
+    }
+
+    private void enqueueInbound(Object item) {
+        inbound.offer(item);
+        inboundCount.incrementAndGet();
+        if (dispatching.compareAndSet(false, true)) {
+            workers.execute(this::drainInbound);
+        }
+    }
+
+    /**
+     * Worker side: process queued lines and frames in order until the queue is empty
+     */
+    private void drainInbound() {
+        while (true) {
+            Object item;
+            while ((item = inbound.poll()) != null) {
+                inboundCount.decrementAndGet();
+                if (item == END_OF_INPUT) {
+                    if (handler != null) {
+                        handler.disconnect();
+                    }
+                    inbound.clear();
+                    continue;
+                }
+                try {
+                    if (item instanceof byte[]) {
+                        handler.processFrame((byte[]) item);
+                    } else {
+                        handler.processMessage((String) item);
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Error processing message from " + remoteAddress, e);
+                }
+            }
+            dispatching.set(false);
+            // A line queued after the poll above but before the flag was cleared
+            if (inbound.isEmpty() || !dispatching.compareAndSet(false, true)) {
+                break;
+            }
+        }
+
+        if (inboundCount.get() < MAX_QUEUED_LINES / 2 && !closed.get()) {
+            loop.execute(this::resumeInputAfterWorkers);
+        }
+    }
+
+    private void resumeInputAfterWorkers() {
+        if (inputSuspendedForWorkers && inboundCount.get() < MAX_QUEUED_LINES / 2) {
+            inputSuspendedForWorkers = false;
+            updateInterest();
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Write failed for " + remoteAddress, e);
+            close();
+        }
+    }
+
+    /**
+     * Loop side: write queued output until the socket buffer is full or the queue is empty
+     */
+    private void flush() throws IOException {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+
+        while (true) {
+            while (!writeQueue.isEmpty()) {
+                if (!writeStaged()) {
+                    // Socket buffer is full; flushScheduled stays set until OP_WRITE fires
+                    updateInterest();
+                    return;
+                }
+            }
+
+            flushScheduled.set(false);
+            if (writeQueue.isEmpty() || !flushScheduled.compareAndSet(false, true)) {
+                break;
+            }
+        }
+        updateInterest();
+    }
+
+    /**
+     * Copy as much queued output as fits into the loop's write buffer and write it with one call.
+     * Several small frames leave in one system call, and the heap arrays shared between
+     * recipients are copied once per connection instead of through a temporary direct buffer.
+     * @return false if the socket did not take everything that was staged
+     */
+    private boolean writeStaged() throws IOException {
+        ByteBuffer staging = loop.getWriteBuffer();
+        staging.clear();
+        int offset = headOffset;
+        for (byte[] bytes : writeQueue) {
+            int count = Math.min(bytes.length - offset, staging.remaining());
+            staging.put(bytes, offset, count);
+            offset = 0;
+            if (!staging.hasRemaining()) {
+                break;
+            }
+        }
+        staging.flip();
+
+        int written = channel.write(staging);
+        pendingWriteBytes.addAndGet(-written);
+
+        // Drop what was written from the head of the queue
+        while (written > 0) {
+            int remaining = writeQueue.peek().length - headOffset;
+            if (written < remaining) {
+                headOffset += written;
+                break;
+            }
+            writeQueue.poll();
+            queuedFrames.decrementAndGet();
+            headOffset = 0;
+            written -= remaining;
+        }
+        return !staging.hasRemaining();
+    }
+
+    /**
+     * Recompute the interest set from the queues and backpressure flags; loop thread only
+     */
+    private void updateInterest() {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+
+        long pending = pendingWriteBytes.get();
+        if (pending > maxPendingWriteBytes / 2) {
+            inputSuspendedForOutput = true;
+        } else if (pending < maxPendingWriteBytes / 4) {
+            inputSuspendedForOutput = false;
+        }
+
+        int ops = 0;
+        if (!inputSuspendedForWorkers && !inputSuspendedForOutput) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!writeQueue.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    private void closeChannel() {
+        // Best effort to deliver what is already queued, such as a final error line
+        try {
+            while (channel.isOpen() && !writeQueue.isEmpty()) {
+                if (!writeStaged()) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not flush output before closing " + remoteAddress, e);
+        }
+
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing channel for " + remoteAddress, e);
+        }
+        writeQueue.clear();
+        headOffset = 0;
+        queuedFrames.set(0);
+        pendingWriteBytes.set(0);
+        onClosed.run();
+    }
+
+    private static String describe(SocketChannel channel) {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+}
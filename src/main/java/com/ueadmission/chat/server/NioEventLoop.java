@@ -0,0 +1,152 @@
+package com.ueadmission.chat.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single-threaded selector loop owning a set of channels.
+ * Other threads hand work to the loop with {@link #execute(Runnable)}; all
+ * selection key changes happen on the loop thread.
+ */
+class NioEventLoop implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(NioEventLoop.class.getName());
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Callback for ready channels registered with this loop.
+     * Handlers close their own channels on errors, so the loop never closes a
+     * listening socket or bypasses a connection's clean-up.
+     */
+    interface Handler {
+        void onReady(SelectionKey key) throws IOException;
+    }
+
+    private final String name;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private volatile boolean running = true;
+    private Thread thread;
+
+    NioEventLoop(String name) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Start the loop on a new daemon thread
+     */
+    void start() {
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    Selector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Get the direct buffer channels of this loop stage their output in before writing.
+     * Loop thread only; its contents do not survive past the write that uses them.
+     */
+    ByteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Run a task on the loop thread
+     */
+    void execute(Runnable task) {
+        tasks.offer(task);
+        if (!inLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                // Tasks queued from the loop itself do not wake the selector, so don't block on them
+                if (tasks.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    dispatch(key);
+                }
+                runTasks();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Selector failure in " + name, e);
+            }
+        }
+        runTasks();
+        closeSelector();
+    }
+
+    /**
+     * Stop the loop and close the selector; channels still registered are closed by their owners
+     */
+    void stop() {
+        running = false;
+        selector.wakeup();
+        if (thread != null && !inLoop()) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void dispatch(SelectionKey key) {
+        Handler handler = (Handler) key.attachment();
+        try {
+            if (key.isValid()) {
+                handler.onReady(key);
+            }
+        } catch (CancelledKeyException e) {
+            // Closed concurrently, nothing left to do
+        } catch (IOException | RuntimeException e) {
+            // The handler owns the channel and decides whether it survives the error
+            LOGGER.log(Level.WARNING, "Unhandled error from channel handler in " + name, e);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Task failed in " + name, e);
+            }
+        }
+    }
+
+    private void closeSelector() {
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing selector", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.ueadmission.chat.server;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import com.ueadmission.chat.protocol.ChatProtocol;
+
+/**
+ * A server-to-client message, encoded on demand for each protocol.
+ * A broadcast creates one instance for all recipients, so each encoding is
+ * built at most once however many clients receive it, and every recipient
+ * queues the same byte array.
+ */
+final class OutboundFrame {
+    private final byte opcode;
+    private final int id;
+    private final LocalDateTime timestamp;
+    private final String text;
+    private final int[] digestUserIds;
+    private final String[] digestStatuses;
+
+    // Two threads may both encode the first time; they build identical values
+    private volatile byte[] textFrame;
+    private volatile byte[] binaryFrame;
+
+    private OutboundFrame(byte opcode, int id, LocalDateTime timestamp, String text) {
+        this(opcode, id, timestamp, text, null, null);
+    }
+
+    private OutboundFrame(byte opcode, int id, LocalDateTime timestamp, String text,
+                          int[] digestUserIds, String[] digestStatuses) {
+        this.opcode = opcode;
+        this.id = id;
+        this.timestamp = timestamp;
+        this.text = text;
+        this.digestUserIds = digestUserIds;
+        this.digestStatuses = digestStatuses;
+    }
+
+    static OutboundFrame message(int senderId, LocalDateTime timestamp, String content) {
+        return new OutboundFrame(ChatProtocol.OP_MESSAGE, senderId, timestamp, content);
+    }
+
+    static OutboundFrame status(int userId, String status) {
+        return new OutboundFrame(ChatProtocol.OP_STATUS, userId, null, status);
+    }
+
+    static OutboundFrame error(String message) {
+        return new OutboundFrame(ChatProtocol.OP_ERROR, 0, null, message);
+    }
+
+    /**
+     * Create a digest of several status updates; text clients receive one STATUS line per entry
+     * @param userIds Users whose status changed; the array is kept, not copied
+     * @param statuses New status of each user; the array is kept, not copied
+     */
+    static OutboundFrame presence(int[] userIds, String[] statuses) {
+        return new OutboundFrame(ChatProtocol.OP_PRESENCE, 0, null, null, userIds, statuses);
+    }
+
+    /**
+     * Get the encoded message for one protocol
+     * @param binary true for the binary frame, false for the text line
+     */
+    byte[] getEncoded(boolean binary) {
+        return binary ? getBinaryFrame() : getTextFrame();
+    }
+
+    /**
+     * Get the UTF-8 line sent to text protocol clients, including the line separator
+     */
+    byte[] getTextFrame() {
+        byte[] frame = textFrame;
+        if (frame == null) {
+            String line;
+            switch (opcode) {
+                case ChatProtocol.OP_MESSAGE:
+                    line = "MSG:" + id + ":" + timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + ":" + text;
+                    break;
+                case ChatProtocol.OP_STATUS:
+                    line = "STATUS:" + id + ":" + text;
+                    break;
+                case ChatProtocol.OP_PRESENCE:
+                    StringBuilder lines = new StringBuilder();
+                    for (int i = 0; i < digestUserIds.length; i++) {
+                        if (i > 0) {
+                            lines.append('\n');
+                        }
+                        lines.append("STATUS:").append(digestUserIds[i]).append(':').append(digestStatuses[i]);
+                    }
+                    line = lines.toString();
+                    break;
+                default:
+                    line = "ERROR:" + text;
+                    break;
+            }
+            frame = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            textFrame = frame;
+        }
+        return frame;
+    }
+
+    /**
+     * Get the frame sent to binary protocol clients, including its length prefix
+     */
+    byte[] getBinaryFrame() {
+        byte[] frame = binaryFrame;
+        if (frame == null) {
+            switch (opcode) {
+                case ChatProtocol.OP_MESSAGE:
+                    frame = ChatProtocol.encodeMessage(id, ChatProtocol.toEpochMillis(timestamp), text);
+                    break;
+                case ChatProtocol.OP_STATUS:
+                    frame = ChatProtocol.encodeStatus(id, text);
+                    break;
+                case ChatProtocol.OP_PRESENCE:
+                    frame = ChatProtocol.encodePresence(digestUserIds, digestStatuses, digestUserIds.length);
+                    break;
+                default:
+                    frame = ChatProtocol.encodeError(text);
+                    break;
+            }
+            binaryFrame = frame;
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ueadmission.chat.server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ueadmission.config.ChatServerConfig;
+
+/**
+ * Limits for the per-client outbound queues and what happens when a client falls behind.
+ * One instance is shared by all connections of a server and counts the
+ * frames dropped and clients disconnected because of it.
+ */
+final class OutboundPolicy {
+
+    /**
+     * What to do with a frame that does not fit in a client's queue
+     */
+    enum Overflow {
+        /** Close the connection of the client that fell behind */
+        DISCONNECT,
+        /** Discard the frame and keep the connection */
+        DROP
+    }
+
+    private final int queueCapacity;
+    private final Overflow overflow;
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder slowClientDisconnects = new LongAdder();
+
+    OutboundPolicy(int queueCapacity, Overflow overflow) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.overflow = overflow;
+    }
+
+    /**
+     * Create the policy from the chat server configuration
+     */
+    static OutboundPolicy fromConfig(ChatServerConfig config) {
+        Overflow overflow = "drop".equals(config.getOutboundOverflowPolicy()) ? Overflow.DROP : Overflow.DISCONNECT;
+        return new OutboundPolicy(config.getOutboundQueueCapacity(), overflow);
+    }
+
+    /**
+     * Get how many frames may wait for one client
+     */
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    Overflow getOverflow() {
+        return overflow;
+    }
+
+    void recordDroppedFrame() {
+        droppedFrames.increment();
+    }
+
+    void recordSlowClientDisconnect() {
+        slowClientDisconnects.increment();
+    }
+
+    long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    long getSlowClientDisconnects() {
+        return slowClientDisconnects.sum();
+    }
+}
@@ -0,0 +1,51 @@
+package com.ueadmission.chat.server;
+
+/**
+ * Point-in-time snapshot of the per-client outbound queues
+ */
+public class OutboundQueueMetrics {
+    private final int clientCount;
+    private final long queuedFrames;
+    private final int maxQueuedFrames;
+    private final int deepestUserId;
+    private final long pendingBytes;
+    private final int queueCapacity;
+    private final long droppedFrames;
+    private final long slowClientDisconnects;
+
+    public OutboundQueueMetrics(int clientCount, long queuedFrames, int maxQueuedFrames, int deepestUserId,
+                                long pendingBytes, int queueCapacity, long droppedFrames,
+                                long slowClientDisconnects) {
+        this.clientCount = clientCount;
+        this.queuedFrames = queuedFrames;
+        this.maxQueuedFrames = maxQueuedFrames;
+        this.deepestUserId = deepestUserId;
+        this.pendingBytes = pendingBytes;
+        this.queueCapacity = queueCapacity;
+        this.droppedFrames = droppedFrames;
+        this.slowClientDisconnects = slowClientDisconnects;
+    }
+
+    public int getClientCount() { return clientCount; }
+    public long getQueuedFrames() { return queuedFrames; }
+    public int getMaxQueuedFrames() { return maxQueuedFrames; }
+    public int getDeepestUserId() { return deepestUserId; }
+    public long getPendingBytes() { return pendingBytes; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public long getDroppedFrames() { return droppedFrames; }
+    public long getSlowClientDisconnects() { return slowClientDisconnects; }
+
+    @Override
+    public String toString() {
+        return "OutboundQueueMetrics{" +
+                "clients=" + clientCount +
+                ", queued=" + queuedFrames +
+                ", maxQueued=" + maxQueuedFrames +
+                ", deepestUser=" + deepestUserId +
+                ", pendingBytes=" + pendingBytes +
+                ", capacity=" + queueCapacity +
+                ", dropped=" + droppedFrames +
+                ", slowDisconnects=" + slowClientDisconnects +
+                '}';
+    }
+}
@@ -0,0 +1,57 @@
+package com.ueadmission.chat.server;
+
+/**
+ * Point-in-time snapshot of presence statistics.
+ * Suppressed changes were reverted within the debounce time and never announced.
+ * Delivered entries count each announced status once per client that received it.
+ */
+public class PresenceMetrics {
+    private final int trackedUsers;
+    private final long updateCount;
+    private final long suppressedCount;
+    private final long digestCount;
+    private final long announcedCount;
+    private final long deliveredCount;
+    private final long flushCount;
+    private final long persistedCount;
+    private final long failedFlushCount;
+
+    public PresenceMetrics(int trackedUsers, long updateCount, long suppressedCount, long digestCount,
+                           long announcedCount, long deliveredCount, long flushCount, long persistedCount,
+                           long failedFlushCount) {
+        this.trackedUsers = trackedUsers;
+        this.updateCount = updateCount;
+        this.suppressedCount = suppressedCount;
+        this.digestCount = digestCount;
+        this.announcedCount = announcedCount;
+        this.deliveredCount = deliveredCount;
+        this.flushCount = flushCount;
+        this.persistedCount = persistedCount;
+        this.failedFlushCount = failedFlushCount;
+    }
+
+    public int getTrackedUsers() { return trackedUsers; }
+    public long getUpdateCount() { return updateCount; }
+    public long getSuppressedCount() { return suppressedCount; }
+    public long getDigestCount() { return digestCount; }
+    public long getAnnouncedCount() { return announcedCount; }
+    public long getDeliveredCount() { return deliveredCount; }
+    public long getFlushCount() { return flushCount; }
+    public long getPersistedCount() { return persistedCount; }
+    public long getFailedFlushCount() { return failedFlushCount; }
+
+    @Override
+    public String toString() {
+        return "PresenceMetrics{" +
+                "trackedUsers=" + trackedUsers +
+                ", updates=" + updateCount +
+                ", suppressed=" + suppressedCount +
+                ", digests=" + digestCount +
+                ", announced=" + announcedCount +
+                ", delivered=" + deliveredCount +
+                ", flushes=" + flushCount +
+                ", persisted=" + persistedCount +
+                ", failedFlushes=" + failedFlushCount +
+                '}';
+    }
+}
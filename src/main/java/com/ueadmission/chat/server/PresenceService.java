@@ -0,0 +1,413 @@
+package com.ueadmission.chat.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ueadmission.config.ChatServerConfig;
+
+/**
+ * In-memory presence of chat users.
+ *
+ * Connects, disconnects and status commands only update a table keyed by the
+ * primitive user ID. A change is announced once it has been stable for the
+ * debounce time, so a client that drops and reconnects within it is never
+ * announced at all. Settled changes are handed to the {@link Publisher} together
+ * as one digest per interval, and announced changes are written to
+ * {@code user_status} in one batched upsert per flush interval instead of a
+ * round trip per event.
+ */
+final class PresenceService {
+    private static final Logger LOGGER = Logger.getLogger(PresenceService.class.getName());
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int NO_USER = 0;
+
+    static final String ONLINE = "online";
+    static final String OFFLINE = "offline";
+
+    /**
+     * Where digests of settled status changes go
+     */
+    interface Publisher {
+        /**
+         * Send a digest to the clients that should see it
+         * @return The number of status entries delivered, summed over all recipients
+         */
+        long publish(int[] userIds, String[] statuses, int count);
+    }
+
+    /**
+     * Destination of batched status writes
+     */
+    interface StatusStore {
+        void write(int[] userIds, String[] statuses, long[] changedAtMillis, int count) throws SQLException;
+    }
+
+    private final long debounceNanos;
+    private final long digestIntervalMillis;
+    private final long flushIntervalMillis;
+    private final Publisher publisher;
+    private final StatusStore store;
+    private ScheduledExecutorService scheduler;
+
+    // Open addressing table keyed by user ID. Entries are never removed; the user base is bounded.
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private String[] current = new String[INITIAL_CAPACITY];
+    private String[] published = new String[INITIAL_CAPACITY];
+    private String[] persisted = new String[INITIAL_CAPACITY];
+    private long[] changedAtNanos = new long[INITIAL_CAPACITY];
+    private long[] changedAtMillis = new long[INITIAL_CAPACITY];
+    private boolean[] awaitingDigest = new boolean[INITIAL_CAPACITY];
+    private boolean[] awaitingFlush = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    // User IDs with a change not yet announced, and with an announcement not yet written
+    private int[] digestQueue = new int[64];
+    private int digestQueueSize;
+    private int[] flushQueue = new int[64];
+    private int flushQueueSize;
+
+    private final LongAdder updateCount = new LongAdder();
+    private final LongAdder suppressedCount = new LongAdder();
+    private final LongAdder digestCount = new LongAdder();
+    private final LongAdder announcedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder persistedCount = new LongAdder();
+    private final LongAdder failedFlushCount = new LongAdder();
+
+    /**
+     * Create a presence service; nothing is announced or written until {@link #start()}
+     * @param debounceMillis How long a status must stay unchanged before it is announced
+     * @param digestIntervalMillis How often settled changes are announced
+     * @param flushIntervalMillis How often announced changes are written to the store
+     */
+    PresenceService(long debounceMillis, long digestIntervalMillis, long flushIntervalMillis,
+                    Publisher publisher, StatusStore store) {
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, debounceMillis));
+        this.digestIntervalMillis = Math.max(1, digestIntervalMillis);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.publisher = publisher;
+        this.store = store;
+    }
+
+    /**
+     * Create a presence service with the timings from the configuration
+     */
+    static PresenceService fromConfig(ChatServerConfig config, Publisher publisher, StatusStore store) {
+        return new PresenceService(config.getPresenceDebounceMillis(), config.getPresenceDigestIntervalMillis(),
+                config.getPresenceFlushIntervalMillis(), publisher, store);
+    }
+
+    /**
+     * Start announcing and writing changes in the background
+     */
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "chat-presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> publishDigest(System.nanoTime(), false),
+                digestIntervalMillis, digestIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::flush,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record a user's new status
+     */
+    void update(int userId, String status) {
+        updateCount.increment();
+        synchronized (this) {
+            int slot = slotFor(userId);
+            if (status.equals(current[slot])) {
+                return;
+            }
+            current[slot] = status;
+            changedAtNanos[slot] = System.nanoTime();
+            changedAtMillis[slot] = System.currentTimeMillis();
+            if (!awaitingDigest[slot]) {
+                awaitingDigest[slot] = true;
+                digestQueue = append(digestQueue, digestQueueSize++, userId);
+            }
+        }
+    }
+
+    /**
+     * Get the last status recorded for a user
+     * @return The status, or null if the user has not connected since the server started
+     */
+    synchronized String getStatus(int userId) {
+        int slot = findSlot(userId);
+        return slot >= 0 ? current[slot] : null;
+    }
+
+    /**
+     * Announce every change that has been stable for the debounce time in one digest
+     * @param nowNanos Current {@link System#nanoTime()}
+     * @param force Announce changes that have not settled yet as well
+     * @return The number of users in the digest
+     */
+    int publishDigest(long nowNanos, boolean force) {
+        int[] userIds;
+        String[] statuses;
+        int count = 0;
+        synchronized (this) {
+            if (digestQueueSize == 0) {
+                return 0;
+            }
+            userIds = new int[digestQueueSize];
+            statuses = new String[digestQueueSize];
+            int waiting = 0;
+            for (int i = 0; i < digestQueueSize; i++) {
+                int userId = digestQueue[i];
+                int slot = findSlot(userId);
+                if (!force && nowNanos - changedAtNanos[slot] < debounceNanos) {
+                    // Still changing; keep it for a later digest
+                    digestQueue[waiting++] = userId;
+                    continue;
+                }
+                awaitingDigest[slot] = false;
+                if (current[slot].equals(published[slot])) {
+                    // Changed and changed back before anyone was told
+                    suppressedCount.increment();
+                    continue;
+                }
+                published[slot] = current[slot];
+                userIds[count] = userId;
+                statuses[count++] = current[slot];
+                if (!awaitingFlush[slot]) {
+                    awaitingFlush[slot] = true;
+                    flushQueue = append(flushQueue, flushQueueSize++, userId);
+                }
+            }
+            digestQueueSize = waiting;
+        }
+
+        if (count > 0) {
+            deliveredCount.add(publisher.publish(userIds, statuses, count));
+            digestCount.increment();
+            announcedCount.add(count);
+        }
+        return count;
+    }
+
+    /**
+     * Write every announced change that is not in the store yet in one batch.
+     * A failed batch is retried on the next flush.
+     * @return The number of rows written
+     */
+    int flush() {
+        int[] userIds;
+        String[] statuses;
+        long[] changedAt;
+        int count = 0;
+        synchronized (this) {
+            if (flushQueueSize == 0) {
+                return 0;
+            }
+            userIds = new int[flushQueueSize];
+            statuses = new String[flushQueueSize];
+            changedAt = new long[flushQueueSize];
+            for (int i = 0; i < flushQueueSize; i++) {
+                int userId = flushQueue[i];
+                int slot = findSlot(userId);
+                awaitingFlush[slot] = false;
+                if (!published[slot].equals(persisted[slot])) {
+                    userIds[count] = userId;
+                    statuses[count] = published[slot];
+                    changedAt[count++] = changedAtMillis[slot];
+                }
+            }
+            flushQueueSize = 0;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        try {
+            store.write(userIds, statuses, changedAt, count);
+            flushCount.increment();
+            persistedCount.add(count);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error writing " + count + " user statuses, retrying on the next flush", e);
+            failedFlushCount.increment();
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    int slot = findSlot(userIds[i]);
+                    if (!awaitingFlush[slot]) {
+                        awaitingFlush[slot] = true;
+                        flushQueue = append(flushQueue, flushQueueSize++, userIds[i]);
+                    }
+                }
+            }
+            return 0;
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < count; i++) {
+                persisted[findSlot(userIds[i])] = statuses[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stop the background tasks, then announce and write everything still pending
+     */
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        publishDigest(System.nanoTime(), true);
+        flush();
+        LOGGER.info("Presence service stopped: " + getMetrics());
+    }
+
+    /**
+     * Get a snapshot of presence statistics
+     */
+    PresenceMetrics getMetrics() {
+        int tracked;
+        synchronized (this) {
+            tracked = size;
+        }
+        return new PresenceMetrics(tracked, updateCount.sum(), suppressedCount.sum(), digestCount.sum(),
+                announcedCount.sum(), deliveredCount.sum(), flushCount.sum(), persistedCount.sum(), failedFlushCount.sum());
+    }
+
+    /**
+     * Find the slot of a user, adding the user if it is new
+     */
+    private int slotFor(int userId) {
+        int slot = findSlot(userId);
+        if (slot >= 0) {
+            return slot;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+            slot = findSlot(userId);
+        }
+        slot = -slot - 1;
+        keys[slot] = userId;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Find the slot of a user
+     * @return The slot, or -(insertion point + 1) if the user is not in the table
+     */
+    private int findSlot(int userId) {
+        int mask = keys.length - 1;
+        int slot = mix(userId) & mask;
+        while (keys[slot] != NO_USER) {
+            if (keys[slot] == userId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        String[] oldCurrent = current;
+        String[] oldPublished = published;
+        String[] oldPersisted = persisted;
+        long[] oldChangedAtNanos = changedAtNanos;
+        long[] oldChangedAtMillis = changedAtMillis;
+        boolean[] oldAwaitingDigest = awaitingDigest;
+        boolean[] oldAwaitingFlush = awaitingFlush;
+
+        int capacity = oldKeys.length * 2;
+        keys = new int[capacity];
+        current = new String[capacity];
+        published = new String[capacity];
+        persisted = new String[capacity];
+        changedAtNanos = new long[capacity];
+        changedAtMillis = new long[capacity];
+        awaitingDigest = new boolean[capacity];
+        awaitingFlush = new boolean[capacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != NO_USER) {
+                int slot = -findSlot(oldKeys[i]) - 1;
+                keys[slot] = oldKeys[i];
+                current[slot] = oldCurrent[i];
+                published[slot] = oldPublished[i];
+                persisted[slot] = oldPersisted[i];
+                changedAtNanos[slot] = oldChangedAtNanos[i];
+                changedAtMillis[slot] = oldChangedAtMillis[i];
+                awaitingDigest[slot] = oldAwaitingDigest[i];
+                awaitingFlush[slot] = oldAwaitingFlush[i];
+            }
+        }
+    }
+
+    private static int mix(int userId) {
+        // Consecutive IDs would otherwise fill one run of slots
+        int h = userId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] append(int[] queue, int index, int userId) {
+        if (index == queue.length) {
+            queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+        queue[index] = userId;
+        return queue;
+    }
+
+    /**
+     * Write a batch of statuses to user_status in one transaction
+     */
+    static void upsertStatuses(int[] userIds, String[] statuses, long[] changedAtMillis, int count)
+            throws SQLException {
+        DatabaseGate gate = DatabaseGate.getInstance();
+        Connection conn = null;
+        PreparedStatement ps = null;
+        try {
+            conn = gate.getConnection();
+            conn.setAutoCommit(false);
+            ps = conn.prepareStatement(
+                "INSERT INTO user_status (user_id, status, last_active) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE status = VALUES(status), last_active = VALUES(last_active)");
+
+            for (int i = 0; i < count; i++) {
+                ps.setInt(1, userIds[i]);
+                ps.setString(2, statuses[i]);
+                ps.setTimestamp(3, new Timestamp(changedAtMillis[i]));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackEx) {
+                    e.addSuppressed(rollbackEx);
+                }
+            }
+            throw e;
+        } finally {
+            // Returning the connection restores auto-commit
+            gate.closeResources(conn, ps, null);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.ueadmission.chat.server;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers presence digests only to the clients that can see each user.
+ *
+ * The chat window lists students to admins and admins to students; users with
+ * any other role see everyone. Connected clients are indexed by role, so a
+ * digest is split into one frame per viewing role and each frame only visits
+ * the clients of that role. A student going offline therefore reaches the
+ * admins alone instead of every connected client.
+ */
+final class PresenceSubscriptions implements PresenceService.Publisher {
+    static final String ADMIN = "admin";
+    static final String STUDENT = "student";
+    private static final String UNKNOWN_ROLE = "";
+
+    private final Map<String, Map<Integer, ClientHandler>> viewersByRole = new ConcurrentHashMap<>();
+    // Kept after a user disconnects, so the offline status still reaches the right viewers
+    private final Map<Integer, String> roles = new ConcurrentHashMap<>();
+
+    /**
+     * Start sending a connected client the status of the users its role can see
+     * @param role The user's role, or null if unknown
+     */
+    void subscribe(int userId, String role, ClientHandler handler) {
+        String key = normalize(role);
+        String previous = roles.put(userId, key);
+        if (previous != null && !previous.equals(key)) {
+            viewersByRole.getOrDefault(previous, Map.of()).remove(userId);
+        }
+        viewersByRole.computeIfAbsent(key, r -> new ConcurrentHashMap<>()).put(userId, handler);
+    }
+
+    /**
+     * Stop sending status updates to a client, unless the user is already served by a newer connection
+     */
+    void unsubscribe(int userId, ClientHandler handler) {
+        String role = roles.get(userId);
+        if (role != null) {
+            viewersByRole.getOrDefault(role, Map.of()).remove(userId, handler);
+        }
+    }
+
+    /**
+     * Check whether a viewer's contact list shows a user; mirrors the chat window
+     * @param viewerRole Role of the client receiving the status
+     * @param subjectRole Role of the user whose status changed
+     */
+    static boolean canSee(String viewerRole, String subjectRole) {
+        if (ADMIN.equals(viewerRole)) {
+            return STUDENT.equals(subjectRole) || UNKNOWN_ROLE.equals(subjectRole);
+        }
+        if (STUDENT.equals(viewerRole)) {
+            return ADMIN.equals(subjectRole) || UNKNOWN_ROLE.equals(subjectRole);
+        }
+        return true;
+    }
+
+    @Override
+    public long publish(int[] userIds, String[] statuses, int count) {
+        long delivered = 0;
+        int[] visibleIds = new int[count];
+        String[] visibleStatuses = new String[count];
+
+        for (Map.Entry<String, Map<Integer, ClientHandler>> group : viewersByRole.entrySet()) {
+            Map<Integer, ClientHandler> viewers = group.getValue();
+            if (viewers.isEmpty()) {
+                continue;
+            }
+            int visible = 0;
+            for (int i = 0; i < count; i++) {
+                if (canSee(group.getKey(), roles.getOrDefault(userIds[i], UNKNOWN_ROLE))) {
+                    visibleIds[visible] = userIds[i];
+                    visibleStatuses[visible++] = statuses[i];
+                }
+            }
+            if (visible == 0) {
+                continue;
+            }
+
+            // One frame per role, encoded once for all of its viewers
+            OutboundFrame frame = OutboundFrame.presence(Arrays.copyOf(visibleIds, visible),
+                    Arrays.copyOf(visibleStatuses, visible));
+            for (ClientHandler viewer : viewers.values()) {
+                viewer.deliver(frame);
+                delivered += visible;
+            }
+        }
+        return delivered;
+    }
+
+    private static String normalize(String role) {
+        return role == null ? UNKNOWN_ROLE : role.trim().toLowerCase();
+    }
+}
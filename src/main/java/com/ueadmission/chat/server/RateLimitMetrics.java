@@ -0,0 +1,43 @@
+package com.ueadmission.chat.server;
+
+/**
+ * Point-in-time snapshot of the commands refused by the per-client rate limits.
+ * A limit of 0 means the command is not limited.
+ */
+public class RateLimitMetrics {
+    private final long rejectedDirectMessages;
+    private final long rejectedBroadcasts;
+    private final long rejectedStatusUpdates;
+    private final int directPerSecond;
+    private final int broadcastPerSecond;
+    private final int statusPerSecond;
+
+    public RateLimitMetrics(long rejectedDirectMessages, long rejectedBroadcasts, long rejectedStatusUpdates,
+                            int directPerSecond, int broadcastPerSecond, int statusPerSecond) {
+        this.rejectedDirectMessages = rejectedDirectMessages;
+        this.rejectedBroadcasts = rejectedBroadcasts;
+        this.rejectedStatusUpdates = rejectedStatusUpdates;
+        this.directPerSecond = directPerSecond;
+        this.broadcastPerSecond = broadcastPerSecond;
+        this.statusPerSecond = statusPerSecond;
+    }
+
+    public long getRejectedDirectMessages() { return rejectedDirectMessages; }
+    public long getRejectedBroadcasts() { return rejectedBroadcasts; }
+    public long getRejectedStatusUpdates() { return rejectedStatusUpdates; }
+    public int getDirectPerSecond() { return directPerSecond; }
+    public int getBroadcastPerSecond() { return broadcastPerSecond; }
+    public int getStatusPerSecond() { return statusPerSecond; }
+
+    @Override
+    public String toString() {
+        return "RateLimitMetrics{" +
+                "rejectedDirect=" + rejectedDirectMessages +
+                ", rejectedBroadcasts=" + rejectedBroadcasts +
+                ", rejectedStatus=" + rejectedStatusUpdates +
+                ", directLimit=" + directPerSecond + "/s" +
+                ", broadcastLimit=" + broadcastPerSecond + "/s" +
+                ", statusLimit=" + statusPerSecond + "/s" +
+                '}';
+    }
+}
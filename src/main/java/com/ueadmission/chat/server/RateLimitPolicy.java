@@ -0,0 +1,98 @@
+package com.ueadmission.chat.server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ueadmission.config.ChatServerConfig;
+
+/**
+ * How fast one client may send each kind of command.
+ * One instance is shared by all connections of a server; every connection gets
+ * its own buckets from {@link #newBuckets()}, and the commands refused because
+ * of them are counted here.
+ */
+final class RateLimitPolicy {
+
+    /**
+     * Client commands with a budget of their own
+     */
+    enum Command {
+        DIRECT_MESSAGE("direct messages"),
+        BROADCAST("broadcasts"),
+        STATUS("status updates");
+
+        private final String label;
+
+        Command(String label) {
+            this.label = label;
+        }
+
+        String getLabel() {
+            return label;
+        }
+    }
+
+    private final int[] perSecond = new int[Command.values().length];
+    private final int[] burst = new int[Command.values().length];
+    private final LongAdder[] rejected = new LongAdder[Command.values().length];
+
+    /**
+     * Create a policy with no limits
+     */
+    RateLimitPolicy() {
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Create the policy from the chat server configuration
+     */
+    static RateLimitPolicy fromConfig(ChatServerConfig config) {
+        return new RateLimitPolicy()
+                .limit(Command.DIRECT_MESSAGE, config.getRateLimitDirectPerSecond(), config.getRateLimitDirectBurst())
+                .limit(Command.BROADCAST, config.getRateLimitBroadcastPerSecond(), config.getRateLimitBroadcastBurst())
+                .limit(Command.STATUS, config.getRateLimitStatusPerSecond(), config.getRateLimitStatusBurst());
+    }
+
+    /**
+     * Set the budget for one command
+     * @param perSecond Sustained rate; 0 or less removes the limit
+     * @param burst Commands accepted at once after a quiet period
+     */
+    RateLimitPolicy limit(Command command, int perSecond, int burst) {
+        this.perSecond[command.ordinal()] = perSecond;
+        this.burst[command.ordinal()] = Math.max(1, burst);
+        return this;
+    }
+
+    /**
+     * Create the buckets for one connection
+     * @return One bucket per command, indexed by ordinal; null where the command is not limited
+     */
+    TokenBucket[] newBuckets() {
+        TokenBucket[] buckets = new TokenBucket[perSecond.length];
+        for (int i = 0; i < buckets.length; i++) {
+            if (perSecond[i] > 0) {
+                buckets[i] = new TokenBucket(perSecond[i], burst[i]);
+            }
+        }
+        return buckets;
+    }
+
+    void recordRejected(Command command) {
+        rejected[command.ordinal()].increment();
+    }
+
+    /**
+     * Get a snapshot of the limits and the commands refused so far
+     */
+    RateLimitMetrics getMetrics() {
+        return new RateLimitMetrics(
+                rejected[Command.DIRECT_MESSAGE.ordinal()].sum(),
+                rejected[Command.BROADCAST.ordinal()].sum(),
+                rejected[Command.STATUS.ordinal()].sum(),
+                perSecond[Command.DIRECT_MESSAGE.ordinal()],
+                perSecond[Command.BROADCAST.ordinal()],
+                perSecond[Command.STATUS.ordinal()]);
+    }
+}
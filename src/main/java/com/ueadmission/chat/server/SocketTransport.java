@@ -0,0 +1,194 @@
+package com.ueadmission.chat.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ueadmission.chat.protocol.ChatProtocol;
+
+/**
+ * Blocking transport over a plain socket, read by the client's own handler thread.
+ *
+ * Output goes through a bounded queue drained by a writer on its own virtual
+ * thread, so a sender never blocks on another client's socket. The writer takes
+ * everything queued at once and flushes it with a single write where the buffer
+ * allows. A client whose queue is full is handled by the {@link OutboundPolicy}.
+ */
+class SocketTransport implements ClientTransport {
+    private static final Logger LOGGER = Logger.getLogger(SocketTransport.class.getName());
+    private static final int MAX_FRAMES_PER_FLUSH = 256;
+    private static final int OUTPUT_BUFFER_SIZE = 16 * 1024;
+    private static final long WRITABLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final ThreadFactory WRITER_THREADS = Thread.ofVirtual().name("chat-writer-", 0).factory();
+
+    private final Socket socket;
+    private final OutboundPolicy policy;
+    private InputStream input;
+    private OutputStream output;
+
+    private final BlockingQueue<byte[]> outbound;
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final Thread writer;
+
+    SocketTransport(Socket socket, OutboundPolicy policy) {
+        this.socket = socket;
+        this.policy = policy;
+        this.outbound = new ArrayBlockingQueue<>(policy.getQueueCapacity());
+        try {
+            this.input = new BufferedInputStream(socket.getInputStream());
+            this.output = new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error creating client streams", e);
+        }
+        this.writer = WRITER_THREADS.newThread(this::writeLoop);
+        writer.start();
+    }
+
+    /**
+     * Block until the next text line arrives
+     * @return The line, or null when the client disconnected
+     */
+    String readLine() throws IOException {
+        return input != null ? ChatProtocol.readLine(input) : null;
+    }
+
+    /**
+     * Block until the next binary frame arrives
+     * @return The opcode and body of the frame, or null when the client disconnected
+     */
+    byte[] readFrame() throws IOException {
+        return input != null ? ChatProtocol.readFrame(input) : null;
+    }
+
+    @Override
+    public void send(String line) {
+        enqueue((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void sendRaw(byte[] bytes) {
+        enqueue(bytes);
+    }
+
+    private void enqueue(byte[] bytes) {
+        if (closed.get() || output == null || bytes.length == 0) {
+            return;
+        }
+
+        pendingBytes.addAndGet(bytes.length);
+        if (outbound.offer(bytes)) {
+            return;
+        }
+        pendingBytes.addAndGet(-bytes.length);
+
+        if (policy.getOverflow() == OutboundPolicy.Overflow.DROP) {
+            policy.recordDroppedFrame();
+            LOGGER.fine("Dropped a frame for slow client " + getRemoteAddress());
+        } else {
+            policy.recordSlowClientDisconnect();
+            LOGGER.warning("Disconnecting slow client " + getRemoteAddress() + " with " + outbound.size()
+                    + " frames queued");
+            close();
+        }
+    }
+
+    /**
+     * Writer thread: take everything queued and flush it together until the connection closes
+     */
+    private void writeLoop() {
+        if (output == null) {
+            return;
+        }
+        List<byte[]> batch = new ArrayList<>(MAX_FRAMES_PER_FLUSH);
+        try {
+            while (!closed.get()) {
+                batch.add(outbound.take());
+                outbound.drainTo(batch, MAX_FRAMES_PER_FLUSH - 1);
+
+                long bytes = 0;
+                for (byte[] frame : batch) {
+                    output.write(frame);
+                    bytes += frame.length;
+                }
+                output.flush();
+                pendingBytes.addAndGet(-bytes);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Closed while waiting for output
+        } catch (IOException e) {
+            if (!closed.get()) {
+                LOGGER.log(Level.FINE, "Write failed for " + getRemoteAddress(), e);
+                close();
+            }
+        }
+    }
+
+    @Override
+    public boolean awaitWritable(long timeoutMillis) {
+        // Wait until the writer has taken everything queued so far
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!outbound.isEmpty()) {
+            if (closed.get() || System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(WRITABLE_POLL_NANOS);
+        }
+        return !closed.get();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        writer.interrupt();
+        try {
+            // Closing the socket also closes both streams and ends a write in progress
+            if (!socket.isClosed()) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing client socket", e);
+        }
+        outbound.clear();
+        pendingBytes.set(0);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get() && !socket.isClosed();
+    }
+
+    @Override
+    public int getQueuedFrames() {
+        return outbound.size();
+    }
+
+    @Override
+    public long getPendingWriteBytes() {
+        // A write finishing during close may briefly take the count below zero
+        return Math.max(0, pendingBytes.get());
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return String.valueOf(socket.getInetAddress());
+    }
+}
@@ -0,0 +1,53 @@
+package com.ueadmission.chat.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ *
+ * Instead of a token count refilled by a timer, the bucket keeps the time at
+ * which it will be full again (the generic cell rate algorithm). Taking a token
+ * moves that time forward by one refill interval and is refused when it would
+ * lie more than a full burst ahead of now. The whole state is one long, so a
+ * token is taken with a single compare-and-set.
+ */
+final class TokenBucket {
+    private final long refillNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAtNanos = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Create a full bucket
+     * @param tokensPerSecond Sustained rate
+     * @param burst Tokens available at once after a quiet period
+     */
+    TokenBucket(double tokensPerSecond, int burst) {
+        this.refillNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.burstNanos = refillNanos * Math.max(1, burst);
+    }
+
+    /**
+     * Take a token if one is available
+     */
+    boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Take a token if one is available at the given time
+     * @param nowNanos Current {@link System#nanoTime()}
+     */
+    boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long fullAt = fullAtNanos.get();
+            long next = Math.max(fullAt, nowNanos) + refillNanos;
+            if (next - nowNanos > burstNanos) {
+                return false;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, next)) {
+                return true;
+            }
+        }
+    }
+}
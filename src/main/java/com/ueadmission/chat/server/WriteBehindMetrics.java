@@ -0,0 +1,67 @@
+package com.ueadmission.chat.server;
+
+/**
+ * Point-in-time snapshot of chat message write-behind statistics
+ */
+public class WriteBehindMetrics {
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final int queueCapacity;
+    private final long enqueuedCount;
+    private final long persistedCount;
+    private final long batchCount;
+    private final long synchronousWriteCount;
+    private final long retryCount;
+    private final long failedCount;
+    private final long flushP50Micros;
+    private final long flushP99Micros;
+    private final double flushMeanMicros;
+
+    public WriteBehindMetrics(int queueDepth, int maxQueueDepth, int queueCapacity, long enqueuedCount,
+                              long persistedCount, long batchCount, long synchronousWriteCount, long retryCount,
+                              long failedCount, long flushP50Micros, long flushP99Micros, double flushMeanMicros) {
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.queueCapacity = queueCapacity;
+        this.enqueuedCount = enqueuedCount;
+        this.persistedCount = persistedCount;
+        this.batchCount = batchCount;
+        this.synchronousWriteCount = synchronousWriteCount;
+        this.retryCount = retryCount;
+        this.failedCount = failedCount;
+        this.flushP50Micros = flushP50Micros;
+        this.flushP99Micros = flushP99Micros;
+        this.flushMeanMicros = flushMeanMicros;
+    }
+
+    public int getQueueDepth() { return queueDepth; }
+    public int getMaxQueueDepth() { return maxQueueDepth; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public long getEnqueuedCount() { return enqueuedCount; }
+    public long getPersistedCount() { return persistedCount; }
+    public long getBatchCount() { return batchCount; }
+    public long getSynchronousWriteCount() { return synchronousWriteCount; }
+    public long getRetryCount() { return retryCount; }
+    public long getFailedCount() { return failedCount; }
+    public long getFlushP50Micros() { return flushP50Micros; }
+    public long getFlushP99Micros() { return flushP99Micros; }
+    public double getFlushMeanMicros() { return flushMeanMicros; }
+
+    @Override
+    public String toString() {
+        return "WriteBehindMetrics{" +
+                "depth=" + queueDepth +
+                ", maxDepth=" + maxQueueDepth +
+                ", capacity=" + queueCapacity +
+                ", enqueued=" + enqueuedCount +
+                ", persisted=" + persistedCount +
+                ", batches=" + batchCount +
+                ", syncWrites=" + synchronousWriteCount +
+                ", retries=" + retryCount +
+                ", failed=" + failedCount +
+                ", flushP50=" + flushP50Micros + "us" +
+                ", flushP99=" + flushP99Micros + "us" +
+                ", flushMean=" + String.format("%.1f", flushMeanMicros) + "us" +
+                '}';
+    }
+}
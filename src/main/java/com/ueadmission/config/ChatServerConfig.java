@@ -21,6 +21,36 @@ public class ChatServerConfig {
     private static final String DEFAULT_HOST = "localhost";
     private static final int DEFAULT_PORT = 9001;
     private static final boolean DEFAULT_AUTO_START = false;
+    private static final String DEFAULT_SERVER_ENGINE = "blocking";
+    private static final int DEFAULT_NIO_EVENT_LOOPS = 2;
+    private static final int DEFAULT_NIO_WORKER_THREADS = 8;
+    private static final int DEFAULT_NIO_MAX_PENDING_WRITE_BYTES = 1024 * 1024;
+    private static final int DEFAULT_DB_CONCURRENCY = 0;
+    private static final boolean DEFAULT_WRITE_BEHIND_ENABLED = true;
+    private static final int DEFAULT_WRITE_BEHIND_BATCH_SIZE = 100;
+    private static final int DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL_MILLIS = 50;
+    private static final int DEFAULT_WRITE_BEHIND_QUEUE_CAPACITY = 10000;
+    private static final int DEFAULT_WRITE_BEHIND_SHUTDOWN_TIMEOUT_MILLIS = 10000;
+    private static final int DEFAULT_REPLAY_PAGE_SIZE = 200;
+    private static final int DEFAULT_DELIVERY_RECEIPTS_FLUSH_INTERVAL_MILLIS = 500;
+    private static final boolean DEFAULT_BINARY_PROTOCOL = true;
+    private static final int DEFAULT_OUTBOUND_QUEUE_CAPACITY = 1024;
+    private static final String DEFAULT_OUTBOUND_OVERFLOW_POLICY = "disconnect";
+    private static final int DEFAULT_BROADCAST_SHARDS = 0;
+    private static final int DEFAULT_PRESENCE_DEBOUNCE_MILLIS = 500;
+    private static final int DEFAULT_PRESENCE_DIGEST_INTERVAL_MILLIS = 250;
+    private static final int DEFAULT_PRESENCE_FLUSH_INTERVAL_MILLIS = 2000;
+    private static final int DEFAULT_HEARTBEAT_PING_INTERVAL_MILLIS = 30000;
+    private static final int DEFAULT_HEARTBEAT_IDLE_TIMEOUT_MILLIS = 90000;
+    private static final int DEFAULT_RATE_LIMIT_DIRECT_PER_SECOND = 20;
+    private static final int DEFAULT_RATE_LIMIT_DIRECT_BURST = 40;
+    private static final int DEFAULT_RATE_LIMIT_BROADCAST_PER_SECOND = 1;
+    private static final int DEFAULT_RATE_LIMIT_BROADCAST_BURST = 3;
+    private static final int DEFAULT_RATE_LIMIT_STATUS_PER_SECOND = 2;
+    private static final int DEFAULT_RATE_LIMIT_STATUS_BURST = 5;
+    private static final int DEFAULT_RECONNECT_INITIAL_DELAY_MILLIS = 500;
+    private static final int DEFAULT_RECONNECT_MAX_DELAY_MILLIS = 30000;
+    private static final int DEFAULT_OUTBOX_BATCH_SIZE = 40;
     
     // Config file path
     private static final String CONFIG_DIR = "config";
@@ -79,6 +109,36 @@ public class ChatServerConfig {
             properties.setProperty("server.host", DEFAULT_HOST);
             properties.setProperty("server.port", String.valueOf(DEFAULT_PORT));
             properties.setProperty("server.autoStart", String.valueOf(DEFAULT_AUTO_START));
+            properties.setProperty("server.engine", DEFAULT_SERVER_ENGINE);
+            properties.setProperty("server.nio.eventLoops", String.valueOf(DEFAULT_NIO_EVENT_LOOPS));
+            properties.setProperty("server.nio.workerThreads", String.valueOf(DEFAULT_NIO_WORKER_THREADS));
+            properties.setProperty("server.nio.maxPendingWriteBytes", String.valueOf(DEFAULT_NIO_MAX_PENDING_WRITE_BYTES));
+            properties.setProperty("server.dbConcurrency", String.valueOf(DEFAULT_DB_CONCURRENCY));
+            properties.setProperty("server.writeBehind.enabled", String.valueOf(DEFAULT_WRITE_BEHIND_ENABLED));
+            properties.setProperty("server.writeBehind.batchSize", String.valueOf(DEFAULT_WRITE_BEHIND_BATCH_SIZE));
+            properties.setProperty("server.writeBehind.flushIntervalMillis", String.valueOf(DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL_MILLIS));
+            properties.setProperty("server.writeBehind.queueCapacity", String.valueOf(DEFAULT_WRITE_BEHIND_QUEUE_CAPACITY));
+            properties.setProperty("server.writeBehind.shutdownTimeoutMillis", String.valueOf(DEFAULT_WRITE_BEHIND_SHUTDOWN_TIMEOUT_MILLIS));
+            properties.setProperty("server.replay.pageSize", String.valueOf(DEFAULT_REPLAY_PAGE_SIZE));
+            properties.setProperty("server.deliveryReceipts.flushIntervalMillis", String.valueOf(DEFAULT_DELIVERY_RECEIPTS_FLUSH_INTERVAL_MILLIS));
+            properties.setProperty("server.outbound.queueCapacity", String.valueOf(DEFAULT_OUTBOUND_QUEUE_CAPACITY));
+            properties.setProperty("server.outbound.overflowPolicy", DEFAULT_OUTBOUND_OVERFLOW_POLICY);
+            properties.setProperty("server.broadcast.shards", String.valueOf(DEFAULT_BROADCAST_SHARDS));
+            properties.setProperty("server.presence.debounceMillis", String.valueOf(DEFAULT_PRESENCE_DEBOUNCE_MILLIS));
+            properties.setProperty("server.presence.digestIntervalMillis", String.valueOf(DEFAULT_PRESENCE_DIGEST_INTERVAL_MILLIS));
+            properties.setProperty("server.presence.flushIntervalMillis", String.valueOf(DEFAULT_PRESENCE_FLUSH_INTERVAL_MILLIS));
+            properties.setProperty("server.heartbeat.pingIntervalMillis", String.valueOf(DEFAULT_HEARTBEAT_PING_INTERVAL_MILLIS));
+            properties.setProperty("server.heartbeat.idleTimeoutMillis", String.valueOf(DEFAULT_HEARTBEAT_IDLE_TIMEOUT_MILLIS));
+            properties.setProperty("server.rateLimit.directPerSecond", String.valueOf(DEFAULT_RATE_LIMIT_DIRECT_PER_SECOND));
+            properties.setProperty("server.rateLimit.directBurst", String.valueOf(DEFAULT_RATE_LIMIT_DIRECT_BURST));
+            properties.setProperty("server.rateLimit.broadcastPerSecond", String.valueOf(DEFAULT_RATE_LIMIT_BROADCAST_PER_SECOND));
+            properties.setProperty("server.rateLimit.broadcastBurst", String.valueOf(DEFAULT_RATE_LIMIT_BROADCAST_BURST));
+            properties.setProperty("server.rateLimit.statusPerSecond", String.valueOf(DEFAULT_RATE_LIMIT_STATUS_PER_SECOND));
+            properties.setProperty("server.rateLimit.statusBurst", String.valueOf(DEFAULT_RATE_LIMIT_STATUS_BURST));
+            properties.setProperty("client.binaryProtocol", String.valueOf(DEFAULT_BINARY_PROTOCOL));
+            properties.setProperty("client.reconnect.initialDelayMillis", String.valueOf(DEFAULT_RECONNECT_INITIAL_DELAY_MILLIS));
+            properties.setProperty("client.reconnect.maxDelayMillis", String.valueOf(DEFAULT_RECONNECT_MAX_DELAY_MILLIS));
+            properties.setProperty("client.outbox.batchSize", String.valueOf(DEFAULT_OUTBOX_BATCH_SIZE));
             
             // Save default configuration
             saveConfig();
@@ -143,4 +203,226 @@ public class ChatServerConfig {
     public void setAutoStartEnabled(boolean autoStart) {
         properties.setProperty("server.autoStart", String.valueOf(autoStart));
     }
+    
+    /**
+     * Get the server engine: "blocking" (one platform thread per client), "virtual"
+     * (one virtual thread per client) or "nio" (selector event loops)
+     */
+    public String getServerEngine() {
+        return properties.getProperty("server.engine", DEFAULT_SERVER_ENGINE).trim().toLowerCase();
+    }
+    
+    /**
+     * Get the number of selector threads used by the NIO engine
+     */
+    public int getNioEventLoops() {
+        return getIntProperty("server.nio.eventLoops", DEFAULT_NIO_EVENT_LOOPS);
+    }
+    
+    /**
+     * Get the number of threads running protocol handlers for the NIO engine
+     */
+    public int getNioWorkerThreads() {
+        return getIntProperty("server.nio.workerThreads", DEFAULT_NIO_WORKER_THREADS);
+    }
+    
+    /**
+     * Get how many bytes of output a client may leave unread before the NIO engine disconnects it
+     */
+    public int getNioMaxPendingWriteBytes() {
+        return getIntProperty("server.nio.maxPendingWriteBytes", DEFAULT_NIO_MAX_PENDING_WRITE_BYTES);
+    }
+    
+    /**
+     * Get how many chat handlers may use the database at once (0 means the connection pool size)
+     */
+    public int getDatabaseConcurrency() {
+        return getIntProperty("server.dbConcurrency", DEFAULT_DB_CONCURRENCY);
+    }
+    
+    /**
+     * Check if direct messages are persisted by the background writer instead of the receiving handler
+     */
+    public boolean isWriteBehindEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("server.writeBehind.enabled", String.valueOf(DEFAULT_WRITE_BEHIND_ENABLED)));
+    }
+    
+    /**
+     * Get the maximum number of messages written in one batch
+     */
+    public int getWriteBehindBatchSize() {
+        return getIntProperty("server.writeBehind.batchSize", DEFAULT_WRITE_BEHIND_BATCH_SIZE);
+    }
+    
+    /**
+     * Get how long a message may wait in the write-behind queue before a partial batch is written
+     */
+    public int getWriteBehindFlushIntervalMillis() {
+        return getIntProperty("server.writeBehind.flushIntervalMillis", DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Get how many messages the write-behind queue holds before handlers write synchronously
+     */
+    public int getWriteBehindQueueCapacity() {
+        return getIntProperty("server.writeBehind.queueCapacity", DEFAULT_WRITE_BEHIND_QUEUE_CAPACITY);
+    }
+    
+    /**
+     * Get how long server shutdown waits for the write-behind queue to drain
+     */
+    public int getWriteBehindShutdownTimeoutMillis() {
+        return getIntProperty("server.writeBehind.shutdownTimeoutMillis", DEFAULT_WRITE_BEHIND_SHUTDOWN_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Get how many stored messages are sent per page when a user logs in
+     */
+    public int getReplayPageSize() {
+        return getIntProperty("server.replay.pageSize", DEFAULT_REPLAY_PAGE_SIZE);
+    }
+    
+    /**
+     * Get how often the direct messages confirmed by their receivers are marked delivered
+     */
+    public int getDeliveryReceiptsFlushIntervalMillis() {
+        return getIntProperty("server.deliveryReceipts.flushIntervalMillis", DEFAULT_DELIVERY_RECEIPTS_FLUSH_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Get how many frames may wait in one client's outbound queue
+     */
+    public int getOutboundQueueCapacity() {
+        return getIntProperty("server.outbound.queueCapacity", DEFAULT_OUTBOUND_QUEUE_CAPACITY);
+    }
+    
+    /**
+     * Get what happens when a client's outbound queue is full: "disconnect" or "drop"
+     */
+    public String getOutboundOverflowPolicy() {
+        return properties.getProperty("server.outbound.overflowPolicy", DEFAULT_OUTBOUND_OVERFLOW_POLICY).trim().toLowerCase();
+    }
+    
+    /**
+     * Get how many shards deliver a broadcast in parallel (0 means one per processor, 1 delivers on the sender's thread)
+     */
+    public int getBroadcastShards() {
+        return getIntProperty("server.broadcast.shards", DEFAULT_BROADCAST_SHARDS);
+    }
+    
+    /**
+     * Get how long a user's status must stay unchanged before other clients are told about it
+     */
+    public int getPresenceDebounceMillis() {
+        return getIntProperty("server.presence.debounceMillis", DEFAULT_PRESENCE_DEBOUNCE_MILLIS);
+    }
+    
+    /**
+     * Get how often settled status changes are sent to all clients as one digest
+     */
+    public int getPresenceDigestIntervalMillis() {
+        return getIntProperty("server.presence.digestIntervalMillis", DEFAULT_PRESENCE_DIGEST_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Get how often published status changes are written to user_status in one batch
+     */
+    public int getPresenceFlushIntervalMillis() {
+        return getIntProperty("server.presence.flushIntervalMillis", DEFAULT_PRESENCE_FLUSH_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Get how long a client connection may be quiet before the server sends it a PING
+     */
+    public int getHeartbeatPingIntervalMillis() {
+        return getIntProperty("server.heartbeat.pingIntervalMillis", DEFAULT_HEARTBEAT_PING_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Get how long a client connection may stay silent before the server closes it (0 disables the heartbeat)
+     */
+    public int getHeartbeatIdleTimeoutMillis() {
+        return getIntProperty("server.heartbeat.idleTimeoutMillis", DEFAULT_HEARTBEAT_IDLE_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Get how many direct messages per second one client may send (0 means unlimited)
+     */
+    public int getRateLimitDirectPerSecond() {
+        return getIntProperty("server.rateLimit.directPerSecond", DEFAULT_RATE_LIMIT_DIRECT_PER_SECOND);
+    }
+    
+    /**
+     * Get how many direct messages one client may send at once after a quiet period
+     */
+    public int getRateLimitDirectBurst() {
+        return getIntProperty("server.rateLimit.directBurst", DEFAULT_RATE_LIMIT_DIRECT_BURST);
+    }
+    
+    /**
+     * Get how many broadcasts per second one client may send (0 means unlimited)
+     */
+    public int getRateLimitBroadcastPerSecond() {
+        return getIntProperty("server.rateLimit.broadcastPerSecond", DEFAULT_RATE_LIMIT_BROADCAST_PER_SECOND);
+    }
+    
+    /**
+     * Get how many broadcasts one client may send at once after a quiet period
+     */
+    public int getRateLimitBroadcastBurst() {
+        return getIntProperty("server.rateLimit.broadcastBurst", DEFAULT_RATE_LIMIT_BROADCAST_BURST);
+    }
+    
+    /**
+     * Get how many status updates per second one client may send (0 means unlimited)
+     */
+    public int getRateLimitStatusPerSecond() {
+        return getIntProperty("server.rateLimit.statusPerSecond", DEFAULT_RATE_LIMIT_STATUS_PER_SECOND);
+    }
+    
+    /**
+     * Get how many status updates one client may send at once after a quiet period
+     */
+    public int getRateLimitStatusBurst() {
+        return getIntProperty("server.rateLimit.statusBurst", DEFAULT_RATE_LIMIT_STATUS_BURST);
+    }
+    
+    /**
+     * Check if the client asks the server for binary frames instead of text lines
+     */
+    public boolean isBinaryProtocolEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("client.binaryProtocol", String.valueOf(DEFAULT_BINARY_PROTOCOL)));
+    }
+    
+    /**
+     * Get the longest the client waits before its first attempt to reconnect after losing the server
+     */
+    public int getReconnectInitialDelayMillis() {
+        return getIntProperty("client.reconnect.initialDelayMillis", DEFAULT_RECONNECT_INITIAL_DELAY_MILLIS);
+    }
+    
+    /**
+     * Get the longest the client waits between attempts to reconnect, however often they failed
+     */
+    public int getReconnectMaxDelayMillis() {
+        return getIntProperty("client.reconnect.maxDelayMillis", DEFAULT_RECONNECT_MAX_DELAY_MILLIS);
+    }
+    
+    /**
+     * Get how many messages written while offline the client sends at once before waiting for their ACKs
+     */
+    public int getOutboxBatchSize() {
+        return getIntProperty("client.outbox.batchSize", DEFAULT_OUTBOX_BATCH_SIZE);
+    }
+    
+    /**
+     * Read an integer property, falling back to the default if it is missing or invalid
+     */
+    private int getIntProperty(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(properties.getProperty(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+package com.ueadmission.config;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Configuration class for database connection pool and cache settings
+ * This class provides methods to load and save pool configuration
+ */
+public class DatabaseConfig {
+    private static final Logger LOGGER = Logger.getLogger(DatabaseConfig.class.getName());
+
+    // Default values
+    private static final int DEFAULT_MAX_POOL_SIZE = 10;
+    private static final int DEFAULT_MIN_IDLE = 2;
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 5000;
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 300000;
+    private static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 30000;
+    private static final long DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS = 60000;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+    private static final long DEFAULT_QUESTION_PAPER_CACHE_TTL_MILLIS = 60000;
+
+    // Config file path
+    private static final String CONFIG_DIR = "config";
+    private static final String CONFIG_FILE = "database.properties";
+
+    // Properties
+    private static Properties properties;
+
+    // Singleton instance
+    private static DatabaseConfig instance;
+
+    /**
+     * Private constructor for singleton pattern
+     */
+    private DatabaseConfig() {
+        loadConfig();
+    }
+
+    /**
+     * Get the singleton instance
+     */
+    public static synchronized DatabaseConfig getInstance() {
+        if (instance == null) {
+            instance = new DatabaseConfig();
+        }
+        return instance;
+    }
+
+    /**
+     * Load configuration from file
+     */
+    private void loadConfig() {
+        properties = new Properties();
+
+        // Create config directory if it doesn't exist
+        Path configDir = Paths.get(CONFIG_DIR);
+        if (!Files.exists(configDir)) {
+            try {
+                Files.createDirectories(configDir);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not create config directory", e);
+            }
+        }
+
+        // Load properties from file if it exists
+        Path configFile = Paths.get(CONFIG_DIR, CONFIG_FILE);
+        if (Files.exists(configFile)) {
+            try (FileInputStream fis = new FileInputStream(configFile.toFile())) {
+                properties.load(fis);
+                LOGGER.info("Loaded database configuration from " + configFile);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not load database configuration", e);
+            }
+        } else {
+            // Create default configuration
+            properties.setProperty("pool.maxSize", String.valueOf(DEFAULT_MAX_POOL_SIZE));
+            properties.setProperty("pool.minIdle", String.valueOf(DEFAULT_MIN_IDLE));
+            properties.setProperty("pool.maxWaitMillis", String.valueOf(DEFAULT_MAX_WAIT_MILLIS));
+            properties.setProperty("pool.idleTimeoutMillis", String.valueOf(DEFAULT_IDLE_TIMEOUT_MILLIS));
+            properties.setProperty("pool.validationIntervalMillis", String.valueOf(DEFAULT_VALIDATION_INTERVAL_MILLIS));
+            properties.setProperty("pool.leakDetectionThresholdMillis", String.valueOf(DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS));
+            properties.setProperty("pool.statementCacheSize", String.valueOf(DEFAULT_STATEMENT_CACHE_SIZE));
+            properties.setProperty("cache.questionPaperTtlMillis", String.valueOf(DEFAULT_QUESTION_PAPER_CACHE_TTL_MILLIS));
+
+            // Save default configuration
+            saveConfig();
+        }
+    }
+
+    /**
+     * Save configuration to file
+     */
+    public void saveConfig() {
+        Path configFile = Paths.get(CONFIG_DIR, CONFIG_FILE);
+        try (FileOutputStream fos = new FileOutputStream(configFile.toFile())) {
+            properties.store(fos, "Database Configuration");
+            LOGGER.info("Saved database configuration to " + configFile);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save database configuration", e);
+        }
+    }
+
+    /**
+     * Get the maximum number of pooled connections
+     */
+    public int getMaxPoolSize() {
+        return getInt("pool.maxSize", DEFAULT_MAX_POOL_SIZE);
+    }
+
+    /**
+     * Get the number of idle connections kept open by the maintenance task
+     */
+    public int getMinIdle() {
+        return getInt("pool.minIdle", DEFAULT_MIN_IDLE);
+    }
+
+    /**
+     * Get how long a caller waits for a free connection before failing
+     */
+    public long getMaxWaitMillis() {
+        return getLong("pool.maxWaitMillis", DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * Get how long a connection may stay idle before it is closed
+     */
+    public long getIdleTimeoutMillis() {
+        return getLong("pool.idleTimeoutMillis", DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Get how often idle connections are validated in the background
+     */
+    public long getValidationIntervalMillis() {
+        return getLong("pool.validationIntervalMillis", DEFAULT_VALIDATION_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Get how long a connection may be leased before it is logged as a possible leak (0 disables)
+     */
+    public long getLeakDetectionThresholdMillis() {
+        return getLong("pool.leakDetectionThresholdMillis", DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS);
+    }
+
+    /**
+     * Get how many prepared statements each pooled connection keeps cached (0 disables)
+     */
+    public int getStatementCacheSize() {
+        return getInt("pool.statementCacheSize", DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Get how long a cached question paper is served before it is loaded again,
+     * so changes made by another process are picked up
+     */
+    public long getQuestionPaperCacheTtlMillis() {
+        return getLong("cache.questionPaperTtlMillis", DEFAULT_QUESTION_PAPER_CACHE_TTL_MILLIS);
+    }
+
+    private int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(properties.getProperty(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(properties.getProperty(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
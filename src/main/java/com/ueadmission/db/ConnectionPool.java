@@ -0,0 +1,421 @@
+package com.ueadmission.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ueadmission.utils.LatencyHistogram;
+
+/**
+ * Bounded JDBC connection pool with per-connection leases.
+ *
+ * Each borrower gets a proxy of its own; closing the proxy resets its session
+ * state and returns the physical connection to the pool. When every connection
+ * is leased, callers queue fairly on a semaphore for up to {@code maxWaitMillis}.
+ * Idle connections are validated and evicted by a background task instead of on
+ * every borrow, and leases held longer than the leak detection threshold are
+ * logged together with the stack trace of the borrower. Each physical connection
+ * keeps an LRU cache of its prepared statements so constant DAO queries are only
+ * prepared once per connection.
+ */
+public class ConnectionPool {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long MAINTENANCE_PERIOD_MILLIS = 1000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMillis;
+    private final long idleTimeoutNanos;
+    private final long validationIntervalNanos;
+    private final long leakDetectionThresholdNanos;
+    private final int statementCacheSize;
+
+    // One permit per connection that may be leased; fair so waiters are served in order
+    private final Semaphore permits;
+    // Most recently returned connections are handed out first
+    private final Deque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final Map<Connection, Lease> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintenanceExecutor;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+    private final LongAdder metadataCallCount = new LongAdder();
+    private long lastValidationRunNanos = System.nanoTime();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Create a new connection pool; call {@link #start()} to run its maintenance task
+     * @param url JDBC URL
+     * @param user Database user
+     * @param password Database password
+     * @param maxSize Maximum number of open connections
+     * @param minIdle Number of idle connections kept open by the maintenance task
+     * @param maxWaitMillis How long borrowers wait for a free connection
+     * @param idleTimeoutMillis How long a connection may stay idle before it is closed
+     * @param validationIntervalMillis How often idle connections are validated
+     * @param leakDetectionThresholdMillis How long a lease may be held before it is reported, 0 to disable
+     * @param statementCacheSize Prepared statements cached per connection, 0 to disable
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, int minIdle,
+                          long maxWaitMillis, long idleTimeoutMillis, long validationIntervalMillis,
+                          long leakDetectionThresholdMillis, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis);
+        this.leakDetectionThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, leakDetectionThresholdMillis));
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.permits = new Semaphore(maxSize, true);
+
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start the background task that validates, evicts and tops up idle connections
+     * and reports leaked leases. Calling it again has no effect.
+     */
+    public void start() {
+        if (closed) {
+            throw new IllegalStateException("Connection pool is closed");
+        }
+        if (started.compareAndSet(false, true)) {
+            maintenanceExecutor.scheduleWithFixedDelay(this::runMaintenance,
+                    MAINTENANCE_PERIOD_MILLIS, MAINTENANCE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Lease a connection from the pool, waiting up to the configured timeout
+     * @return A connection leased exclusively to the caller; close it to return it to the pool
+     * @throws SQLException if no connection became available in time or one could not be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            // A zero timeout still honours the fair queue, unlike the untimed tryAcquire()
+            acquired = permits.tryAcquire(0, TimeUnit.MILLISECONDS)
+                    || permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Thread interrupted while waiting for database connection", e);
+        }
+        waitTimes.record(System.nanoTime() - start);
+
+        if (!acquired) {
+            timeoutCount.increment();
+            throw new SQLTimeoutException("Timed out after " + maxWaitMillis
+                    + " ms waiting for a database connection (" + getMetrics() + ")");
+        }
+
+        try {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            PooledConnectionHandler handler = new PooledConnectionHandler(this, pooled);
+            Connection proxy = handler.getProxy();
+            leases.put(proxy, new Lease(pooled, leakDetectionThresholdNanos > 0));
+            borrowCount.increment();
+            return proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a leased connection to the pool. Called when the borrower closes its proxy.
+     * @param connection The proxy obtained from {@link #borrow()}
+     */
+    void release(Connection connection) {
+        Lease lease = leases.remove(connection);
+        if (lease == null) {
+            LOGGER.fine("Ignoring release of a connection that is not leased from this pool");
+            return;
+        }
+
+        PooledConnection pooled = lease.pooled;
+        if (lease.leakReported) {
+            LOGGER.info("Previously reported leaked connection was returned after "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lease.borrowedNanos) + " ms");
+        }
+
+        try {
+            if (closed || pooled.connection.isClosed()) {
+                destroy(pooled);
+            } else {
+                pooled.lastUsedNanos = System.nanoTime();
+                idleConnections.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Count a {@code getMetaData()} call made through a leased connection
+     */
+    void recordMetadataCall() {
+        metadataCallCount.increment();
+    }
+
+    /**
+     * Get a snapshot of pool statistics
+     */
+    public PoolMetrics getMetrics() {
+        return new PoolMetrics(
+            maxSize,
+            leases.size(),
+            idleConnections.size(),
+            permits.getQueueLength(),
+            borrowCount.sum(),
+            timeoutCount.sum(),
+            createdCount.sum(),
+            destroyedCount.sum(),
+            leakCount.sum(),
+            statementCacheHits.sum(),
+            statementCacheMisses.sum(),
+            statementCacheEvictions.sum(),
+            metadataCallCount.sum(),
+            waitTimes.getBucketCounts(),
+            waitTimes.getPercentileMicros(50),
+            waitTimes.getPercentileMicros(99),
+            waitTimes.getMeanMicros()
+        );
+    }
+
+    /**
+     * Close all idle connections and stop the maintenance task.
+     * Connections still leased are closed when they are released.
+     */
+    public void close() {
+        closed = true;
+        maintenanceExecutor.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        LOGGER.info("Connection pool closed");
+    }
+
+    /**
+     * Take the most recently used idle connection, dropping any that were closed underneath us
+     */
+    private PooledConnection takeIdleConnection() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            if (!pooled.connection.isClosed()) {
+                return pooled;
+            }
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        createdCount.increment();
+        LOGGER.info("New database connection established successfully");
+        StatementCache statementCache = statementCacheSize > 0
+                ? new StatementCache(statementCacheSize, statementCacheHits, statementCacheMisses, statementCacheEvictions)
+                : null;
+        return new PooledConnection(connection, statementCache);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        try {
+            if (!pooled.connection.isClosed()) {
+                pooled.connection.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing pooled connection", e);
+        }
+        destroyedCount.increment();
+    }
+
+    /**
+     * Report leases held longer than the leak detection threshold, once per lease
+     */
+    void detectLeaks(long now) {
+        if (leakDetectionThresholdNanos <= 0) {
+            return;
+        }
+        for (Lease lease : leases.values()) {
+            if (lease.leakReported || now - lease.borrowedNanos < leakDetectionThresholdNanos) {
+                continue;
+            }
+            lease.leakReported = true;
+            leakCount.increment();
+            LOGGER.log(Level.WARNING, "Connection leased by thread '" + lease.threadName + "' has not been returned after "
+                    + TimeUnit.NANOSECONDS.toMillis(now - lease.borrowedNanos) + " ms; possible leak", lease.borrowTrace);
+        }
+    }
+
+    /**
+     * Background task: report leaked leases, evict and validate idle connections, keep minIdle warm
+     */
+    private void runMaintenance() {
+        try {
+            long now = System.nanoTime();
+            detectLeaks(now);
+
+            if (now - lastValidationRunNanos >= validationIntervalNanos) {
+                lastValidationRunNanos = now;
+                maintainIdleConnections(now);
+            }
+
+            fillMinIdle();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Connection pool maintenance failed", e);
+        }
+    }
+
+    private void maintainIdleConnections(long now) {
+        for (PooledConnection pooled : idleConnections) {
+            boolean expired = now - pooled.lastUsedNanos > idleTimeoutNanos;
+            boolean stale = now - pooled.lastValidatedNanos > validationIntervalNanos;
+            if (!stale && !(expired && idleConnections.size() > minIdle)) {
+                continue;
+            }
+
+            // Hold a permit while the connection is out of the idle list so the pool stays bounded;
+            // if none is free the pool is busy and the connection will be validated by use
+            if (!tryAcquireNow()) {
+                return;
+            }
+            try {
+                if (!idleConnections.remove(pooled)) {
+                    continue;
+                }
+                if (expired && idleConnections.size() >= minIdle) {
+                    destroy(pooled);
+                } else if (isValid(pooled.connection)) {
+                    pooled.lastValidatedNanos = now;
+                    idleConnections.offerLast(pooled);
+                } else {
+                    LOGGER.info("Discarding invalid idle database connection");
+                    destroy(pooled);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void fillMinIdle() {
+        while (!closed && idleConnections.size() < minIdle && tryAcquireNow()) {
+            try {
+                idleConnections.offerLast(openConnection());
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Could not pre-open idle connection", e);
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Take a permit without waiting, behind any queued borrowers
+     */
+    private boolean tryAcquireNow() {
+        try {
+            return permits.tryAcquire(0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool
+     */
+    static class PooledConnection {
+        final Connection connection;
+        final int defaultIsolation;
+        final String defaultCatalog;
+        final StatementCache statementCache;
+        volatile long lastUsedNanos;
+        volatile long lastValidatedNanos;
+
+        PooledConnection(Connection connection, StatementCache statementCache) throws SQLException {
+            this.connection = connection;
+            this.statementCache = statementCache;
+            this.defaultIsolation = connection.getTransactionIsolation();
+            this.defaultCatalog = connection.getCatalog();
+            long now = System.nanoTime();
+            this.lastUsedNanos = now;
+            this.lastValidatedNanos = now;
+        }
+    }
+
+    /**
+     * A connection currently held by a borrower
+     */
+    private static class Lease {
+        private final PooledConnection pooled;
+        private final long borrowedNanos = System.nanoTime();
+        private final String threadName = Thread.currentThread().getName();
+        // Only captured when leak detection is on, filling in a stack trace is not free
+        private final Throwable borrowTrace;
+        private volatile boolean leakReported = false;
+
+        Lease(PooledConnection pooled, boolean captureTrace) {
+            this.pooled = pooled;
+            this.borrowTrace = captureTrace ? new Throwable("Connection borrowed here") : null;
+        }
+    }
+}
@@ -1,136 +1,125 @@
 package com.ueadmission.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.ueadmission.config.DatabaseConfig;
+
 /**
  * Utility class for database connection management
  */
 public class DatabaseConnection {
     // Database configuration
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/uiu_admission_db";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "admin";
-    
+    // Server-side prepared statements so the per-connection statement cache skips re-parsing,
+    // and JDBC batches of inserts sent as multi-row statements
+    static final String DB_URL = "jdbc:mysql://localhost:3306/uiu_admission_db"
+            + "?useServerPrepStmts=true&rewriteBatchedStatements=true";
+    static final String DB_USER = "root";
+    static final String DB_PASSWORD = "admin";
+
     private static final Logger LOGGER = Logger.getLogger(DatabaseConnection.class.getName());
-    
-    // Connection pool instead of singleton connection
-    private static final int MAX_POOL_SIZE = 10;
-    private static final List<Connection> connectionPool = new ArrayList<>(MAX_POOL_SIZE);
-    
-    /**
-     * Gets a connection to the database
-     * @return Connection object
-     * @throws SQLException if connection fails
-     */
-    // Lock object for thread safety
+
+    // Lock object guarding lazy pool creation and schema initialization
     private static final Object CONNECTION_LOCK = new Object();
-    private static boolean dbInitialized = false;
+    private static volatile ConnectionPool pool;
 
     /**
-     * Gets a connection to the database
+     * Leases a connection from the pool. Closing it returns it to the pool, so
+     * try-with-resources, {@link #releaseConnection(Connection)} and
+     * {@link #closeResources(Connection, PreparedStatement, ResultSet)} all hand it back.
      * @return Connection object
-     * @throws SQLException if connection fails
+     * @throws SQLException if connection fails or the pool stays exhausted past the configured wait
      */
     public static Connection getConnection() throws SQLException {
+        return getPool().borrow();
+    }
+
+    /**
+     * Returns a connection obtained from {@link #getConnection()} to the pool
+     * @param conn Connection to return, may be null
+     */
+    public static void releaseConnection(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error returning connection to pool", e);
+        }
+    }
+
+    /**
+     * Gets a snapshot of connection pool statistics
+     * @return Pool metrics, or null if the pool has not been created yet
+     */
+    public static PoolMetrics getPoolMetrics() {
+        ConnectionPool current = pool;
+        return current != null ? current.getMetrics() : null;
+    }
+
+    /**
+     * Creates the pool and initializes the database schema on first use
+     */
+    private static ConnectionPool getPool() throws SQLException {
+        ConnectionPool current = pool;
+        if (current != null) {
+            return current;
+        }
+
         synchronized (CONNECTION_LOCK) {
-            // Initialize the database if it hasn't been done yet
-            if (!dbInitialized) {
-                try {
-                    // Load the JDBC driver
-                    Class.forName("com.mysql.cj.jdbc.Driver");
-
-                    // Create a connection to initialize the database
-                    Connection initConn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-                    LOGGER.info("Database connection established successfully for initialization");
-
-                    // Initialize database
-                    DatabaseInitializer.initializeDatabase(initConn);
-                    dbInitialized = true;
-
-                    // Add this connection to the pool
-                    connectionPool.add(initConn);
-
-                } catch (ClassNotFoundException e) {
-                    LOGGER.log(Level.SEVERE, "MySQL JDBC Driver not found", e);
-                    throw new SQLException("MySQL JDBC Driver not found", e);
-                } catch (SQLException e) {
-                    LOGGER.log(Level.SEVERE, "Database initialization error", e);
-                    throw e;
-                }
+            if (pool != null) {
+                return pool;
             }
 
-            // Look for a valid connection in the pool
-            Connection validConnection = null;
-
-            // Remove invalid connections from the pool
-            Iterator<Connection> iterator = connectionPool.iterator();
-            while (iterator.hasNext()) {
-                Connection conn = iterator.next();
-                try {
-                    if (conn == null || conn.isClosed() || !conn.isValid(2)) {
-                        // Remove invalid connection
-                        iterator.remove();
-                    } else {
-                        // Found a valid connection
-                        validConnection = conn;
-                        break;
-                    }
-                } catch (SQLException e) {
-                    // Remove problematic connection
-                    iterator.remove();
-                }
+            try {
+                // Load the JDBC driver
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            } catch (ClassNotFoundException e) {
+                LOGGER.log(Level.SEVERE, "MySQL JDBC Driver not found", e);
+                throw new SQLException("MySQL JDBC Driver not found", e);
             }
 
-            // If no valid connection found and pool is not full, create a new one
-            if (validConnection == null && connectionPool.size() < MAX_POOL_SIZE) {
-                try {
-                    validConnection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-                    connectionPool.add(validConnection);
-                    LOGGER.info("New database connection established successfully");
-                } catch (SQLException e) {
-                    LOGGER.log(Level.SEVERE, "Failed to create new database connection", e);
-                    throw e;
-                }
-            } else if (validConnection == null) {
-                LOGGER.warning("Connection pool exhausted, waiting for a connection to become available");
-                // Wait for a connection to become available
-                try {
-                    Thread.sleep(500); // Wait a bit before retrying
-                    return getConnection(); // Recursively try again
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new SQLException("Thread interrupted while waiting for database connection");
-                }
+            DatabaseConfig config = DatabaseConfig.getInstance();
+            ConnectionPool created = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD,
+                    config.getMaxPoolSize(), config.getMinIdle(), config.getMaxWaitMillis(),
+                    config.getIdleTimeoutMillis(), config.getValidationIntervalMillis(),
+                    config.getLeakDetectionThresholdMillis(), config.getStatementCacheSize());
+            created.start();
+
+            // Initialize the database before anyone else can borrow
+            Connection initConn = null;
+            try {
+                initConn = created.borrow();
+                LOGGER.info("Database connection established successfully for initialization");
+                DatabaseInitializer.initializeDatabase(initConn);
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Database initialization error", e);
+                created.close();
+                throw e;
+            } finally {
+                releaseConnection(initConn);
             }
 
-            return validConnection;
+            pool = created;
+            return created;
         }
     }
-    
+
     /**
      * Closes all database connections
      */
     public static void closeAllConnections() {
         synchronized (CONNECTION_LOCK) {
-            for (Connection conn : connectionPool) {
-                try {
-                    if (conn != null && !conn.isClosed()) {
-                        conn.close();
-                    }
-                } catch (SQLException e) {
-                    LOGGER.log(Level.WARNING, "Error closing database connection", e);
-                }
+            if (pool != null) {
+                pool.close();
+                pool = null;
             }
-            connectionPool.clear();
+            // The schema is checked again when the next pool is created
+            SchemaRegistry.clear();
             LOGGER.info("All database connections closed");
         }
     }
@@ -158,12 +147,24 @@ public class DatabaseConnection {
         }
     }
 
+    /**
+     * Closes a PreparedStatement and ResultSet and returns the connection to the pool
+     * @param conn Connection obtained from {@link #getConnection()}
+     * @param ps PreparedStatement to close
+     * @param rs ResultSet to close
+     */
+    public static void closeResources(Connection conn, PreparedStatement ps, ResultSet rs) {
+        closeResources(ps, rs);
+        releaseConnection(conn);
+    }
+
     /**
      * Backward compatibility method for code that still uses closeConnection
+     * @deprecated Connections return to the pool when closed or passed to {@link #releaseConnection(Connection)}
      */
+    @Deprecated
     public static void closeConnection() {
-        // This method is kept for backward compatibility
-        // Individual connections don't need to be closed as they're returned to the pool
+        // Kept for backward compatibility; the pool stays open
         LOGGER.info("Connection returned to pool");
     }
 }
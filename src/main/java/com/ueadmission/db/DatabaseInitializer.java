@@ -4,6 +4,8 @@ import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.logging.Level;
@@ -21,12 +23,15 @@ public class DatabaseInitializer {
      */
     public static boolean initializeDatabase() {
         LOGGER.info("Initializing database schema...");
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
+            conn = DatabaseConnection.getConnection();
             return initializeDatabase(conn);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to initialize database schema", e);
             return false;
+        } finally {
+            DatabaseConnection.releaseConnection(conn);
         }
     }
 
@@ -72,58 +77,24 @@ public class DatabaseInitializer {
             stmt.executeUpdate(sql);
             LOGGER.info("Users table initialized");
         }
+        SchemaRegistry.markReady(SchemaRegistry.USERS);
     }
 
     /**
-     * Initialize chat-related tables
+     * Initialize chat-related tables. The DDL only runs when the recorded schema
+     * version is older than {@link SchemaRegistry#CHAT_SCHEMA_VERSION}; either way
+     * the tables are registered as ready afterwards.
      */
     private static void initializeChatTables(Connection conn) throws SQLException {
         try {
-            // Create chat_messages table
-            String chatMessagesSQL = "CREATE TABLE IF NOT EXISTS chat_messages (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                    "sender_id INT NOT NULL, " +
-                    "receiver_id INT, " +
-                    "message TEXT NOT NULL, " +
-                    "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                    "is_broadcast BOOLEAN DEFAULT FALSE, " +
-                    "is_read BOOLEAN DEFAULT FALSE, " +
-                    "INDEX (sender_id), " +
-                    "INDEX (receiver_id), " +
-                    "INDEX (timestamp))";
-
-            try (Statement stmt = conn.createStatement()) {
-                stmt.executeUpdate(chatMessagesSQL);
-                LOGGER.info("chat_messages table created");
-            }
-
-            // Create chat_messages_queue table
-            String chatQueueSQL = "CREATE TABLE IF NOT EXISTS chat_messages_queue (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                    "sender_id INT NOT NULL, " +
-                    "receiver_id INT NOT NULL, " +
-                    "message TEXT NOT NULL, " +
-                    "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                    "sent BOOLEAN DEFAULT FALSE, " +
-                    "attempts INT DEFAULT 0, " +
-                    "INDEX (sender_id), " +
-                    "INDEX (timestamp))";
-
-            try (Statement stmt = conn.createStatement()) {
-                stmt.executeUpdate(chatQueueSQL);
-                LOGGER.info("chat_messages_queue table created");
-            }
-
-            // Create user_status table
-            String userStatusSQL = "CREATE TABLE IF NOT EXISTS user_status (" +
-                    "user_id INT PRIMARY KEY, " +
-                    "status VARCHAR(20) DEFAULT 'offline', " +
-                    "last_active TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                    "INDEX (status))";
-
-            try (Statement stmt = conn.createStatement()) {
-                stmt.executeUpdate(userStatusSQL);
-                LOGGER.info("user_status table created");
+            int version = readSchemaVersion(conn, "chat");
+            if (version < SchemaRegistry.CHAT_SCHEMA_VERSION) {
+                createChatTables(conn);
+                writeSchemaVersion(conn, "chat", SchemaRegistry.CHAT_SCHEMA_VERSION);
+                LOGGER.info("Chat schema upgraded from version " + version + " to "
+                        + SchemaRegistry.CHAT_SCHEMA_VERSION);
+            } else {
+                LOGGER.info("Chat schema is at version " + version + ", skipping table checks");
             }
 
             // Insert default status for existing users
@@ -139,10 +110,150 @@ public class DatabaseInitializer {
                 LOGGER.log(Level.INFO, "Could not initialize user_status data: " + e.getMessage());
             }
 
+            SchemaRegistry.markReady(SchemaRegistry.CHAT_MESSAGES);
+            SchemaRegistry.markReady(SchemaRegistry.CHAT_MESSAGES_QUEUE);
+            SchemaRegistry.markReady(SchemaRegistry.USER_STATUS);
             LOGGER.info("Chat tables initialized successfully");
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to initialize chat tables", e);
             throw e;
         }
     }
+
+    /**
+     * Create the chat tables and indexes that do not exist yet
+     */
+    private static void createChatTables(Connection conn) throws SQLException {
+        // Create chat_messages table
+        String chatMessagesSQL = "CREATE TABLE IF NOT EXISTS chat_messages (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "sender_id INT NOT NULL, " +
+                "receiver_id INT, " +
+                "message TEXT NOT NULL, " +
+                "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "is_broadcast BOOLEAN DEFAULT FALSE, " +
+                "is_read BOOLEAN DEFAULT FALSE, " +
+                "is_delivered BOOLEAN DEFAULT FALSE, " +
+                "INDEX (sender_id), " +
+                "INDEX (receiver_id), " +
+                "INDEX (timestamp))";
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(chatMessagesSQL);
+            LOGGER.info("chat_messages table created");
+        }
+
+        // Set once the receiver's client confirms a direct message; is_read stays for opening the conversation
+        ensureColumn(conn, "chat_messages", "is_delivered", "BOOLEAN DEFAULT FALSE");
+
+        // Keyset pagination of a conversation walks this index backwards from a message id
+        ensureIndex(conn, "chat_messages", "idx_chat_conversation", "sender_id, receiver_id, id");
+
+        // Create chat_messages_queue table
+        String chatQueueSQL = "CREATE TABLE IF NOT EXISTS chat_messages_queue (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "sender_id INT NOT NULL, " +
+                "receiver_id INT NOT NULL, " +
+                "message TEXT NOT NULL, " +
+                "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "sent BOOLEAN DEFAULT FALSE, " +
+                "attempts INT DEFAULT 0, " +
+                "INDEX (sender_id), " +
+                "INDEX (timestamp))";
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(chatQueueSQL);
+            LOGGER.info("chat_messages_queue table created");
+        }
+
+        // Create user_status table
+        String userStatusSQL = "CREATE TABLE IF NOT EXISTS user_status (" +
+                "user_id INT PRIMARY KEY, " +
+                "status VARCHAR(20) DEFAULT 'offline', " +
+                "last_active TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "INDEX (status))";
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(userStatusSQL);
+            LOGGER.info("user_status table created");
+        }
+    }
+
+    /**
+     * Read the schema version recorded for a component, creating the version table on first use
+     * @return The recorded version, or 0 if none has been recorded
+     */
+    private static int readSchemaVersion(Connection conn, String component) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "component VARCHAR(50) PRIMARY KEY, " +
+                    "version INT NOT NULL, " +
+                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP)");
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT version FROM schema_version WHERE component = ?")) {
+            ps.setString(1, component);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Record the schema version of a component
+     */
+    private static void writeSchemaVersion(Connection conn, String component, int version) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO schema_version (component, version) VALUES (?, ?) " +
+                "ON DUPLICATE KEY UPDATE version = VALUES(version)")) {
+            ps.setString(1, component);
+            ps.setInt(2, version);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Add a column unless a table created by an earlier version already has it
+     */
+    private static void ensureColumn(Connection conn, String table, String column, String definition) throws SQLException {
+        String checkSql = "SELECT 1 FROM information_schema.columns " +
+                          "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ? LIMIT 1";
+        try (PreparedStatement ps = conn.prepareStatement(checkSql)) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            LOGGER.info("Column " + column + " added to " + table);
+        }
+    }
+
+    /**
+     * Create an index unless a table created by an earlier version already has it
+     */
+    private static void ensureIndex(Connection conn, String table, String indexName, String columns) throws SQLException {
+        String checkSql = "SELECT 1 FROM information_schema.statistics " +
+                          "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1";
+        try (PreparedStatement ps = conn.prepareStatement(checkSql)) {
+            ps.setString(1, table);
+            ps.setString(2, indexName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE INDEX " + indexName + " ON " + table + " (" + columns + ")");
+            LOGGER.info("Index " + indexName + " created on " + table);
+        }
+    }
 }
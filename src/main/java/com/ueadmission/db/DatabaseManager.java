@@ -23,6 +23,7 @@ public class DatabaseManager {
      * @return true if initialization successful, false otherwise
      */
     public static boolean initializeDatabase() {
+        Connection conn = null;
         try {
             // First ensure tables are created
             try {
@@ -48,7 +49,7 @@ public class DatabaseManager {
             String[] statements = sql.split(";");
             
             // Execute each statement
-            Connection conn = DatabaseConnection.getConnection();
+            conn = DatabaseConnection.getConnection();
             Statement stmt = conn.createStatement();
             
             boolean adminCheckDone = false;
@@ -109,6 +110,8 @@ public class DatabaseManager {
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error during database initialization", e);
             return false;
+        } finally {
+            DatabaseConnection.releaseConnection(conn);
         }
     }
 }
@@ -0,0 +1,92 @@
+package com.ueadmission.db;
+
+/**
+ * Point-in-time snapshot of connection pool statistics
+ */
+public class PoolMetrics {
+    private final int maxPoolSize;
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int waitingThreads;
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final long createdCount;
+    private final long destroyedCount;
+    private final long leakCount;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+    private final long statementCacheEvictions;
+    private final long metadataCallCount;
+    private final long[] waitTimeBuckets;
+    private final long waitTimeP50Micros;
+    private final long waitTimeP99Micros;
+    private final double waitTimeMeanMicros;
+
+    public PoolMetrics(int maxPoolSize, int activeConnections, int idleConnections, int waitingThreads,
+                       long borrowCount, long timeoutCount, long createdCount, long destroyedCount,
+                       long leakCount, long statementCacheHits, long statementCacheMisses,
+                       long statementCacheEvictions, long metadataCallCount, long[] waitTimeBuckets,
+                       long waitTimeP50Micros, long waitTimeP99Micros, double waitTimeMeanMicros) {
+        this.maxPoolSize = maxPoolSize;
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.waitingThreads = waitingThreads;
+        this.borrowCount = borrowCount;
+        this.timeoutCount = timeoutCount;
+        this.createdCount = createdCount;
+        this.destroyedCount = destroyedCount;
+        this.leakCount = leakCount;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+        this.statementCacheEvictions = statementCacheEvictions;
+        this.metadataCallCount = metadataCallCount;
+        this.waitTimeBuckets = waitTimeBuckets;
+        this.waitTimeP50Micros = waitTimeP50Micros;
+        this.waitTimeP99Micros = waitTimeP99Micros;
+        this.waitTimeMeanMicros = waitTimeMeanMicros;
+    }
+
+    public int getMaxPoolSize() { return maxPoolSize; }
+    public int getActiveConnections() { return activeConnections; }
+    public int getIdleConnections() { return idleConnections; }
+    public int getTotalConnections() { return activeConnections + idleConnections; }
+    public int getWaitingThreads() { return waitingThreads; }
+    public long getBorrowCount() { return borrowCount; }
+    public long getTimeoutCount() { return timeoutCount; }
+    public long getCreatedCount() { return createdCount; }
+    public long getDestroyedCount() { return destroyedCount; }
+    public long getLeakCount() { return leakCount; }
+    public long getStatementCacheHits() { return statementCacheHits; }
+    public long getStatementCacheMisses() { return statementCacheMisses; }
+    public long getStatementCacheEvictions() { return statementCacheEvictions; }
+    public long getMetadataCallCount() { return metadataCallCount; }
+    public long getWaitTimeP50Micros() { return waitTimeP50Micros; }
+    public long getWaitTimeP99Micros() { return waitTimeP99Micros; }
+    public double getWaitTimeMeanMicros() { return waitTimeMeanMicros; }
+
+    /**
+     * Get the wait-time histogram bucket counts
+     * @see com.ueadmission.utils.LatencyHistogram#getBucketUpperBoundMicros(int)
+     */
+    public long[] getWaitTimeBuckets() { return waitTimeBuckets.clone(); }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics{" +
+                "active=" + activeConnections +
+                ", idle=" + idleConnections +
+                ", max=" + maxPoolSize +
+                ", waiters=" + waitingThreads +
+                ", borrows=" + borrowCount +
+                ", timeouts=" + timeoutCount +
+                ", created=" + createdCount +
+                ", destroyed=" + destroyedCount +
+                ", leaks=" + leakCount +
+                ", stmtHits=" + statementCacheHits +
+                ", stmtMisses=" + statementCacheMisses +
+                ", metadataCalls=" + metadataCallCount +
+                ", waitP50=" + waitTimeP50Micros + "us" +
+                ", waitP99=" + waitTimeP99Micros + "us" +
+                '}';
+    }
+}
@@ -0,0 +1,160 @@
+package com.ueadmission.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Proxy handler for connections leased from {@link ConnectionPool}.
+ *
+ * Calling {@code close()} on the proxy hands the physical connection back to the
+ * pool instead of closing it, so try-with-resources works as expected. Session
+ * state changed by the borrower (auto-commit, isolation, read-only, catalog) is
+ * restored first so the next borrower starts from a clean connection.
+ * {@code prepareStatement(String)} is served from the connection's
+ * {@link StatementCache} when the pool has one configured, and metadata
+ * lookups are counted so the hot path can be shown to make none.
+ */
+class PooledConnectionHandler implements InvocationHandler {
+    private static final Logger LOGGER = Logger.getLogger(PooledConnectionHandler.class.getName());
+
+    private final ConnectionPool pool;
+    private final ConnectionPool.PooledConnection pooled;
+    private final Connection proxy;
+    private volatile boolean closed = false;
+
+    // Session state touched by the borrower, so close() only resets what changed
+    private boolean autoCommitChanged = false;
+    private boolean isolationChanged = false;
+    private boolean readOnlyChanged = false;
+    private boolean catalogChanged = false;
+
+    PooledConnectionHandler(ConnectionPool pool, ConnectionPool.PooledConnection pooled) {
+        this.pool = pool;
+        this.pooled = pooled;
+        this.proxy = (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+    }
+
+    /**
+     * Get the proxy handed out to the borrower
+     */
+    Connection getProxy() {
+        return proxy;
+    }
+
+    /**
+     * Get the pool entry behind this lease
+     */
+    ConnectionPool.PooledConnection getPooled() {
+        return pooled;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return closed || pooled.connection.isClosed();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "PooledConnection[" + pooled.connection + (closed ? ", returned" : "") + "]";
+            default:
+                break;
+        }
+
+        if (closed) {
+            throw new SQLException("Connection has already been returned to the pool");
+        }
+
+        if (pooled.statementCache != null && "prepareStatement".equals(method.getName()) && args.length == 1) {
+            return pooled.statementCache.prepare(pooled.connection, this.proxy, (String) args[0]);
+        }
+
+        switch (method.getName()) {
+            case "setAutoCommit":
+                autoCommitChanged = true;
+                break;
+            case "setTransactionIsolation":
+                isolationChanged = true;
+                break;
+            case "setReadOnly":
+                readOnlyChanged = true;
+                break;
+            case "setCatalog":
+                catalogChanged = true;
+                break;
+            case "getMetaData":
+                pool.recordMetadataCall();
+                break;
+            default:
+                break;
+        }
+
+        try {
+            return method.invoke(pooled.connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Restore session defaults and return the connection to the pool. Safe to call twice.
+     */
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (pooled.statementCache != null) {
+            pooled.statementCache.releaseAll();
+        }
+        try {
+            resetSessionState();
+        } catch (SQLException e) {
+            // A connection we cannot reset must not be reused
+            LOGGER.log(Level.WARNING, "Could not reset pooled connection, discarding it", e);
+            try {
+                pooled.connection.close();
+            } catch (SQLException closeEx) {
+                LOGGER.log(Level.FINE, "Error closing connection after failed reset", closeEx);
+            }
+        }
+        pool.release(proxy);
+    }
+
+    private void resetSessionState() throws SQLException {
+        Connection connection = pooled.connection;
+        if (connection.isClosed()) {
+            return;
+        }
+
+        if (autoCommitChanged && !connection.getAutoCommit()) {
+            // Anything the borrower neither committed nor rolled back is discarded
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+        if (isolationChanged && connection.getTransactionIsolation() != pooled.defaultIsolation) {
+            connection.setTransactionIsolation(pooled.defaultIsolation);
+        }
+        if (readOnlyChanged && connection.isReadOnly()) {
+            connection.setReadOnly(false);
+        }
+        if (catalogChanged && pooled.defaultCatalog != null
+                && !pooled.defaultCatalog.equals(connection.getCatalog())) {
+            connection.setCatalog(pooled.defaultCatalog);
+        }
+        connection.clearWarnings();
+    }
+}
@@ -0,0 +1,49 @@
+package com.ueadmission.db;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tables known to exist in the current schema.
+ *
+ * {@link DatabaseInitializer} registers each table once it has been created or
+ * found at the expected schema version, so DAO methods can check readiness with
+ * a set lookup instead of querying database metadata on every call.
+ */
+public final class SchemaRegistry {
+    /** Version of the chat tables and indexes this code expects */
+    public static final int CHAT_SCHEMA_VERSION = 3;
+
+    public static final String USERS = "users";
+    public static final String CHAT_MESSAGES = "chat_messages";
+    public static final String CHAT_MESSAGES_QUEUE = "chat_messages_queue";
+    public static final String USER_STATUS = "user_status";
+
+    private static final Set<String> READY_TABLES = ConcurrentHashMap.newKeySet();
+
+    private SchemaRegistry() {
+    }
+
+    /**
+     * Check whether a table has been created by the schema initializer
+     * @param table Table name
+     * @return true if the table is ready to be queried
+     */
+    public static boolean isReady(String table) {
+        return READY_TABLES.contains(table);
+    }
+
+    /**
+     * Record that a table exists at the expected version
+     */
+    static void markReady(String table) {
+        READY_TABLES.add(table);
+    }
+
+    /**
+     * Forget all tables, e.g. when the pool is closed and the schema will be checked again
+     */
+    static void clear() {
+        READY_TABLES.clear();
+    }
+}
@@ -0,0 +1,221 @@
+package com.ueadmission.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ *
+ * A cached statement is checked out to one caller at a time through a proxy whose
+ * {@code close()} clears the parameters and pending batch and hands the statement
+ * back to the cache instead of closing it. A statement whose settings the caller
+ * changed, such as its row limit or timeout, is closed instead of cached, so the
+ * next caller never inherits them. If the same SQL is prepared again while its
+ * statement is still checked out, the second caller gets a plain uncached statement.
+ */
+class StatementCache {
+    private static final Logger LOGGER = Logger.getLogger(StatementCache.class.getName());
+    /** Statement methods whose effect would outlive the checkout */
+    private static final Set<String> SETTINGS = Set.of("setMaxRows", "setLargeMaxRows", "setFetchSize",
+            "setFetchDirection", "setQueryTimeout", "setMaxFieldSize", "setEscapeProcessing", "setCursorName",
+            "setPoolable", "closeOnCompletion");
+
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Create a statement cache
+     * @param maxSize Maximum number of statements kept open
+     * @param hits Counter incremented when a cached statement is reused
+     * @param misses Counter incremented when a statement has to be prepared
+     * @param evictions Counter incremented when the least recently used statement is dropped
+     */
+    StatementCache(int maxSize, LongAdder hits, LongAdder misses, LongAdder evictions) {
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                StatementCache.this.evictions.increment();
+                Entry entry = eldest.getValue();
+                entry.evicted = true;
+                if (entry.owner == null) {
+                    closeQuietly(entry.statement);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get a prepared statement for the SQL, reusing a cached one when it is free
+     * @param physical The physical connection that owns the cache
+     * @param owner The connection proxy returned by {@link PreparedStatement#getConnection()}
+     * @param sql The SQL text
+     */
+    synchronized PreparedStatement prepare(Connection physical, Connection owner, String sql) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && entry.owner == null) {
+            hits.increment();
+            return entry.checkOut(owner);
+        }
+
+        misses.increment();
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (entry != null) {
+            // Already checked out by this lease, e.g. a nested call with the same SQL
+            return statement;
+        }
+
+        entry = new Entry(statement);
+        entries.put(sql, entry);
+        return entry.checkOut(owner);
+    }
+
+    /**
+     * Hand back every statement the borrower left open when its connection is returned
+     */
+    synchronized void releaseAll() {
+        for (Entry entry : entries.values()) {
+            if (entry.owner != null) {
+                checkIn(entry, entry.owner);
+            }
+        }
+    }
+
+    /**
+     * Get the number of cached statements
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void checkIn(Entry entry, CachedStatementHandler handler) {
+        if (entry.owner != handler) {
+            return;
+        }
+        entry.owner = null;
+
+        if (entry.evicted) {
+            closeQuietly(entry.statement);
+            return;
+        }
+        if (entry.settingsChanged) {
+            // Cheaper to prepare again than to find out which defaults to restore
+            entries.values().remove(entry);
+            closeQuietly(entry.statement);
+            return;
+        }
+        try {
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+            entry.statement.clearWarnings();
+        } catch (SQLException e) {
+            // A statement that cannot be reset is not worth keeping
+            entries.values().remove(entry);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing cached statement", e);
+        }
+    }
+
+    /**
+     * A physical statement held by the cache
+     */
+    private class Entry {
+        private final PreparedStatement statement;
+        private CachedStatementHandler owner;
+        private boolean evicted = false;
+        private boolean settingsChanged = false;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement checkOut(Connection connection) {
+            owner = new CachedStatementHandler(this, connection);
+            return owner.proxy;
+        }
+    }
+
+    /**
+     * Proxy handler for one checkout of a cached statement
+     */
+    private class CachedStatementHandler implements InvocationHandler {
+        private final Entry entry;
+        private final Connection connection;
+        private final PreparedStatement proxy;
+
+        CachedStatementHandler(Entry entry, Connection connection) {
+            this.entry = entry;
+            this.connection = connection;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean checkedOut;
+            synchronized (StatementCache.this) {
+                checkedOut = entry.owner == this;
+            }
+
+            switch (method.getName()) {
+                case "close":
+                    checkIn(entry, this);
+                    return null;
+                case "isClosed":
+                    return !checkedOut || entry.statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    break;
+            }
+
+            if (!checkedOut) {
+                throw new SQLException("Statement has already been closed");
+            }
+            if (SETTINGS.contains(method.getName())) {
+                synchronized (StatementCache.this) {
+                    entry.settingsChanged = true;
+                }
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -23,8 +23,9 @@ import com.ueadmission.navigation.NavigationUtil;
 import com.ueadmission.questionPaper.Question;
 import com.ueadmission.questionPaper.QuestionOption;
 import com.ueadmission.questionPaper.QuestionPaper;
-import com.ueadmission.questionPaper.QuestionPaperDAO;
+import com.ueadmission.questionPaper.QuestionPaperCache;
 import com.ueadmission.utils.MFXNotifications;
+import com.ueadmission.utils.ShuffledList;
 
 import io.github.palexdev.materialfx.controls.MFXButton;
 import io.github.palexdev.materialfx.controls.MFXCheckbox;
@@ -75,6 +76,7 @@ public class ExamController {
     private String selectedSchool;
     private static String selectedSchoolStatic;
     private List<Question> questions = new ArrayList<>();
+    private QuestionPaper questionPaper;
     private Map<Integer, String> userAnswers = new HashMap<>();
     private Timer countdownTimer;
     private int remainingTimeInSeconds;
@@ -210,12 +212,13 @@ public class ExamController {
      */
     private void retrieveQuestionsForSchool(String school) {
         try {
-            // Get the most recent question paper for this school that is not a mock exam
-            QuestionPaper questionPaper = QuestionPaperDAO.getMostRecentQuestionPaper(false, school);
+            // Get the most recent question paper for this school that is not a mock exam,
+            // shared with every other candidate taking the same exam
+            questionPaper = QuestionPaperCache.getInstance().getMostRecentQuestionPaper(false, school);
 
             if (questionPaper != null) {
                 // Get questions
-                questions = QuestionPaperDAO.getQuestionsForPaper(questionPaper.getId());
+                questions = questionPaper.getQuestions();
                 LOGGER.info("Retrieved " + questions.size() + " questions for " + school);
 
                 // Update total marks based on the number of questions
@@ -237,15 +240,15 @@ public class ExamController {
     }
 
     /**
-     * Shuffle questions to randomize order
+     * Shuffle questions to randomize order.
+     * The question list is shared between candidates, so only an index permutation is created.
      */
     private void shuffleQuestions() {
         if (questions == null || questions.isEmpty()) {
             return;
         }
 
-        // Use Collections.shuffle to randomize the order
-        java.util.Collections.shuffle(questions);
+        questions = ShuffledList.of(questions);
         LOGGER.info("Questions shuffled");
     }
 
@@ -475,18 +478,7 @@ public class ExamController {
 
             int studentId = authState.getUser().getId();
 
-            // Get question paper ID
-            List<QuestionPaper> allPapers = QuestionPaperDAO.getAllQuestionPapers();
-            QuestionPaper questionPaper = null;
-
-            // Find the question paper for the selected school
-            for (QuestionPaper paper : allPapers) {
-                if (paper.getSchool().equals(selectedSchool) && !paper.isMockExam()) {
-                    questionPaper = paper;
-                    break;
-                }
-            }
-
+            // The paper the questions were taken from
             if (questionPaper == null) {
                 LOGGER.warning("No question paper found for " + selectedSchool);
                 MFXNotifications.showError("Error", "No question paper found for " + selectedSchool);
@@ -657,10 +649,10 @@ public class ExamController {
                 if (connection != null) {
                     try {
                         connection.setAutoCommit(true);
-                        connection.close();
                     } catch (SQLException e) {
-                        LOGGER.log(Level.WARNING, "Error closing connection: " + e.getMessage(), e);
+                        LOGGER.log(Level.WARNING, "Error resetting auto-commit: " + e.getMessage(), e);
                     }
+                    DatabaseConnection.releaseConnection(connection);
                 }
             }
         } catch (Exception e) {
@@ -17,8 +17,9 @@ import com.ueadmission.navigation.NavigationUtil;
 import com.ueadmission.questionPaper.Question;
 import com.ueadmission.questionPaper.QuestionOption;
 import com.ueadmission.questionPaper.QuestionPaper;
-import com.ueadmission.questionPaper.QuestionPaperDAO;
+import com.ueadmission.questionPaper.QuestionPaperCache;
 import com.ueadmission.utils.MFXNotifications;
+import com.ueadmission.utils.ShuffledList;
 
 import io.github.palexdev.materialfx.controls.MFXButton;
 import io.github.palexdev.materialfx.controls.MFXCheckbox;
@@ -252,12 +253,13 @@ public class MockTestController {
      * @param school The selected school
      */
     private void retrieveQuestionsForSchool(String school) {
-        // Clear previous questions
-        questions.clear();
+        // Clear previous questions; the loaded list is shared, so replace it rather than clearing it
+        questions = new ArrayList<>();
 
         try {
-            // Get the most recent mock exam question paper for the selected school
-            QuestionPaper mockPaper = QuestionPaperDAO.getMostRecentQuestionPaper(true, school);
+            // Get the most recent mock exam question paper for the selected school,
+            // shared with every other candidate taking the same mock test
+            QuestionPaper mockPaper = QuestionPaperCache.getInstance().getMostRecentQuestionPaper(true, school);
 
             // If no mock paper found, show error
             if (mockPaper == null) {
@@ -267,7 +269,7 @@ public class MockTestController {
             }
 
             // Get questions for the paper
-            questions = QuestionPaperDAO.getQuestionsForPaper(mockPaper.getId());
+            questions = mockPaper.getQuestions();
             LOGGER.info("Retrieved " + questions.size() + " questions for school: " + school);
 
             // Set total marks based on the number of questions (each question is worth 1 mark)
@@ -1336,8 +1338,8 @@ public class MockTestController {
 
         LOGGER.info("Shuffling " + questions.size() + " questions");
 
-        // Use Collections.shuffle to randomize the order
-        java.util.Collections.shuffle(questions);
+        // The question list is shared between candidates, so only an index permutation is created
+        questions = ShuffledList.of(questions);
 
         LOGGER.info("Questions shuffled successfully");
     }
@@ -0,0 +1,166 @@
+package com.ueadmission.questionPaper;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ueadmission.config.DatabaseConfig;
+
+/**
+ * Process-wide cache of the most recent question paper per school and exam type.
+ *
+ * Cached papers are shared read-only copies built by {@link QuestionPaperSnapshot},
+ * so no exam session can change what another one is served. Concurrent misses for
+ * the same key wait for a single database load. Any write to question papers
+ * calls {@link #invalidate()}, which bumps the cache version so loads that
+ * started before the write are not cached. A paper is served for at most the
+ * configured time to live, so changes made by another process are picked up,
+ * and a load that failed is never cached.
+ */
+public class QuestionPaperCache {
+    private static final Logger LOGGER = Logger.getLogger(QuestionPaperCache.class.getName());
+
+    private static final QuestionPaperCache INSTANCE = new QuestionPaperCache(
+            QuestionPaperDAO::loadMostRecentQuestionPaper, DatabaseConfig.getInstance().getQuestionPaperCacheTtlMillis());
+
+    /**
+     * Loads the most recent paper with its questions and options
+     */
+    interface Loader {
+        /**
+         * @return The paper, or null if none exists
+         * @throws SQLException if the paper could not be loaded completely
+         */
+        QuestionPaper load(boolean isMockExam, String school) throws SQLException;
+    }
+
+    /**
+     * A cached or in-flight load
+     */
+    private static final class Entry {
+        final CompletableFuture<QuestionPaper> paper = new CompletableFuture<>();
+        // Written before the future completes
+        volatile long loadedAtNanos;
+    }
+
+    private final Loader loader;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, Entry> papers = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    /**
+     * Create a cache; use {@link #getInstance()} outside of tests
+     * @param loader Loads the most recent paper with its questions for (isMockExam, school)
+     * @param ttlMillis How long a loaded paper is served before it is loaded again
+     */
+    QuestionPaperCache(Loader loader, long ttlMillis) {
+        this.loader = loader;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+    }
+
+    /**
+     * Get the singleton instance
+     */
+    public static QuestionPaperCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the most recent question paper with its questions and options
+     *
+     * @param isMockExam Whether to get a mock exam paper or a real exam paper
+     * @param school The school to get the paper for
+     * @return A shared read-only snapshot of the paper, or null if none exists or it could not be loaded
+     */
+    public QuestionPaper getMostRecentQuestionPaper(boolean isMockExam, String school) {
+        String key = isMockExam + ":" + school;
+        while (true) {
+            Entry cached = papers.get(key);
+            if (cached != null) {
+                if (cached.paper.isDone() && System.nanoTime() - cached.loadedAtNanos > ttlNanos) {
+                    // Expired; whoever removes it first loads it again
+                    papers.remove(key, cached);
+                    continue;
+                }
+                hits.increment();
+                return await(cached.paper);
+            }
+
+            Entry loading = new Entry();
+            if (papers.putIfAbsent(key, loading) != null) {
+                // Another thread started loading first, wait for it instead
+                continue;
+            }
+            return load(key, loading, isMockExam, school);
+        }
+    }
+
+    /**
+     * Drop all cached papers; called after question papers or questions are written
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        papers.clear();
+        LOGGER.fine("Question paper cache invalidated");
+    }
+
+    /**
+     * Get the number of lookups served from the cache or an in-flight load
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of database loads
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    private QuestionPaper load(String key, Entry loading, boolean isMockExam, String school) {
+        loads.increment();
+        long loadVersion = version.get();
+        QuestionPaper paper;
+        try {
+            paper = QuestionPaperSnapshot.of(loader.load(isMockExam, school));
+        } catch (SQLException e) {
+            // Not cached, so the next lookup tries the database again
+            papers.remove(key, loading);
+            loading.paper.completeExceptionally(e);
+            LOGGER.log(Level.WARNING, "Question paper load failed", e);
+            return null;
+        } catch (RuntimeException e) {
+            papers.remove(key, loading);
+            loading.paper.completeExceptionally(e);
+            throw e;
+        }
+
+        // Misses are not cached so a paper created later is found, and a load that
+        // raced with a write is handed to its waiters but not kept
+        if (paper == null || version.get() != loadVersion) {
+            papers.remove(key, loading);
+        }
+        loading.loadedAtNanos = System.nanoTime();
+        loading.paper.complete(paper);
+        return paper;
+    }
+
+    private QuestionPaper await(CompletableFuture<QuestionPaper> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            LOGGER.log(Level.WARNING, "Question paper load failed", e.getCause());
+            return null;
+        }
+    }
+
+}
@@ -11,6 +11,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.ueadmission.db.DatabaseConnection;
+import com.ueadmission.utils.IntObjectMap;
 
 /**
  * Data Access Object for Question Paper operations
@@ -135,12 +136,13 @@ public class QuestionPaperDAO {
                 if (rs.next()) {
                     questionPaperId = rs.getInt(1);
                     LOGGER.info("Created question paper with ID: " + questionPaperId);
+                    QuestionPaperCache.getInstance().invalidate();
                 }
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error creating question paper", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return questionPaperId;
@@ -301,6 +303,7 @@ public class QuestionPaperDAO {
 
                     // Commit transaction
                     conn.commit();
+                    QuestionPaperCache.getInstance().invalidate();
                 }
             }
         } catch (SQLException e) {
@@ -321,7 +324,7 @@ public class QuestionPaperDAO {
             } catch (SQLException e) {
                 LOGGER.log(Level.WARNING, "Error resetting auto-commit", e);
             }
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return questionId;
@@ -378,7 +381,7 @@ public class QuestionPaperDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error getting question papers", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return questionPapers;
@@ -410,9 +413,27 @@ public class QuestionPaperDAO {
      * @param isMockExam Boolean flag indicating whether to get a mock exam paper (true) or a real exam paper (false).
      *                   If null, returns the most recent paper regardless of type.
      * @param school The school to filter by. If null, returns papers from any school.
-     * @return The most recent question paper matching the criteria, or null if none exists
+     * @return The most recent question paper matching the criteria, or null if none exists or it could not be loaded
      */
     public static QuestionPaper getMostRecentQuestionPaper(Boolean isMockExam, String school) {
+        try {
+            return loadMostRecentQuestionPaper(isMockExam, school);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error getting most recent question paper", e);
+            return null;
+        }
+    }
+
+    /**
+     * Load the most recent question paper with its questions and options, failing instead of
+     * returning a paper with missing questions or options
+     * 
+     * @param isMockExam Whether to get a mock exam paper, or null for either type
+     * @param school The school to filter by, or null for any school
+     * @return The most recent question paper matching the criteria, or null if none exists
+     * @throws SQLException if the paper, its questions or its options could not be read
+     */
+    static QuestionPaper loadMostRecentQuestionPaper(Boolean isMockExam, String school) throws SQLException {
         Connection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
@@ -483,8 +504,8 @@ public class QuestionPaperDAO {
                 paper.setCreatedAt(rs.getTimestamp("created_at"));
                 paper.setUpdatedAt(rs.getTimestamp("updated_at"));
 
-                // Load questions for this paper
-                List<Question> questions = getQuestionsForPaper(paper.getId());
+                // Load questions for this paper on the same connection
+                List<Question> questions = getQuestionsForPaper(conn, paper.getId());
                 for (Question question : questions) {
                     paper.addQuestion(question);
                 }
@@ -497,30 +518,50 @@ public class QuestionPaperDAO {
             } else {
                 LOGGER.warning("No question paper found for school: " + school + ", isMockExam: " + isMockExam);
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error getting most recent question paper", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return paper;
     }
 
     /**
-     * Get questions for a question paper
+     * Get questions for a question paper with their options.
+     * Questions and options are loaded with one query each on a single connection
+     * and merged in memory, instead of one options query per question.
      * 
      * @param questionPaperId The ID of the question paper
      * @return List of questions
      */
     public static List<Question> getQuestionsForPaper(int questionPaperId) {
         Connection conn = null;
-        PreparedStatement ps = null;
-        ResultSet rs = null;
         List<Question> questions = new ArrayList<>();
 
         try {
             conn = DatabaseConnection.getConnection();
+            questions = getQuestionsForPaper(conn, questionPaperId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error getting questions for paper", e);
+        } finally {
+            DatabaseConnection.releaseConnection(conn);
+        }
+
+        return questions;
+    }
 
+    /**
+     * Get questions for a question paper with their options on a connection the caller holds
+     * 
+     * @param conn The database connection
+     * @param questionPaperId The ID of the question paper
+     * @return List of questions
+     */
+    private static List<Question> getQuestionsForPaper(Connection conn, int questionPaperId) throws SQLException {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        List<Question> questions = new ArrayList<>();
+
+        try {
             String sql = "SELECT q.*, s.name as subject_name FROM questions q " +
                          "JOIN subjects s ON q.subject_id = s.id " +
                          "WHERE q.question_paper_id = ?";
@@ -546,14 +587,17 @@ public class QuestionPaperDAO {
 
                 question.setCreatedAt(rs.getTimestamp("created_at"));
                 question.setUpdatedAt(rs.getTimestamp("updated_at"));
-
-                // Get options for this question
-                question.setOptions(getOptionsForQuestion(question.getId()));
+                question.setOptions(new ArrayList<>());
 
                 questions.add(question);
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error getting questions for paper", e);
+            DatabaseConnection.closeResources(ps, rs);
+            ps = null;
+            rs = null;
+
+            if (!questions.isEmpty()) {
+                loadOptionsForQuestions(conn, questionPaperId, questions);
+            }
         } finally {
             DatabaseConnection.closeResources(ps, rs);
         }
@@ -562,23 +606,26 @@ public class QuestionPaperDAO {
     }
 
     /**
-     * Get options for a question
+     * Load the options of every question in a paper with one query and attach them to the questions
      * 
-     * @param questionId The ID of the question
-     * @return List of options
+     * @param conn The database connection
+     * @param questionPaperId The ID of the question paper
+     * @param questions The questions of the paper, with empty option lists
      */
-    private static List<QuestionOption> getOptionsForQuestion(int questionId) {
-        Connection conn = null;
+    private static void loadOptionsForQuestions(Connection conn, int questionPaperId, List<Question> questions) throws SQLException {
+        IntObjectMap<List<QuestionOption>> optionsByQuestion = new IntObjectMap<>(questions.size());
+        for (Question question : questions) {
+            optionsByQuestion.put(question.getId(), question.getOptions());
+        }
+
         PreparedStatement ps = null;
         ResultSet rs = null;
-        List<QuestionOption> options = new ArrayList<>();
-
         try {
-            conn = DatabaseConnection.getConnection();
-
-            String sql = "SELECT * FROM question_options WHERE question_id = ? ORDER BY option_order";
+            String sql = "SELECT o.* FROM question_options o " +
+                         "JOIN questions q ON o.question_id = q.id " +
+                         "WHERE q.question_paper_id = ? ORDER BY o.question_id, o.option_order";
             ps = conn.prepareStatement(sql);
-            ps.setInt(1, questionId);
+            ps.setInt(1, questionPaperId);
             rs = ps.executeQuery();
 
             while (rs.next()) {
@@ -589,15 +636,14 @@ public class QuestionPaperDAO {
                 option.setCorrect(rs.getBoolean("is_correct"));
                 option.setOptionOrder(rs.getInt("option_order"));
 
-                options.add(option);
+                List<QuestionOption> options = optionsByQuestion.get(option.getQuestionId());
+                if (options != null) {
+                    options.add(option);
+                }
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error getting options for question", e);
         } finally {
             DatabaseConnection.closeResources(ps, rs);
         }
-
-        return options;
     }
 
     /**
@@ -643,6 +689,7 @@ public class QuestionPaperDAO {
 
             // Initialize the schema again
             boolean result = initializeQuestionPaperSchema();
+            QuestionPaperCache.getInstance().invalidate();
 
             LOGGER.info("Question paper tables reset successfully");
             return result;
@@ -651,7 +698,7 @@ public class QuestionPaperDAO {
             LOGGER.log(Level.SEVERE, "Error resetting question paper tables", e);
             return false;
         } finally {
-            DatabaseConnection.closeResources(ps, null);
+            DatabaseConnection.closeResources(conn, ps, null);
         }
     }
 
@@ -765,7 +812,7 @@ public class QuestionPaperDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error getting question count", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return count;
@@ -803,7 +850,7 @@ public class QuestionPaperDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error getting total question count", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return count;
@@ -843,7 +890,7 @@ public class QuestionPaperDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error getting max questions", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return maxQuestions;
@@ -880,7 +927,7 @@ public class QuestionPaperDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error getting total max questions", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return totalMaxQuestions;
@@ -919,7 +966,7 @@ public class QuestionPaperDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error getting subjects for school", e);
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
 
         return subjects;
@@ -1019,7 +1066,7 @@ public class QuestionPaperDAO {
             LOGGER.log(Level.SEVERE, "Error initializing question paper schema", e);
             return false;
         } finally {
-            DatabaseConnection.closeResources(ps, rs);
+            DatabaseConnection.closeResources(conn, ps, rs);
         }
     }
 }
@@ -0,0 +1,289 @@
+package com.ueadmission.questionPaper;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only deep copies of question papers, shared by every exam session that
+ * is served the same cached paper. The copies do not share any mutable state
+ * with the paper they were built from, and every setter throws
+ * {@link UnsupportedOperationException}.
+ */
+final class QuestionPaperSnapshot {
+
+    private QuestionPaperSnapshot() {
+    }
+
+    /**
+     * Copy a paper with its questions and options
+     * @param paper The loaded paper, left unchanged
+     * @return A read-only copy, or null if paper is null
+     */
+    static QuestionPaper of(QuestionPaper paper) {
+        return paper == null ? null : new ReadOnlyPaper(paper);
+    }
+
+    private static Timestamp copy(Timestamp timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        Timestamp copy = new Timestamp(timestamp.getTime());
+        copy.setNanos(timestamp.getNanos());
+        return copy;
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Cached question papers are read-only");
+    }
+
+    private static final class ReadOnlyPaper extends QuestionPaper {
+        ReadOnlyPaper(QuestionPaper paper) {
+            super.setId(paper.getId());
+            super.setTitle(paper.getTitle());
+            super.setDescription(paper.getDescription());
+            super.setSchool(paper.getSchool());
+            super.setMockExam(paper.isMockExam());
+            super.setTotalQuestions(paper.getTotalQuestions());
+            super.setSubjects(paper.getSubjects());
+            super.setQuestionsPerSubject(paper.getQuestionsPerSubject());
+            super.setTimeLimitMinutes(paper.getTimeLimitMinutes());
+            super.setTotalMarks(paper.getTotalMarks());
+            super.setCreatedBy(paper.getCreatedBy());
+            super.setCreatedAt(copy(paper.getCreatedAt()));
+            super.setUpdatedAt(copy(paper.getUpdatedAt()));
+            List<Question> questions = new ArrayList<>(paper.getQuestions().size());
+            for (Question question : paper.getQuestions()) {
+                questions.add(new ReadOnlyQuestion(question));
+            }
+            super.setQuestions(Collections.unmodifiableList(questions));
+        }
+
+        @Override
+        public Timestamp getCreatedAt() {
+            return copy(super.getCreatedAt());
+        }
+
+        @Override
+        public Timestamp getUpdatedAt() {
+            return copy(super.getUpdatedAt());
+        }
+
+        @Override
+        public void setId(int id) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setTitle(String title) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setSchool(String school) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setMockExam(boolean isMockExam) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setTotalQuestions(Integer totalQuestions) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setSubjects(String subjects) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setQuestionsPerSubject(String questionsPerSubject) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setTimeLimitMinutes(Integer timeLimitMinutes) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setTotalMarks(Integer totalMarks) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setCreatedBy(int createdBy) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setCreatedAt(Timestamp createdAt) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setUpdatedAt(Timestamp updatedAt) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setQuestions(List<Question> questions) {
+            throw readOnly();
+        }
+
+        @Override
+        public void addQuestion(Question question) {
+            throw readOnly();
+        }
+    }
+
+    private static final class ReadOnlyQuestion extends Question {
+        ReadOnlyQuestion(Question question) {
+            super.setId(question.getId());
+            super.setQuestionPaperId(question.getQuestionPaperId());
+            super.setQuestionText(question.getQuestionText());
+            super.setHasImage(question.isHasImage());
+            super.setImagePath(question.getImagePath());
+            super.setHasLatex(question.isHasLatex());
+            super.setSubject(question.getSubject());
+            super.setCreatedAt(copy(question.getCreatedAt()));
+            super.setUpdatedAt(copy(question.getUpdatedAt()));
+            List<QuestionOption> options = new ArrayList<>(question.getOptions().size());
+            for (QuestionOption option : question.getOptions()) {
+                options.add(new ReadOnlyOption(option));
+            }
+            super.setOptions(Collections.unmodifiableList(options));
+        }
+
+        @Override
+        public Timestamp getCreatedAt() {
+            return copy(super.getCreatedAt());
+        }
+
+        @Override
+        public Timestamp getUpdatedAt() {
+            return copy(super.getUpdatedAt());
+        }
+
+        @Override
+        public void setId(int id) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setQuestionPaperId(int questionPaperId) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setQuestionText(String questionText) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setHasImage(boolean hasImage) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setImagePath(String imagePath) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setHasLatex(boolean hasLatex) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setSubject(String subject) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setCreatedAt(Timestamp createdAt) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setUpdatedAt(Timestamp updatedAt) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setOptions(List<QuestionOption> options) {
+            throw readOnly();
+        }
+
+        @Override
+        public void addOption(QuestionOption option) {
+            throw readOnly();
+        }
+    }
+
+    private static final class ReadOnlyOption extends QuestionOption {
+        ReadOnlyOption(QuestionOption option) {
+            super.setId(option.getId());
+            super.setQuestionId(option.getQuestionId());
+            super.setOptionText(option.getOptionText());
+            super.setCorrect(option.isCorrect());
+            super.setOptionOrder(option.getOptionOrder());
+            super.setCreatedAt(copy(option.getCreatedAt()));
+            super.setUpdatedAt(copy(option.getUpdatedAt()));
+        }
+
+        @Override
+        public Timestamp getCreatedAt() {
+            return copy(super.getCreatedAt());
+        }
+
+        @Override
+        public Timestamp getUpdatedAt() {
+            return copy(super.getUpdatedAt());
+        }
+
+        @Override
+        public void setId(int id) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setQuestionId(int questionId) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setOptionText(String optionText) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setCorrect(boolean isCorrect) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setOptionOrder(int optionOrder) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setCreatedAt(Timestamp createdAt) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setUpdatedAt(Timestamp updatedAt) {
+            throw readOnly();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ueadmission.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets.
+ * Bucket 0 counts samples below 1 µs, bucket i counts samples in
+ * [2^(i-1), 2^i) µs and the last bucket collects everything above.
+ */
+public class LatencyHistogram {
+    private static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Record a sample
+     * @param nanos The measured duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1_000;
+        int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * Get the number of recorded samples
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get the mean of all recorded samples in microseconds
+     */
+    public double getMeanMicros() {
+        long samples = count.sum();
+        return samples == 0 ? 0 : totalNanos.sum() / 1_000.0 / samples;
+    }
+
+    /**
+     * Get a copy of the bucket counts
+     */
+    public long[] getBucketCounts() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = buckets.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Get the exclusive upper bound in microseconds of a bucket
+     */
+    public static long getBucketUpperBoundMicros(int bucket) {
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Estimate a percentile from the bucket counts
+     * @param percentile Percentile between 0 and 100
+     * @return The upper bound in microseconds of the bucket containing the percentile
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long threshold = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold && counts[i] > 0) {
+                return getBucketUpperBoundMicros(i);
+            }
+        }
+        return getBucketUpperBoundMicros(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Clear all recorded samples
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+    }
+}
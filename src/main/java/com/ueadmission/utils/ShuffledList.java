@@ -0,0 +1,72 @@
+package com.ueadmission.utils;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Read-only view of a list in a random order.
+ * Only an index permutation is allocated, so many views can share one list
+ * without copying its elements.
+ */
+public class ShuffledList<E> extends AbstractList<E> implements RandomAccess {
+    private final List<E> source;
+    private final int[] order;
+
+    private ShuffledList(List<E> source, int[] order) {
+        this.source = source;
+        this.order = order;
+    }
+
+    /**
+     * Create a shuffled view of a list using a thread-local random source
+     * @param source The list to view, must support fast random access and not change size
+     */
+    public static <E> ShuffledList<E> of(List<E> source) {
+        return of(source, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Create a shuffled view of a list
+     * @param source The list to view, must support fast random access and not change size
+     * @param random The random source for the permutation
+     */
+    public static <E> ShuffledList<E> of(List<E> source, Random random) {
+        // Re-shuffling a view permutes the underlying list instead of stacking views
+        if (source instanceof ShuffledList) {
+            source = ((ShuffledList<E>) source).source;
+        }
+
+        int[] order = new int[source.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // Fisher-Yates
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return new ShuffledList<>(source, order);
+    }
+
+    @Override
+    public E get(int index) {
+        return source.get(order[index]);
+    }
+
+    @Override
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Get the position in the underlying list of the element at an index
+     */
+    public int sourceIndex(int index) {
+        return order[index];
+    }
+}
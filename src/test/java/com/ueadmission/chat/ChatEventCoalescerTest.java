@@ -0,0 +1,99 @@
+package com.ueadmission.chat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ChatEventCoalescer
+ */
+public class ChatEventCoalescerTest {
+
+    /**
+     * Records delivered events as strings
+     */
+    private static class RecordingSink implements ChatEventCoalescer.Sink {
+        final List<String> events = new ArrayList<>();
+        int completedBatches;
+
+        @Override
+        public void onMessage(int senderId, String content, LocalDateTime timestamp) {
+            events.add("msg " + senderId + " " + content);
+        }
+
+        @Override
+        public void onStatus(int userId, String status) {
+            events.add("status " + userId + " " + status);
+        }
+
+        @Override
+        public void onBatchComplete() {
+            completedBatches++;
+        }
+    }
+
+    /**
+     * Test that a burst wakes the UI thread once and is delivered in pulse-sized batches, in order,
+     * with one end-of-batch call per pulse
+     */
+    @Test
+    public void testBurstIsDeliveredInBatches() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        AtomicInteger wakeUps = new AtomicInteger();
+        ChatEventCoalescer coalescer = new ChatEventCoalescer(sink, wakeUps::incrementAndGet);
+
+        // A replay of 2000 messages arrives on the reader thread
+        Thread reader = new Thread(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < 2000; i++) {
+                coalescer.postMessage(5, "message " + i, now);
+            }
+        });
+        reader.start();
+        reader.join();
+
+        assertEquals(1, wakeUps.get(), "One wake-up for the whole burst");
+        assertEquals(ChatEventCoalescer.MAX_EVENTS_PER_PULSE, coalescer.drain(System.nanoTime()));
+        assertEquals(2000 - ChatEventCoalescer.MAX_EVENTS_PER_PULSE, coalescer.drain(System.nanoTime()));
+        assertEquals(0, coalescer.drain(System.nanoTime()));
+
+        ChatDispatchMetrics metrics = coalescer.getMetrics();
+        System.out.println("[DEBUG_LOG] " + metrics);
+        assertEquals(2000, sink.events.size());
+        assertEquals("msg 5 message 0", sink.events.get(0));
+        assertEquals("msg 5 message 1999", sink.events.get(1999));
+        assertEquals(2, metrics.getBatchCount());
+        assertEquals(2, sink.completedBatches, "Per-batch work runs once per pulse, not per message");
+        assertEquals(ChatEventCoalescer.MAX_EVENTS_PER_PULSE, metrics.getLargestBatch());
+        assertEquals(0, metrics.getPendingEvents());
+        assertTrue(metrics.getQueueLatencyP99Micros() > 0);
+    }
+
+    /**
+     * Test that only the latest status of each user in a batch is delivered, in place among the messages
+     */
+    @Test
+    public void testStatusUpdatesAreCoalesced() {
+        RecordingSink sink = new RecordingSink();
+        ChatEventCoalescer coalescer = new ChatEventCoalescer(sink, () -> { });
+        LocalDateTime now = LocalDateTime.now();
+
+        coalescer.postStatus(1, "online");
+        coalescer.postStatus(2, "online");
+        coalescer.postMessage(1, "hi", now);
+        coalescer.postStatus(1, "away");
+        coalescer.postStatus(1, "offline");
+        coalescer.drain(System.nanoTime());
+        System.out.println("[DEBUG_LOG] Delivered: " + sink.events);
+
+        assertEquals(List.of("status 2 online", "msg 1 hi", "status 1 offline"), sink.events);
+        ChatDispatchMetrics metrics = coalescer.getMetrics();
+        assertEquals(5, metrics.getPostedCount());
+        assertEquals(3, metrics.getDispatchedCount());
+        assertEquals(2, metrics.getCoalescedCount());
+    }
+}
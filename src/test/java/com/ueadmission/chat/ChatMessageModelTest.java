@@ -0,0 +1,116 @@
+package com.ueadmission.chat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ChatMessageModel
+ */
+public class ChatMessageModelTest {
+
+    private static ChatMessageItem message(int id) {
+        return ChatMessageItem.message(id, "message " + id, "Student", "student", LocalDateTime.now());
+    }
+
+    private static List<ChatMessageItem> page(int fromId, int toId) {
+        List<ChatMessageItem> items = new ArrayList<>();
+        for (int id = fromId; id <= toId; id++) {
+            items.add(message(id));
+        }
+        return items;
+    }
+
+    /**
+     * Test that appending past the capacity evicts the oldest messages but keeps the header
+     */
+    @Test
+    public void testAppendEvictsOldestBelowHeader() {
+        ChatMessageModel model = new ChatMessageModel(5);
+        model.reset(ChatMessageItem.system("Welcome", null));
+
+        assertEquals(0, model.appendAll(page(1, 4)));
+        assertEquals(2, model.append(message(5)) + model.append(message(6)));
+        System.out.println("[DEBUG_LOG] Items after eviction: " + model.size());
+
+        assertEquals(5, model.size());
+        assertTrue(model.getItems().get(0).isSystem(), "Header should never be evicted");
+        assertEquals(3, model.getOldestMessageId());
+        assertEquals(6, model.getItems().get(4).getId());
+    }
+
+    /**
+     * Test that older pages go below the header and a full model drops its newest messages instead
+     */
+    @Test
+    public void testPrependOlderEvictsNewestWhenFull() {
+        ChatMessageModel model = new ChatMessageModel(6);
+        model.reset(ChatMessageItem.system("Welcome", null));
+        model.appendAll(page(10, 12));
+
+        int evicted = model.prependOlder(page(5, 9));
+        System.out.println("[DEBUG_LOG] Evicted from the bottom: " + evicted);
+
+        assertEquals(3, evicted);
+        assertTrue(model.isFull());
+        assertTrue(model.isNewerEvicted());
+        assertEquals(5, model.getOldestMessageId());
+        assertEquals(9, model.getItems().get(5).getId());
+    }
+
+    /**
+     * Test that history evicted by appending can be loaded again once the model is full
+     */
+    @Test
+    public void testEvictedHistoryCanBeReloaded() {
+        ChatMessageModel model = new ChatMessageModel(5);
+        model.reset(ChatMessageItem.system("Welcome", null));
+        model.appendAll(page(1, 4));
+        assertEquals(2, model.appendAll(page(5, 6)));
+        assertEquals(3, model.getOldestMessageId());
+
+        // Scrolling to the top fetches the page before the oldest loaded message
+        assertEquals(2, model.prependOlder(page(1, 2)));
+        System.out.println("[DEBUG_LOG] Items after reload: " + model.size());
+
+        assertEquals(5, model.size());
+        assertTrue(model.getItems().get(0).isSystem(), "Header should never be evicted");
+        assertEquals(1, model.getOldestMessageId());
+        assertEquals(4, model.getItems().get(4).getId());
+        assertTrue(model.isNewerEvicted());
+
+        model.reset(ChatMessageItem.system("Welcome", null));
+        assertFalse(model.isNewerEvicted());
+    }
+
+    /**
+     * Test that a live message already contained in a reloaded page is recognised
+     */
+    @Test
+    public void testEndsWithSameMessage() {
+        ChatMessageModel model = new ChatMessageModel(10);
+        model.reset(ChatMessageItem.system("Welcome", null));
+        LocalDateTime sent = LocalDateTime.of(2026, 1, 5, 10, 30, 15, 400_000_000);
+        model.append(ChatMessageItem.message(7, "hello", "Student", "student", sent.withNano(0)));
+
+        assertTrue(model.endsWithSameMessage(ChatMessageItem.message(0, "hello", "Student", "student", sent)));
+        assertFalse(model.endsWithSameMessage(ChatMessageItem.message(0, "hello again", "Student", "student", sent)));
+    }
+
+    /**
+     * Test that messages without a database id are skipped when looking for the cursor
+     */
+    @Test
+    public void testOldestMessageIdSkipsUnsavedMessages() {
+        ChatMessageModel model = new ChatMessageModel(10);
+        model.reset(ChatMessageItem.system("Welcome", null));
+        model.append(message(0));
+        assertEquals(0, model.getOldestMessageId());
+
+        model.append(message(42));
+        assertEquals(42, model.getOldestMessageId());
+    }
+}
@@ -0,0 +1,114 @@
+package com.ueadmission.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ChatOutbox
+ */
+public class ChatOutboxTest {
+    private static final int SENDER_ID = 7;
+
+    /**
+     * Keeps queued messages in memory and records every delete
+     */
+    private static class MemoryStore implements ChatOutbox.Store {
+        final Map<Integer, ChatOutbox.QueuedMessage> rows = new TreeMap<>();
+        final List<Integer> deleteSizes = new ArrayList<>();
+
+        MemoryStore(int count) {
+            for (int id = 1; id <= count; id++) {
+                rows.put(id, new ChatOutbox.QueuedMessage(id, 100 + id, "message " + id, 1_700_000_000_000L + id));
+            }
+        }
+
+        @Override
+        public synchronized List<ChatOutbox.QueuedMessage> load(int senderId, int limit) {
+            assertEquals(SENDER_ID, senderId);
+            return rows.values().stream().limit(limit).collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized void delete(int[] ids, int count) {
+            deleteSizes.add(count);
+            for (int i = 0; i < count; i++) {
+                rows.remove(ids[i]);
+            }
+        }
+    }
+
+    /**
+     * Test that id counts are padded to a few DELETE sizes so the statement cache is not flooded
+     */
+    @Test
+    public void testDeleteSizesArePaddedToFixedSizes() {
+        assertEquals(1, ChatOutbox.paddedIdCount(1));
+        assertEquals(8, ChatOutbox.paddedIdCount(2));
+        assertEquals(8, ChatOutbox.paddedIdCount(8));
+        assertEquals(64, ChatOutbox.paddedIdCount(9));
+        assertEquals(ChatOutbox.MAX_IDS_PER_DELETE, ChatOutbox.paddedIdCount(65));
+        assertEquals(ChatOutbox.MAX_IDS_PER_DELETE, ChatOutbox.paddedIdCount(ChatOutbox.MAX_IDS_PER_DELETE));
+    }
+
+    /**
+     * Test that a backlog goes out as one write per batch and each batch is cleared with one delete
+     */
+    @Test
+    public void testBatchesArePipelinedAndDeletedTogether() {
+        MemoryStore store = new MemoryStore(25);
+        ChatOutbox outbox = new ChatOutbox(store, 10, 5000);
+        List<Integer> writeSizes = new ArrayList<>();
+
+        // The server answers from its own thread, after the whole batch was written
+        int sent = outbox.flush(SENDER_ID, batch -> {
+            writeSizes.add(batch.size());
+            new Thread(() -> batch.forEach(message -> outbox.acknowledge(message.id))).start();
+        });
+        System.out.println("[DEBUG_LOG] Writes: " + writeSizes + ", deletes: " + store.deleteSizes);
+
+        assertEquals(25, sent);
+        assertEquals(List.of(10, 10, 5), writeSizes);
+        assertEquals(List.of(10, 10, 5), store.deleteSizes);
+        assertTrue(store.rows.isEmpty());
+    }
+
+    /**
+     * Test that refused messages are sent again and unanswered ones stay queued
+     */
+    @Test
+    public void testUnacknowledgedMessagesStayQueued() {
+        MemoryStore store = new MemoryStore(5);
+        ChatOutbox outbox = new ChatOutbox(store, 10, 200);
+        Set<Integer> refusedOnce = ConcurrentHashMap.newKeySet();
+
+        // The server refuses message 3 the first time, as its rate limit would
+        int sent = outbox.flush(SENDER_ID, batch -> {
+            for (ChatOutbox.QueuedMessage message : batch) {
+                if (message.id != 3 || !refusedOnce.add(message.id)) {
+                    outbox.acknowledge(message.id);
+                }
+            }
+        });
+        assertEquals(5, sent);
+        assertEquals(List.of(4, 1), store.deleteSizes);
+        assertTrue(store.rows.isEmpty());
+
+        // A server that never answers leaves everything queued, and late ACKs are ignored
+        MemoryStore silent = new MemoryStore(3);
+        ChatOutbox silentOutbox = new ChatOutbox(silent, 10, 100);
+        assertEquals(0, silentOutbox.flush(SENDER_ID, batch -> { }));
+        silentOutbox.acknowledge(1);
+        System.out.println("[DEBUG_LOG] Still queued: " + silent.rows.keySet());
+
+        assertEquals(Set.of(1, 2, 3), silent.rows.keySet());
+        assertTrue(silent.deleteSizes.isEmpty());
+    }
+}
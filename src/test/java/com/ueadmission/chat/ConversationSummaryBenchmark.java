@@ -0,0 +1,222 @@
+package com.ueadmission.chat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ueadmission.db.BenchmarkDatabase;
+import com.ueadmission.db.ConnectionPool;
+
+/**
+ * JMH benchmark for loading an admin's contact list, comparing the old
+ * 2N+1 queries (users, then last message and unread count per contact) with
+ * the single aggregate query of ChatManager.loadConversationSummaries.
+ * Runs on scratch copies of users, user_status and chat_messages so the real
+ * data is not touched.
+ * Needs the local MySQL database; run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversationSummaryBenchmark {
+    private static final String USERS_TABLE = "bench_summary_users";
+    private static final String STATUS_TABLE = "bench_summary_status";
+    private static final String MESSAGES_TABLE = "bench_summary_messages";
+    private static final int MESSAGES_PER_CONTACT = 6;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"1000", "10000"})
+    public int contactCount;
+
+    private ConnectionPool pool;
+    private int adminId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        pool = BenchmarkDatabase.createPool(2, 64);
+        adminId = contactCount + 1;
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("DROP TABLE IF EXISTS " + USERS_TABLE);
+            st.executeUpdate("DROP TABLE IF EXISTS " + STATUS_TABLE);
+            st.executeUpdate("DROP TABLE IF EXISTS " + MESSAGES_TABLE);
+            st.executeUpdate("CREATE TABLE " + USERS_TABLE + " (id INT PRIMARY KEY, first_name VARCHAR(50), "
+                    + "last_name VARCHAR(50), email VARCHAR(100), role VARCHAR(20))");
+            st.executeUpdate("CREATE TABLE " + STATUS_TABLE + " LIKE user_status");
+            st.executeUpdate("CREATE TABLE " + MESSAGES_TABLE + " LIKE chat_messages");
+
+            try (PreparedStatement users = conn.prepareStatement(
+                    "INSERT INTO " + USERS_TABLE + " (id, first_name, last_name, email, role) VALUES (?, ?, ?, ?, ?)");
+                 PreparedStatement statuses = conn.prepareStatement(
+                    "INSERT INTO " + STATUS_TABLE + " (user_id, status) VALUES (?, 'offline')")) {
+                for (int id = 1; id <= adminId; id++) {
+                    users.setInt(1, id);
+                    users.setString(2, "First" + id);
+                    users.setString(3, "Last" + id);
+                    users.setString(4, "user" + id + "@example.com");
+                    users.setString(5, id == adminId ? "admin" : "student");
+                    users.addBatch();
+                    statuses.setInt(1, id);
+                    statuses.addBatch();
+                    if (id % BATCH_SIZE == 0) {
+                        users.executeBatch();
+                        statuses.executeBatch();
+                    }
+                }
+                users.executeBatch();
+                statuses.executeBatch();
+            }
+
+            // A short alternating conversation with every contact, the newest student message unread
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO " + MESSAGES_TABLE + " (sender_id, receiver_id, message, timestamp, is_read) "
+                    + "VALUES (?, ?, ?, ?, ?)")) {
+                int rows = 0;
+                long now = System.currentTimeMillis();
+                for (int m = 0; m < MESSAGES_PER_CONTACT; m++) {
+                    for (int contactId = 1; contactId <= contactCount; contactId++) {
+                        boolean fromStudent = m % 2 == 0;
+                        ps.setInt(1, fromStudent ? contactId : adminId);
+                        ps.setInt(2, fromStudent ? adminId : contactId);
+                        ps.setString(3, "jmh-summary " + m);
+                        ps.setTimestamp(4, new Timestamp(now + m * 1000L));
+                        ps.setBoolean(5, m < MESSAGES_PER_CONTACT - 2);
+                        ps.addBatch();
+                        if (++rows % BATCH_SIZE == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("DROP TABLE IF EXISTS " + USERS_TABLE);
+            st.executeUpdate("DROP TABLE IF EXISTS " + STATUS_TABLE);
+            st.executeUpdate("DROP TABLE IF EXISTS " + MESSAGES_TABLE);
+        }
+        System.out.println("[DEBUG_LOG] " + pool.getMetrics());
+        pool.close();
+    }
+
+    /**
+     * Previous behaviour: list users, then one last-message and one unread-count query per contact
+     */
+    @Benchmark
+    public long perContactQueries() throws SQLException {
+        long checksum = 0;
+        try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                "SELECT u.id, u.first_name, u.last_name, u.email, u.role, s.status "
+                + "FROM " + USERS_TABLE + " u JOIN " + STATUS_TABLE + " s ON u.id = s.user_id")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int contactId = rs.getInt("id");
+                    if (contactId == adminId) {
+                        continue;
+                    }
+                    checksum += lastMessage(contactId).length() + unreadCount(contactId);
+                }
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Current behaviour: one aggregate query for the whole contact list
+     */
+    @Benchmark
+    public long aggregateQuery() throws SQLException {
+        long checksum = 0;
+        try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                "SELECT u.id, u.first_name, u.last_name, u.email, u.role, s.status, "
+                + "lm.message AS last_message, lm.timestamp AS last_timestamp, "
+                + "COALESCE(uc.unread, 0) AS unread "
+                + "FROM " + USERS_TABLE + " u JOIN " + STATUS_TABLE + " s ON u.id = s.user_id "
+                + "LEFT JOIN ("
+                + "  SELECT partner_id, MAX(id) AS last_id FROM ("
+                + "    SELECT receiver_id AS partner_id, id FROM " + MESSAGES_TABLE + " "
+                + "    WHERE sender_id = ? AND receiver_id IS NOT NULL "
+                + "    UNION ALL "
+                + "    SELECT sender_id AS partner_id, id FROM " + MESSAGES_TABLE + " WHERE receiver_id = ?"
+                + "  ) conversation GROUP BY partner_id"
+                + ") last ON last.partner_id = u.id "
+                + "LEFT JOIN " + MESSAGES_TABLE + " lm ON lm.id = last.last_id "
+                + "LEFT JOIN ("
+                + "  SELECT sender_id, COUNT(*) AS unread FROM " + MESSAGES_TABLE + " "
+                + "  WHERE receiver_id = ? AND is_read = FALSE GROUP BY sender_id"
+                + ") uc ON uc.sender_id = u.id "
+                + "WHERE u.id != ? AND (? IS NULL OR u.role = ?)")) {
+            ps.setInt(1, adminId);
+            ps.setInt(2, adminId);
+            ps.setInt(3, adminId);
+            ps.setInt(4, adminId);
+            ps.setString(5, "student");
+            ps.setString(6, "student");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String lastMessage = rs.getString("last_message");
+                    checksum += (lastMessage != null ? lastMessage.length() : 0) + rs.getInt("unread");
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private String lastMessage(int contactId) throws SQLException {
+        try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                "SELECT message FROM " + MESSAGES_TABLE + " WHERE "
+                + "((sender_id = ? AND receiver_id = ?) OR (sender_id = ? AND receiver_id = ?)) "
+                + "ORDER BY timestamp DESC LIMIT 1")) {
+            ps.setInt(1, adminId);
+            ps.setInt(2, contactId);
+            ps.setInt(3, contactId);
+            ps.setInt(4, adminId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : "";
+            }
+        }
+    }
+
+    private int unreadCount(int contactId) throws SQLException {
+        try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                "SELECT COUNT(*) FROM " + MESSAGES_TABLE + " WHERE sender_id = ? AND receiver_id = ? AND is_read = FALSE")) {
+            ps.setInt(1, contactId);
+            ps.setInt(2, adminId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConversationSummaryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
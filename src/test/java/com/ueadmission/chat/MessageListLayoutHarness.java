@@ -0,0 +1,228 @@
+package com.ueadmission.chat;
+
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+
+/**
+ * Headless measurement of the chat message pane: layout time, live nodes and
+ * retained heap for a conversation of 1k, 10k and 50k messages, comparing
+ * <ul>
+ *   <li>vbox - one node tree per message in a VBox inside a ScrollPane (the old pane)</li>
+ *   <li>listview - the virtualized ListView with recycled {@link ChatMessageCell}s</li>
+ *   <li>listview-bounded - the same, with the model capped at {@link ChatMessageModel#DEFAULT_CAPACITY}</li>
+ * </ul>
+ * The scene is never shown, so no window opens. Run {@link #main(String[])} from
+ * the test classpath with Monocle
+ * ({@code -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw})
+ * or under {@code xvfb-run}. Message counts can be passed as arguments.
+ */
+public class MessageListLayoutHarness {
+    private static final double WIDTH = 900;
+    private static final double HEIGHT = 700;
+    private static final String[] MODES = {"vbox", "listview", "listview-bounded"};
+
+    /** Scene of the pane under test, kept reachable while the heap is measured */
+    private static Scene retained;
+
+    public static void main(String[] args) throws Exception {
+        int[] counts = args.length > 0 ? new int[args.length] : new int[] {1000, 10000, 50000};
+        for (int i = 0; i < args.length; i++) {
+            counts[i] = Integer.parseInt(args[i]);
+        }
+
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        if (!started.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("JavaFX toolkit did not start");
+        }
+
+        System.out.printf("%-18s %9s %14s %14s %10s %12s%n",
+                "mode", "messages", "layout ms", "append ms", "nodes", "retained MB");
+        for (String mode : MODES) {
+            for (int count : counts) {
+                measure(mode, count);
+            }
+        }
+        Platform.exit();
+    }
+
+    private static void measure(String mode, int count) throws Exception {
+        List<ChatMessageItem> messages = createMessages(count);
+        long baseline = usedHeap();
+
+        // Build the pane and run the first CSS and layout pass
+        long[] layout = onFxThread(() -> {
+            Parent root = "vbox".equals(mode) ? buildVBoxPane(messages)
+                    : buildListPane(messages, "listview".equals(mode) ? count + 1 : ChatMessageModel.DEFAULT_CAPACITY);
+            retained = new Scene(root, WIDTH, HEIGHT);
+            URL css = MessageListLayoutHarness.class.getResource("/com.ueadmission/chat/chat.css");
+            if (css != null) {
+                retained.getStylesheets().add(css.toExternalForm());
+            }
+
+            long start = System.nanoTime();
+            root.applyCss();
+            root.resize(WIDTH, HEIGHT);
+            root.layout();
+            return new long[] {System.nanoTime() - start};
+        });
+
+        // A new message arriving in a long conversation
+        long[] append = onFxThread(() -> {
+            Parent root = retained.getRoot();
+            long start = System.nanoTime();
+            appendMessage(root, ChatMessageItem.message(count + 1, "One more message",
+                    "Student " + count, "student", LocalDateTime.now()));
+            root.applyCss();
+            root.layout();
+            return new long[] {System.nanoTime() - start, countNodes(root)};
+        });
+
+        long retainedBytes = usedHeap() - baseline;
+        System.out.printf("%-18s %9d %14.2f %14.2f %10d %12.1f%n", mode, count,
+                layout[0] / 1_000_000.0, append[0] / 1_000_000.0, append[1],
+                retainedBytes / (1024.0 * 1024.0));
+
+        onFxThread(() -> {
+            retained = null;
+            return new long[0];
+        });
+    }
+
+    private static List<ChatMessageItem> createMessages(int count) {
+        List<ChatMessageItem> messages = new ArrayList<>(count);
+        LocalDateTime start = LocalDateTime.now().minusMinutes(count);
+        for (int i = 1; i <= count; i++) {
+            String content = "Message " + i + " about the admission test schedule and the documents to bring";
+            messages.add(i % 2 == 0
+                    ? ChatMessageItem.message(i, content, "You", "admin", start.plusMinutes(i))
+                    : ChatMessageItem.message(i, content, "Student " + i, "student", start.plusMinutes(i)));
+        }
+        return messages;
+    }
+
+    private static Parent buildListPane(List<ChatMessageItem> messages, int capacity) {
+        ChatMessageModel model = new ChatMessageModel(capacity);
+        model.reset(ChatMessageItem.system("Welcome to UIU Admission Chat Support", null));
+        model.appendAll(messages);
+
+        ListView<ChatMessageItem> listView = new ListView<>(model.getItems());
+        listView.getStyleClass().add("message-list");
+        listView.setCellFactory(lv -> new ChatMessageCell(lv, null));
+        listView.setUserData(model);
+        listView.scrollTo(model.size() - 1);
+        return listView;
+    }
+
+    private static Parent buildVBoxPane(List<ChatMessageItem> messages) {
+        VBox container = new VBox(15);
+        for (ChatMessageItem message : messages) {
+            container.getChildren().add(buildMessageNode(message));
+        }
+        ScrollPane scrollPane = new ScrollPane(container);
+        scrollPane.setFitToWidth(true);
+        scrollPane.setVvalue(1.0);
+        return scrollPane;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendMessage(Parent root, ChatMessageItem message) {
+        if (root instanceof ListView) {
+            ListView<ChatMessageItem> listView = (ListView<ChatMessageItem>) root;
+            ChatMessageModel model = (ChatMessageModel) listView.getUserData();
+            model.append(message);
+            listView.scrollTo(model.size() - 1);
+        } else {
+            ScrollPane scrollPane = (ScrollPane) root;
+            ((VBox) scrollPane.getContent()).getChildren().add(buildMessageNode(message));
+            scrollPane.setVvalue(1.0);
+        }
+    }
+
+    /**
+     * The node tree the old pane created for every message
+     */
+    private static HBox buildMessageNode(ChatMessageItem message) {
+        HBox messageBox = new HBox(10);
+        VBox messageContent = new VBox(5);
+        HBox messageHeader = new HBox(5);
+        Label messageTime = new Label(message.getTimestamp().toString());
+        messageTime.getStyleClass().add("message-time");
+        Label messageText = new Label(message.getContent());
+        messageText.getStyleClass().add("message-text");
+        messageText.setWrapText(true);
+        messageText.setMaxWidth(1560);
+
+        if (message.isSentByCurrentUser()) {
+            messageBox.setAlignment(Pos.CENTER_RIGHT);
+            messageContent.getStyleClass().addAll("message", "sent-message");
+            messageHeader.getChildren().add(messageTime);
+            messageContent.getChildren().addAll(messageHeader, messageText);
+            messageBox.getChildren().add(messageContent);
+        } else {
+            messageBox.setAlignment(Pos.CENTER_LEFT);
+            StackPane avatarPane = new StackPane(new Circle(17.5, Color.valueOf("#4CAF50")),
+                    new Label(message.getSenderName().substring(0, 1)));
+            messageContent.getStyleClass().addAll("message", "received-message", "student-message");
+            Region spacer = new Region();
+            HBox.setHgrow(spacer, Priority.ALWAYS);
+            messageHeader.getChildren().addAll(new Label(message.getSenderName()), spacer, messageTime);
+            messageContent.getChildren().addAll(messageHeader, messageText);
+            messageBox.getChildren().addAll(avatarPane, messageContent);
+        }
+        return messageBox;
+    }
+
+    private static long countNodes(Node node) {
+        long count = 1;
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+
+    private static long[] onFxThread(Supplier<long[]> task) throws Exception {
+        CompletableFuture<long[]> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(task.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.get(5, TimeUnit.MINUTES);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
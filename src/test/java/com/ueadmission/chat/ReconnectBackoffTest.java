@@ -0,0 +1,40 @@
+package com.ueadmission.chat;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ReconnectBackoff
+ */
+public class ReconnectBackoffTest {
+
+    /**
+     * Test that delays double up to the maximum, stay in the upper half of their ceiling and restart after a reset
+     */
+    @Test
+    public void testDelaysGrowWithJitterUntilReset() {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 1000);
+        long[] ceilings = {100, 200, 400, 800, 1000, 1000, 1000};
+
+        for (int round = 0; round < 50; round++) {
+            backoff.reset();
+            for (long ceiling : ceilings) {
+                long delay = backoff.nextDelayMillis();
+                assertTrue(delay >= ceiling / 2 && delay <= ceiling,
+                        "Delay " + delay + " outside [" + ceiling / 2 + ", " + ceiling + "]");
+            }
+        }
+        assertEquals(ceilings.length, backoff.getAttempts());
+
+        // Many failures in a row must not overflow the ceiling
+        for (int i = 0; i < 100; i++) {
+            backoff.nextDelayMillis();
+        }
+        long late = backoff.nextDelayMillis();
+        System.out.println("[DEBUG_LOG] Delay after 108 attempts: " + late + " ms");
+        assertTrue(late >= 500 && late <= 1000);
+
+        backoff.reset();
+        assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+}
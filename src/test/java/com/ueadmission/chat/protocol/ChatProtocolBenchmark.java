@@ -0,0 +1,129 @@
+package com.ueadmission.chat.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of encoding and decoding one delivered chat message, comparing
+ * the text protocol line and its client-side parser with the binary frame.
+ * The legacy decoder is a copy of ChatClient's text path: split on colons, try
+ * the timestamp formatters in turn and strip anything before the last colon.
+ * Run with {@link #main(String[])} from the test classpath; the GC profiler
+ * reports allocation per message as gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatProtocolBenchmark {
+    private static final int SENDER_ID = 4821;
+
+    @Param({"16", "256", "4096"})
+    public int contentLength;
+
+    private String content;
+    private LocalDateTime timestamp;
+    private byte[] textLine;
+    private byte[] framePayload;
+
+    @Setup
+    public void setUp() throws IOException {
+        char[] chars = new char[contentLength];
+        for (int i = 0; i < chars.length; i++) {
+            // Mostly ASCII with an occasional non-ASCII character, as in typical chat content
+            chars[i] = i % 40 == 39 ? 'é' : (char) ('a' + i % 26);
+        }
+        content = new String(chars);
+        timestamp = LocalDateTime.now();
+
+        textLine = textEncode();
+        // Decoding starts where the reader has already consumed the length prefix
+        framePayload = ChatProtocol.readFrame(new ByteArrayInputStream(binaryEncode()));
+    }
+
+    @Benchmark
+    public byte[] textEncode() {
+        String line = "MSG:" + SENDER_ID + ":" + timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + ":" + content + "\n";
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void legacyTextDecode(Blackhole blackhole) {
+        // The reader strips the line separator before the client sees the line
+        String message = new String(textLine, 0, textLine.length - 1, StandardCharsets.UTF_8);
+        String[] parts = message.split(":", 4);
+        blackhole.consume(Integer.parseInt(parts[1]));
+        blackhole.consume(parseLegacyTimestamp(parts[2]));
+
+        String messageContent = parts[3];
+        if (messageContent.contains(":")) {
+            int lastColonIndex = messageContent.lastIndexOf(":");
+            if (lastColonIndex >= 0 && lastColonIndex < messageContent.length() - 1) {
+                messageContent = messageContent.substring(lastColonIndex + 1);
+            }
+        }
+        blackhole.consume(messageContent);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return ChatProtocol.encodeMessage(SENDER_ID, ChatProtocol.toEpochMillis(timestamp), content);
+    }
+
+    @Benchmark
+    public void binaryDecode(Blackhole blackhole) throws ProtocolException {
+        ChatFrame frame = ChatProtocol.decode(framePayload, 0, framePayload.length);
+        blackhole.consume(frame.getId());
+        blackhole.consume(frame.getTimestamp());
+        blackhole.consume(frame.getText());
+    }
+
+    private static LocalDateTime parseLegacyTimestamp(String text) {
+        String[] patterns = {"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss.SSSSSSS",
+                "yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyy-MM-dd'T'HH:mm:ss"};
+        try {
+            return LocalDateTime.parse(text, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            // ChatClient builds each fallback formatter on every failed attempt
+            for (String pattern : patterns) {
+                try {
+                    return LocalDateTime.parse(text, DateTimeFormatter.ofPattern(pattern));
+                } catch (DateTimeParseException next) {
+                    // Try the next format
+                }
+            }
+            return LocalDateTime.now();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChatProtocolBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.ueadmission.chat.server;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of one announcement broadcast to 5000 simulated connections,
+ * measured from the call until every recipient has the frame queued. One shard
+ * is the old behaviour, a loop over all clients on the sender's thread.
+ * The simulated transports can burn CPU per frame to stand in for the queue
+ * and selector wake-up work of a real connection.
+ * Run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastFanOutBenchmark {
+    private static final int SENDER_ID = 0;
+
+    @Param({"5000"})
+    public int connections;
+
+    @Param({"1", "4", "8"})
+    public int shards;
+
+    @Param({"0", "200"})
+    public int sendCostTokens;
+
+    private ClientManager clientManager;
+    private SimulatedTransport[] transports;
+
+    /**
+     * Counts the frames queued for one simulated connection
+     */
+    private static final class SimulatedTransport implements ClientTransport {
+        final int costTokens;
+        long frames;
+
+        SimulatedTransport(int costTokens) {
+            this.costTokens = costTokens;
+        }
+
+        @Override
+        public void send(String line) {
+            frames++;
+        }
+
+        @Override
+        public void sendRaw(byte[] bytes) {
+            if (costTokens > 0) {
+                Blackhole.consumeCPU(costTokens);
+            }
+            frames++;
+        }
+
+        @Override public boolean awaitWritable(long timeoutMillis) { return true; }
+        @Override public void close() { }
+        @Override public boolean isOpen() { return true; }
+        @Override public int getQueuedFrames() { return 0; }
+        @Override public long getPendingWriteBytes() { return 0; }
+        @Override public String getRemoteAddress() { return "simulated"; }
+    }
+
+    @Setup
+    public void setUp() {
+        clientManager = new ClientManager(new OutboundPolicy(1024, OutboundPolicy.Overflow.DROP), shards,
+                (userIds, statuses, changedAt, count) -> { });
+        transports = new SimulatedTransport[connections];
+        for (int i = 0; i < connections; i++) {
+            transports[i] = new SimulatedTransport(sendCostTokens);
+            clientManager.registerClient(i + 1, new ClientHandler(transports[i], clientManager));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println(clientManager.getBroadcastMetrics());
+        clientManager.shutdown();
+    }
+
+    @Benchmark
+    public int broadcastAnnouncement() {
+        OutboundFrame frame = OutboundFrame.message(SENDER_ID, LocalDateTime.now(),
+                "The admission test results are published on the portal");
+        return clientManager.broadcastMessage(SENDER_ID, frame).join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BroadcastFanOutBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
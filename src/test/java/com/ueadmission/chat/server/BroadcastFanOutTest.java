@@ -0,0 +1,110 @@
+package com.ueadmission.chat.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for BroadcastFanOut, using in-memory transports
+ */
+public class BroadcastFanOutTest {
+    private static final int CLIENTS = 100;
+
+    private BroadcastFanOut fanOut;
+
+    /**
+     * Keeps the text frames queued for one client
+     */
+    private static class RecordingTransport implements ClientTransport {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        public synchronized void send(String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public synchronized void sendRaw(byte[] bytes) {
+            lines.add(new String(bytes, StandardCharsets.UTF_8).trim());
+        }
+
+        synchronized List<String> getLines() {
+            return new ArrayList<>(lines);
+        }
+
+        @Override public boolean awaitWritable(long timeoutMillis) { return true; }
+        @Override public void close() { }
+        @Override public boolean isOpen() { return true; }
+        @Override public int getQueuedFrames() { return 0; }
+        @Override public long getPendingWriteBytes() { return 0; }
+        @Override public String getRemoteAddress() { return "memory"; }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (fanOut != null) {
+            fanOut.shutdown();
+        }
+    }
+
+    /**
+     * Test that every client but the sender receives consecutive broadcasts in order
+     */
+    @Test
+    public void testShardedBroadcastReachesEveryClientInOrder() throws Exception {
+        fanOut = new BroadcastFanOut(4);
+        ClientManager clientManager = new ClientManager(new OutboundPolicy(1024, OutboundPolicy.Overflow.DROP), 1,
+                (userIds, statuses, changedAt, count) -> { });
+        RecordingTransport[] transports = new RecordingTransport[CLIENTS + 1];
+        for (int userId = 1; userId <= CLIENTS; userId++) {
+            transports[userId] = new RecordingTransport();
+            fanOut.add(userId, new ClientHandler(transports[userId], clientManager));
+        }
+
+        int delivered = 0;
+        for (int i = 0; i < 20; i++) {
+            delivered = fanOut.broadcast(1, OutboundFrame.status(1, "status " + i)).get(5, TimeUnit.SECONDS);
+        }
+        System.out.println("[DEBUG_LOG] " + fanOut.getMetrics());
+
+        assertEquals(CLIENTS - 1, delivered);
+        assertTrue(transports[1].getLines().isEmpty(), "Sender should be skipped");
+        for (int userId = 2; userId <= CLIENTS; userId++) {
+            List<String> lines = transports[userId].getLines();
+            assertEquals(20, lines.size(), "User " + userId);
+            for (int i = 0; i < 20; i++) {
+                assertEquals("STATUS:1:status " + i, lines.get(i));
+            }
+        }
+
+        BroadcastMetrics metrics = fanOut.getMetrics();
+        assertEquals(4, metrics.getShardCount());
+        assertEquals(20, metrics.getBroadcastCount());
+        assertEquals(20L * (CLIENTS - 1), metrics.getRecipientCount());
+    }
+
+    /**
+     * Test that removed clients no longer receive broadcasts and a single shard completes inline
+     */
+    @Test
+    public void testSingleShardRunsOnCaller() throws Exception {
+        fanOut = new BroadcastFanOut(1);
+        ClientManager clientManager = new ClientManager(new OutboundPolicy(1024, OutboundPolicy.Overflow.DROP), 1,
+                (userIds, statuses, changedAt, count) -> { });
+        RecordingTransport first = new RecordingTransport();
+        RecordingTransport second = new RecordingTransport();
+        fanOut.add(1, new ClientHandler(first, clientManager));
+        ClientHandler removed = new ClientHandler(second, clientManager);
+        fanOut.add(2, removed);
+        fanOut.remove(2, removed);
+
+        assertTrue(fanOut.broadcast(3, OutboundFrame.status(3, "online")).isDone());
+        assertEquals(List.of("STATUS:3:online"), first.getLines());
+        assertTrue(second.getLines().isEmpty());
+    }
+}
@@ -0,0 +1,178 @@
+package com.ueadmission.chat.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ueadmission.db.BenchmarkDatabase;
+import com.ueadmission.db.ConnectionPool;
+
+/**
+ * JMH benchmark for persisting one broadcast to every user, comparing the old
+ * insert-per-recipient loop, a JDBC batch and the INSERT ... SELECT used by
+ * ClientHandler.storeBroadcastMessage. Runs on scratch copies of the users and
+ * chat_messages tables so the real data is not touched.
+ * Needs the local MySQL database; run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BroadcastPersistenceBenchmark {
+    private static final String USERS_TABLE = "bench_broadcast_users";
+    private static final String MESSAGES_TABLE = "bench_broadcast_messages";
+    private static final int SENDER_ID = 1;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"1000", "10000", "50000"})
+    public int userCount;
+
+    private ConnectionPool pool;
+
+    @Setup
+    public void setUp() throws SQLException {
+        pool = BenchmarkDatabase.createPool(4, 64);
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("DROP TABLE IF EXISTS " + USERS_TABLE);
+            st.executeUpdate("DROP TABLE IF EXISTS " + MESSAGES_TABLE);
+            st.executeUpdate("CREATE TABLE " + USERS_TABLE + " (id INT PRIMARY KEY)");
+            st.executeUpdate("CREATE TABLE " + MESSAGES_TABLE + " LIKE chat_messages");
+
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO " + USERS_TABLE + " (id) VALUES (?)")) {
+                for (int id = 1; id <= userCount; id++) {
+                    ps.setInt(1, id);
+                    ps.addBatch();
+                    if (id % BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearMessages() throws SQLException {
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("TRUNCATE TABLE " + MESSAGES_TABLE);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("DROP TABLE IF EXISTS " + USERS_TABLE);
+            st.executeUpdate("DROP TABLE IF EXISTS " + MESSAGES_TABLE);
+        }
+        System.out.println("[DEBUG_LOG] " + pool.getMetrics());
+        pool.close();
+    }
+
+    /**
+     * Previous behaviour: select recipients, then one insert with its own connection lease per recipient
+     */
+    @Benchmark
+    public int insertPerRecipient() throws SQLException {
+        int stored = 0;
+        for (int receiverId : loadRecipients()) {
+            try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO " + MESSAGES_TABLE + " (sender_id, receiver_id, message, timestamp, is_read) " +
+                    "VALUES (?, ?, ?, ?, false)")) {
+                bindMessage(ps, receiverId);
+                stored += ps.executeUpdate();
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Select recipients, then insert them in JDBC batches rewritten to multi-row inserts
+     */
+    @Benchmark
+    public int batchedInsert() throws SQLException {
+        int[] recipients = loadRecipients();
+        int stored = 0;
+        try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO " + MESSAGES_TABLE + " (sender_id, receiver_id, message, timestamp, is_read) " +
+                "VALUES (?, ?, ?, ?, false)")) {
+            for (int i = 0; i < recipients.length; i++) {
+                bindMessage(ps, recipients[i]);
+                ps.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0 || i == recipients.length - 1) {
+                    for (int count : ps.executeBatch()) {
+                        stored += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+                    }
+                }
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Current behaviour: a single INSERT ... SELECT over the recipients
+     */
+    @Benchmark
+    public int insertSelect() throws SQLException {
+        try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO " + MESSAGES_TABLE + " (sender_id, receiver_id, message, timestamp, is_read) " +
+                "SELECT ?, id, ?, ?, false FROM " + USERS_TABLE + " WHERE id != ?")) {
+            ps.setInt(1, SENDER_ID);
+            ps.setString(2, "jmh-broadcast");
+            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            ps.setInt(4, SENDER_ID);
+            return ps.executeUpdate();
+        }
+    }
+
+    private int[] loadRecipients() throws SQLException {
+        try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                "SELECT id FROM " + USERS_TABLE + " WHERE id != ?")) {
+            ps.setInt(1, SENDER_ID);
+            try (ResultSet rs = ps.executeQuery()) {
+                int[] ids = new int[userCount];
+                int count = 0;
+                while (rs.next()) {
+                    ids[count++] = rs.getInt(1);
+                }
+                return Arrays.copyOf(ids, count);
+            }
+        }
+    }
+
+    private static void bindMessage(PreparedStatement ps, int receiverId) throws SQLException {
+        ps.setInt(1, SENDER_ID);
+        ps.setInt(2, receiverId);
+        ps.setString(3, "jmh-broadcast");
+        ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BroadcastPersistenceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,179 @@
+package com.ueadmission.chat.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.ueadmission.db.BenchmarkDatabase;
+import com.ueadmission.db.ConnectionPool;
+import com.ueadmission.utils.LatencyHistogram;
+
+/**
+ * Load-test harness comparing chat server engines.
+ *
+ * For each engine an in-process {@link ChatServer} is started on the standard port,
+ * N simulated clients connect and authenticate as the first N users, and every
+ * client sends messages to its neighbour. Connect latency, end-to-end message
+ * latency p50/p99 and the process RSS and thread count are reported.
+ *
+ * Needs the local MySQL database with at least N users. Messages sent by the
+ * harness are deleted afterwards.
+ *
+ * Usage: ChatLoadHarness [clients] [messagesPerClient]
+ * Engines can be chosen with -Dload.engines=blocking,virtual,nio
+ */
+public class ChatLoadHarness {
+    private static final int PORT = 9001;
+    private static final String MESSAGE_PREFIX = "loadtest:";
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int messagesPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        String[] engines = System.getProperty("load.engines", "blocking,virtual").split(",");
+
+        ConnectionPool pool = BenchmarkDatabase.createPool(2, 0);
+        try {
+            int[] userIds = BenchmarkDatabase.loadUserIds(pool, clients);
+            for (String engine : engines) {
+                run(engine.trim(), userIds, messagesPerClient);
+                deleteHarnessMessages(pool);
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static void run(String engine, int[] userIds, int messagesPerClient) throws Exception {
+        int clients = userIds.length;
+        long rssBefore = readProcStatus("VmRSS:");
+
+        ChatServer server = new ChatServer(engine);
+        server.start();
+
+        LatencyHistogram connectLatency = new LatencyHistogram();
+        LatencyHistogram messageLatency = new LatencyHistogram();
+        CountDownLatch received = new CountDownLatch(clients * messagesPerClient);
+        List<Socket> sockets = new ArrayList<>();
+
+        // Client side always uses virtual threads so only the server engine changes between runs
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int userId : userIds) {
+                long start = System.nanoTime();
+                Socket socket = new Socket("localhost", PORT);
+                send(socket, "AUTH:" + userId);
+                connectLatency.record(System.nanoTime() - start);
+                sockets.add(socket);
+                clientThreads.submit(() -> readMessages(socket, messageLatency, received));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (server.getConnectedClientCount() < clients && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            System.out.println("[DEBUG_LOG] " + engine + ": " + server.getConnectedClientCount() + "/" + clients
+                    + " clients authenticated");
+
+            long sendStart = System.nanoTime();
+            for (int i = 0; i < clients; i++) {
+                Socket socket = sockets.get(i);
+                int receiverId = userIds[(i + 1) % clients];
+                clientThreads.submit(() -> {
+                    for (int m = 0; m < messagesPerClient; m++) {
+                        send(socket, "MSG:" + receiverId + ":" + MESSAGE_PREFIX + System.nanoTime());
+                    }
+                    return null;
+                });
+            }
+
+            boolean complete = received.await(120, TimeUnit.SECONDS);
+            long elapsedMillis = (System.nanoTime() - sendStart) / 1_000_000;
+            long rssPeak = readProcStatus("VmRSS:");
+            long threads = readProcStatus("Threads:");
+
+            System.out.println("[DEBUG_LOG] " + engine + ": clients=" + clients
+                    + " messages=" + messageLatency.getCount() + (complete ? "" : " (incomplete)")
+                    + " in " + elapsedMillis + " ms");
+            System.out.println("[DEBUG_LOG] " + engine + ": connect p50=" + connectLatency.getPercentileMicros(50)
+                    + "us p99=" + connectLatency.getPercentileMicros(99) + "us");
+            System.out.println("[DEBUG_LOG] " + engine + ": message p50=" + messageLatency.getPercentileMicros(50)
+                    + "us p99=" + messageLatency.getPercentileMicros(99) + "us");
+            System.out.println("[DEBUG_LOG] " + engine + ": rss=" + rssPeak / 1024 + " MB (+"
+                    + (rssPeak - rssBefore) / 1024 + " MB) threads=" + threads);
+
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Record the latency of every harness message a client receives, ignoring status updates
+     */
+    private static Void readMessages(Socket socket, LatencyHistogram latency, CountDownLatch received) {
+        try {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                int index = line.indexOf(MESSAGE_PREFIX);
+                if (line.startsWith("MSG:") && index >= 0) {
+                    long sentNanos = Long.parseLong(line.substring(index + MESSAGE_PREFIX.length()));
+                    latency.record(System.nanoTime() - sentNanos);
+                    received.countDown();
+                }
+            }
+        } catch (IOException e) {
+            // Socket closed at the end of the run
+        }
+        return null;
+    }
+
+    private static void send(Socket socket, String line) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        synchronized (socket) {
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    /**
+     * Read a numeric field from /proc/self/status (kB for memory fields), or -1 if unavailable
+     */
+    private static long readProcStatus(String field) {
+        Path status = Paths.get("/proc/self/status");
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux
+        }
+        return -1;
+    }
+
+    private static void deleteHarnessMessages(ConnectionPool pool) throws Exception {
+        try (Connection conn = pool.borrow();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM chat_messages WHERE message LIKE ?")) {
+            ps.setString(1, MESSAGE_PREFIX + "%");
+            System.out.println("[DEBUG_LOG] Deleted " + ps.executeUpdate() + " harness messages");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.ueadmission.chat.server;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ChatMessageWriter, using an in-memory sink instead of MySQL
+ */
+public class ChatMessageWriterTest {
+
+    /**
+     * In-memory sink recording every batch it receives
+     */
+    private static class RecordingSink implements ChatMessageWriter.BatchSink {
+        final List<List<ChatMessageWriter.PendingMessage>> batches = new CopyOnWriteArrayList<>();
+        final AtomicInteger failuresLeft = new AtomicInteger();
+
+        @Override
+        public void write(List<ChatMessageWriter.PendingMessage> batch) throws SQLException {
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new SQLException("Simulated failure");
+            }
+            batches.add(new ArrayList<>(batch));
+        }
+
+        int messageCount() {
+            int count = 0;
+            for (List<ChatMessageWriter.PendingMessage> batch : batches) {
+                count += batch.size();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Test that queued messages are written in batches no larger than the batch size, in order
+     */
+    @Test
+    public void testMessagesAreWrittenInOrderedBatches() {
+        RecordingSink sink = new RecordingSink();
+        ChatMessageWriter writer = new ChatMessageWriter(10, 20, 1000, sink);
+        writer.start();
+
+        for (int i = 0; i < 95; i++) {
+            writer.enqueue(1, 2, "message " + i, LocalDateTime.now());
+        }
+        writer.shutdown(5000);
+
+        System.out.println("[DEBUG_LOG] " + sink.batches.size() + " batches, " + writer.getMetrics());
+        assertEquals(95, sink.messageCount());
+        int expected = 0;
+        for (List<ChatMessageWriter.PendingMessage> batch : sink.batches) {
+            assertTrue(batch.size() <= 10, "Batch larger than the batch size");
+            for (ChatMessageWriter.PendingMessage message : batch) {
+                assertEquals("message " + expected++, message.content);
+            }
+        }
+        assertEquals(95, writer.getMetrics().getPersistedCount());
+        assertEquals(0, writer.getMetrics().getQueueDepth());
+    }
+
+    /**
+     * Test that a partial batch is written once the flush interval passes
+     */
+    @Test
+    public void testPartialBatchIsFlushedAfterInterval() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        ChatMessageWriter writer = new ChatMessageWriter(100, 20, 1000, sink);
+        writer.start();
+
+        writer.enqueue(1, 2, "hello", LocalDateTime.now());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (sink.messageCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, sink.messageCount(), "Message should be written without waiting for a full batch");
+        writer.shutdown(5000);
+    }
+
+    /**
+     * Test that handlers write synchronously when the queue is full or the writer is stopped
+     */
+    @Test
+    public void testFullQueueAndStoppedWriterFallBackToSynchronousWrites() {
+        RecordingSink sink = new RecordingSink();
+        // Not started, so nothing drains the queue until shutdown
+        ChatMessageWriter writer = new ChatMessageWriter(2, 10, 4, sink);
+
+        for (int i = 0; i < 6; i++) {
+            writer.enqueue(1, 2, "message " + i, LocalDateTime.now());
+        }
+        assertEquals(2, sink.messageCount(), "Overflow should be written by the caller");
+        assertEquals(4, writer.getMetrics().getQueueDepth());
+
+        writer.shutdown(1000);
+        writer.enqueue(1, 2, "after shutdown", LocalDateTime.now());
+
+        System.out.println("[DEBUG_LOG] " + writer.getMetrics());
+        assertEquals(7, sink.messageCount(), "No message may be lost");
+        assertEquals(3, writer.getMetrics().getSynchronousWriteCount());
+    }
+
+    /**
+     * Test that a failed batch is retried before being counted as failed
+     */
+    @Test
+    public void testFailedBatchIsRetried() {
+        RecordingSink sink = new RecordingSink();
+        sink.failuresLeft.set(1);
+        ChatMessageWriter writer = new ChatMessageWriter(10, 10, 100, sink);
+        writer.start();
+
+        writer.enqueue(1, 2, "retry me", LocalDateTime.now());
+        writer.shutdown(5000);
+
+        assertEquals(1, sink.messageCount());
+        assertEquals(1, writer.getMetrics().getRetryCount());
+        assertEquals(0, writer.getMetrics().getFailedCount());
+    }
+}
@@ -0,0 +1,75 @@
+package com.ueadmission.chat.server;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ClientManager, using in-memory transports
+ */
+public class ClientManagerTest {
+
+    /**
+     * Keeps the text lines queued for one client
+     */
+    private static class RecordingTransport implements ClientTransport {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        public synchronized void send(String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public synchronized void sendRaw(byte[] bytes) {
+            for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+                lines.add(line);
+            }
+        }
+
+        @Override public boolean awaitWritable(long timeoutMillis) { return true; }
+        @Override public void close() { }
+        @Override public boolean isOpen() { return true; }
+        @Override public int getQueuedFrames() { return 0; }
+        @Override public long getPendingWriteBytes() { return 0; }
+        @Override public String getRemoteAddress() { return "memory"; }
+    }
+
+    /**
+     * Test that reaping a half-open connection after the user reconnected keeps the new connection
+     */
+    @Test
+    public void testStaleConnectionDoesNotUnregisterReconnectedUser() throws Exception {
+        ClientManager clientManager = new ClientManager(new OutboundPolicy(1024, OutboundPolicy.Overflow.DROP), 1,
+                (userIds, statuses, changedAt, count) -> { });
+        RecordingTransport staleTransport = new RecordingTransport();
+        RecordingTransport liveTransport = new RecordingTransport();
+        ClientHandler stale = new ClientHandler(staleTransport, clientManager);
+        ClientHandler live = new ClientHandler(liveTransport, clientManager);
+
+        clientManager.registerClient(1, stale);
+        clientManager.registerClient(1, live);
+        // What the idle wheel does when it expires the old connection
+        clientManager.unregisterClient(1, stale);
+
+        assertEquals(1, clientManager.getConnectedClientCount());
+        assertEquals(PresenceService.ONLINE, clientManager.getStatus(1));
+        assertTrue(clientManager.sendDirectMessage(1, 2, LocalDateTime.now(), "still here",
+                new ChatMessageWriter.PendingMessage(2, 1, "still here", LocalDateTime.now())));
+        assertEquals(1, (int) clientManager.broadcastMessage(2, OutboundFrame.status(2, "online")).get(5, TimeUnit.SECONDS));
+        System.out.println("[DEBUG_LOG] Live connection received " + liveTransport.lines);
+        assertEquals(2, liveTransport.lines.size());
+        assertTrue(liveTransport.lines.get(0).endsWith(":still here"));
+        assertTrue(staleTransport.lines.isEmpty());
+
+        // The current connection still unregisters normally
+        clientManager.unregisterClient(1, live);
+        assertEquals(0, clientManager.getConnectedClientCount());
+        assertEquals(PresenceService.OFFLINE, clientManager.getStatus(1));
+    }
+}
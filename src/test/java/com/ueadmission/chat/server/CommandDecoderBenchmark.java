@@ -0,0 +1,155 @@
+package com.ueadmission.chat.server;
+
+import java.io.ByteArrayInputStream;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ueadmission.chat.protocol.ChatProtocol;
+
+/**
+ * JMH benchmark of the chat server hot path without sockets or the database:
+ * <ul>
+ *   <li>decoding a direct message line with the old split-based parser and with {@link CommandDecoder}</li>
+ *   <li>decoding the same command as a binary frame</li>
+ *   <li>encoding one broadcast for every recipient, once per recipient as before and once as a shared frame</li>
+ * </ul>
+ * Run with {@link #main(String[])} from the test classpath; the GC profiler
+ * reports allocation per operation as gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandDecoderBenchmark {
+    private static final int SENDER_ID = 4821;
+
+    @Param({"100", "1000"})
+    public int recipients;
+
+    private String line;
+    private byte[] framePayload;
+    private String content;
+    private LocalDateTime timestamp;
+    private final LastCommandSink sink = new LastCommandSink();
+
+    /**
+     * Keeps the last decoded values so the benchmark can return them
+     */
+    private static final class LastCommandSink implements CommandDecoder.Sink {
+        int id;
+        String text;
+
+        @Override
+        public void onAuth(int userId, boolean binary, boolean numbered) {
+            id = userId;
+        }
+
+        @Override
+        public void onDirectMessage(int receiverId, String content) {
+            id = receiverId;
+            text = content;
+        }
+
+        @Override
+        public void onQueuedMessage(int sequence, int receiverId, long timestampMillis, String content) {
+            id = receiverId;
+            text = content;
+        }
+
+        @Override
+        public void onDelivered(int sequence) {
+            id = sequence;
+        }
+
+        @Override
+        public void onBroadcast(String content) {
+            text = content;
+        }
+
+        @Override
+        public void onStatus(String status) {
+            text = status;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        content = "Is the admission test on Friday at 10:30 or 11:00?";
+        line = "MSG:" + SENDER_ID + ":" + content;
+        framePayload = ChatProtocol.readFrame(new ByteArrayInputStream(
+                ChatProtocol.encodeSendDirect(SENDER_ID, content)));
+        timestamp = LocalDateTime.now();
+    }
+
+    @Benchmark
+    public void legacySplitDecode(Blackhole blackhole) {
+        // The old processMessage: prefix chain, regex-backed split, parseInt on the substring
+        if (line.startsWith("AUTH:")) {
+            blackhole.consume(line.split(":", 2));
+        } else if (line.startsWith("MSG:")) {
+            String[] parts = line.split(":", 3);
+            if (parts.length == 3) {
+                blackhole.consume(Integer.parseInt(parts[1]));
+                blackhole.consume(parts[2]);
+            }
+        }
+    }
+
+    @Benchmark
+    public String decodeLine() {
+        CommandDecoder.decodeLine(line, sink);
+        return sink.text;
+    }
+
+    @Benchmark
+    public String decodeFrame() throws ProtocolException {
+        CommandDecoder.decodeFrame(framePayload, sink);
+        return sink.text;
+    }
+
+    @Benchmark
+    public void legacyBroadcastEncode(Blackhole blackhole) {
+        // The old path formatted the line once, then every recipient's transport encoded it again
+        String message = "MSG:" + SENDER_ID + ":" + timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + ":" + content;
+        for (int i = 0; i < recipients; i++) {
+            blackhole.consume((message + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public void sharedBroadcastEncode(Blackhole blackhole) {
+        // Half the recipients on each protocol; each encoding is built once and shared
+        OutboundFrame frame = OutboundFrame.message(SENDER_ID, timestamp, content);
+        for (int i = 0; i < recipients; i++) {
+            blackhole.consume(frame.getEncoded((i & 1) == 0));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CommandDecoderBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+package com.ueadmission.chat.server;
+
+import java.io.ByteArrayInputStream;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ueadmission.chat.protocol.ChatProtocol;
+
+/**
+ * Test class for CommandDecoder
+ */
+public class CommandDecoderTest {
+
+    /**
+     * Records decoded commands as strings
+     */
+    private static class RecordingSink implements CommandDecoder.Sink {
+        final List<String> commands = new ArrayList<>();
+
+        @Override
+        public void onAuth(int userId, boolean binary, boolean numbered) {
+            commands.add("auth " + userId + " " + binary + (numbered ? " numbered" : ""));
+        }
+
+        @Override
+        public void onDirectMessage(int receiverId, String content) {
+            commands.add("msg " + receiverId + " " + content);
+        }
+
+        @Override
+        public void onQueuedMessage(int sequence, int receiverId, long timestampMillis, String content) {
+            commands.add("queued " + sequence + " " + receiverId + " " + timestampMillis + " " + content);
+        }
+
+        @Override
+        public void onDelivered(int sequence) {
+            commands.add("delivered " + sequence);
+        }
+
+        @Override
+        public void onBroadcast(String content) {
+            commands.add("broadcast " + content);
+        }
+
+        @Override
+        public void onStatus(String status) {
+            commands.add("status " + status);
+        }
+    }
+
+    /**
+     * Test that text lines decode like the old split-based parser, keeping colons in the content
+     */
+    @Test
+    public void testDecodeLine() {
+        RecordingSink sink = new RecordingSink();
+        CommandDecoder.decodeLine("AUTH:42", sink);
+        CommandDecoder.decodeLine("AUTH:42:BIN1", sink);
+        CommandDecoder.decodeLine("AUTH:42:BIN2", sink);
+        CommandDecoder.decodeLine(ChatProtocol.authLine(42, true, true), sink);
+        CommandDecoder.decodeLine(ChatProtocol.authLine(42, false, true), sink);
+        CommandDecoder.decodeLine("MSG:7:see you at 10:30", sink);
+        CommandDecoder.decodeLine("MSG:7", sink);
+        CommandDecoder.decodeLine(ChatProtocol.queuedLine(12, 7, 1700000000000L, "sent at 10:30"), sink);
+        CommandDecoder.decodeLine("QMSG:12:7", sink);
+        CommandDecoder.decodeLine(ChatProtocol.DELIVERED_PREFIX + 64, sink);
+        CommandDecoder.decodeLine("BROADCAST:hello: all", sink);
+        CommandDecoder.decodeLine("STATUS:away", sink);
+        CommandDecoder.decodeLine("PING", sink);
+        System.out.println("[DEBUG_LOG] Decoded: " + sink.commands);
+
+        assertEquals(List.of("auth 42 false", "auth 42 true", "auth 42 false", "auth 42 true numbered",
+                "auth 42 false numbered", "msg 7 see you at 10:30",
+                "queued 12 7 1700000000000 sent at 10:30", "delivered 64", "broadcast hello: all", "status away"), sink.commands);
+        assertThrows(NumberFormatException.class, () -> CommandDecoder.decodeLine("MSG:x:hi", sink));
+    }
+
+    /**
+     * Test that client frames decode from the payload and server-only opcodes are rejected
+     */
+    @Test
+    public void testDecodeFrame() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        CommandDecoder.decodeFrame(payload(ChatProtocol.encodeSendDirect(300, "line one\nline: two")), sink);
+        CommandDecoder.decodeFrame(payload(ChatProtocol.encodeSendBroadcast("hi")), sink);
+        CommandDecoder.decodeFrame(payload(ChatProtocol.encodeSetStatus("online")), sink);
+        CommandDecoder.decodeFrame(payload(ChatProtocol.encodeSendQueued(70000, 300, 1700000000000L, "later")), sink);
+        CommandDecoder.decodeFrame(payload(ChatProtocol.encodeDelivered(70000)), sink);
+
+        assertEquals(List.of("msg 300 line one\nline: two", "broadcast hi", "status online",
+                "queued 70000 300 1700000000000 later", "delivered 70000"), sink.commands);
+        assertThrows(ProtocolException.class,
+                () -> CommandDecoder.decodeFrame(payload(ChatProtocol.encodeStatus(1, "online")), sink));
+    }
+
+    private static byte[] payload(byte[] frame) throws Exception {
+        return ChatProtocol.readFrame(new ByteArrayInputStream(frame));
+    }
+}
@@ -0,0 +1,127 @@
+package com.ueadmission.chat.server;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for DeliveryTracker and DeliveryReceipts, using an in-memory store instead of MySQL
+ */
+public class DeliveryTrackerTest {
+
+    /**
+     * In-memory store recording the ranges of every statement
+     */
+    private static class RecordingStore implements DeliveryReceipts.Store {
+        final List<String> statements = new ArrayList<>();
+        int failuresLeft;
+
+        @Override
+        public void markDelivered(int[] firstIds, int[] lastIds, int count) throws SQLException {
+            if (failuresLeft-- > 0) {
+                throw new SQLException("Simulated failure");
+            }
+            StringBuilder ranges = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                ranges.append(i == 0 ? "" : " ").append(firstIds[i]).append('-').append(lastIds[i]);
+            }
+            statements.add(ranges.toString());
+        }
+    }
+
+    /**
+     * Test that one confirmation settles every message up to its number and the ids are saved as ranges
+     */
+    @Test
+    public void testCumulativeConfirmationIsSavedAsRanges() {
+        RecordingStore store = new RecordingStore();
+        DeliveryReceipts receipts = new DeliveryReceipts(1000, store);
+        DeliveryTracker tracker = new DeliveryTracker(receipts);
+
+        int[] messageIds = {20, 10, 11, 12, 15, 21, 30};
+        for (int i = 0; i < messageIds.length; i++) {
+            assertEquals(i + 1, tracker.trackStored(messageIds[i]));
+        }
+
+        assertEquals(6, tracker.acknowledge(6));
+        assertEquals(0, tracker.acknowledge(4));
+        int marked = receipts.flush();
+        System.out.println("[DEBUG_LOG] " + store.statements + ", " + receipts.getMetrics());
+
+        assertEquals(6, marked);
+        assertEquals(List.of("10-12 15-15 20-21"), store.statements);
+        assertEquals(6, tracker.getHighestConfirmed());
+        assertEquals(1, tracker.getUnconfirmedCount());
+        assertEquals(0, receipts.flush());
+    }
+
+    /**
+     * Test that range counts are padded to a few statement sizes so the statement cache is not flooded
+     */
+    @Test
+    public void testRangeCountsArePaddedToFixedSizes() {
+        assertEquals(1, DeliveryReceipts.paddedRangeCount(1));
+        assertEquals(8, DeliveryReceipts.paddedRangeCount(2));
+        assertEquals(8, DeliveryReceipts.paddedRangeCount(8));
+        assertEquals(64, DeliveryReceipts.paddedRangeCount(9));
+        assertEquals(DeliveryReceipts.MAX_RANGES_PER_STATEMENT, DeliveryReceipts.paddedRangeCount(65));
+        assertEquals(DeliveryReceipts.MAX_RANGES_PER_STATEMENT,
+                DeliveryReceipts.paddedRangeCount(DeliveryReceipts.MAX_RANGES_PER_STATEMENT));
+    }
+
+    /**
+     * Test that confirmations of a failed flush are saved by the next one
+     */
+    @Test
+    public void testFailedFlushKeepsConfirmations() {
+        RecordingStore store = new RecordingStore();
+        store.failuresLeft = 1;
+        DeliveryReceipts receipts = new DeliveryReceipts(1000, store);
+        DeliveryTracker tracker = new DeliveryTracker(receipts);
+
+        for (int id = 1; id <= 5; id++) {
+            tracker.trackStored(id);
+        }
+        tracker.acknowledge(5);
+
+        assertEquals(0, receipts.flush());
+        assertEquals(5, receipts.getMetrics().getPendingReceipts());
+        assertEquals(5, receipts.flush());
+        System.out.println("[DEBUG_LOG] " + receipts.getMetrics());
+
+        assertEquals(List.of("1-5"), store.statements);
+        assertEquals(1, receipts.getMetrics().getFailedFlushCount());
+    }
+
+    /**
+     * Test that a live message confirmed before it is written is inserted as delivered,
+     * and one confirmed afterwards is marked delivered by id
+     */
+    @Test
+    public void testLiveMessagesConfirmedBeforeAndAfterWriting() {
+        RecordingStore store = new RecordingStore();
+        DeliveryReceipts receipts = new DeliveryReceipts(1000, store);
+        DeliveryTracker tracker = new DeliveryTracker(receipts);
+
+        ChatMessageWriter.PendingMessage early = new ChatMessageWriter.PendingMessage(1, 2, "early", LocalDateTime.now());
+        ChatMessageWriter.PendingMessage late = new ChatMessageWriter.PendingMessage(1, 2, "late", LocalDateTime.now());
+        tracker.trackLive(early);
+        tracker.trackLive(late);
+
+        tracker.acknowledge(1);
+        assertTrue(early.bindDelivered());
+        early.markWritten(100);
+        assertFalse(late.bindDelivered());
+        late.markWritten(101);
+        tracker.acknowledge(2);
+
+        receipts.flush();
+        System.out.println("[DEBUG_LOG] " + store.statements + ", " + receipts.getMetrics());
+        assertEquals(List.of("101-101"), store.statements);
+        assertEquals(2, receipts.getMetrics().getConfirmedCount());
+    }
+}
@@ -0,0 +1,109 @@
+package com.ueadmission.chat.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for IdleTimerWheel, advancing the wheel by hand
+ */
+public class IdleTimerWheelTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Session whose activity is set by the test
+     */
+    private static class FakeSession implements IdleTimerWheel.Session {
+        volatile long lastActivityNanos;
+        boolean open = true;
+        int pings;
+        boolean expired;
+
+        FakeSession(long lastActivityNanos) {
+            this.lastActivityNanos = lastActivityNanos;
+        }
+
+        @Override public long getLastActivityNanos() { return lastActivityNanos; }
+        @Override public boolean isOpen() { return open; }
+        @Override public void sendPing() { pings++; }
+
+        @Override
+        public boolean expire() {
+            expired = true;
+            open = false;
+            return true;
+        }
+    }
+
+    /**
+     * Test that a silent connection is pinged once and then closed, while an active one is left alone
+     */
+    @Test
+    public void testSilentConnectionIsPingedThenReaped() {
+        // 10 ms ticks on 16 buckets, so deadlines wrap around the wheel several times
+        IdleTimerWheel wheel = new IdleTimerWheel(10, 16, 300, 900);
+        long start = System.nanoTime();
+        FakeSession silent = new FakeSession(start);
+        FakeSession active = new FakeSession(start);
+        wheel.add(silent);
+        wheel.add(active);
+
+        for (long t = 0; t <= 1200; t += 10) {
+            long now = start + t * MILLIS;
+            active.lastActivityNanos = now;
+            wheel.advance(now);
+            if (t == 250) {
+                assertEquals(0, silent.pings, "Pinged before the ping interval");
+            }
+            if (t == 500) {
+                assertEquals(1, silent.pings);
+                assertFalse(silent.expired, "Closed before the idle timeout");
+            }
+        }
+
+        HeartbeatMetrics metrics = wheel.getMetrics();
+        System.out.println("[DEBUG_LOG] " + metrics);
+        assertTrue(silent.expired);
+        assertEquals(1, silent.pings);
+        assertEquals(0, active.pings);
+        assertFalse(active.expired);
+        assertEquals(1, metrics.getTrackedConnections());
+        assertEquals(1, metrics.getReapedConnections());
+        assertEquals(1, metrics.getReleasedThreads());
+    }
+
+    /**
+     * Test that a client answering the PING is kept and a closed connection leaves the wheel
+     */
+    @Test
+    public void testAnsweredPingKeepsConnection() {
+        IdleTimerWheel wheel = new IdleTimerWheel(10, 64, 300, 900);
+        long start = System.nanoTime();
+        FakeSession answering = new FakeSession(start);
+        FakeSession closed = new FakeSession(start);
+        wheel.add(answering);
+        wheel.add(closed);
+        closed.open = false;
+
+        int answered = 0;
+        for (long t = 0; t <= 3000; t += 10) {
+            long now = start + t * MILLIS;
+            wheel.advance(now);
+            if (answering.pings > answered) {
+                // The PONG arrives 50 ms later
+                answered = answering.pings;
+                answering.lastActivityNanos = now + 50 * MILLIS;
+            }
+        }
+
+        HeartbeatMetrics metrics = wheel.getMetrics();
+        System.out.println("[DEBUG_LOG] " + metrics);
+        assertFalse(answering.expired);
+        // A pinged connection is checked again at its idle deadline, so a quiet client is pinged about once per timeout
+        assertTrue(answering.pings >= 3, "Pings: " + answering.pings);
+        assertFalse(closed.expired, "Already closed connections are not closed again");
+        assertEquals(1, metrics.getTrackedConnections());
+        assertEquals(0, metrics.getReapedConnections());
+    }
+}
@@ -0,0 +1,182 @@
+package com.ueadmission.chat.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ueadmission.chat.protocol.ChatFrame;
+import com.ueadmission.chat.protocol.ChatProtocol;
+
+/**
+ * Test class for NioChatEngine framing and dispatch, using real sockets on an ephemeral port.
+ * Only unauthenticated traffic is exercised so no database is needed.
+ */
+public class NioChatEngineTest {
+
+    private NioChatEngine engine;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        engine = new NioChatEngine(0, new ClientManager(), 2, 2, 64 * 1024);
+        engine.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        engine.stop();
+    }
+
+    /**
+     * Test that an unauthenticated message is rejected with the same error as the blocking engine
+     */
+    @Test
+    public void testUnauthenticatedMessageIsRejected() throws IOException {
+        try (Socket socket = connect()) {
+            write(socket, "MSG:1:hi\n");
+            BufferedReader in = reader(socket);
+            String response = in.readLine();
+            System.out.println("[DEBUG_LOG] Response: " + response);
+            assertEquals("ERROR:Not authenticated", response);
+        }
+    }
+
+    /**
+     * Test that several lines sent in one write are answered in order
+     */
+    @Test
+    public void testPipelinedLinesAreAnsweredInOrder() throws IOException {
+        try (Socket socket = connect()) {
+            StringBuilder batch = new StringBuilder();
+            for (int i = 0; i < 50; i++) {
+                batch.append("MSG:1:line ").append(i).append('\n');
+            }
+            write(socket, batch.toString());
+
+            BufferedReader in = reader(socket);
+            for (int i = 0; i < 50; i++) {
+                assertEquals("ERROR:Not authenticated", in.readLine(), "Response " + i);
+            }
+        }
+    }
+
+    /**
+     * Test that a line split across writes and ending in CRLF is reassembled
+     */
+    @Test
+    public void testLineSplitAcrossWrites() throws Exception {
+        try (Socket socket = connect()) {
+            write(socket, "MSG:1:");
+            Thread.sleep(50);
+            write(socket, "hello\r");
+            Thread.sleep(50);
+            write(socket, "\n");
+
+            assertEquals("ERROR:Not authenticated", reader(socket).readLine());
+        }
+    }
+
+    /**
+     * Test that a client sending an over-long line is disconnected
+     */
+    @Test
+    public void testOverLongLineDisconnects() throws IOException {
+        try (Socket socket = connect()) {
+            byte[] junk = new byte[128 * 1024];
+            Arrays.fill(junk, (byte) 'x');
+            try {
+                socket.getOutputStream().write(junk);
+                socket.getOutputStream().flush();
+            } catch (IOException e) {
+                // The server may reset the connection while we are still writing
+                System.out.println("[DEBUG_LOG] Write failed after disconnect: " + e.getMessage());
+            }
+
+            try {
+                assertNull(reader(socket).readLine(), "Server should close the connection");
+            } catch (IOException e) {
+                System.out.println("[DEBUG_LOG] Connection reset: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Test that a client asking for binary frames gets the confirmation line and
+     * binary replies, including for a frame split across writes.
+     * The user id does not exist, so authentication fails with or without a database.
+     */
+    @Test
+    public void testBinaryProtocolNegotiation() throws Exception {
+        try (Socket socket = connect()) {
+            write(socket, ChatProtocol.authLine(Integer.MAX_VALUE, true) + "\n");
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            assertEquals(ChatProtocol.BINARY_ACK, ChatProtocol.readLine(in));
+
+            ChatFrame authReply = readFrame(in);
+            System.out.println("[DEBUG_LOG] Auth reply: " + authReply);
+            assertEquals(ChatProtocol.OP_ERROR, authReply.getOpcode());
+            assertTrue(authReply.getText().startsWith("Authentication failed"));
+
+            // Content with colons and a line break, split inside the body
+            byte[] frame = ChatProtocol.encodeSendDirect(1, "a:b\nc");
+            socket.getOutputStream().write(frame, 0, 3);
+            socket.getOutputStream().flush();
+            Thread.sleep(50);
+            socket.getOutputStream().write(frame, 3, frame.length - 3);
+            socket.getOutputStream().flush();
+
+            ChatFrame reply = readFrame(in);
+            assertEquals(ChatProtocol.OP_ERROR, reply.getOpcode());
+            assertEquals("Not authenticated", reply.getText());
+        }
+    }
+
+    /**
+     * Test that numbered delivery is confirmed before binary frames when a client asks for both
+     */
+    @Test
+    public void testNumberedDeliveryNegotiation() throws Exception {
+        try (Socket socket = connect()) {
+            write(socket, ChatProtocol.authLine(Integer.MAX_VALUE, true, true) + "\n");
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            assertEquals(ChatProtocol.DELIVERY_ACK, ChatProtocol.readLine(in));
+            assertEquals(ChatProtocol.BINARY_ACK, ChatProtocol.readLine(in));
+
+            ChatFrame authReply = readFrame(in);
+            System.out.println("[DEBUG_LOG] Auth reply: " + authReply);
+            assertEquals(ChatProtocol.OP_ERROR, authReply.getOpcode());
+        }
+    }
+
+    private static ChatFrame readFrame(InputStream in) throws IOException {
+        byte[] payload = ChatProtocol.readFrame(in);
+        assertNotNull(payload, "Server closed the connection");
+        return ChatProtocol.decode(payload, 0, payload.length);
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", engine.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static void write(Socket socket, String data) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(data.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+}
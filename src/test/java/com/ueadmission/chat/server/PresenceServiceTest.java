@@ -0,0 +1,107 @@
+package com.ueadmission.chat.server;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ueadmission.chat.protocol.ChatFrame;
+import com.ueadmission.chat.protocol.ChatProtocol;
+
+/**
+ * Test class for PresenceService, driving the digest and flush by hand
+ */
+public class PresenceServiceTest {
+    private static final long DEBOUNCE_MILLIS = 100;
+    private static final long SETTLED = TimeUnit.MILLISECONDS.toNanos(10 * DEBOUNCE_MILLIS);
+
+    private final List<OutboundFrame> digests = new ArrayList<>();
+    private final List<String> writes = new ArrayList<>();
+    private boolean storeFails = false;
+
+    private final PresenceService presence = new PresenceService(DEBOUNCE_MILLIS, 50, 50,
+            (userIds, statuses, count) -> {
+                digests.add(OutboundFrame.presence(Arrays.copyOf(userIds, count), Arrays.copyOf(statuses, count)));
+                return count;
+            },
+            (userIds, statuses, changedAt, count) -> {
+                if (storeFails) {
+                    throw new SQLException("Database unavailable");
+                }
+                StringBuilder batch = new StringBuilder();
+                for (int i = 0; i < count; i++) {
+                    batch.append(userIds[i]).append('=').append(statuses[i]).append(' ');
+                }
+                writes.add(batch.toString().trim());
+            });
+
+    /**
+     * Test that a disconnect followed by a quick reconnect is neither announced nor written
+     */
+    @Test
+    public void testFlappingIsNotAnnounced() {
+        presence.update(7, PresenceService.ONLINE);
+        assertEquals(0, presence.publishDigest(System.nanoTime(), false), "Change has not settled yet");
+        assertEquals(1, presence.publishDigest(System.nanoTime() + SETTLED, false));
+        assertEquals(1, presence.flush());
+
+        presence.update(7, PresenceService.OFFLINE);
+        presence.update(7, PresenceService.ONLINE);
+        assertEquals(0, presence.publishDigest(System.nanoTime() + SETTLED, false));
+        assertEquals(0, presence.flush());
+
+        System.out.println("[DEBUG_LOG] " + presence.getMetrics());
+        assertEquals(1, digests.size());
+        assertEquals(List.of("7=online"), writes);
+        assertEquals(1, presence.getMetrics().getSuppressedCount());
+        assertEquals(PresenceService.ONLINE, presence.getStatus(7));
+    }
+
+    /**
+     * Test that settled changes share one digest and one batched write, and a failed write is retried
+     */
+    @Test
+    public void testChangesAreDigestedAndWrittenInBatches() throws Exception {
+        for (int userId = 1; userId <= 300; userId++) {
+            presence.update(userId, PresenceService.ONLINE);
+        }
+        presence.update(2, "away");
+        assertEquals(300, presence.publishDigest(System.nanoTime() + SETTLED, false));
+        assertEquals(1, digests.size());
+
+        String text = new String(digests.get(0).getTextFrame(), StandardCharsets.UTF_8);
+        String[] lines = text.split("\n");
+        assertEquals(300, lines.length);
+        assertEquals("STATUS:1:online", lines[0]);
+        assertEquals("STATUS:2:away", lines[1]);
+
+        byte[] binary = digests.get(0).getBinaryFrame();
+        byte[] payload = ChatProtocol.readFrame(new ByteArrayInputStream(binary));
+        List<ChatFrame> entries = ChatProtocol.decodePresence(payload, 0, payload.length);
+        assertEquals(300, entries.size());
+        assertEquals(300, entries.get(299).getId());
+        assertEquals("away", entries.get(1).getText());
+
+        storeFails = true;
+        assertEquals(0, presence.flush());
+        storeFails = false;
+        assertEquals(300, presence.flush());
+        assertEquals(1, writes.size());
+        assertTrue(writes.get(0).startsWith("1=online 2=away 3=online"), writes.get(0));
+        assertEquals(0, presence.flush());
+
+        PresenceMetrics metrics = presence.getMetrics();
+        System.out.println("[DEBUG_LOG] " + metrics);
+        assertEquals(300, metrics.getTrackedUsers());
+        assertEquals(1, metrics.getFailedFlushCount());
+        assertEquals(300, metrics.getPersistedCount());
+        assertEquals(300, metrics.getAnnouncedCount());
+        assertEquals(1, metrics.getDigestCount());
+    }
+}
@@ -0,0 +1,70 @@
+package com.ueadmission.chat.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PresenceSubscriptions, using in-memory transports
+ */
+public class PresenceSubscriptionsTest {
+
+    /**
+     * Keeps the text lines queued for one client
+     */
+    private static class RecordingTransport implements ClientTransport {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void send(String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public void sendRaw(byte[] bytes) {
+            for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+                lines.add(line);
+            }
+        }
+
+        @Override public boolean awaitWritable(long timeoutMillis) { return true; }
+        @Override public void close() { }
+        @Override public boolean isOpen() { return true; }
+        @Override public int getQueuedFrames() { return 0; }
+        @Override public long getPendingWriteBytes() { return 0; }
+        @Override public String getRemoteAddress() { return "memory"; }
+    }
+
+    /**
+     * Test that admins only hear about students, students only about admins and faculty about everyone
+     */
+    @Test
+    public void testStatusReachesOnlyVisibleClients() {
+        ClientManager clientManager = new ClientManager(new OutboundPolicy(1024, OutboundPolicy.Overflow.DROP), 1,
+                (userIds, statuses, changedAt, count) -> { });
+        PresenceSubscriptions subscriptions = new PresenceSubscriptions();
+        RecordingTransport admin = new RecordingTransport();
+        RecordingTransport student = new RecordingTransport();
+        RecordingTransport otherStudent = new RecordingTransport();
+        RecordingTransport faculty = new RecordingTransport();
+        subscriptions.subscribe(1, "admin", new ClientHandler(admin, clientManager));
+        subscriptions.subscribe(2, "student", new ClientHandler(student, clientManager));
+        ClientHandler leaving = new ClientHandler(otherStudent, clientManager);
+        subscriptions.subscribe(3, "student", leaving);
+        subscriptions.subscribe(4, "faculty", new ClientHandler(faculty, clientManager));
+
+        // The student has left, but the admins still learn that it went offline
+        subscriptions.unsubscribe(3, leaving);
+        long delivered = subscriptions.publish(new int[] {1, 3}, new String[] {"online", "offline"}, 2);
+        System.out.println("[DEBUG_LOG] Delivered " + delivered + " status entries");
+
+        assertEquals(List.of("STATUS:3:offline"), admin.lines);
+        assertEquals(List.of("STATUS:1:online"), student.lines);
+        assertTrue(otherStudent.lines.isEmpty());
+        assertEquals(List.of("STATUS:1:online", "STATUS:3:offline"), faculty.lines);
+        assertEquals(4, delivered);
+    }
+}
@@ -0,0 +1,138 @@
+package com.ueadmission.chat.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of the status traffic one presence digest causes on a server
+ * with a few admins and thousands of students, when students come and go.
+ * Compares sending the digest to every client, as before, with the role-aware
+ * subscriptions that send student statuses to the admins only. The bytes
+ * queued per digest are printed at the end of each trial.
+ * Run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PresenceTrafficBenchmark {
+    private static final int ADMINS = 20;
+
+    @Param({"5000"})
+    public int students;
+
+    @Param({"50"})
+    public int changesPerDigest;
+
+    @Param({"everyone", "subscriptions"})
+    public String delivery;
+
+    private PresenceService.Publisher publisher;
+    private List<CountingTransport> transports;
+    private int[] userIds;
+    private String[] statuses;
+    private long digests;
+
+    /**
+     * Counts the bytes queued for one simulated connection
+     */
+    private static final class CountingTransport implements ClientTransport {
+        long bytes;
+
+        @Override
+        public void send(String line) {
+            bytes += line.length() + 1;
+        }
+
+        @Override
+        public void sendRaw(byte[] frame) {
+            bytes += frame.length;
+        }
+
+        @Override public boolean awaitWritable(long timeoutMillis) { return true; }
+        @Override public void close() { }
+        @Override public boolean isOpen() { return true; }
+        @Override public int getQueuedFrames() { return 0; }
+        @Override public long getPendingWriteBytes() { return 0; }
+        @Override public String getRemoteAddress() { return "simulated"; }
+    }
+
+    @Setup
+    public void setUp() {
+        ClientManager clientManager = new ClientManager(new OutboundPolicy(1024, OutboundPolicy.Overflow.DROP), 1,
+                (ids, states, changedAt, count) -> { });
+        PresenceSubscriptions subscriptions = new PresenceSubscriptions();
+        List<ClientHandler> everyone = new ArrayList<>();
+        transports = new ArrayList<>();
+
+        for (int userId = 1; userId <= ADMINS + students; userId++) {
+            CountingTransport transport = new CountingTransport();
+            ClientHandler handler = new ClientHandler(transport, clientManager);
+            transports.add(transport);
+            everyone.add(handler);
+            subscriptions.subscribe(userId, userId <= ADMINS ? "admin" : "student", handler);
+        }
+
+        if ("subscriptions".equals(delivery)) {
+            publisher = subscriptions;
+        } else {
+            // One digest for all connected clients
+            publisher = (ids, states, count) -> {
+                OutboundFrame frame = OutboundFrame.presence(Arrays.copyOf(ids, count), Arrays.copyOf(states, count));
+                for (ClientHandler handler : everyone) {
+                    handler.deliver(frame);
+                }
+                return (long) count * everyone.size();
+            };
+        }
+
+        // Students flipping between online and offline
+        userIds = new int[changesPerDigest];
+        statuses = new String[changesPerDigest];
+        for (int i = 0; i < changesPerDigest; i++) {
+            userIds[i] = ADMINS + 1 + i * (students / changesPerDigest);
+            statuses[i] = i % 2 == 0 ? PresenceService.ONLINE : PresenceService.OFFLINE;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        long bytes = 0;
+        for (CountingTransport transport : transports) {
+            bytes += transport.bytes;
+        }
+        System.out.println(delivery + ": " + (digests == 0 ? 0 : bytes / digests) + " bytes queued per digest");
+    }
+
+    @Benchmark
+    public long publishDigest() {
+        digests++;
+        return publisher.publish(userIds, statuses, changesPerDigest);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PresenceTrafficBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,225 @@
+package com.ueadmission.chat.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ueadmission.db.BenchmarkDatabase;
+import com.ueadmission.db.ConnectionPool;
+
+/**
+ * JMH benchmark for a reconnect storm: every client logs in at once after a
+ * server restart and replays its unread messages. Compares the old replay,
+ * one UPDATE per message, with the keyset-paged replay used by
+ * ClientHandler.sendStoredMessages, one UPDATE per page. Handlers share a
+ * pool the size of the default configuration, as they would on the server.
+ * Runs on a scratch copy of chat_messages so the real data is not touched.
+ * Needs the local MySQL database; run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ReconnectStormBenchmark {
+    private static final String MESSAGES_TABLE = "bench_replay_messages";
+    private static final int HANDLER_THREADS = 64;
+    private static final int POOL_SIZE = 10;
+    private static final int PAGE_SIZE = 200;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"500", "2000"})
+    public int clientCount;
+
+    @Param({"50"})
+    public int unreadPerClient;
+
+    private ConnectionPool pool;
+    private ExecutorService handlers;
+    private String markReadSql;
+
+    @Setup
+    public void setUp() throws SQLException {
+        pool = BenchmarkDatabase.createPool(POOL_SIZE, 64);
+        handlers = Executors.newFixedThreadPool(HANDLER_THREADS);
+        markReadSql = "UPDATE " + MESSAGES_TABLE + " SET is_read = true WHERE id IN ("
+                + String.join(", ", Collections.nCopies(PAGE_SIZE, "?")) + ")";
+
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("DROP TABLE IF EXISTS " + MESSAGES_TABLE);
+            st.executeUpdate("CREATE TABLE " + MESSAGES_TABLE + " LIKE chat_messages");
+
+            // Interleave receivers so each client's messages are spread over the table
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO " + MESSAGES_TABLE + " (sender_id, receiver_id, message, timestamp, is_read) " +
+                    "VALUES (?, ?, ?, ?, false)")) {
+                int rows = 0;
+                for (int m = 0; m < unreadPerClient; m++) {
+                    for (int receiverId = 1; receiverId <= clientCount; receiverId++) {
+                        ps.setInt(1, 0);
+                        ps.setInt(2, receiverId);
+                        ps.setString(3, "jmh-replay " + m);
+                        ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                        ps.addBatch();
+                        if (++rows % BATCH_SIZE == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void markUnread() throws SQLException {
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("UPDATE " + MESSAGES_TABLE + " SET is_read = false");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        handlers.shutdownNow();
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("DROP TABLE IF EXISTS " + MESSAGES_TABLE);
+        }
+        System.out.println("[DEBUG_LOG] " + pool.getMetrics());
+        pool.close();
+    }
+
+    /**
+     * Previous behaviour: stream all unread rows and mark each one read with its own UPDATE
+     */
+    @Benchmark
+    public long perMessageReplay() throws Exception {
+        return storm(this::replayPerMessage);
+    }
+
+    /**
+     * Current behaviour: keyset pages, one flush and one UPDATE per page
+     */
+    @Benchmark
+    public long pagedReplay() throws Exception {
+        return storm(this::replayPaged);
+    }
+
+    /**
+     * Replay every client concurrently on the handler pool
+     * @return Total bytes "sent" to clients
+     */
+    private long storm(Replay replay) throws Exception {
+        List<Future<Long>> results = new ArrayList<>(clientCount);
+        for (int receiverId = 1; receiverId <= clientCount; receiverId++) {
+            int id = receiverId;
+            results.add(handlers.submit(() -> replay.run(id)));
+        }
+        long bytes = 0;
+        for (Future<Long> result : results) {
+            bytes += result.get();
+        }
+        return bytes;
+    }
+
+    private long replayPerMessage(int receiverId) throws SQLException {
+        long bytes = 0;
+        try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                "SELECT sender_id, message, timestamp, id FROM " + MESSAGES_TABLE + " " +
+                "WHERE receiver_id = ? AND is_read = false ORDER BY timestamp ASC")) {
+            ps.setInt(1, receiverId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    bytes += formatLine(rs.getInt(1), rs.getString(2), rs.getTimestamp(3)).length();
+                    try (PreparedStatement update = conn.prepareStatement(
+                            "UPDATE " + MESSAGES_TABLE + " SET is_read = true WHERE id = ?")) {
+                        update.setInt(1, rs.getInt(4));
+                        update.executeUpdate();
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private long replayPaged(int receiverId) throws SQLException {
+        long bytes = 0;
+        int[] ids = new int[PAGE_SIZE];
+        int afterId = 0;
+        while (true) {
+            int count = 0;
+            try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id, sender_id, message, timestamp FROM " + MESSAGES_TABLE + " " +
+                    "WHERE receiver_id = ? AND is_read = false AND id > ? ORDER BY id LIMIT ?")) {
+                ps.setInt(1, receiverId);
+                ps.setInt(2, afterId);
+                ps.setInt(3, PAGE_SIZE);
+                StringBuilder page = new StringBuilder();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids[count++] = rs.getInt(1);
+                        page.append(formatLine(rs.getInt(2), rs.getString(3), rs.getTimestamp(4))).append('\n');
+                    }
+                }
+                bytes += page.length();
+
+                if (count > 0) {
+                    try (PreparedStatement update = conn.prepareStatement(markReadSql)) {
+                        for (int i = 0; i < PAGE_SIZE; i++) {
+                            update.setInt(i + 1, ids[Math.min(i, count - 1)]);
+                        }
+                        update.executeUpdate();
+                    }
+                }
+            }
+            if (count < PAGE_SIZE) {
+                return bytes;
+            }
+            afterId = ids[count - 1];
+        }
+    }
+
+    private static String formatLine(int senderId, String content, Timestamp timestamp) {
+        return "MSG:" + senderId + ":" + timestamp.toLocalDateTime() + ":" + content;
+    }
+
+    /**
+     * Replay strategy for one client
+     */
+    private interface Replay {
+        long run(int receiverId) throws SQLException;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReconnectStormBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
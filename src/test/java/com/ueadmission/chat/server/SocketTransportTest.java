@@ -0,0 +1,99 @@
+package com.ueadmission.chat.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the queued writer of SocketTransport, using a loopback socket pair
+ */
+public class SocketTransportTest {
+    private static final byte[] LARGE_FRAME = new byte[64 * 1024];
+
+    private ServerSocket serverSocket;
+    private Socket client;
+    private Socket accepted;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        client = new Socket("localhost", serverSocket.getLocalPort());
+        client.setSoTimeout(5000);
+        accepted = serverSocket.accept();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        client.close();
+        accepted.close();
+        serverSocket.close();
+    }
+
+    /**
+     * Test that queued lines arrive complete and in order
+     */
+    @Test
+    public void testQueuedLinesArriveInOrder() throws IOException {
+        SocketTransport transport = new SocketTransport(accepted,
+                new OutboundPolicy(1024, OutboundPolicy.Overflow.DISCONNECT));
+        for (int i = 0; i < 500; i++) {
+            transport.send("STATUS:" + i + ":online");
+        }
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        for (int i = 0; i < 500; i++) {
+            assertEquals("STATUS:" + i + ":online", in.readLine(), "Line " + i);
+        }
+        assertTrue(transport.awaitWritable(1000));
+        assertEquals(0, transport.getQueuedFrames());
+        transport.close();
+    }
+
+    /**
+     * Test that a client that stops reading is disconnected once its queue is full,
+     * without blocking the sending thread
+     */
+    @Test
+    public void testSlowClientIsDisconnected() {
+        OutboundPolicy policy = new OutboundPolicy(8, OutboundPolicy.Overflow.DISCONNECT);
+        SocketTransport transport = new SocketTransport(accepted, policy);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000 && transport.isOpen(); i++) {
+            transport.sendRaw(LARGE_FRAME);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("[DEBUG_LOG] Sending took " + elapsedMillis + " ms");
+
+        assertFalse(transport.isOpen(), "Slow client should be disconnected");
+        assertEquals(1, policy.getSlowClientDisconnects());
+        assertEquals(0, transport.getQueuedFrames());
+    }
+
+    /**
+     * Test that the drop policy discards frames for a slow client and keeps the connection
+     */
+    @Test
+    public void testDropPolicyKeepsConnection() {
+        OutboundPolicy policy = new OutboundPolicy(8, OutboundPolicy.Overflow.DROP);
+        SocketTransport transport = new SocketTransport(accepted, policy);
+
+        for (int i = 0; i < 1000; i++) {
+            transport.sendRaw(LARGE_FRAME);
+        }
+        System.out.println("[DEBUG_LOG] Dropped " + policy.getDroppedFrames() + " frames");
+
+        assertTrue(transport.isOpen());
+        assertTrue(policy.getDroppedFrames() > 0);
+        assertTrue(transport.getQueuedFrames() <= 8);
+        transport.close();
+    }
+}
@@ -0,0 +1,130 @@
+package com.ueadmission.chat.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TokenBucket and the per-client rate limits
+ */
+public class TokenBucketTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long INSERT_NANOS = 2 * MILLIS;
+
+    /**
+     * Test that a bucket grants its burst at once, then refills at the configured rate, also under contention
+     */
+    @Test
+    public void testBurstThenSustainedRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = System.nanoTime();
+
+        // Eight threads racing for tokens at the same instant get exactly the burst
+        AtomicInteger granted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    if (bucket.tryAcquire(now)) {
+                        granted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(5, granted.get());
+
+        assertFalse(bucket.tryAcquire(now + 50 * MILLIS), "No token before the refill interval");
+        assertTrue(bucket.tryAcquire(now + 100 * MILLIS));
+        assertFalse(bucket.tryAcquire(now + 100 * MILLIS));
+
+        // A quiet second refills the bucket up to the burst, not beyond
+        int afterPause = 0;
+        while (bucket.tryAcquire(now + 2000 * MILLIS)) {
+            afterPause++;
+        }
+        assertEquals(5, afterPause);
+    }
+
+    /**
+     * Test that clients flooding direct messages do not slow down a client sending at a normal pace.
+     * The database is simulated by a pool of two connections and a fixed insert time.
+     */
+    @Test
+    public void testFloodDoesNotSlowOtherClients() throws Exception {
+        RateLimitPolicy policy = new RateLimitPolicy().limit(RateLimitPolicy.Command.DIRECT_MESSAGE, 20, 10);
+        Semaphore database = new Semaphore(2);
+
+        long quietMax = maxClientLatency(database, policy, 0);
+        long floodedMax = maxClientLatency(database, policy, 4);
+        RateLimitMetrics metrics = policy.getMetrics();
+        System.out.println("[DEBUG_LOG] Slowest insert without flood " + quietMax / 1000 + " us, during flood "
+                + floodedMax / 1000 + " us, " + metrics);
+
+        assertTrue(floodedMax <= quietMax + 10 * MILLIS,
+                "Latency during flood " + floodedMax / 1000 + " us, without " + quietMax / 1000 + " us");
+        assertTrue(metrics.getRejectedDirectMessages() > 1000, metrics.toString());
+    }
+
+    /**
+     * Send 20 direct messages at 15 per second while other clients flood, each through its own buckets
+     * @return The slowest insert of the well-behaved client in nanoseconds
+     */
+    private long maxClientLatency(Semaphore database, RateLimitPolicy policy, int flooders) throws Exception {
+        AtomicBoolean flooding = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < flooders; i++) {
+            TokenBucket bucket = policy.newBuckets()[RateLimitPolicy.Command.DIRECT_MESSAGE.ordinal()];
+            Thread thread = new Thread(() -> {
+                while (flooding.get()) {
+                    if (bucket.tryAcquire()) {
+                        insert(database);
+                    } else {
+                        policy.recordRejected(RateLimitPolicy.Command.DIRECT_MESSAGE);
+                        // The next frame arrives from the network shortly after
+                        LockSupport.parkNanos(50_000);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        // Let the flooders use up their bursts
+        Thread.sleep(200);
+
+        TokenBucket bucket = policy.newBuckets()[RateLimitPolicy.Command.DIRECT_MESSAGE.ordinal()];
+        long slowest = 0;
+        for (int i = 0; i < 20; i++) {
+            assertTrue(bucket.tryAcquire(), "The well-behaved client stays within its limit");
+            long start = System.nanoTime();
+            insert(database);
+            slowest = Math.max(slowest, System.nanoTime() - start);
+            Thread.sleep(65);
+        }
+
+        flooding.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return slowest;
+    }
+
+    private static void insert(Semaphore database) {
+        database.acquireUninterruptibly();
+        try {
+            LockSupport.parkNanos(INSERT_NANOS);
+        } finally {
+            database.release();
+        }
+    }
+}
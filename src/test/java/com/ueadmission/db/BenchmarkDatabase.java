@@ -0,0 +1,61 @@
+package com.ueadmission.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Shared setup for JMH benchmarks that run against the application's MySQL database.
+ * The connection settings can be overridden with -Dbench.db.url, -Dbench.db.user and -Dbench.db.password.
+ */
+public class BenchmarkDatabase {
+    public static final String URL = System.getProperty("bench.db.url", DatabaseConnection.DB_URL);
+    public static final String USER = System.getProperty("bench.db.user", DatabaseConnection.DB_USER);
+    public static final String PASSWORD = System.getProperty("bench.db.password", DatabaseConnection.DB_PASSWORD);
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Create a pool against the benchmark database with the schema initialized
+     * @param maxSize Maximum number of connections
+     * @param statementCacheSize Prepared statements cached per connection, 0 to disable
+     */
+    public static ConnectionPool createPool(int maxSize, int statementCacheSize) throws SQLException {
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("MySQL JDBC Driver not found", e);
+        }
+
+        ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, maxSize, 0, 10000, 300000, 30000, 0,
+                statementCacheSize);
+        pool.start();
+        try (Connection conn = pool.borrow()) {
+            DatabaseInitializer.initializeDatabase(conn);
+        }
+        return pool;
+    }
+
+    /**
+     * Get the ids of the first users in the database, failing if there are fewer than requested
+     */
+    public static int[] loadUserIds(ConnectionPool pool, int count) throws SQLException {
+        int[] ids = new int[count];
+        try (Connection conn = pool.borrow();
+             PreparedStatement ps = conn.prepareStatement("SELECT id FROM users ORDER BY id LIMIT ?")) {
+            ps.setInt(1, count);
+            try (ResultSet rs = ps.executeQuery()) {
+                int i = 0;
+                while (rs.next()) {
+                    ids[i++] = rs.getInt(1);
+                }
+                if (i < count) {
+                    throw new SQLException("Benchmark needs at least " + count + " users, found " + i);
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,406 @@
+package com.ueadmission.db;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ConnectionPool, using an in-memory JDBC driver so no MySQL server is needed
+ */
+public class ConnectionPoolTest {
+
+    private FakeDriver driver;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        driver = new FakeDriver();
+        DriverManager.registerDriver(driver);
+        pool = new ConnectionPool(FakeDriver.URL, "user", "password", 2, 0, 200, 60000, 60000, 1000, 4);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        pool.close();
+        DriverManager.deregisterDriver(driver);
+    }
+
+    /**
+     * Test that each borrower gets its own connection and released connections are reused
+     */
+    @Test
+    public void testLeasesAreExclusiveAndReused() throws SQLException {
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        assertNotSame(first, second, "Concurrent leases should not share a connection");
+        assertEquals(2, pool.getMetrics().getActiveConnections());
+
+        first.close();
+        Connection third = pool.borrow();
+        System.out.println("[DEBUG_LOG] Metrics: " + pool.getMetrics());
+        assertNotSame(first, third, "Each lease should get a fresh proxy");
+        assertEquals(2, driver.opened.get(), "Released connection should be reused, not reopened");
+
+        second.close();
+        third.close();
+        assertEquals(0, pool.getMetrics().getActiveConnections());
+        assertEquals(2, pool.getMetrics().getIdleConnections());
+    }
+
+    /**
+     * Test that an exhausted pool times out instead of blocking forever
+     */
+    @Test
+    public void testExhaustedPoolTimesOut() throws SQLException {
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+
+        long start = System.nanoTime();
+        assertThrows(SQLTimeoutException.class, () -> pool.borrow());
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("[DEBUG_LOG] Waited " + waitedMillis + " ms before timing out");
+
+        assertTrue(waitedMillis >= 150, "Borrow should wait for the configured timeout");
+        assertEquals(1, pool.getMetrics().getTimeoutCount());
+
+        first.close();
+        second.close();
+    }
+
+    /**
+     * Test that a waiting borrower is handed a connection as soon as one is released
+     */
+    @Test
+    public void testWaiterIsServedOnRelease() throws Exception {
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                first.close();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        releaser.start();
+
+        Connection waited = pool.borrow();
+        releaser.join();
+        assertEquals(2, driver.opened.get(), "Waiter should get the released connection");
+
+        second.close();
+        waited.close();
+    }
+
+    /**
+     * Test that closing a lease returns it to the pool and makes the proxy unusable
+     */
+    @Test
+    public void testCloseReturnsConnectionToPool() throws SQLException {
+        try (Connection conn = pool.borrow()) {
+            assertFalse(conn.isClosed());
+            assertEquals(1, pool.getMetrics().getActiveConnections());
+        }
+        assertEquals(0, pool.getMetrics().getActiveConnections());
+        assertEquals(1, pool.getMetrics().getIdleConnections());
+        assertFalse(driver.states.get(0).closed, "Physical connection should stay open in the pool");
+
+        Connection conn = pool.borrow();
+        conn.close();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, () -> conn.prepareStatement("SELECT 1"),
+                "A returned connection must not be usable");
+        assertEquals(1, pool.getMetrics().getIdleConnections(), "Closing twice should release once");
+    }
+
+    /**
+     * Test that transaction and session state left by a borrower is reset on return
+     */
+    @Test
+    public void testSessionStateIsResetOnClose() throws SQLException {
+        Connection conn = pool.borrow();
+        conn.setAutoCommit(false);
+        conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        conn.setReadOnly(true);
+        conn.close();
+
+        FakeConnectionState state = driver.states.get(0);
+        System.out.println("[DEBUG_LOG] Rollbacks on return: " + state.rollbacks);
+        assertEquals(1, state.rollbacks, "Uncommitted work should be rolled back");
+        assertTrue(state.autoCommit);
+        assertEquals(Connection.TRANSACTION_REPEATABLE_READ, state.isolation);
+        assertFalse(state.readOnly);
+
+        Connection next = pool.borrow();
+        assertTrue(next.getAutoCommit());
+        assertEquals(1, driver.opened.get());
+        next.close();
+    }
+
+    /**
+     * Test that a lease held past the threshold is reported once with its borrow stack trace
+     */
+    @Test
+    public void testLeakedLeaseIsReported() throws SQLException {
+        Connection conn = pool.borrow();
+        pool.detectLeaks(System.nanoTime());
+        assertEquals(0, pool.getMetrics().getLeakCount(), "A fresh lease is not a leak");
+
+        long later = System.nanoTime() + 5_000_000_000L;
+        pool.detectLeaks(later);
+        pool.detectLeaks(later);
+        System.out.println("[DEBUG_LOG] Metrics: " + pool.getMetrics());
+        assertEquals(1, pool.getMetrics().getLeakCount(), "A leak should only be reported once");
+
+        conn.close();
+        assertEquals(0, pool.getMetrics().getActiveConnections());
+    }
+
+    /**
+     * Test that repeated statements with the same SQL are prepared once per connection
+     */
+    @Test
+    public void testStatementCacheReusesPreparedStatements() throws SQLException {
+        String sql = "INSERT INTO chat_messages (sender_id, receiver_id, message) VALUES (?, ?, ?)";
+        for (int i = 0; i < 5; i++) {
+            try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, i);
+                ps.executeUpdate();
+                assertSame(conn, ps.getConnection(), "Statement should report the pooled connection");
+            }
+        }
+
+        FakeConnectionState state = driver.states.get(0);
+        System.out.println("[DEBUG_LOG] Metrics: " + pool.getMetrics());
+        assertEquals(1, state.prepared.get(), "Statement should only be prepared once");
+        assertEquals(0, state.statementsClosed.get(), "Cached statement should stay open");
+        assertEquals(4, pool.getMetrics().getStatementCacheHits());
+        assertEquals(1, pool.getMetrics().getStatementCacheMisses());
+    }
+
+    /**
+     * Test that statements in use are not shared and the least recently used one is evicted
+     */
+    @Test
+    public void testStatementCacheCheckoutAndEviction() throws SQLException {
+        Connection conn = pool.borrow();
+        PreparedStatement first = conn.prepareStatement("SELECT 1");
+        PreparedStatement nested = conn.prepareStatement("SELECT 1");
+        assertNotSame(first, nested, "A statement in use must not be handed out twice");
+        nested.close();
+        first.close();
+        assertThrows(SQLException.class, () -> first.executeQuery(), "A closed statement must not be usable");
+
+        // Cache size is 4, so the fifth distinct statement evicts "SELECT 1"
+        for (int i = 2; i <= 5; i++) {
+            conn.prepareStatement("SELECT " + i).close();
+        }
+        FakeConnectionState state = driver.states.get(0);
+        assertEquals(1, pool.getMetrics().getStatementCacheEvictions());
+        assertEquals(2, state.statementsClosed.get(), "Nested and evicted statements should be closed");
+
+        // A statement left open by the borrower is returned with the connection
+        PreparedStatement leftOpen = conn.prepareStatement("SELECT 5");
+        conn.close();
+        assertTrue(leftOpen.isClosed());
+        Connection next = pool.borrow();
+        next.prepareStatement("SELECT 5").close();
+        assertEquals(6, state.prepared.get(), "Statement left open should be reused by the next lease");
+        next.close();
+    }
+
+    /**
+     * Test that a returned statement drops its pending batch and one with changed settings is not reused
+     */
+    @Test
+    public void testStatementCacheResetsReturnedStatements() throws SQLException {
+        Connection conn = pool.borrow();
+        FakeConnectionState state = driver.states.get(0);
+        PreparedStatement batched = conn.prepareStatement("SELECT 1");
+        batched.addBatch();
+        batched.close();
+        assertEquals(1, state.batchesCleared.get(), "A pending batch must not reach the next caller");
+
+        PreparedStatement limited = conn.prepareStatement("SELECT 1");
+        limited.setMaxRows(10);
+        limited.close();
+        assertEquals(1, state.statementsClosed.get(), "A statement with changed settings should be closed");
+
+        conn.prepareStatement("SELECT 1").close();
+        System.out.println("[DEBUG_LOG] Metrics: " + pool.getMetrics());
+        assertEquals(2, state.prepared.get(), "A statement with changed settings should be prepared again");
+        conn.prepareStatement("SELECT 1").close();
+        assertEquals(2, state.prepared.get(), "The fresh statement should be cached");
+        conn.close();
+    }
+
+    /**
+     * Test that metadata lookups are counted and plain statements are not
+     */
+    @Test
+    public void testMetadataCallsAreCounted() throws SQLException {
+        Connection conn = pool.borrow();
+        conn.prepareStatement("SELECT 1").close();
+        assertEquals(0, pool.getMetrics().getMetadataCallCount(), "Statements should not count as metadata calls");
+
+        conn.getMetaData();
+        conn.getMetaData();
+        System.out.println("[DEBUG_LOG] Metrics: " + pool.getMetrics());
+        assertEquals(2, pool.getMetrics().getMetadataCallCount());
+        conn.close();
+    }
+
+    /**
+     * Session state of a fake physical connection
+     */
+    private static class FakeConnectionState {
+        volatile boolean closed = false;
+        volatile boolean autoCommit = true;
+        volatile boolean readOnly = false;
+        volatile int isolation = Connection.TRANSACTION_REPEATABLE_READ;
+        volatile int rollbacks = 0;
+        final AtomicInteger prepared = new AtomicInteger();
+        final AtomicInteger statementsClosed = new AtomicInteger();
+        final AtomicInteger batchesCleared = new AtomicInteger();
+    }
+
+    /**
+     * Minimal JDBC driver handing out proxy connections that track their session state
+     */
+    private static class FakeDriver implements Driver {
+        static final String URL = "jdbc:fakepool:test";
+        final AtomicInteger opened = new AtomicInteger();
+        final List<FakeConnectionState> states = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            opened.incrementAndGet();
+            FakeConnectionState state = new FakeConnectionState();
+            states.add(state);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                state.closed = true;
+                                return null;
+                            case "isClosed":
+                                return state.closed;
+                            case "isValid":
+                                return !state.closed;
+                            case "getAutoCommit":
+                                return state.autoCommit;
+                            case "setAutoCommit":
+                                state.autoCommit = (Boolean) args[0];
+                                return null;
+                            case "getTransactionIsolation":
+                                return state.isolation;
+                            case "setTransactionIsolation":
+                                state.isolation = (Integer) args[0];
+                                return null;
+                            case "isReadOnly":
+                                return state.readOnly;
+                            case "setReadOnly":
+                                state.readOnly = (Boolean) args[0];
+                                return null;
+                            case "rollback":
+                                state.rollbacks++;
+                                return null;
+                            case "prepareStatement":
+                                state.prepared.incrementAndGet();
+                                return fakeStatement(state);
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            case "toString":
+                                return "FakeConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private static PreparedStatement fakeStatement(FakeConnectionState state) {
+            boolean[] closed = {false};
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                if (!closed[0]) {
+                                    closed[0] = true;
+                                    state.statementsClosed.incrementAndGet();
+                                }
+                                return null;
+                            case "isClosed":
+                                return closed[0];
+                            case "executeUpdate":
+                                return 1;
+                            case "clearBatch":
+                                state.batchesCleared.incrementAndGet();
+                                return null;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith(URL);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ueadmission.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark for chat message inserts shaped like ClientHandler.storeMessage,
+ * with and without the per-connection prepared statement cache.
+ * Needs the local MySQL database; run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementCacheBenchmark {
+    private static final String INSERT_SQL =
+        "INSERT INTO chat_messages (sender_id, receiver_id, message, timestamp, is_read) " +
+        "VALUES (?, ?, ?, ?, false)";
+    private static final String MARKER = "jmh-statement-cache";
+
+    @Param({"0", "64"})
+    public int statementCacheSize;
+
+    private ConnectionPool pool;
+    private int senderId;
+    private int receiverId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        pool = BenchmarkDatabase.createPool(1, statementCacheSize);
+        int[] users = BenchmarkDatabase.loadUserIds(pool, 2);
+        senderId = users[0];
+        receiverId = users[1];
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        System.out.println("[DEBUG_LOG] " + pool.getMetrics());
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM chat_messages WHERE message = '" + MARKER + "'");
+        }
+        pool.close();
+    }
+
+    /**
+     * One message insert, borrowing and returning the connection like the DAO code does
+     */
+    @Benchmark
+    public int storeMessage() throws SQLException {
+        try (Connection conn = pool.borrow(); PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            ps.setInt(1, senderId);
+            ps.setInt(2, receiverId);
+            ps.setString(3, MARKER);
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            return ps.executeUpdate();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StatementCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,192 @@
+package com.ueadmission.questionPaper;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ueadmission.utils.ShuffledList;
+
+/**
+ * Test class for QuestionPaperCache, using an in-memory loader instead of the database
+ */
+public class QuestionPaperCacheTest {
+
+    private static final long TTL_MILLIS = 60000;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private QuestionPaper loadPaper(boolean isMockExam, String school) {
+        loads.incrementAndGet();
+        QuestionPaper paper = new QuestionPaper("Paper", "", school, isMockExam, 1);
+        for (int i = 1; i <= 10; i++) {
+            Question question = new Question(1, "Question " + i, false, null, false);
+            question.setId(i);
+            question.addOption(new QuestionOption(i, "A", true, 1));
+            paper.addQuestion(question);
+        }
+        return paper;
+    }
+
+    /**
+     * Test that concurrent misses for the same key trigger only one load
+     */
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        QuestionPaperCache cache = new QuestionPaperCache((isMock, school) -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loadPaper(isMock, school);
+        }, TTL_MILLIS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] results = new Future<?>[8];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = executor.submit(() -> cache.getMostRecentQuestionPaper(false, "School of Engineering & Technology"));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            Object first = results[0].get(5, TimeUnit.SECONDS);
+            for (Future<?> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS), "All callers should share one snapshot");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.println("[DEBUG_LOG] Loads: " + loads.get() + ", hits: " + cache.getHitCount());
+        assertEquals(1, loads.get(), "Concurrent misses should trigger a single load");
+    }
+
+    /**
+     * Test that keys are separate and invalidation forces a reload
+     */
+    @Test
+    public void testInvalidateForcesReload() {
+        QuestionPaperCache cache = new QuestionPaperCache(this::loadPaper, TTL_MILLIS);
+        QuestionPaper real = cache.getMostRecentQuestionPaper(false, "School A");
+        QuestionPaper mock = cache.getMostRecentQuestionPaper(true, "School A");
+        assertNotSame(real, mock);
+        assertSame(real, cache.getMostRecentQuestionPaper(false, "School A"));
+        assertEquals(2, loads.get());
+
+        cache.invalidate();
+        assertNotSame(real, cache.getMostRecentQuestionPaper(false, "School A"));
+        assertEquals(3, loads.get());
+    }
+
+    /**
+     * Test that a load racing with an invalidation is not kept in the cache
+     */
+    @Test
+    public void testLoadRacingWithWriteIsNotCached() {
+        QuestionPaperCache[] holder = new QuestionPaperCache[1];
+        holder[0] = new QuestionPaperCache((isMock, school) -> {
+            QuestionPaper paper = loadPaper(isMock, school);
+            if (loads.get() == 1) {
+                // A question is added while the first load is running
+                holder[0].invalidate();
+            }
+            return paper;
+        }, TTL_MILLIS);
+
+        QuestionPaper stale = holder[0].getMostRecentQuestionPaper(false, "School A");
+        assertNotNull(stale);
+        assertNotSame(stale, holder[0].getMostRecentQuestionPaper(false, "School A"));
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Test that cached papers are read-only copies and shuffling does not touch the shared list
+     */
+    @Test
+    public void testSnapshotIsSharedReadOnly() {
+        QuestionPaper[] loaded = new QuestionPaper[1];
+        QuestionPaperCache cache = new QuestionPaperCache((isMock, school) -> {
+            loaded[0] = loadPaper(isMock, school);
+            return loaded[0];
+        }, TTL_MILLIS);
+        QuestionPaper paper = cache.getMostRecentQuestionPaper(true, "School A");
+        assertNotSame(loaded[0], paper, "The cache should not hand out the loader's paper");
+        List<Question> questions = paper.getQuestions();
+        Question question = questions.get(0);
+        assertThrows(UnsupportedOperationException.class, () -> questions.add(new Question()));
+        assertThrows(UnsupportedOperationException.class,
+                () -> question.addOption(new QuestionOption(1, "B", false, 2)));
+        assertThrows(UnsupportedOperationException.class, () -> paper.setTimeLimitMinutes(5));
+        assertThrows(UnsupportedOperationException.class, () -> question.setQuestionText("Changed"));
+        assertThrows(UnsupportedOperationException.class, () -> question.getOptions().get(0).setCorrect(false));
+
+        // Changes to the loader's objects do not reach the cached copy
+        loaded[0].getQuestions().get(0).getOptions().get(0).setCorrect(false);
+        loaded[0].getQuestions().get(0).addOption(new QuestionOption(1, "B", true, 2));
+        assertTrue(question.getOptions().get(0).isCorrect());
+        assertEquals(1, question.getOptions().size());
+
+        List<Question> shuffled = ShuffledList.of(questions);
+        assertEquals(questions.size(), shuffled.size());
+        assertTrue(shuffled.containsAll(questions), "Shuffled view should hold every question");
+        assertEquals("Question 1", questions.get(0).getQuestionText(), "Shared order should be unchanged");
+    }
+
+    /**
+     * Test that a missing paper is not cached
+     */
+    @Test
+    public void testMissingPaperIsNotCached() {
+        QuestionPaperCache cache = new QuestionPaperCache((isMock, school) -> {
+            loads.incrementAndGet();
+            return null;
+        }, TTL_MILLIS);
+        assertNull(cache.getMostRecentQuestionPaper(false, "School A"));
+        assertNull(cache.getMostRecentQuestionPaper(false, "School A"));
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Test that a failed load is not cached and the next lookup tries again
+     */
+    @Test
+    public void testFailedLoadIsNotCached() {
+        QuestionPaperCache cache = new QuestionPaperCache((isMock, school) -> {
+            if (loads.get() == 0) {
+                loads.incrementAndGet();
+                throw new SQLException("Connection reset");
+            }
+            return loadPaper(isMock, school);
+        }, TTL_MILLIS);
+        assertNull(cache.getMostRecentQuestionPaper(false, "School A"));
+
+        QuestionPaper paper = cache.getMostRecentQuestionPaper(false, "School A");
+        assertNotNull(paper, "The load after a failure should reach the loader");
+        assertEquals(10, paper.getQuestions().size());
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Test that a cached paper is loaded again once its time to live has passed
+     */
+    @Test
+    public void testExpiredPaperIsReloaded() throws Exception {
+        QuestionPaperCache cache = new QuestionPaperCache(this::loadPaper, 50);
+        QuestionPaper first = cache.getMostRecentQuestionPaper(false, "School A");
+        assertSame(first, cache.getMostRecentQuestionPaper(false, "School A"));
+
+        Thread.sleep(100);
+        assertNotSame(first, cache.getMostRecentQuestionPaper(false, "School A"));
+        System.out.println("[DEBUG_LOG] Loads after expiry: " + loads.get());
+        assertEquals(2, loads.get());
+    }
+}
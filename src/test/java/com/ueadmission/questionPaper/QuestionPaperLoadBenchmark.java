@@ -0,0 +1,158 @@
+package com.ueadmission.questionPaper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ueadmission.db.DatabaseConnection;
+import com.ueadmission.db.PoolMetrics;
+
+/**
+ * JMH benchmark for loading a question paper's questions and options, comparing
+ * QuestionPaperDAO.getQuestionsForPaper with the previous one-query-per-question loader.
+ * Needs the local MySQL database; run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuestionPaperLoadBenchmark {
+    private static final List<String> OPTIONS = List.of("A", "B", "C", "D");
+
+    @Param({"50", "200", "1000"})
+    public int questionCount;
+
+    private int questionPaperId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        String school;
+        String subject;
+        int userId;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            school = queryString(conn, "SELECT name FROM schools ORDER BY id LIMIT 1");
+            subject = queryString(conn, "SELECT name FROM subjects ORDER BY id LIMIT 1");
+            userId = Integer.parseInt(queryString(conn, "SELECT id FROM users ORDER BY id LIMIT 1"));
+        }
+
+        questionPaperId = QuestionPaperDAO.createQuestionPaper("jmh-question-load", "Benchmark paper", school, true,
+                questionCount, subject, String.valueOf(questionCount), 60, questionCount, userId);
+        if (questionPaperId == -1) {
+            throw new SQLException("Could not create benchmark question paper");
+        }
+        for (int i = 0; i < questionCount; i++) {
+            QuestionPaperDAO.addQuestion(questionPaperId, "Benchmark question " + i, false, null, false,
+                    OPTIONS, i % OPTIONS.size(), subject);
+        }
+
+        System.out.println("[DEBUG_LOG] Statements per load with " + questionCount + " questions: single pass="
+                + countStatements(this::singlePass) + ", per question=" + countStatements(this::perQuestion));
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM question_papers WHERE id = ?")) {
+            ps.setInt(1, questionPaperId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Current loader: one query for questions and one for all their options
+     */
+    @Benchmark
+    public List<Question> singlePass() {
+        return QuestionPaperDAO.getQuestionsForPaper(questionPaperId);
+    }
+
+    /**
+     * Previous loader: one options query, on its own connection lease, per question
+     */
+    @Benchmark
+    public List<Question> perQuestion() throws SQLException {
+        List<Question> questions = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT q.* FROM questions q WHERE q.question_paper_id = ?")) {
+            ps.setInt(1, questionPaperId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Question question = new Question();
+                    question.setId(rs.getInt("id"));
+                    question.setQuestionText(rs.getString("question_text"));
+                    questions.add(question);
+                }
+            }
+        }
+
+        for (Question question : questions) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "SELECT * FROM question_options WHERE question_id = ? ORDER BY option_order")) {
+                ps.setInt(1, question.getId());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        QuestionOption option = new QuestionOption();
+                        option.setId(rs.getInt("id"));
+                        option.setOptionText(rs.getString("option_text"));
+                        question.addOption(option);
+                    }
+                }
+            }
+        }
+        return questions;
+    }
+
+    private interface Loader {
+        List<Question> load() throws SQLException;
+    }
+
+    /**
+     * Count the statements one load prepares, i.e. its database round trips.
+     * Relies on the statement cache counters, so pool.statementCacheSize must be above 0.
+     */
+    private static long countStatements(Loader loader) throws SQLException {
+        PoolMetrics before = DatabaseConnection.getPoolMetrics();
+        loader.load();
+        PoolMetrics after = DatabaseConnection.getPoolMetrics();
+        return after.getStatementCacheHits() + after.getStatementCacheMisses()
+                - before.getStatementCacheHits() - before.getStatementCacheMisses();
+    }
+
+    private static String queryString(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Benchmark needs data for: " + sql);
+            }
+            return rs.getString(1);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(QuestionPaperLoadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,52 @@
+package com.ueadmission.utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for IntObjectMap
+ */
+public class IntObjectMapTest {
+
+    /**
+     * Test that values survive resizing and replacing
+     */
+    @Test
+    public void testPutAndGetAcrossResize() {
+        IntObjectMap<String> map = new IntObjectMap<>(2);
+        for (int i = 0; i < 1000; i++) {
+            assertNull(map.put(i * 7, "v" + i));
+        }
+        System.out.println("[DEBUG_LOG] Size after inserts: " + map.size());
+        assertEquals(1000, map.size());
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("v" + i, map.get(i * 7));
+        }
+        assertNull(map.get(3), "Missing key should return null");
+        assertFalse(map.containsKey(-7));
+
+        assertEquals("v1", map.put(7, "seven"));
+        assertEquals("seven", map.get(7));
+        assertEquals(1000, map.size(), "Replacing a value should not change the size");
+    }
+
+    /**
+     * Test that zero and negative keys are supported and clear empties the map
+     */
+    @Test
+    public void testSpecialKeysAndClear() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        map.put(0, "zero");
+        map.put(-1, "minus one");
+        map.put(Integer.MIN_VALUE, "min");
+        assertEquals("zero", map.get(0));
+        assertEquals("minus one", map.get(-1));
+        assertEquals("min", map.get(Integer.MIN_VALUE));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(0));
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+    }
+}